@@ -0,0 +1,8 @@
+package uk.gov.hmcts.reform.pbis.categories;
+
+/**
+ * This interface represents a test category - load tests.
+ */
+public interface LoadTests {
+
+}
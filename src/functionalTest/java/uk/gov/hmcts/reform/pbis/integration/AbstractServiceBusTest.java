@@ -13,8 +13,10 @@ import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
 import uk.gov.hmcts.reform.pbis.utils.DeadLetterQueueHelper;
 import uk.gov.hmcts.reform.pbis.utils.ServiceBusFeeder;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @TestPropertySource(properties =
     {
@@ -38,7 +40,7 @@ public abstract class AbstractServiceBusTest {
     // Cache that stores all messages that have been received from the subscription
     // but not deleted. Such messages would reappear later in the subscription,
     // possibly interfering with tests
-    protected final Map<String, IMessage> messagesToComplete = new HashMap<>();
+    protected final Map<String, IMessage> messagesToComplete = new ConcurrentHashMap<>();
 
     protected IServiceBusClient serviceBusClient;
     protected ServiceBusFeeder serviceBusFeeder;
@@ -81,6 +83,12 @@ public abstract class AbstractServiceBusTest {
         return message;
     }
 
+    protected List<IMessage> receiveMessages(int maxCount, Duration wait) {
+        List<IMessage> messages = serviceBusClient.receiveMessages(maxCount, wait);
+        messages.forEach(message -> messagesToComplete.put(message.getMessageId(), message));
+        return messages;
+    }
+
     private void consumeAllMessagesFromSubscription() {
         IMessage message;
         while ((message = serviceBusClient.receiveMessage()) != null) {
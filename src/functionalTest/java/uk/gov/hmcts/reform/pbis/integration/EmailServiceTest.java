@@ -14,7 +14,7 @@ import uk.gov.hmcts.reform.pbis.EmailCreator;
 import uk.gov.hmcts.reform.pbis.EmailService;
 import uk.gov.hmcts.reform.pbis.ServiceNotFoundException;
 import uk.gov.hmcts.reform.pbis.categories.IntegrationTests;
-import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRouteTable;
 import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
 import uk.gov.hmcts.reform.pbis.utils.NotificationHelper;
 import uk.gov.hmcts.reform.pbis.utils.SampleData;
@@ -40,7 +40,7 @@ public class EmailServiceTest {
     private static final Configuration testConfig = new Configuration();
 
     @Autowired
-    private NotificationClientProvider notificationClientProvider;
+    private ServiceRouteTable routeTable;
 
     @Autowired
     private EmailCreator emailCreator;
@@ -50,7 +50,7 @@ public class EmailServiceTest {
 
     @Before
     public void setUp() {
-        emailService = new EmailService(notificationClientProvider, emailCreator);
+        emailService = new EmailService(routeTable, emailCreator);
         notificationHelper = new NotificationHelper(testConfig.getNotifyApiKey());
     }
 
@@ -13,15 +13,28 @@ import org.mockito.Mock;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import uk.gov.hmcts.reform.pbis.EmailService;
-import uk.gov.hmcts.reform.pbis.ServiceNotFoundException;
 import uk.gov.hmcts.reform.pbis.categories.IntegrationTests;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCache;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRouteTable;
 import uk.gov.hmcts.reform.pbis.servicebus.IServiceBusClient;
 import uk.gov.hmcts.reform.pbis.servicebus.IServiceBusClientFactory;
+import uk.gov.hmcts.reform.pbis.servicebus.MessageProcessingPipeline;
+import uk.gov.hmcts.reform.pbis.servicebus.MessageProcessor;
 import uk.gov.hmcts.reform.pbis.servicebus.MessageQueueProcessingTracker;
 import uk.gov.hmcts.reform.pbis.servicebus.MessageQueueProcessor;
+import uk.gov.hmcts.reform.pbis.servicebus.MessageRetryPolicy;
 import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecoder;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceWeights;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.CborRegistrationCodec;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.JsonRegistrationCodec;
+import uk.gov.hmcts.reform.pbis.servicebus.locks.MessageLockRenewer;
+import uk.gov.hmcts.reform.pbis.servicebus.validation.CodedRegistrationValidator;
 import uk.gov.hmcts.reform.pbis.utils.SampleData;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -29,10 +42,12 @@ import java.util.stream.Stream;
 import javax.validation.Validation;
 import javax.validation.Validator;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.never;
@@ -48,6 +63,20 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
     private static final String DEAD_LETTER_REASON_KEY = "DeadLetterReason";
     private static final String DEAD_LETTER_DESCRIPTION_KEY = "DeadLetterErrorDescription";
     private static final String VALIDATION_ERRORS_KEY = "ValidationErrors";
+    private static final int RECEIVE_BATCH_SIZE = 2;
+    private static final int MAX_SETTLEMENTS_IN_FLIGHT = 2;
+    private static final int MAX_RETRY_WAITING_MESSAGES = 10;
+    private static final int MAX_MESSAGES_IN_FLIGHT = 4;
+    private static final int QUEUE_CAPACITY = 2;
+    private static final int SEND_THREADS = 2;
+    private static final Duration LOCK_RENEW_BEFORE_EXPIRY = Duration.ofSeconds(10);
+    private static final Duration LOCK_NEAR_MISS_THRESHOLD = Duration.ofSeconds(2);
+    private static final Duration LOCK_RENEWAL_TICK = Duration.ofMillis(100);
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int MAX_MESSAGE_BODY_SIZE = 64 * 1024;
+    private static final Duration RETRY_DELAY = Duration.ofMillis(100);
+    private static final int SENT_EMAIL_CACHE_MAX_SIZE = 1000;
+    private static final Duration SENT_EMAIL_CACHE_TTL = Duration.ofHours(1);
 
     @Mock
     private EmailService emailService;
@@ -57,6 +86,16 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
 
     private Validator validator;
 
+    private MessageLockRenewer lockRenewer;
+
+    private MessageRetryPolicy retryPolicy;
+
+    private NotifyRateLimiter rateLimiter;
+
+    private SentEmailCache sentEmailCache;
+
+    private MessageProcessingPipeline pipeline;
+
     private MessageQueueProcessor messageQueueProcessor;
 
     @Override
@@ -69,17 +108,72 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
 
         validator = Validation.buildDefaultValidatorFactory().getValidator();
 
+        lockRenewer = new MessageLockRenewer(
+            tracker,
+            LOCK_RENEW_BEFORE_EXPIRY.toMillis(),
+            LOCK_NEAR_MISS_THRESHOLD.toMillis(),
+            LOCK_RENEWAL_TICK.toMillis()
+        );
+
+        lockRenewer.start();
+
+        retryPolicy = new MessageRetryPolicy(MAX_ATTEMPTS, RETRY_DELAY, RETRY_DELAY);
+
+        rateLimiter = new NotifyRateLimiter(emptyList());
+
+        sentEmailCache = new SentEmailCache(SENT_EMAIL_CACHE_MAX_SIZE, SENT_EMAIL_CACHE_TTL.toMillis(), null);
+
+        // email service is a mock, so the route only needs to exist
+        ServiceRouteTable routeTable = new ServiceRouteTable(singletonList(
+            new ServiceRoute(testConfig.getServiceName(), testConfig.getTemplateId(), null, null, null, null)
+        ));
+
+        pipeline = new MessageProcessingPipeline(
+            new MessageProcessor(
+                new RegistrationDecoder(MAX_MESSAGE_BODY_SIZE),
+                emailService,
+                routeTable,
+                new CodedRegistrationValidator(validator),
+                retryPolicy,
+                sentEmailCache
+            ),
+            tracker,
+            lockRenewer,
+            new ServiceWeights(emptyList()),
+            MAX_MESSAGES_IN_FLIGHT,
+            QUEUE_CAPACITY,
+            1,
+            1,
+            1,
+            SEND_THREADS,
+            1
+        );
+
+        pipeline.start();
+
         messageQueueProcessor = new MessageQueueProcessor(
             clientFactorySpy,
-            emailService,
-            validator,
-            tracker
+            pipeline,
+            tracker,
+            lockRenewer,
+            retryPolicy,
+            rateLimiter,
+            sentEmailCache,
+            RECEIVE_BATCH_SIZE,
+            testConfig.getMaxReceiveWaitTime().toMillis(),
+            MAX_SETTLEMENTS_IN_FLIGHT,
+            MAX_RETRY_WAITING_MESSAGES,
+            1
         );
     }
 
     @Override
     @After
     public void tearDown() throws Exception {
+        messageQueueProcessor.shutDown();
+        pipeline.stop();
+        lockRenewer.stop();
+        retryPolicy.stop();
         super.tearDown();
     }
 
@@ -119,7 +213,7 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
             ArgumentCaptor.forClass(PrivateBetaRegistration.class);
 
         verify(emailService, times(validMessageCount))
-            .sendWelcomeEmail(registrationCaptor.capture());
+            .sendEmail(any(), registrationCaptor.capture(), any());
 
         String[] actualReferenceIds = getRegistrationIds(registrationCaptor.getAllValues());
         String[] expectedReferenceIds = getRegistrationIds(registrationsToProcess);
@@ -129,13 +223,49 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
             .containsExactlyInAnyOrder(expectedReferenceIds);
     }
 
+    @Test
+    public void run_should_call_email_service_for_cbor_encoded_messages() throws Exception {
+        PrivateBetaRegistration registration = SampleData.getSampleRegistration(testConfig.getServiceName());
+
+        serviceBusFeeder.sendMessage(registration, new CborRegistrationCodec());
+
+        messageQueueProcessor.run();
+
+        ArgumentCaptor<PrivateBetaRegistration> registrationCaptor =
+            ArgumentCaptor.forClass(PrivateBetaRegistration.class);
+
+        verify(emailService).sendEmail(any(), registrationCaptor.capture(), any());
+        assertThat(registrationCaptor.getValue().referenceId).isEqualTo(registration.referenceId);
+    }
+
+    @Test
+    public void run_should_call_email_service_for_each_registration_of_batch() throws Exception {
+        List<PrivateBetaRegistration> registrations =
+            SampleData.getSampleRegistrations(testConfig.getServiceName(), 3);
+
+        serviceBusFeeder.sendBatch(registrations, new JsonRegistrationCodec());
+
+        messageQueueProcessor.run();
+
+        ArgumentCaptor<PrivateBetaRegistration> registrationCaptor =
+            ArgumentCaptor.forClass(PrivateBetaRegistration.class);
+
+        verify(emailService, times(registrations.size()))
+            .sendEmail(any(), registrationCaptor.capture(), any());
+
+        assertThat(getRegistrationIds(registrationCaptor.getAllValues()))
+            .containsExactly(getRegistrationIds(registrations));
+
+        assertThat(receiveMessage()).as("check if subscription is empty").isNull();
+    }
+
     @Test
     public void run_should_not_call_email_service_for_invalid_messages() throws Exception {
         serviceBusFeeder.sendMessages("invalid1", "invalid2", "invalid3");
 
         messageQueueProcessor.run();
 
-        verify(emailService, never()).sendWelcomeEmail(any());
+        verify(emailService, never()).sendEmail(any(), any(), any());
     }
 
     @Test
@@ -202,10 +332,6 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
             SampleData.getSampleRegistration("unknown-service")
         );
 
-        willThrow(new ServiceNotFoundException("test"))
-            .given(emailService)
-            .sendWelcomeEmail(any());
-
         messageQueueProcessor.run();
 
         assertThat(receiveMessage()).as("check if subscription is empty").isNull();
@@ -327,6 +453,10 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
 
         doAnswer(invocation -> receiveMessage()).when(clientSpy).receiveMessage();
 
+        doAnswer(invocation -> receiveMessages(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(clientSpy)
+            .receiveMessages(anyInt(), any());
+
         doAnswer(invocation -> {
             String messageId = invocation.getArgument(0);
             UUID lockToken = invocation.getArgument(1);
@@ -337,6 +467,15 @@ public class MessageQueueProcessorTest extends AbstractServiceBusTest {
             .when(clientSpy)
             .completeMessage(any(), any());
 
+        doAnswer(invocation -> {
+            IMessage message = invocation.getArgument(0);
+            return serviceBusClient
+                .completeMessageAsync(message)
+                .thenRun(() -> messagesToComplete.remove(message.getMessageId()));
+        })
+            .when(clientSpy)
+            .completeMessageAsync(any());
+
         doNothing().when(clientSpy).close();
 
         return clientSpy;
@@ -0,0 +1,147 @@
+package uk.gov.hmcts.reform.pbis.integration;
+
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.hmcts.reform.pbis.categories.IntegrationTests;
+import uk.gov.hmcts.reform.pbis.config.NotifyClientSettings;
+import uk.gov.hmcts.reform.pbis.notify.EmailSender;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientEmailSender;
+import uk.gov.hmcts.reform.pbis.notify.PooledNotificationClient;
+import uk.gov.service.notify.NotificationClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares per-request latency of the stock and pooled Notify clients against a local Notify stand-in.
+ */
+@Category(IntegrationTests.class)
+public class NotificationClientLatencyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationClientLatencyTest.class);
+
+    private static final int WARM_UP_REQUESTS = 200;
+    private static final int MEASURED_REQUESTS = 1000;
+
+    private static final String API_KEY =
+        "test_key-" + UUID.randomUUID() + "-" + UUID.randomUUID();
+
+    private static final String SEND_EMAIL_RESPONSE = "{"
+        + "\"id\":\"" + UUID.randomUUID() + "\","
+        + "\"reference\":\"reference\","
+        + "\"content\":{\"body\":\"Hello\",\"subject\":\"Welcome\",\"from_email\":\"service@example.com\"},"
+        + "\"template\":{\"id\":\"" + UUID.randomUUID() + "\",\"version\":1,\"uri\":\"http://localhost/template\"}"
+        + "}";
+
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void pooled_client_should_reuse_connections() throws Exception {
+        long[] stockLatencies = measure(new NotificationClientEmailSender(new NotificationClient(API_KEY, baseUrl)));
+        int stockConnections = clientAddresses.size();
+
+        clientAddresses.clear();
+
+        NotifyClientSettings settings = new NotifyClientSettings();
+        settings.setPooled(true);
+
+        long[] pooledLatencies;
+        try (PooledNotificationClient pooledClient = new PooledNotificationClient(API_KEY, baseUrl, settings)) {
+            pooledLatencies = measure(pooledClient);
+        }
+
+        int pooledConnections = clientAddresses.size();
+
+        logger.info("Stock client: {}, connections: {}", summarise(stockLatencies), stockConnections);
+        logger.info("Pooled client: {}, connections: {}", summarise(pooledLatencies), pooledConnections);
+
+        // requests are sent one by one, so a single connection is enough
+        assertThat(pooledConnections).isEqualTo(1);
+    }
+
+    private long[] measure(EmailSender client) throws Exception {
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            send(client, i);
+        }
+
+        long[] latencies = new long[MEASURED_REQUESTS];
+
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            long start = System.nanoTime();
+            send(client, i);
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void send(EmailSender client, int index) throws Exception {
+        client.sendEmail("template", "email@example.com", ImmutableMap.of("name", "value"), "reference" + index);
+    }
+
+    private static String summarise(long[] sortedLatencies) {
+        return String.format(
+            "p50 %.3f ms, p99 %.3f ms, mean %.3f ms",
+            percentile(sortedLatencies, 0.5),
+            percentile(sortedLatencies, 0.99),
+            Arrays.stream(sortedLatencies).average().orElse(0) / 1_000_000
+        );
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientAddresses.add(exchange.getRemoteAddress());
+
+        try (InputStream input = exchange.getRequestBody()) {
+            while (input.read() != -1) {
+                // the request body has to be read for the connection to be reused
+            }
+        }
+
+        byte[] response = SEND_EMAIL_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(201, response.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+}
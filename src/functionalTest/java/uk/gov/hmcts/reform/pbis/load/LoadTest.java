@@ -0,0 +1,34 @@
+package uk.gov.hmcts.reform.pbis.load;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.hmcts.reform.pbis.categories.LoadTests;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link LoadTestHarness} with settings from {@code loadTest.*} system properties
+ * - see {@link LoadTestSettings}.
+ */
+@Category(LoadTests.class)
+public class LoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    @Test
+    public void should_process_all_injected_messages() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+
+        LoadTestReport report = new LoadTestHarness(settings).run();
+
+        logger.info("Load test results: {}", report);
+
+        assertThat(report.drained).as("all messages settled").isTrue();
+
+        if (settings.notifyErrorRate == 0) {
+            assertThat(report.notSentCount).as("valid registrations without email").isZero();
+        }
+    }
+}
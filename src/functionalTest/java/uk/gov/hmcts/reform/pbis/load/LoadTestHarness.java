@@ -0,0 +1,247 @@
+package uk.gov.hmcts.reform.pbis.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import uk.gov.hmcts.reform.pbis.Application;
+import uk.gov.hmcts.reform.pbis.notify.simulator.LatencyDistribution;
+import uk.gov.hmcts.reform.pbis.notify.simulator.NotifySimulator;
+import uk.gov.hmcts.reform.pbis.notify.simulator.NotifySimulatorServer;
+import uk.gov.hmcts.reform.pbis.notify.simulator.ServiceBehaviour;
+import uk.gov.hmcts.reform.pbis.notify.simulator.SimulatedResponse;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClientStub;
+import uk.gov.hmcts.reform.pbis.utils.SampleData;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the whole application against in-memory stand-ins of Service Bus ({@link ServiceBusClientStub})
+ * and Notify ({@link NotifySimulatorServer}), and measures how it copes with a stream of registrations.
+ *
+ * <p>Registrations (a mix of valid, invalid and unknown-service ones) are injected into the subscription
+ * at the target rate. The application processes them the way it would in production - by polling
+ * the subscription with {@code MessageQueueProcessor} and sending emails through real Notify clients
+ * over HTTP. The run ends once every message has been settled.</p>
+ *
+ * <p>The application is configured with the usual environment variables (e.g. the number of send threads),
+ * except for Service Bus and Notify settings, which point at the stand-ins.</p>
+ */
+public class LoadTestHarness {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestHarness.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String UNKNOWN_SERVICE = "unknown-service";
+
+    private final LoadTestSettings settings;
+    private final ServiceBusClientStub subscription = ServiceBusClientStub.getInstance();
+
+    // by reference ID of registrations
+    private final Map<String, Long> injectedAtNanos = new ConcurrentHashMap<>();
+    private final Map<String, Integer> sendCounts = new ConcurrentHashMap<>();
+    private final Queue<Long> latenciesNanos = new ConcurrentLinkedQueue<>();
+
+    public LoadTestHarness(LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    public LoadTestReport run() throws IOException {
+        subscription.clear();
+
+        NotifySimulator simulator = new RecordingNotifySimulator();
+        simulator.setDefaultBehaviour(
+            ServiceBehaviour
+                .healthy()
+                .withLatency(LatencyDistribution.longTail(settings.notifyMedianLatency, settings.notifyP99Latency))
+                .withErrors(settings.notifyErrorRate, 500)
+        );
+
+        List<String> services = new ArrayList<>();
+
+        for (int i = 0; i < settings.serviceCount; i++) {
+            services.add("load-test-service-" + i);
+        }
+
+        try (NotifySimulatorServer notifyServer = new NotifySimulatorServer(simulator, 200)) {
+            ConfigurableApplicationContext context = startApplication(services, notifyServer.getBaseUrl());
+
+            try {
+                logger.info("Starting load test: {}", settings);
+                return injectAndAwaitSettlement(services);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication(List<String> services, String notifyBaseUrl) {
+        // defaults of settings that can still be overridden with environment variables
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("SERVICE_BUS_MAX_RECEIVE_WAIT_TIME_MS", 1000);
+        defaults.put("SERVICE_BUS_MIN_POLLING_DELAY_MS", 100);
+        defaults.put("SERVICE_BUS_POLLING_DELAY_MS", 1000);
+
+        List<String> args = new ArrayList<>(
+            Arrays.asList(
+                "--server.port=0",
+                "--serviceBus.useStub=true",
+                "--serviceBus.consumerMode=polling",
+                "--notify.useStub=false",
+                "--notify.baseUrl=" + notifyBaseUrl
+            )
+        );
+
+        for (int i = 0; i < services.size(); i++) {
+            String prefix = "--emailTemplateMappings[" + i + "].";
+
+            args.add(prefix + "service=" + services.get(i));
+            args.add(prefix + "templateId=" + UUID.randomUUID());
+            args.add(prefix + "notifyApiKey=" + NotifySimulatorServer.createApiKey(UUID.randomUUID()));
+            args.add(prefix + "welcomeLink=https://" + services.get(i) + ".example.com");
+            args.add(prefix + "notifyClient.pooled=true");
+            // Notify's own limit is simulated, the service's limit mustn't be what's measured
+            args.add(prefix + "notifyClient.maxRequestsPerSecond=" + Math.max(settings.messagesPerSecond * 2, 100));
+            args.add(prefix + "notifyClient.burstSize=100");
+            args.add(prefix + "notifyClient.maxConcurrentRequests=50");
+        }
+
+        return new SpringApplicationBuilder(Application.class)
+            .properties(defaults)
+            .run(args.toArray(new String[0]));
+    }
+
+    private LoadTestReport injectAndAwaitSettlement(List<String> services) throws JsonProcessingException {
+        Random random = new Random(0);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / settings.messagesPerSecond);
+        long startNanos = System.nanoTime();
+        int validCount = 0;
+
+        for (int i = 0; i < settings.messageCount; i++) {
+            LockSupport.parkNanos(startNanos + i * intervalNanos - System.nanoTime());
+
+            PrivateBetaRegistration registration = createRegistration(random, services);
+
+            if (!UNKNOWN_SERVICE.equals(registration.service) && !registration.service.isEmpty()) {
+                validCount++;
+            }
+
+            byte[] body = objectMapper.writeValueAsBytes(registration);
+            injectedAtNanos.put(registration.referenceId, System.nanoTime());
+            subscription.send(UUID.randomUUID().toString(), body, null);
+        }
+
+        long injectionEndNanos = System.nanoTime();
+        long deadline = injectionEndNanos + settings.drainTimeout.toNanos();
+
+        while (getSettledCount() < settings.messageCount && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        long endNanos = System.nanoTime();
+
+        return createReport(validCount, startNanos, injectionEndNanos, endNanos);
+    }
+
+    private PrivateBetaRegistration createRegistration(Random random, List<String> services) {
+        double draw = random.nextDouble();
+
+        if (draw < settings.invalidRegistrationShare) {
+            return SampleData.getSampleInvalidRegistration();
+        } else if (draw < settings.invalidRegistrationShare + settings.unknownServiceShare) {
+            return SampleData.getSampleRegistration(UNKNOWN_SERVICE);
+        } else {
+            return SampleData.getSampleRegistration(services.get(random.nextInt(services.size())));
+        }
+    }
+
+    private long getSettledCount() {
+        return subscription.getCompletedCount() + subscription.getDeadLetteredCount();
+    }
+
+    private LoadTestReport createReport(int validCount, long startNanos, long injectionEndNanos, long endNanos) {
+        long[] latencies = latenciesNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        Duration duration = Duration.ofNanos(endNanos - startNanos);
+        long settledCount = getSettledCount();
+
+        return new LoadTestReport(
+            settings.messageCount,
+            validCount,
+            subscription.getCompletedCount(),
+            subscription.getDeadLetteredCount(),
+            settledCount >= settings.messageCount,
+            duration,
+            settings.messageCount / toSeconds(injectionEndNanos - startNanos),
+            settledCount / toSeconds(endNanos - startNanos),
+            percentile(latencies, 0.5),
+            percentile(latencies, 0.99),
+            percentile(latencies, 0.999),
+            percentile(latencies, 1),
+            sendCounts.size(),
+            validCount - sendCounts.size(),
+            subscription.getRedeliveredCount(),
+            sendCounts.values().stream().mapToLong(count -> count - 1).sum()
+        );
+    }
+
+    private static double toSeconds(long nanos) {
+        return Math.max(nanos, 1) / 1e9;
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Records when emails are sent, for the latency of each registration and the number of duplicates.
+     */
+    private class RecordingNotifySimulator extends NotifySimulator {
+
+        @Override
+        public SimulatedResponse sendEmail(
+            String service,
+            String templateId,
+            String emailAddress,
+            Map<String, ?> personalisation,
+            String reference
+        ) {
+            SimulatedResponse response = super.sendEmail(service, templateId, emailAddress, personalisation, reference);
+
+            if (response.isSuccessful() && reference != null) {
+                long sentAtNanos = System.nanoTime();
+
+                if (sendCounts.merge(reference, 1, Integer::sum) == 1) {
+                    Long injectedAt = injectedAtNanos.get(reference);
+
+                    if (injectedAt != null) {
+                        latenciesNanos.add(sentAtNanos - injectedAt);
+                    }
+                }
+            }
+
+            return response;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package uk.gov.hmcts.reform.pbis.load;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a load test run.
+ */
+public class LoadTestReport {
+
+    public final int injectedCount;
+    public final int validCount;
+    public final long completedCount;
+    public final long deadLetteredCount;
+    public final boolean drained;
+
+    // from the first message injected until the last one was settled
+    public final Duration duration;
+    public final double injectedPerSecond;
+    public final double settledPerSecond;
+
+    // from injecting a message until its email was sent, in milliseconds
+    public final double p50LatencyMs;
+    public final double p99LatencyMs;
+    public final double p999LatencyMs;
+    public final double maxLatencyMs;
+
+    public final long sentCount;
+    public final long notSentCount;
+    public final long redeliveryCount;
+    // emails sent for registrations that had been sent already
+    public final long duplicateSendCount;
+
+    public LoadTestReport(
+        int injectedCount,
+        int validCount,
+        long completedCount,
+        long deadLetteredCount,
+        boolean drained,
+        Duration duration,
+        double injectedPerSecond,
+        double settledPerSecond,
+        double p50LatencyMs,
+        double p99LatencyMs,
+        double p999LatencyMs,
+        double maxLatencyMs,
+        long sentCount,
+        long notSentCount,
+        long redeliveryCount,
+        long duplicateSendCount
+    ) {
+        this.injectedCount = injectedCount;
+        this.validCount = validCount;
+        this.completedCount = completedCount;
+        this.deadLetteredCount = deadLetteredCount;
+        this.drained = drained;
+        this.duration = duration;
+        this.injectedPerSecond = injectedPerSecond;
+        this.settledPerSecond = settledPerSecond;
+        this.p50LatencyMs = p50LatencyMs;
+        this.p99LatencyMs = p99LatencyMs;
+        this.p999LatencyMs = p999LatencyMs;
+        this.maxLatencyMs = maxLatencyMs;
+        this.sentCount = sentCount;
+        this.notSentCount = notSentCount;
+        this.redeliveryCount = redeliveryCount;
+        this.duplicateSendCount = duplicateSendCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%n  messages injected: %s (%s valid) at %.1f per second"
+                + "%n  messages settled: %s completed, %s dead-lettered%s"
+                + "%n  sustained throughput: %.1f messages per second over %.1f s"
+                + "%n  latency from enqueue to send: p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms"
+                + "%n  emails sent: %s, valid registrations without email: %s"
+                + "%n  redeliveries: %s, duplicate sends: %s",
+            injectedCount,
+            validCount,
+            injectedPerSecond,
+            completedCount,
+            deadLetteredCount,
+            drained ? "" : " (timed out before all messages were settled)",
+            settledPerSecond,
+            duration.toMillis() / 1000.0,
+            p50LatencyMs,
+            p99LatencyMs,
+            p999LatencyMs,
+            maxLatencyMs,
+            sentCount,
+            notSentCount,
+            redeliveryCount,
+            duplicateSendCount
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package uk.gov.hmcts.reform.pbis.load;
+
+import java.time.Duration;
+
+/**
+ * Parameters of a load test run, read from {@code loadTest.*} system properties.
+ */
+public class LoadTestSettings {
+
+    // registrations injected into the subscription, at the target rate
+    public final int messageCount;
+    public final double messagesPerSecond;
+
+    // the rest of registrations are valid
+    public final double invalidRegistrationShare;
+    public final double unknownServiceShare;
+
+    public final int serviceCount;
+
+    // behaviour of the simulated Notify
+    public final Duration notifyMedianLatency;
+    public final Duration notifyP99Latency;
+    public final double notifyErrorRate;
+
+    // how long processing may take after all messages have been injected
+    public final Duration drainTimeout;
+
+    public LoadTestSettings(
+        int messageCount,
+        double messagesPerSecond,
+        double invalidRegistrationShare,
+        double unknownServiceShare,
+        int serviceCount,
+        Duration notifyMedianLatency,
+        Duration notifyP99Latency,
+        double notifyErrorRate,
+        Duration drainTimeout
+    ) {
+        this.messageCount = messageCount;
+        this.messagesPerSecond = messagesPerSecond;
+        this.invalidRegistrationShare = invalidRegistrationShare;
+        this.unknownServiceShare = unknownServiceShare;
+        this.serviceCount = serviceCount;
+        this.notifyMedianLatency = notifyMedianLatency;
+        this.notifyP99Latency = notifyP99Latency;
+        this.notifyErrorRate = notifyErrorRate;
+        this.drainTimeout = drainTimeout;
+    }
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+            Integer.getInteger("loadTest.messageCount", 10_000),
+            getDouble("loadTest.messagesPerSecond", 500),
+            getDouble("loadTest.invalidRegistrationShare", 0.05),
+            getDouble("loadTest.unknownServiceShare", 0.02),
+            Integer.getInteger("loadTest.serviceCount", 3),
+            Duration.ofMillis(Long.getLong("loadTest.notifyMedianLatencyMs", 50)),
+            Duration.ofMillis(Long.getLong("loadTest.notifyP99LatencyMs", 300)),
+            getDouble("loadTest.notifyErrorRate", 0),
+            Duration.ofSeconds(Long.getLong("loadTest.drainTimeoutSeconds", 300))
+        );
+    }
+
+    private static double getDouble(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%s messages at %.1f per second (invalid: %.1f%%, unknown service: %.1f%%), %s services, "
+                + "Notify latency p50 %s ms, p99 %s ms, Notify error rate %.1f%%",
+            messageCount,
+            messagesPerSecond,
+            invalidRegistrationShare * 100,
+            unknownServiceShare * 100,
+            serviceCount,
+            notifyMedianLatency.toMillis(),
+            notifyP99Latency.toMillis(),
+            notifyErrorRate * 100
+        );
+    }
+}
@@ -11,7 +11,9 @@ import com.microsoft.azure.servicebus.primitives.ServiceBusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.RegistrationCodec;
 
+import java.util.List;
 import java.util.UUID;
 
 public class ServiceBusFeeder implements AutoCloseable {
@@ -58,6 +60,54 @@ public class ServiceBusFeeder implements AutoCloseable {
         return message;
     }
 
+    /**
+     * Sends the registration encoded with the given codec, e.g. as CBOR.
+     */
+    public IMessage sendMessage(
+        PrivateBetaRegistration registration,
+        RegistrationCodec codec
+    ) throws ServiceBusException, InterruptedException {
+
+        logger.info(
+            String.format(
+                "Sending registration with referenceId: %s as %s",
+                registration.referenceId,
+                codec.getContentType()
+            )
+        );
+
+        String messageId = "test-message-" + UUID.randomUUID().toString();
+        IMessage message = new Message(messageId, codec.encode(registration), codec.getContentType());
+        topicClient.send(message);
+
+        logger.info(
+            String.format("Registration sent. Reference Id: %s", registration.referenceId)
+        );
+
+        return message;
+    }
+
+    /**
+     * Sends the registrations as a batch, in one message.
+     */
+    public IMessage sendBatch(
+        List<PrivateBetaRegistration> registrations,
+        RegistrationCodec codec
+    ) throws ServiceBusException, InterruptedException {
+
+        logger.info(
+            String.format("Sending batch of %s registrations as %s", registrations.size(), codec.getContentType())
+        );
+
+        String messageId = "test-message-" + UUID.randomUUID().toString();
+        IMessage message = new Message(messageId, codec.encode(registrations), codec.getContentType());
+        topicClient.send(message);
+
+        logger.info(String.format("Batch sent. Message Id: %s", messageId));
+
+        return message;
+    }
+
     public IMessage sendMessage(String content) throws ServiceBusException, InterruptedException {
         logger.info(String.format("Sending message with content: %s", content));
         String messageId = "test-message-" + UUID.randomUUID().toString();
@@ -0,0 +1,49 @@
+package uk.gov.hmcts.reform.pbis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import uk.gov.hmcts.reform.pbis.notify.EmailToSend;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientEmailSender;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientStub;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creation of welcome emails from registrations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmailCreatorBenchmark {
+
+    private final EmailCreator emailCreator = new EmailCreator();
+
+    // rate limits and circuit breakers aren't used when creating emails
+    private final ServiceRoute route = new ServiceRoute(
+        "service7",
+        "template7",
+        "https://service7.example.com",
+        new NotificationClientEmailSender(new NotificationClientStub()),
+        null,
+        null
+    );
+
+    private final PrivateBetaRegistration registration = new PrivateBetaRegistration(
+        "reference-id",
+        "service7",
+        "john.smith@example.com",
+        "John",
+        "Smith"
+    );
+
+    @Benchmark
+    public EmailToSend createEmailToSend() {
+        return emailCreator.createEmailToSend(route, registration);
+    }
+}
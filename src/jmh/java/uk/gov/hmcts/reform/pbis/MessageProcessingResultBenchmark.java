@@ -0,0 +1,73 @@
+package uk.gov.hmcts.reform.pbis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.gov.hmcts.reform.pbis.notify.NotifyError;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorType;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.validation.BeanValidationRegistrationValidator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+
+/**
+ * Measures creation of results for each outcome of message processing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageProcessingResultBenchmark {
+
+    private final Exception cause = new EmailSendingException("Failed to send email", null);
+
+    private final EmailRejectedException rejection = new EmailRejectedException(
+        "Email rejected",
+        null,
+        new NotifyError(NotifyErrorType.BAD_REQUEST, 400, "email_address Not a valid email address")
+    );
+
+    private Map<String, String> fieldValidationErrors;
+
+    @Setup
+    public void setUp() {
+        fieldValidationErrors = new BeanValidationRegistrationValidator(
+            Validation.buildDefaultValidatorFactory().getValidator()
+        ).validate(new PrivateBetaRegistration("reference-id", "", "not-an-email-address", "John", null));
+    }
+
+    @Benchmark
+    public MessageProcessingResult success() {
+        return MessageProcessingResult.success();
+    }
+
+    @Benchmark
+    public MessageProcessingResult invalidMessageFormat() {
+        return MessageProcessingResult.invalidMessageFormat();
+    }
+
+    @Benchmark
+    public MessageProcessingResult invalidMessageData() {
+        return MessageProcessingResult.invalidMessageData(fieldValidationErrors);
+    }
+
+    @Benchmark
+    public MessageProcessingResult processingError() {
+        return MessageProcessingResult.processingError(cause);
+    }
+
+    @Benchmark
+    public MessageProcessingResult retriesExhausted() {
+        return MessageProcessingResult.retriesExhausted(5, cause);
+    }
+
+    @Benchmark
+    public MessageProcessingResult emailRejected() {
+        return MessageProcessingResult.emailRejected(rejection);
+    }
+}
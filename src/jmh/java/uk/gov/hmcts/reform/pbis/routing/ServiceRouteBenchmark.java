@@ -0,0 +1,118 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.gov.hmcts.reform.pbis.EmailCreator;
+import uk.gov.hmcts.reform.pbis.ServiceNotFoundException;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+import uk.gov.hmcts.reform.pbis.notify.EmailSender;
+import uk.gov.hmcts.reform.pbis.notify.EmailToSend;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientEmailSender;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientStub;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static uk.gov.hmcts.reform.pbis.notify.TemplateFieldNames.FIRST_NAME;
+import static uk.gov.hmcts.reform.pbis.notify.TemplateFieldNames.LAST_NAME;
+import static uk.gov.hmcts.reform.pbis.notify.TemplateFieldNames.WELCOME_LINK;
+
+/**
+ * Compares the per-message cost of resolving a service with {@link ServiceRouteTable}
+ * against the separate map lookups made before by the email creator and the Notify client provider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServiceRouteBenchmark {
+
+    private static final int SERVICE_COUNT = 20;
+
+    private final Map<String, EmailTemplateMapping> mappingsByService = new HashMap<>();
+    private final Map<String, EmailSender> clientsByService = new HashMap<>();
+    private final EmailCreator emailCreator = new EmailCreator();
+
+    private ServiceRouteTable routeTable;
+    private PrivateBetaRegistration registration;
+
+    @Setup
+    public void setUp() {
+        List<ServiceRoute> routes = new ArrayList<>();
+
+        for (int i = 0; i < SERVICE_COUNT; i++) {
+            EmailTemplateMapping mapping = new EmailTemplateMapping();
+            mapping.setService("service" + i);
+            mapping.setTemplateId("template" + i);
+            mapping.setWelcomeLink("https://service" + i + ".example.com");
+            EmailSender client = new NotificationClientEmailSender(new NotificationClientStub());
+
+            mappingsByService.put(mapping.getService(), mapping);
+            clientsByService.put(mapping.getService(), client);
+            // rate limits and circuit breakers aren't used when resolving services
+            routes.add(
+                new ServiceRoute(
+                    mapping.getService(),
+                    mapping.getTemplateId(),
+                    mapping.getWelcomeLink(),
+                    client,
+                    null,
+                    null
+                )
+            );
+        }
+
+        routeTable = new ServiceRouteTable(routes);
+        registration = new PrivateBetaRegistration("reference-id", "service7", "john@example.com", "John", "Smith");
+    }
+
+    @Benchmark
+    public void separateMapLookups(Blackhole blackhole) {
+        String service = registration.service;
+
+        if (!mappingsByService.containsKey(service)) {
+            throw new ServiceNotFoundException(service);
+        }
+
+        blackhole.consume(
+            new EmailToSend(
+                registration.emailAddress,
+                mappingsByService.get(service).getTemplateId(),
+                ImmutableMap.of(
+                    FIRST_NAME, registration.firstName,
+                    LAST_NAME, registration.lastName,
+                    WELCOME_LINK, mappingsByService.get(service).getWelcomeLink()
+                ),
+                registration.referenceId
+            )
+        );
+
+        if (!clientsByService.containsKey(service)) {
+            throw new ServiceNotFoundException(service);
+        }
+
+        blackhole.consume(clientsByService.get(service));
+    }
+
+    @Benchmark
+    public void routeTableLookup(Blackhole blackhole) {
+        ServiceRoute route = routeTable.getRoute(registration.service);
+
+        if (route == null) {
+            throw new ServiceNotFoundException(registration.service);
+        }
+
+        blackhole.consume(emailCreator.createEmailToSend(route, registration));
+        blackhole.consume(route.notificationClient);
+    }
+}
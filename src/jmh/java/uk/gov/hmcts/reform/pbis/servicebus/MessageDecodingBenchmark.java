@@ -0,0 +1,88 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading registrations from message bodies with {@link RegistrationDecoder}
+ * against Jackson data binding, which {@link MessageProcessor} used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageDecodingBenchmark {
+
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RegistrationDecoder decoder = new RegistrationDecoder(MAX_BODY_SIZE);
+
+    private final byte[] messageBody = (
+        "{"
+            + "\"reference_id\":\"f6a5b2c0-54e6-4d0a-9a36-3a3b1d8e8f21\","
+            + "\"service\":\"service7\","
+            + "\"email_address\":\"john.smith@example.com\","
+            + "\"first_name\":\"John\","
+            + "\"last_name\":\"Smith\""
+            + "}"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] malformedMessageBody = "{\"reference_id\":\"ref\",\"service\":"
+        .getBytes(StandardCharsets.UTF_8);
+
+    // well-formed, but larger than the decoder accepts
+    private final byte[] oversizedMessageBody = (
+        "{\"reference_id\":\"ref\",\"service\":\"service7\",\"first_name\":\""
+            + Strings.repeat("x", MAX_BODY_SIZE)
+            + "\"}"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Object bindValidBody() {
+        return bind(messageBody);
+    }
+
+    @Benchmark
+    public Object bindMalformedBody() {
+        return bind(malformedMessageBody);
+    }
+
+    @Benchmark
+    public Object bindOversizedBody() {
+        return bind(oversizedMessageBody);
+    }
+
+    @Benchmark
+    public RegistrationDecodingResult decodeValidBody() {
+        return decoder.decode(null, messageBody);
+    }
+
+    @Benchmark
+    public RegistrationDecodingResult decodeMalformedBody() {
+        return decoder.decode(null, malformedMessageBody);
+    }
+
+    @Benchmark
+    public RegistrationDecodingResult decodeOversizedBody() {
+        return decoder.decode(null, oversizedMessageBody);
+    }
+
+    private Object bind(byte[] body) {
+        try {
+            return objectMapper.readValue(body, PrivateBetaRegistration.class);
+        } catch (IOException e) {
+            // rejecting malformed messages costs an exception each time
+            return e;
+        }
+    }
+}
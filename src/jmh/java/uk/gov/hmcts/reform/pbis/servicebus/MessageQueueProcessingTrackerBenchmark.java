@@ -0,0 +1,78 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.gov.hmcts.reform.pbis.EmailSendingException;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+import uk.gov.hmcts.reform.pbis.notify.NotifyError;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures tracking of message processing results - mostly the cost of formatting log messages.
+ *
+ * <p>Telemetry is disabled, and log events are dropped by the appender configured
+ * in {@code logback-test.xml} of this source set, so nothing is sent or printed.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageQueueProcessingTrackerBenchmark {
+
+    private MessageQueueProcessingTracker tracker;
+    private IMessage message;
+
+    private final MessageProcessingResult success = MessageProcessingResult.success();
+
+    private final MessageProcessingResult unprocessable = MessageProcessingResult.invalidMessageFormat();
+
+    private final MessageProcessingResult notifyError = MessageProcessingResult.processingError(
+        new EmailSendingException(
+            "Failed to send email",
+            null,
+            new NotifyError(NotifyErrorType.SERVER_ERROR, 500, "Internal server error")
+        )
+    );
+
+    @Setup
+    public void setUp() {
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setTrackingIsDisabled(true);
+
+        tracker = new MessageQueueProcessingTracker(new TelemetryClient(configuration));
+
+        Message message = new Message("{}");
+        message.setMessageId("message-id");
+        this.message = message;
+    }
+
+    @Benchmark
+    public void trackReceivedMessage() {
+        tracker.trackReceivedMessage(message.getMessageId());
+    }
+
+    @Benchmark
+    public void trackSuccess() {
+        tracker.trackMessageProcessingResult(success, message);
+    }
+
+    @Benchmark
+    public void trackUnprocessableMessage() {
+        tracker.trackMessageProcessingResult(unprocessable, message);
+    }
+
+    @Benchmark
+    public void trackNotifyError() {
+        tracker.trackMessageProcessingResult(notifyError, message);
+    }
+}
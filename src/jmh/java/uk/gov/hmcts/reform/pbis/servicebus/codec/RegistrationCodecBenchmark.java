@@ -0,0 +1,53 @@
+package uk.gov.hmcts.reform.pbis.servicebus.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of decoding and encoding registrations with each {@link RegistrationCodec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RegistrationCodecBenchmark {
+
+    @Param({"json", "cbor"})
+    private String format;
+
+    private final PrivateBetaRegistration registration = new PrivateBetaRegistration(
+        "f6a5b2c0-54e6-4d0a-9a36-3a3b1d8e8f21",
+        "service7",
+        "john.smith@example.com",
+        "John",
+        "Smith"
+    );
+
+    private RegistrationCodec codec;
+    private byte[] messageBody;
+
+    @Setup
+    public void setUp() {
+        codec = "cbor".equals(format) ? new CborRegistrationCodec() : new JsonRegistrationCodec();
+        messageBody = codec.encode(registration);
+    }
+
+    @Benchmark
+    public RegistrationDecodingResult decode() {
+        return codec.decode(messageBody);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(registration);
+    }
+}
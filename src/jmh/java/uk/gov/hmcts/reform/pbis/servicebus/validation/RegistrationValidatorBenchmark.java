@@ -0,0 +1,66 @@
+package uk.gov.hmcts.reform.pbis.servicebus.validation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+/**
+ * Measures validation of registrations with each of the validators the application can be configured with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RegistrationValidatorBenchmark {
+
+    @Param({"bean", "coded"})
+    private String validatorType;
+
+    private RegistrationValidator registrationValidator;
+
+    private final PrivateBetaRegistration validRegistration = new PrivateBetaRegistration(
+        "reference-id",
+        "service7",
+        "john.smith@example.com",
+        "John",
+        "Smith"
+    );
+
+    private final PrivateBetaRegistration invalidRegistration = new PrivateBetaRegistration(
+        "reference-id",
+        "",
+        "not-an-email-address",
+        "John",
+        null
+    );
+
+    @Setup
+    public void setUp() {
+        // same as in ApplicationConfig
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+        registrationValidator = "bean".equals(validatorType)
+            ? new BeanValidationRegistrationValidator(validator)
+            : new CodedRegistrationValidator(validator);
+    }
+
+    @Benchmark
+    public Map<String, String> validateValidRegistration() {
+        return registrationValidator.validate(validRegistration);
+    }
+
+    @Benchmark
+    public Map<String, String> validateInvalidRegistration() {
+        return registrationValidator.validate(invalidRegistration);
+    }
+}
@@ -0,0 +1,12 @@
+package uk.gov.hmcts.reform.pbis;
+
+/**
+ * Thrown when an email isn't sent because another delivery of the same message is sending it.
+ * The other delivery may still fail, so the email should be checked again later.
+ */
+public class EmailInProgressException extends EmailSendingException {
+
+    public EmailInProgressException(String message) {
+        super(message, null);
+    }
+}
@@ -0,0 +1,13 @@
+package uk.gov.hmcts.reform.pbis;
+
+import uk.gov.hmcts.reform.pbis.notify.NotifyError;
+
+/**
+ * Thrown when Notify rejects an email for a reason that sending it again won't fix.
+ */
+public class EmailRejectedException extends EmailSendingException {
+
+    public EmailRejectedException(String message, Throwable cause, NotifyError notifyError) {
+        super(message, cause, notifyError);
+    }
+}
@@ -1,8 +1,24 @@
 package uk.gov.hmcts.reform.pbis;
 
+import uk.gov.hmcts.reform.pbis.notify.NotifyError;
+
 public class EmailSendingException extends RuntimeException {
 
+    private final transient NotifyError notifyError;
+
     public EmailSendingException(String message, Throwable cause) {
+        this(message, cause, null);
+    }
+
+    public EmailSendingException(String message, Throwable cause, NotifyError notifyError) {
         super(message, cause);
+        this.notifyError = notifyError;
+    }
+
+    /**
+     * Returns the error returned by Notify, or null if the failure wasn't caused by Notify.
+     */
+    public NotifyError getNotifyError() {
+        return notifyError;
     }
 }
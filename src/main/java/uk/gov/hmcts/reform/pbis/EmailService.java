@@ -5,52 +5,159 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import uk.gov.hmcts.reform.pbis.notify.EmailToSend;
-import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.notify.NotifyError;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorClassifier;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorType;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRouteTable;
 import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.service.notify.NotificationClientException;
+
+import java.time.Duration;
 
 @Service
 public class EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
-    private final NotificationClientProvider notificationClientProvider;
+    private final ServiceRouteTable routeTable;
     private final EmailCreator emailCreator;
 
     @Autowired
-    public EmailService(
-        NotificationClientProvider notificationClientProvider,
-        EmailCreator emailCreator
-    ) {
-        this.notificationClientProvider = notificationClientProvider;
+    public EmailService(ServiceRouteTable routeTable, EmailCreator emailCreator) {
+        this.routeTable = routeTable;
         this.emailCreator = emailCreator;
     }
 
+    /**
+     * Creates and sends the welcome email for the given registration.
+     * Waits first if the rate limit of the service's API key doesn't allow sending it yet.
+     *
+     * @throws ServiceNotFoundException when the service of the registration isn't configured
+     */
     public void sendWelcomeEmail(PrivateBetaRegistration reg) {
-        logger.info("Sending welcome email. Reference ID: {}", reg.referenceId);
+        ServiceRoute route = routeTable.getRoute(reg.service);
+
+        if (route == null) {
+            throw new ServiceNotFoundException(
+                String.format("Service %s not found in email template configuration", reg.service)
+            );
+        }
+
+        EmailToSend emailToSend = createWelcomeEmail(route, reg);
 
+        acquireRateLimit(route, reg);
+        route.circuit.execute(() -> send(route, reg, emailToSend));
+    }
+
+    /**
+     * Creates the welcome email for the given registration, without sending it.
+     *
+     * @param route Route of the service the registration is for
+     */
+    public EmailToSend createWelcomeEmail(ServiceRoute route, PrivateBetaRegistration reg) {
         try {
-            EmailToSend emailToSend = emailCreator.createEmailToSend(reg);
+            return emailCreator.createEmailToSend(route, reg);
+        } catch (Exception e) {
+            throw createSendingException(reg.referenceId, e);
+        }
+    }
 
-            notificationClientProvider
-                .getClient(reg.service)
-                .sendEmail(
-                    emailToSend.templateId,
-                    emailToSend.emailAddress,
-                    emailToSend.templateFields,
-                    emailToSend.referenceId
-                );
+    /**
+     * Sends the email created for the given registration via the Notify client of its service.
+     * Doesn't wait when the rate limit of the service's API key doesn't allow sending it yet,
+     * so that the caller can send emails of other services in the meantime.
+     *
+     * @param route Route of the service the registration is for
+     * @throws EmailRejectedException     when Notify rejects the email and sending it again won't help
+     * @throws NotifyUnavailableException when calls to Notify of the service are suspended by circuit breaker
+     * @throws NotifyRateLimitedException when the email can't be sent yet because of the rate limit
+     */
+    public void sendEmail(ServiceRoute route, PrivateBetaRegistration reg, EmailToSend emailToSend) {
+        // checked before entering the circuit, so that no thread of the service's thread pool is taken
+        Duration waitTime = tryAcquireRateLimit(route, reg);
 
-            logger.info("Welcome email sent. Reference ID: {}", reg.referenceId);
-        } catch (ServiceNotFoundException e) {
-            throw e;
+        if (!waitTime.isZero()) {
+            throw new NotifyRateLimitedException(
+                String.format(
+                    "Rate limit of Notify API key doesn't allow sending email yet. Reference ID: %s",
+                    reg.referenceId
+                ),
+                waitTime
+            );
+        }
+
+        route.circuit.execute(() -> send(route, reg, emailToSend));
+    }
+
+    private Duration tryAcquireRateLimit(ServiceRoute route, PrivateBetaRegistration reg) {
+        try {
+            return route.rateLimit.tryAcquire();
+        } catch (Exception e) {
+            throw createSendingException(reg.referenceId, e);
+        }
+    }
+
+    private void acquireRateLimit(ServiceRoute route, PrivateBetaRegistration reg) {
+        try {
+            route.rateLimit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw createSendingException(reg.referenceId, e);
         } catch (Exception e) {
-            String errorMessage = String.format(
-                "Failed to send email. Reference ID: %s",
-                reg.referenceId
+            throw createSendingException(reg.referenceId, e);
+        }
+    }
+
+    private void send(ServiceRoute route, PrivateBetaRegistration reg, EmailToSend emailToSend) {
+        logger.info("Sending welcome email. Reference ID: {}", reg.referenceId);
+
+        try {
+            route.notificationClient.sendEmail(
+                emailToSend.templateId,
+                emailToSend.emailAddress,
+                emailToSend.templateFields,
+                emailToSend.referenceId
             );
 
-            throw new EmailSendingException(errorMessage, e);
+            logger.info("Welcome email sent. Reference ID: {}", reg.referenceId);
+        } catch (NotificationClientException e) {
+            NotifyError notifyError = NotifyErrorClassifier.classify(e);
+
+            if (notifyError.type == NotifyErrorType.RATE_LIMIT) {
+                route.rateLimit.onRateLimited();
+            }
+
+            throw createSendingException(reg.referenceId, e, notifyError);
+        } catch (Exception e) {
+            throw createSendingException(reg.referenceId, e);
         }
     }
 
+    private EmailSendingException createSendingException(String referenceId, Exception cause) {
+        String errorMessage = String.format(
+            "Failed to send email. Reference ID: %s",
+            referenceId
+        );
+
+        return new EmailSendingException(errorMessage, cause);
+    }
+
+    private EmailSendingException createSendingException(
+        String referenceId,
+        NotificationClientException cause,
+        NotifyError notifyError
+    ) {
+        String errorMessage = String.format(
+            "Failed to send email. Reference ID: %s, Notify error: %s (HTTP status %s) - %s",
+            referenceId,
+            notifyError.type,
+            notifyError.httpStatus,
+            notifyError.details
+        );
+
+        return notifyError.isPermanent()
+            ? new EmailRejectedException(errorMessage, cause, notifyError)
+            : new EmailSendingException(errorMessage, cause, notifyError);
+    }
 }
@@ -1,29 +1,61 @@
 package uk.gov.hmcts.reform.pbis;
 
-import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
-
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
-import javax.validation.ConstraintViolation;
 
 public class MessageProcessingResult {
 
+    private static final String SENT_OUTCOME = "Sent";
+
     public final MessageProcessingResultType resultType;
     public final ProcessingError errorDetails;
 
+    /**
+     * Results of each registration of a batch message. Null for single-registration messages.
+     */
+    public final List<EntryResult> entryResults;
+
+    /**
+     * Whether the message succeeded without sending the email, because it had already been sent.
+     */
+    public final boolean alreadySent;
+
     public MessageProcessingResult(
         MessageProcessingResultType resultType,
         ProcessingError error
+    ) {
+        this(resultType, error, null);
+    }
+
+    public MessageProcessingResult(
+        MessageProcessingResultType resultType,
+        ProcessingError error,
+        List<EntryResult> entryResults
+    ) {
+        this(resultType, error, entryResults, false);
+    }
+
+    private MessageProcessingResult(
+        MessageProcessingResultType resultType,
+        ProcessingError error,
+        List<EntryResult> entryResults,
+        boolean alreadySent
     ) {
         this.resultType = resultType;
         this.errorDetails = error;
+        this.entryResults = entryResults;
+        this.alreadySent = alreadySent;
     }
 
     public static MessageProcessingResult success() {
         return new MessageProcessingResult(MessageProcessingResultType.SUCCESS, null);
     }
 
+    public static MessageProcessingResult alreadySent() {
+        return new MessageProcessingResult(MessageProcessingResultType.SUCCESS, null, null, true);
+    }
+
     public static MessageProcessingResult invalidMessageFormat() {
         return new MessageProcessingResult(
             MessageProcessingResultType.UNPROCESSABLE_MESSAGE,
@@ -36,15 +68,18 @@ public class MessageProcessingResult {
         );
     }
 
-    public static MessageProcessingResult invalidMessageData(
-        Set<ConstraintViolation<PrivateBetaRegistration>> violations
-    ) {
+    /**
+     * Creates the result of a registration with invalid fields.
+     *
+     * @param fieldValidationErrors Error messages by field name
+     */
+    public static MessageProcessingResult invalidMessageData(Map<String, String> fieldValidationErrors) {
         return new MessageProcessingResult(
             MessageProcessingResultType.UNPROCESSABLE_MESSAGE,
             new ProcessingError(
                 "Invalid message",
                 "Message contains invalid data",
-                getValidationErrorMap(violations),
+                fieldValidationErrors,
                 null
             )
         );
@@ -57,6 +92,39 @@ public class MessageProcessingResult {
         );
     }
 
+    public static MessageProcessingResult retriesExhausted(int attempts, Exception cause) {
+        return new MessageProcessingResult(
+            MessageProcessingResultType.UNPROCESSABLE_MESSAGE,
+            new ProcessingError(
+                "Too many failed attempts",
+                String.format(
+                    "Message failed to be processed in %s attempts. Last error: %s",
+                    attempts,
+                    cause.getMessage()
+                ),
+                null,
+                cause
+            )
+        );
+    }
+
+    public static MessageProcessingResult emailRejected(EmailRejectedException cause) {
+        return new MessageProcessingResult(
+            MessageProcessingResultType.UNPROCESSABLE_MESSAGE,
+            new ProcessingError(
+                "Email rejected by Notify",
+                String.format(
+                    "%s (HTTP status %s): %s",
+                    cause.getNotifyError().type,
+                    cause.getNotifyError().httpStatus,
+                    cause.getNotifyError().details
+                ),
+                null,
+                cause
+            )
+        );
+    }
+
     public static MessageProcessingResult unknownService() {
         return new MessageProcessingResult(
             MessageProcessingResultType.UNPROCESSABLE_MESSAGE,
@@ -69,15 +137,99 @@ public class MessageProcessingResult {
         );
     }
 
-    private static Map<String, String> getValidationErrorMap(
-        Set<ConstraintViolation<PrivateBetaRegistration>> violations
-    ) {
-        return violations
-            .stream()
-            .collect(Collectors.toMap(
-                violation -> violation.getPropertyPath().toString(),
-                violation -> violation.getMessage())
+    /**
+     * Combines results of registrations of a batch message, all of which are finished.
+     *
+     * <p>The message fails while any of its registrations can still be retried. Once none can, it's
+     * unprocessable if any registration was rejected, with the outcome of each registration in the error
+     * (e.g. {@code registrations[0]: Sent}, {@code registrations[1].email_address: must be a well-formed...}).
+     * Otherwise, it's successful.</p>
+     */
+    public static MessageProcessingResult batch(List<EntryResult> entryResults) {
+        EntryResult failedEntry = null;
+        int rejectedCount = 0;
+
+        for (EntryResult entry : entryResults) {
+            if (entry.result.resultType == MessageProcessingResultType.ERROR
+                && (failedEntry == null || !failedEntry.result.isAttempted() && entry.result.isAttempted())) {
+                // a failure that counts as an attempt makes the whole message count as one
+                failedEntry = entry;
+            } else if (entry.result.resultType == MessageProcessingResultType.UNPROCESSABLE_MESSAGE) {
+                rejectedCount++;
+            }
+        }
+
+        if (failedEntry != null) {
+            ProcessingError error = failedEntry.result.errorDetails;
+
+            return new MessageProcessingResult(
+                MessageProcessingResultType.ERROR,
+                new ProcessingError(null, null, null, error != null ? error.exception : null),
+                entryResults
+            );
+        } else if (rejectedCount > 0) {
+            return new MessageProcessingResult(
+                MessageProcessingResultType.UNPROCESSABLE_MESSAGE,
+                new ProcessingError(
+                    "Invalid registrations",
+                    String.format("%s of %s registrations were rejected", rejectedCount, entryResults.size()),
+                    getEntryOutcomeMap(entryResults),
+                    null
+                ),
+                entryResults
             );
+        } else {
+            return new MessageProcessingResult(MessageProcessingResultType.SUCCESS, null, entryResults);
+        }
+    }
+
+    /**
+     * Tells if the message counts as a delivery attempt. It doesn't when it failed only because
+     * calls to Notify were suspended or its email was being sent by another delivery, so it wasn't
+     * really attempted.
+     */
+    public boolean isAttempted() {
+        return resultType != MessageProcessingResultType.ERROR
+            || errorDetails == null
+            || !(errorDetails.exception instanceof NotifyUnavailableException
+                || errorDetails.exception instanceof EmailInProgressException);
+    }
+
+    private static Map<String, String> getEntryOutcomeMap(List<EntryResult> entryResults) {
+        Map<String, String> outcomes = new LinkedHashMap<>();
+
+        for (EntryResult entry : entryResults) {
+            String key = "registrations[" + entry.index + "]";
+            ProcessingError error = entry.result.errorDetails;
+
+            if (entry.result.resultType == MessageProcessingResultType.SUCCESS) {
+                outcomes.put(key, SENT_OUTCOME);
+            } else if (error.fieldValidationErrors != null) {
+                error.fieldValidationErrors.forEach((field, message) -> outcomes.put(key + "." + field, message));
+            } else {
+                outcomes.put(key, error.reason + ": " + error.description);
+            }
+        }
+
+        return outcomes;
+    }
+
+    /**
+     * Result of one registration of a batch message.
+     */
+    public static class EntryResult {
+        public final int index;
+        public final String referenceId;
+        // sent on an earlier delivery of the message, so not processed this time
+        public final boolean sentBefore;
+        public final MessageProcessingResult result;
+
+        public EntryResult(int index, String referenceId, boolean sentBefore, MessageProcessingResult result) {
+            this.index = index;
+            this.referenceId = referenceId;
+            this.sentBefore = sentBefore;
+            this.result = result;
+        }
     }
 
     public static class ProcessingError {
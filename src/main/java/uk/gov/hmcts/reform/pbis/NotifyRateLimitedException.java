@@ -0,0 +1,21 @@
+package uk.gov.hmcts.reform.pbis;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an email isn't sent because the rate limit of its service's API key
+ * doesn't allow another request yet. The email can be sent once the wait time passes.
+ */
+public class NotifyRateLimitedException extends EmailSendingException {
+
+    private final Duration waitTime;
+
+    public NotifyRateLimitedException(String message, Duration waitTime) {
+        super(message, null);
+        this.waitTime = waitTime;
+    }
+
+    public Duration getWaitTime() {
+        return waitTime;
+    }
+}
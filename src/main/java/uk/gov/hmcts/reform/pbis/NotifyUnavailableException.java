@@ -0,0 +1,12 @@
+package uk.gov.hmcts.reform.pbis;
+
+/**
+ * Thrown when an email isn't sent because calls to Notify on behalf of its service are suspended,
+ * e.g. because they've been failing. The email should be sent again later.
+ */
+public class NotifyUnavailableException extends EmailSendingException {
+
+    public NotifyUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
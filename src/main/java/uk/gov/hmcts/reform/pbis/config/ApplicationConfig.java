@@ -1,15 +1,25 @@
 package uk.gov.hmcts.reform.pbis.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import uk.gov.hmcts.reform.pbis.EmailCreator;
 import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.notify.NotifyCircuitBreaker;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRouteTable;
+import uk.gov.hmcts.reform.pbis.servicebus.CachingServiceBusClientFactory;
 import uk.gov.hmcts.reform.pbis.servicebus.IServiceBusClientFactory;
 import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClientFactory;
 import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClientStub;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceWeights;
+import uk.gov.hmcts.reform.pbis.servicebus.validation.BeanValidationRegistrationValidator;
+import uk.gov.hmcts.reform.pbis.servicebus.validation.CodedRegistrationValidator;
+import uk.gov.hmcts.reform.pbis.servicebus.validation.RegistrationValidator;
 
 import java.time.Duration;
 import java.util.ArrayList;
@@ -25,12 +35,36 @@ public class ApplicationConfig {
     @Value("${notify.useStub}")
     private boolean useNotifyClientStub;
 
+    @Value("${notify.baseUrl}")
+    private String notifyBaseUrl;
+
+    @Value("${notify.retiredClientGracePeriodInMs}")
+    private long retiredNotifyClientGracePeriodMs;
+
+    @Value("${notify.circuitBreaker.requestVolumeThreshold}")
+    private int circuitBreakerRequestVolumeThreshold;
+
+    @Value("${notify.circuitBreaker.errorThresholdPercentage}")
+    private int circuitBreakerErrorThresholdPercentage;
+
+    @Value("${notify.circuitBreaker.sleepWindowInMs}")
+    private long circuitBreakerSleepWindowMs;
+
     @Value("${serviceBus.connectionString}")
     private String serviceBusConnectionString;
 
     @Value("${serviceBus.maxReceiveWaitTimeInMs}")
     private long maxReceiveWaitTimeMs;
 
+    @Value("${serviceBus.minReconnectBackoffInMs}")
+    private long minReconnectBackoffMs;
+
+    @Value("${serviceBus.maxReconnectBackoffInMs}")
+    private long maxReconnectBackoffMs;
+
+    @Value("${serviceBus.useBeanValidation}")
+    private boolean useBeanValidation;
+
     private final List<EmailTemplateMapping> emailTemplateMappings = new ArrayList<>();
 
     // this getter is needed by the framework
@@ -40,23 +74,75 @@ public class ApplicationConfig {
 
     @Bean
     public EmailCreator getEmailCreator() {
-        return new EmailCreator(emailTemplateMappings);
+        return new EmailCreator();
     }
 
     @Bean
     public NotificationClientProvider getNotificationClientProvider() {
-        return new NotificationClientProvider(emailTemplateMappings, useNotifyClientStub);
+        return new NotificationClientProvider(
+            emailTemplateMappings,
+            useNotifyClientStub,
+            notifyBaseUrl,
+            Duration.ofMillis(retiredNotifyClientGracePeriodMs)
+        );
+    }
+
+    @Bean
+    public NotifyRateLimiter getNotifyRateLimiter() {
+        return new NotifyRateLimiter(emailTemplateMappings);
+    }
+
+    @Bean
+    public NotifyCircuitBreaker getNotifyCircuitBreaker() {
+        return new NotifyCircuitBreaker(
+            emailTemplateMappings,
+            circuitBreakerRequestVolumeThreshold,
+            circuitBreakerErrorThresholdPercentage,
+            Duration.ofMillis(circuitBreakerSleepWindowMs)
+        );
+    }
+
+    @Bean
+    public ServiceRouteTable getServiceRouteTable(
+        NotificationClientProvider notificationClientProvider,
+        NotifyRateLimiter rateLimiter,
+        NotifyCircuitBreaker circuitBreaker
+    ) {
+        return ServiceRouteTable.compile(
+            emailTemplateMappings,
+            notificationClientProvider,
+            rateLimiter,
+            circuitBreaker
+        );
+    }
+
+    @Bean
+    public ServiceWeights getServiceWeights() {
+        return new ServiceWeights(emailTemplateMappings);
     }
 
     @Bean
     @ConditionalOnProperty(name = "serviceBus.useStub", havingValue = "false")
-    public IServiceBusClientFactory getServiceBusClientFactory() {
+    public ServiceBusClientFactory getServiceBusClientFactory() {
         return new ServiceBusClientFactory(
             serviceBusConnectionString,
             Duration.ofMillis(maxReceiveWaitTimeMs)
         );
     }
 
+    @Bean
+    @Primary
+    @ConditionalOnExpression("!${serviceBus.useStub} && ${serviceBus.keepReceiverOpen}")
+    public IServiceBusClientFactory getCachingServiceBusClientFactory(
+        ServiceBusClientFactory serviceBusClientFactory
+    ) {
+        return new CachingServiceBusClientFactory(
+            serviceBusClientFactory,
+            Duration.ofMillis(minReconnectBackoffMs),
+            Duration.ofMillis(maxReconnectBackoffMs)
+        );
+    }
+
     @Bean
     @ConditionalOnProperty(name = "serviceBus.useStub", havingValue = "true")
     public IServiceBusClientFactory getServiceBusClientStubFactory() {
@@ -68,4 +154,11 @@ public class ApplicationConfig {
         ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
         return factory.getValidator();
     }
+
+    @Bean
+    public RegistrationValidator getRegistrationValidator(Validator validator) {
+        return useBeanValidation
+            ? new BeanValidationRegistrationValidator(validator)
+            : new CodedRegistrationValidator(validator);
+    }
 }
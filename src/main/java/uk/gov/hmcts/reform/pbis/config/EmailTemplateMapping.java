@@ -6,6 +6,8 @@ public class EmailTemplateMapping {
     private String templateId;
     private String notifyApiKey;
     private String welcomeLink;
+    private int weight = 1;
+    private NotifyClientSettings notifyClient = new NotifyClientSettings();
 
 
     public String getService() {
@@ -39,4 +41,20 @@ public class EmailTemplateMapping {
     public void setWelcomeLink(String welcomeLink) {
         this.welcomeLink = welcomeLink;
     }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public NotifyClientSettings getNotifyClient() {
+        return notifyClient;
+    }
+
+    public void setNotifyClient(NotifyClientSettings notifyClient) {
+        this.notifyClient = notifyClient;
+    }
 }
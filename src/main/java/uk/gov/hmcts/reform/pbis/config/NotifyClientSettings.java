@@ -0,0 +1,75 @@
+package uk.gov.hmcts.reform.pbis.config;
+
+/**
+ * Settings of calls to Notify made on behalf of a service.
+ */
+public class NotifyClientSettings {
+
+    // when off, the stock Notify client is used, which opens a new connection for each request
+    private boolean pooled;
+    private int maxConnections = 20;
+    private int connectTimeoutInMs = 5000;
+    private int readTimeoutInMs = 30000;
+    // Notify allows 3000 requests per minute for each API key
+    private double maxRequestsPerSecond = 50;
+    private int burstSize = 10;
+    // size of the thread pool the service's calls are isolated in
+    private int maxConcurrentRequests = 10;
+
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getConnectTimeoutInMs() {
+        return connectTimeoutInMs;
+    }
+
+    public void setConnectTimeoutInMs(int connectTimeoutInMs) {
+        this.connectTimeoutInMs = connectTimeoutInMs;
+    }
+
+    public int getReadTimeoutInMs() {
+        return readTimeoutInMs;
+    }
+
+    public void setReadTimeoutInMs(int readTimeoutInMs) {
+        this.readTimeoutInMs = readTimeoutInMs;
+    }
+
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    public int getBurstSize() {
+        return burstSize;
+    }
+
+    public void setBurstSize(int burstSize) {
+        this.burstSize = burstSize;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+}
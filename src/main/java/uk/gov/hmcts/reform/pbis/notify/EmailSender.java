@@ -0,0 +1,16 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.util.Map;
+
+/**
+ * Sends emails through Notify - the only part of the Notify API this service uses.
+ */
+public interface EmailSender {
+
+    SendEmailResponse sendEmail(
+        String templateId, String emailAddress, Map<String, ?> personalisation, String reference
+    ) throws NotificationClientException;
+}
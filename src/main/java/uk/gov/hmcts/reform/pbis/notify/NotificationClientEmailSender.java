@@ -0,0 +1,30 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import uk.gov.service.notify.NotificationClientApi;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.util.Map;
+
+/**
+ * Sends emails with a full Notify client, e.g. the stock one.
+ */
+public class NotificationClientEmailSender implements EmailSender {
+
+    private final NotificationClientApi notificationClient;
+
+    public NotificationClientEmailSender(NotificationClientApi notificationClient) {
+        this.notificationClient = notificationClient;
+    }
+
+    @Override
+    public SendEmailResponse sendEmail(
+        String templateId, String emailAddress, Map<String, ?> personalisation, String reference
+    ) throws NotificationClientException {
+        return notificationClient.sendEmail(templateId, emailAddress, personalisation, reference);
+    }
+
+    public NotificationClientApi getNotificationClient() {
+        return notificationClient;
+    }
+}
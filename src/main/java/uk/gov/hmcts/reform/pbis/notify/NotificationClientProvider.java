@@ -1,27 +1,88 @@
 package uk.gov.hmcts.reform.pbis.notify;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import uk.gov.hmcts.reform.pbis.ServiceNotFoundException;
 import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+import uk.gov.hmcts.reform.pbis.config.NotifyClientSettings;
 import uk.gov.service.notify.NotificationClient;
-import uk.gov.service.notify.NotificationClientApi;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-public class NotificationClientProvider {
+/**
+ * Provides Notify clients of services.
+ *
+ * <p>Clients can be replaced at runtime with {@link #reload(List)}. Readers never take a lock -
+ * they see either the old clients or the new ones.</p>
+ *
+ * <p>Replaced clients that hold connections open are closed after a grace period, which lets
+ * emails already rendered with them be sent. An email sent later fails and is retried.</p>
+ */
+public class NotificationClientProvider implements DisposableBean {
 
-    private final Map<String, NotificationClientApi> notificationClientsByService;
+    public static final String DEFAULT_NOTIFY_BASE_URL = "https://api.notifications.service.gov.uk";
+    public static final Duration DEFAULT_RETIRED_CLIENT_GRACE_PERIOD = Duration.ofMinutes(1);
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationClientProvider.class);
+
+    private final boolean useClientStub;
+    private final String notifyBaseUrl;
+    private final Duration retiredClientGracePeriod;
+    private final ScheduledExecutorService retiredClientCloser;
+
+    // replaced as a whole on reload
+    private volatile Map<String, EmailSender> notificationClientsByService;
+    private volatile Map<String, EmailTemplateMapping> mappingsByService;
+
+    // guarded by this - replaced clients waiting to be closed
+    private final List<EmailSender> retiredClients = new ArrayList<>();
 
     public NotificationClientProvider(
         List<EmailTemplateMapping> emailTemplateMappings,
         boolean useClientStub
     ) {
-        notificationClientsByService =
-            getApiClientsByService(emailTemplateMappings, useClientStub);
+        this(emailTemplateMappings, useClientStub, DEFAULT_NOTIFY_BASE_URL);
+    }
+
+    public NotificationClientProvider(
+        List<EmailTemplateMapping> emailTemplateMappings,
+        boolean useClientStub,
+        String notifyBaseUrl
+    ) {
+        this(emailTemplateMappings, useClientStub, notifyBaseUrl, DEFAULT_RETIRED_CLIENT_GRACE_PERIOD);
+    }
+
+    public NotificationClientProvider(
+        List<EmailTemplateMapping> emailTemplateMappings,
+        boolean useClientStub,
+        String notifyBaseUrl,
+        Duration retiredClientGracePeriod
+    ) {
+        this.useClientStub = useClientStub;
+        this.notifyBaseUrl = notifyBaseUrl;
+        this.retiredClientGracePeriod = retiredClientGracePeriod;
+        this.retiredClientCloser = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("retired-notify-client-closer-")
+        );
+        this.notificationClientsByService = new HashMap<>();
+        this.mappingsByService = new HashMap<>();
+
+        reload(emailTemplateMappings);
     }
 
-    public NotificationClientApi getClient(String service) {
+    public EmailSender getClient(String service) {
         if (notificationClientsByService.containsKey(service)) {
             return notificationClientsByService.get(service);
         } else {
@@ -31,25 +92,104 @@ public class NotificationClientProvider {
         }
     }
 
-    private Map<String, NotificationClientApi> getApiClientsByService(
-        List<EmailTemplateMapping> emailTemplateMappings,
-        boolean useStub
-    ) {
-        return emailTemplateMappings
+    /**
+     * Replaces clients of all services with clients for the given mappings.
+     *
+     * <p>The client of a service is kept when its API key and client settings haven't changed,
+     * so that its open connections can be reused.</p>
+     */
+    public synchronized void reload(List<EmailTemplateMapping> emailTemplateMappings) {
+        Map<String, EmailSender> newClients = new HashMap<>();
+        Map<String, EmailTemplateMapping> newMappings = new HashMap<>();
+
+        for (EmailTemplateMapping mapping : emailTemplateMappings) {
+            EmailTemplateMapping oldMapping = mappingsByService.get(mapping.getService());
+
+            EmailSender client = oldMapping != null && hasSameClientSettings(oldMapping, mapping)
+                ? notificationClientsByService.get(mapping.getService())
+                : getNotificationClient(mapping);
+
+            newClients.put(mapping.getService(), client);
+            newMappings.put(mapping.getService(), mapping);
+        }
+
+        notificationClientsByService.values()
             .stream()
-            .collect(
-                Collectors.toMap(
-                    mapping -> mapping.getService(),
-                    mapping -> getNotificationClient(mapping.getNotifyApiKey(), useStub)
-                )
-            );
+            .filter(client -> !newClients.containsValue(client))
+            .filter(client -> client instanceof Closeable)
+            .forEach(this::retire);
+
+        notificationClientsByService = newClients;
+        mappingsByService = newMappings;
+    }
+
+    synchronized int getRetiredClientCount() {
+        return retiredClients.size();
+    }
+
+    /**
+     * Closes clients that hold connections open.
+     */
+    @Override
+    public synchronized void destroy() {
+        retiredClientCloser.shutdownNow();
+
+        List<EmailSender> clients = new ArrayList<>(notificationClientsByService.values());
+        clients.addAll(retiredClients);
+        retiredClients.clear();
+
+        clients.forEach(NotificationClientProvider::close);
+    }
+
+    private void retire(EmailSender client) {
+        retiredClients.add(client);
+
+        retiredClientCloser.schedule(
+            () -> closeRetiredClient(client),
+            retiredClientGracePeriod.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void closeRetiredClient(EmailSender client) {
+        synchronized (this) {
+            // already closed on shutdown otherwise
+            if (!retiredClients.remove(client)) {
+                return;
+            }
+        }
+
+        close(client);
+    }
+
+    private static void close(EmailSender client) {
+        if (client instanceof Closeable) {
+            try {
+                ((Closeable) client).close();
+            } catch (IOException e) {
+                logger.warn("Failed to close Notify client", e);
+            }
+        }
+    }
+
+    private static boolean hasSameClientSettings(EmailTemplateMapping oldMapping, EmailTemplateMapping newMapping) {
+        NotifyClientSettings oldSettings = oldMapping.getNotifyClient();
+        NotifyClientSettings newSettings = newMapping.getNotifyClient();
+
+        return Objects.equals(oldMapping.getNotifyApiKey(), newMapping.getNotifyApiKey())
+            && oldSettings.isPooled() == newSettings.isPooled()
+            && oldSettings.getMaxConnections() == newSettings.getMaxConnections()
+            && oldSettings.getConnectTimeoutInMs() == newSettings.getConnectTimeoutInMs()
+            && oldSettings.getReadTimeoutInMs() == newSettings.getReadTimeoutInMs();
     }
 
-    private NotificationClientApi getNotificationClient(String notifyApiKey, boolean useStub) {
-        if (useStub) {
-            return new NotificationClientStub();
+    private EmailSender getNotificationClient(EmailTemplateMapping mapping) {
+        if (useClientStub) {
+            return new NotificationClientEmailSender(new NotificationClientStub());
+        } else if (mapping.getNotifyClient().isPooled()) {
+            return new PooledNotificationClient(mapping.getNotifyApiKey(), notifyBaseUrl, mapping.getNotifyClient());
         } else {
-            return new NotificationClient(notifyApiKey);
+            return new NotificationClientEmailSender(new NotificationClient(mapping.getNotifyApiKey(), notifyBaseUrl));
         }
     }
 }
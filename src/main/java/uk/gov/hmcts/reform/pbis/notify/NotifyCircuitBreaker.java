@@ -0,0 +1,213 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.HystrixThreadPoolProperties;
+import com.netflix.hystrix.exception.HystrixBadRequestException;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import uk.gov.hmcts.reform.pbis.EmailRejectedException;
+import uk.gov.hmcts.reform.pbis.EmailSendingException;
+import uk.gov.hmcts.reform.pbis.NotifyUnavailableException;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Isolates calls to Notify made on behalf of each service from the other services.
+ *
+ * <p>Calls are run as Hystrix commands, in a thread pool of the service (bulkhead) and behind
+ * a circuit breaker of the service. When calls of a service keep failing (e.g. because its API key
+ * was revoked or Notify is down), the circuit opens and further calls fail straight away,
+ * without taking sending threads from healthy services. So do calls that don't fit in the
+ * thread pool of the service. Circuit breakers and thread pools are shown on Hystrix dashboard.</p>
+ *
+ * <p>Only failures of the service count towards opening the circuit. Emails rejected
+ * because of their content and requests rejected by the rate limit of the API key don't.</p>
+ *
+ * <p>Services can be added and removed at runtime with {@link #reload(List)}. Hystrix keeps the settings
+ * of a command for the lifetime of the JVM, so a changed thread pool size of an existing service
+ * takes effect after a restart.</p>
+ */
+public class NotifyCircuitBreaker {
+
+    private static final HystrixCommandGroupKey GROUP_KEY = HystrixCommandGroupKey.Factory.asKey("Notify");
+
+    private final int requestVolumeThreshold;
+    private final int errorThresholdPercentage;
+    private final Duration sleepWindow;
+
+    // replaced as a whole on reload
+    private volatile Map<String, ServiceCircuit> circuitsByService = new HashMap<>();
+
+    public NotifyCircuitBreaker(
+        List<EmailTemplateMapping> emailTemplateMappings,
+        int requestVolumeThreshold,
+        int errorThresholdPercentage,
+        Duration sleepWindow
+    ) {
+        this.requestVolumeThreshold = requestVolumeThreshold;
+        this.errorThresholdPercentage = errorThresholdPercentage;
+        this.sleepWindow = sleepWindow;
+
+        reload(emailTemplateMappings);
+    }
+
+    /**
+     * Replaces circuits of all services with circuits of the services in the given mappings.
+     *
+     * <p>Services that already had a circuit keep it.</p>
+     */
+    public synchronized void reload(List<EmailTemplateMapping> emailTemplateMappings) {
+        Map<String, ServiceCircuit> newCircuits = new HashMap<>();
+
+        for (EmailTemplateMapping mapping : emailTemplateMappings) {
+            ServiceCircuit circuit = circuitsByService.get(mapping.getService());
+
+            if (circuit == null) {
+                HystrixCommand.Setter commandSetter = createCommandSetter(
+                    mapping.getService(),
+                    mapping.getNotifyClient().getMaxConcurrentRequests(),
+                    requestVolumeThreshold,
+                    errorThresholdPercentage,
+                    sleepWindow
+                );
+
+                circuit = new ServiceCircuit(mapping.getService(), commandSetter);
+            }
+
+            newCircuits.put(mapping.getService(), circuit);
+        }
+
+        circuitsByService = newCircuits;
+    }
+
+    /**
+     * Returns the circuit breaker and thread pool of the given service.
+     *
+     * @return The circuit or null when the service is unknown
+     */
+    public ServiceCircuit getCircuit(String service) {
+        return circuitsByService.get(service);
+    }
+
+    private static HystrixCommand.Setter createCommandSetter(
+        String service,
+        int maxConcurrentRequests,
+        int requestVolumeThreshold,
+        int errorThresholdPercentage,
+        Duration sleepWindow
+    ) {
+        return HystrixCommand.Setter
+            .withGroupKey(GROUP_KEY)
+            .andCommandKey(HystrixCommandKey.Factory.asKey("sendEmail-" + service))
+            .andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey("notify-" + service))
+            .andCommandPropertiesDefaults(
+                HystrixCommandProperties
+                    .Setter()
+                    .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.THREAD)
+                    // Notify client has its own timeouts
+                    .withExecutionTimeoutEnabled(false)
+                    .withFallbackEnabled(false)
+                    .withRequestLogEnabled(false)
+                    .withCircuitBreakerRequestVolumeThreshold(requestVolumeThreshold)
+                    .withCircuitBreakerErrorThresholdPercentage(errorThresholdPercentage)
+                    .withCircuitBreakerSleepWindowInMilliseconds((int) sleepWindow.toMillis())
+            )
+            .andThreadPoolPropertiesDefaults(
+                HystrixThreadPoolProperties
+                    .Setter()
+                    .withCoreSize(maxConcurrentRequests)
+                    // calls that don't fit in the pool are rejected rather than queued
+                    .withMaxQueueSize(-1)
+            );
+    }
+
+    /**
+     * Tells if the failure means something's wrong with calling Notify on behalf of the service,
+     * as opposed to the particular email.
+     */
+    private static boolean isServiceFailure(RuntimeException exception) {
+        if (!(exception instanceof EmailSendingException)) {
+            return false;
+        }
+
+        NotifyError notifyError = ((EmailSendingException) exception).getNotifyError();
+
+        if (notifyError == null) {
+            return true;
+        } else if (exception instanceof EmailRejectedException) {
+            return notifyError.type == NotifyErrorType.AUTHENTICATION;
+        } else {
+            return notifyError.type != NotifyErrorType.RATE_LIMIT;
+        }
+    }
+
+    /**
+     * Circuit breaker and thread pool of a single service.
+     */
+    public static class ServiceCircuit {
+
+        private final String service;
+        private final HystrixCommand.Setter commandSetter;
+
+        ServiceCircuit(String service, HystrixCommand.Setter commandSetter) {
+            this.service = service;
+            this.commandSetter = commandSetter;
+        }
+
+        /**
+         * Makes the call to Notify on behalf of the service, unless calls of the service are suspended.
+         *
+         * @throws NotifyUnavailableException when the call wasn't made, because the circuit is open
+         *                                    or the thread pool is full
+         */
+        public void execute(Runnable notifyCall) {
+            try {
+                new NotifyCommand(commandSetter, notifyCall).execute();
+            } catch (HystrixBadRequestException e) {
+                throw (RuntimeException) e.getCause();
+            } catch (HystrixRuntimeException e) {
+                if (e.getFailureType() == HystrixRuntimeException.FailureType.COMMAND_EXCEPTION
+                    && e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+
+                throw new NotifyUnavailableException(
+                    String.format("Calls to Notify of service %s are suspended (%s)", service, e.getFailureType()),
+                    e
+                );
+            }
+        }
+    }
+
+    private static class NotifyCommand extends HystrixCommand<Void> {
+
+        private final Runnable notifyCall;
+
+        NotifyCommand(HystrixCommand.Setter setter, Runnable notifyCall) {
+            super(setter);
+            this.notifyCall = notifyCall;
+        }
+
+        @Override
+        protected Void run() {
+            try {
+                notifyCall.run();
+                return null;
+            } catch (RuntimeException e) {
+                if (isServiceFailure(e)) {
+                    throw e;
+                }
+
+                // doesn't count as a failure
+                throw new HystrixBadRequestException(e.getMessage(), e);
+            }
+        }
+    }
+}
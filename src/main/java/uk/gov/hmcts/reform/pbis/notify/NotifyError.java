@@ -0,0 +1,23 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+/**
+ * Classified error returned by GOV.UK Notify.
+ */
+public final class NotifyError {
+
+    public final NotifyErrorType type;
+    // zero when there was no response
+    public final int httpStatus;
+    // error messages from the response body, if any
+    public final String details;
+
+    public NotifyError(NotifyErrorType type, int httpStatus, String details) {
+        this.type = type;
+        this.httpStatus = httpStatus;
+        this.details = details;
+    }
+
+    public boolean isPermanent() {
+        return type.permanent;
+    }
+}
@@ -0,0 +1,78 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.gov.service.notify.NotificationClientException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells permanent Notify errors from transient ones, based on HTTP status and error body.
+ *
+ * <p>Notify client puts the response body in the exception message, e.g.
+ * {@code Status code: 400 {"errors":[{"error":"BadRequestError","message":"..."}],"status_code":400}}.
+ * </p>
+ */
+public final class NotifyErrorClassifier {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // the only 403 error that goes away on its own
+    private static final String CLOCK_SKEW_MESSAGE = "system clock";
+
+    private NotifyErrorClassifier() {
+        // utility class constructor
+    }
+
+    public static NotifyError classify(NotificationClientException exception) {
+        int httpStatus = exception.getHttpResult();
+        String details = getErrorDetails(exception.getMessage());
+
+        return new NotifyError(getErrorType(httpStatus, details), httpStatus, details);
+    }
+
+    private static NotifyErrorType getErrorType(int httpStatus, String details) {
+        if (httpStatus == 400) {
+            return NotifyErrorType.BAD_REQUEST;
+        } else if (httpStatus == 403) {
+            return details != null && details.contains(CLOCK_SKEW_MESSAGE)
+                ? NotifyErrorType.CLOCK_SKEW
+                : NotifyErrorType.AUTHENTICATION;
+        } else if (httpStatus == 429) {
+            return NotifyErrorType.RATE_LIMIT;
+        } else if (httpStatus >= 500) {
+            return NotifyErrorType.SERVER_ERROR;
+        } else if (httpStatus >= 400) {
+            return NotifyErrorType.OTHER_CLIENT_ERROR;
+        } else {
+            return NotifyErrorType.CONNECTION;
+        }
+    }
+
+    private static String getErrorDetails(String exceptionMessage) {
+        if (exceptionMessage == null) {
+            return null;
+        }
+
+        int bodyStart = exceptionMessage.indexOf('{');
+
+        if (bodyStart < 0) {
+            return exceptionMessage;
+        }
+
+        try {
+            JsonNode errors = objectMapper.readTree(exceptionMessage.substring(bodyStart)).path("errors");
+            List<String> messages = new ArrayList<>();
+
+            for (JsonNode error : errors) {
+                messages.add(error.path("error").asText() + ": " + error.path("message").asText());
+            }
+
+            return messages.isEmpty() ? exceptionMessage : String.join("; ", messages);
+        } catch (IOException e) {
+            return exceptionMessage;
+        }
+    }
+}
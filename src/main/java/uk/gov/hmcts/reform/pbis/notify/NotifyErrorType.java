@@ -0,0 +1,35 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+/**
+ * Kinds of errors returned by GOV.UK Notify when sending an email.
+ *
+ * <p>Permanent errors mean the same request would fail again, so there's no point retrying it.</p>
+ */
+public enum NotifyErrorType {
+    // invalid request, e.g. bad email address, missing personalisation or unknown template
+    BAD_REQUEST(true),
+
+    // invalid or revoked API key
+    AUTHENTICATION(true),
+
+    // request token rejected because the server's clock is out of sync
+    CLOCK_SKEW(false),
+
+    // too many requests sent in a period of time
+    RATE_LIMIT(false),
+
+    // Notify failed to handle the request
+    SERVER_ERROR(false),
+
+    // no response received, e.g. connection failure or timeout
+    CONNECTION(false),
+
+    // any other client error
+    OTHER_CLIENT_ERROR(true);
+
+    public final boolean permanent;
+
+    NotifyErrorType(boolean permanent) {
+        this.permanent = permanent;
+    }
+}
@@ -0,0 +1,26 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import uk.gov.service.notify.NotificationClientException;
+
+/**
+ * Thrown by {@link PooledNotificationClient} when Notify responds with an error.
+ *
+ * <p>Carries the same message and HTTP status as the exceptions thrown by the stock Notify client,
+ * so that both are classified the same way.</p>
+ */
+public class NotifyResponseException extends NotificationClientException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int httpStatus;
+
+    public NotifyResponseException(int httpStatus, String responseBody) {
+        super("Status code: " + httpStatus + " " + responseBody);
+        this.httpStatus = httpStatus;
+    }
+
+    @Override
+    public int getHttpResult() {
+        return httpStatus;
+    }
+}
@@ -0,0 +1,170 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import uk.gov.hmcts.reform.pbis.config.NotifyClientSettings;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Notify client that sends emails over persistent connections taken from a pool.
+ *
+ * <p>The stock client opens a new connection, with a new TLS handshake, for every request.
+ * This one keeps up to the configured number of connections open and reuses them, which takes
+ * connection setup out of the latency of each request.</p>
+ */
+public class PooledNotificationClient implements EmailSender, Closeable {
+
+    private static final String SEND_EMAIL_PATH = "/v2/notifications/email";
+    private static final String USER_AGENT = "private-beta-invitation-service";
+
+    // Notify API key ends with service ID and secret key, both UUIDs
+    private static final int UUID_LENGTH = 36;
+
+    private static final String TOKEN_HEADER =
+        base64Url("{\"typ\":\"JWT\",\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8));
+
+    private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 30;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String serviceId;
+    private final SecretKeySpec secretKey;
+    private final String sendEmailUrl;
+    private final CloseableHttpClient httpClient;
+    private final Clock clock;
+
+    public PooledNotificationClient(String apiKey, String baseUrl, NotifyClientSettings settings) {
+        this(apiKey, baseUrl, settings, Clock.systemUTC());
+    }
+
+    PooledNotificationClient(String apiKey, String baseUrl, NotifyClientSettings settings, Clock clock) {
+        this.serviceId = apiKey.substring(
+            Math.max(0, apiKey.length() - 2 * UUID_LENGTH - 1),
+            Math.max(0, apiKey.length() - UUID_LENGTH - 1)
+        );
+        this.secretKey = new SecretKeySpec(
+            apiKey.substring(Math.max(0, apiKey.length() - UUID_LENGTH)).getBytes(StandardCharsets.UTF_8),
+            "HmacSHA256"
+        );
+        this.sendEmailUrl = baseUrl + SEND_EMAIL_PATH;
+        this.httpClient = createHttpClient(settings);
+        this.clock = clock;
+    }
+
+    @Override
+    public SendEmailResponse sendEmail(
+        String templateId, String emailAddress, Map<String, ?> personalisation, String reference
+    ) throws NotificationClientException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("template_id", templateId);
+        body.put("email_address", emailAddress);
+        body.put("personalisation", personalisation);
+        body.put("reference", reference);
+
+        return new SendEmailResponse(post(sendEmailUrl, body));
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private String post(String url, Map<String, Object> body) throws NotificationClientException {
+        HttpPost request = new HttpPost(url);
+        request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + createToken());
+        request.setHeader(HttpHeaders.USER_AGENT, USER_AGENT);
+
+        try {
+            request.setEntity(
+                new StringEntity(objectMapper.writeValueAsString(body), ContentType.APPLICATION_JSON)
+            );
+
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int status = response.getStatusLine().getStatusCode();
+
+                // reading the whole body releases the connection back to the pool
+                String responseBody = response.getEntity() == null
+                    ? ""
+                    : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+
+                if (status != 200 && status != 201) {
+                    throw new NotifyResponseException(status, responseBody);
+                }
+
+                return responseBody;
+            }
+        } catch (IOException e) {
+            throw new NotificationClientException(e);
+        }
+    }
+
+    /**
+     * Creates a JSON Web Token to authenticate the request with, as described in Notify API docs.
+     */
+    private String createToken() throws NotificationClientException {
+        String claims = String.format(
+            "{\"iss\":\"%s\",\"iat\":%s}",
+            serviceId,
+            clock.instant().getEpochSecond()
+        );
+
+        String unsignedToken = TOKEN_HEADER + "." + base64Url(claims.getBytes(StandardCharsets.UTF_8));
+
+        try {
+            Mac mac = Mac.getInstance(secretKey.getAlgorithm());
+            mac.init(secretKey);
+            return unsignedToken + "." + base64Url(mac.doFinal(unsignedToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new NotificationClientException(e);
+        }
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static CloseableHttpClient createHttpClient(NotifyClientSettings settings) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        // all requests go to the same host
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnections());
+
+        RequestConfig requestConfig = RequestConfig
+            .custom()
+            .setConnectTimeout(settings.getConnectTimeoutInMs())
+            .setConnectionRequestTimeout(settings.getConnectTimeoutInMs())
+            .setSocketTimeout(settings.getReadTimeoutInMs())
+            .build();
+
+        return HttpClients
+            .custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .evictExpiredConnections()
+            .useSystemProperties()
+            .build();
+    }
+}
@@ -0,0 +1,309 @@
+package uk.gov.hmcts.reform.pbis.notify.dedup;
+
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Remembers registrations whose welcome emails have been sent, so that a redelivered message
+ * (e.g. after its lock expired, or the service stopped before completing it) doesn't send them again.
+ *
+ * <p>Before an email is sent, its registration is reserved, so that concurrent deliveries of the same message
+ * don't both send it. The reservation is turned into a sent entry once the email is sent, or released
+ * if it fails to be sent.</p>
+ *
+ * <p>Registrations are identified by their reference ID and service. The cache holds at most
+ * {@code sentEmailCache.maxSize} of them, evicting the least recently used ones, each for
+ * {@code sentEmailCache.timeToLiveInMs} after its email was sent.</p>
+ *
+ * <p>When {@code sentEmailCache.snapshotFile} is set, the cache is written to that file on shutdown
+ * and read back on startup, so that it survives restarts. A missing or unreadable snapshot
+ * leaves the cache empty.</p>
+ */
+@Component
+public class SentEmailCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SentEmailCache.class);
+
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
+
+    // stored instead of the sent time for registrations whose emails are being sent
+    private static final Instant IN_PROGRESS = Instant.MIN;
+
+    private final int maxSize;
+    private final Duration timeToLive;
+    private final Path snapshotFile;
+    private final Clock clock;
+
+    // guarded by itself, in access order - the eldest entry is the least recently used one
+    private final LinkedHashMap<Key, Instant> sentAt;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    @Autowired
+    public SentEmailCache(
+        @Value("${sentEmailCache.maxSize}") int maxSize,
+        @Value("${sentEmailCache.timeToLiveInMs}") long timeToLiveMs,
+        @Value("${sentEmailCache.snapshotFile:}") String snapshotFile
+    ) {
+        this(
+            maxSize,
+            Duration.ofMillis(timeToLiveMs),
+            Strings.isNullOrEmpty(snapshotFile) ? null : Paths.get(snapshotFile),
+            Clock.systemUTC()
+        );
+    }
+
+    SentEmailCache(int maxSize, Duration timeToLive, Path snapshotFile, Clock clock) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.snapshotFile = snapshotFile;
+        this.clock = clock;
+        this.sentAt = new LinkedHashMap<Key, Instant>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Instant> eldest) {
+                return size() > SentEmailCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Reserves the registration for sending its welcome email, unless the email has already been sent
+     * or is being sent. A reserved registration has to be either marked as sent or released.
+     */
+    public Reservation reserve(PrivateBetaRegistration registration) {
+        Key key = new Key(registration.service, registration.referenceId);
+        Reservation reservation;
+
+        synchronized (sentAt) {
+            Instant sentTime = sentAt.get(key);
+
+            if (sentTime == IN_PROGRESS) {
+                reservation = Reservation.IN_PROGRESS;
+            } else if (sentTime != null && !isExpired(sentTime, clock.instant())) {
+                reservation = Reservation.ALREADY_SENT;
+            } else {
+                sentAt.put(key, IN_PROGRESS);
+                reservation = Reservation.RESERVED;
+            }
+        }
+
+        (reservation == Reservation.RESERVED ? missCount : hitCount).increment();
+        return reservation;
+    }
+
+    /**
+     * Records that the welcome email for the registration has been sent.
+     */
+    public void markSent(PrivateBetaRegistration registration) {
+        Key key = new Key(registration.service, registration.referenceId);
+
+        synchronized (sentAt) {
+            sentAt.put(key, clock.instant());
+        }
+    }
+
+    /**
+     * Releases the reservation of a registration whose welcome email failed to be sent.
+     */
+    public void release(PrivateBetaRegistration registration) {
+        Key key = new Key(registration.service, registration.referenceId);
+
+        synchronized (sentAt) {
+            sentAt.remove(key, IN_PROGRESS);
+        }
+    }
+
+    public int size() {
+        synchronized (sentAt) {
+            return sentAt.size();
+        }
+    }
+
+    /**
+     * Returns statistics collected so far and starts collecting them anew.
+     */
+    public SentEmailCacheStatistics takeStatisticsSnapshot() {
+        return new SentEmailCacheStatistics(
+            hitCount.sumThenReset(),
+            missCount.sumThenReset(),
+            size()
+        );
+    }
+
+    /**
+     * Reads the cache from the snapshot file, if there's one.
+     */
+    @PostConstruct
+    public void restore() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+
+        Instant now = clock.instant();
+        int restoredCount = 0;
+
+        try (DataInputStream input = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(snapshotFile))
+        )) {
+            long fileSize = Files.size(snapshotFile);
+            int version = input.readInt();
+
+            if (version != SNAPSHOT_FORMAT_VERSION) {
+                logger.warn("Ignoring sent email cache snapshot {} of unknown version {}", snapshotFile, version);
+                return;
+            }
+
+            int count = input.readInt();
+
+            synchronized (sentAt) {
+                // entries were written from the least to the most recently used one, which keeps their order
+                for (int i = 0; i < count; i++) {
+                    Key key = new Key(readString(input, fileSize), readString(input, fileSize));
+                    Instant sentTime = Instant.ofEpochMilli(input.readLong());
+
+                    if (!isExpired(sentTime, now)) {
+                        sentAt.put(key, sentTime);
+                        restoredCount++;
+                    }
+                }
+            }
+
+            logger.info("Restored {} sent emails from snapshot {}", restoredCount, snapshotFile);
+        } catch (IOException e) {
+            logger.warn("Failed to read sent email cache snapshot " + snapshotFile, e);
+
+            synchronized (sentAt) {
+                sentAt.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the cache to the snapshot file, if it's configured. Expired and reserved entries are left out.
+     */
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        Instant now = clock.instant();
+        Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try {
+            Map<Key, Instant> entries;
+
+            synchronized (sentAt) {
+                entries = new LinkedHashMap<>(sentAt);
+            }
+
+            entries.values().removeIf(sentTime -> sentTime == IN_PROGRESS || isExpired(sentTime, now));
+
+            try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryFile))
+            )) {
+                output.writeInt(SNAPSHOT_FORMAT_VERSION);
+                output.writeInt(entries.size());
+
+                for (Map.Entry<Key, Instant> entry : entries.entrySet()) {
+                    writeString(output, entry.getKey().service);
+                    writeString(output, entry.getKey().referenceId);
+                    output.writeLong(entry.getValue().toEpochMilli());
+                }
+            }
+
+            // a partly written snapshot never replaces a complete one
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+
+            logger.info("Saved {} sent emails to snapshot {}", entries.size(), snapshotFile);
+        } catch (IOException e) {
+            logger.error("Failed to write sent email cache snapshot " + snapshotFile, e);
+        }
+    }
+
+    private boolean isExpired(Instant sentTime, Instant now) {
+        return !sentTime.plus(timeToLive).isAfter(now);
+    }
+
+    private static String readString(DataInputStream input, long fileSize) throws IOException {
+        int length = input.readInt();
+
+        if (length < 0 || length > fileSize) {
+            throw new IOException("Invalid string length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // unlike writeUTF, not limited to 64 KB
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    public enum Reservation {
+        // the email can be sent
+        RESERVED,
+        ALREADY_SENT,
+        // another delivery of the message is sending the email
+        IN_PROGRESS
+    }
+
+    private static final class Key {
+        final String service;
+        final String referenceId;
+
+        Key(String service, String referenceId) {
+            this.service = Objects.toString(service, "");
+            this.referenceId = Objects.toString(referenceId, "");
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) other;
+            return service.equals(key.service) && referenceId.equals(key.referenceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * service.hashCode() + referenceId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package uk.gov.hmcts.reform.pbis.notify.dedup;
+
+/**
+ * Reservations in the cache of sent emails done since the previous snapshot was taken.
+ */
+public class SentEmailCacheStatistics {
+
+    // registrations whose emails had already been sent (or were being sent), so they weren't sent again
+    public final long hitCount;
+    public final long missCount;
+    public final int size;
+
+    public SentEmailCacheStatistics(long hitCount, long missCount, int size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.size = size;
+    }
+}
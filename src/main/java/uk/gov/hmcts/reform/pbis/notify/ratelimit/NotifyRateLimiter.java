@@ -0,0 +1,235 @@
+package uk.gov.hmcts.reform.pbis.notify.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+import uk.gov.hmcts.reform.pbis.config.NotifyClientSettings;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Keeps calls to Notify within the rate limits of API keys.
+ *
+ * <p>Notify limits the number of requests per API key, so there's a {@link TokenBucket} for each
+ * key, shared by all services using it. The limits are configured for each service, in
+ * {@code emailTemplateMappings} - when services share a key, the lowest limit applies.</p>
+ *
+ * <p>Sending threads wait for their turn, so the pipeline fills up and stops receiving messages
+ * until they can be sent. When Notify responds that the rate limit was exceeded anyway
+ * (e.g. because the key is used by other applications too), the rate is reduced.</p>
+ *
+ * <p>Limits can be replaced at runtime with {@link #reload(List)}.</p>
+ */
+public class NotifyRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotifyRateLimiter.class);
+
+    private final Clock clock;
+
+    // replaced as a whole on reload
+    private volatile Map<String, ApiKeyRateLimit> rateLimitsByService = new HashMap<>();
+    private volatile Map<String, ApiKeyRateLimit> rateLimitsByApiKey = new LinkedHashMap<>();
+
+    public NotifyRateLimiter(List<EmailTemplateMapping> emailTemplateMappings) {
+        this(emailTemplateMappings, Clock.systemUTC());
+    }
+
+    NotifyRateLimiter(List<EmailTemplateMapping> emailTemplateMappings, Clock clock) {
+        this.clock = clock;
+        reload(emailTemplateMappings);
+    }
+
+    /**
+     * Replaces rate limits of all API keys with the limits of the given mappings.
+     *
+     * <p>The rate limit of an API key is kept (along with the requests made so far and any slowdown)
+     * when the key is used by the same services with the same limits as before.</p>
+     */
+    public synchronized void reload(List<EmailTemplateMapping> emailTemplateMappings) {
+        Map<String, List<EmailTemplateMapping>> mappingsByApiKey = new LinkedHashMap<>();
+
+        for (EmailTemplateMapping mapping : emailTemplateMappings) {
+            mappingsByApiKey.computeIfAbsent(mapping.getNotifyApiKey(), key -> new ArrayList<>()).add(mapping);
+        }
+
+        Map<String, ApiKeyRateLimit> newRateLimitsByService = new HashMap<>();
+        Map<String, ApiKeyRateLimit> newRateLimitsByApiKey = new LinkedHashMap<>();
+
+        mappingsByApiKey.forEach((apiKey, mappings) -> {
+            ApiKeyRateLimit newRateLimit = createRateLimit(mappings, clock);
+            ApiKeyRateLimit oldRateLimit = rateLimitsByApiKey.get(apiKey);
+            ApiKeyRateLimit rateLimit = oldRateLimit != null && oldRateLimit.hasSameLimits(newRateLimit)
+                ? oldRateLimit
+                : newRateLimit;
+
+            newRateLimitsByApiKey.put(apiKey, rateLimit);
+            mappings.forEach(mapping -> newRateLimitsByService.put(mapping.getService(), rateLimit));
+        });
+
+        rateLimitsByService = newRateLimitsByService;
+        rateLimitsByApiKey = newRateLimitsByApiKey;
+    }
+
+    /**
+     * Returns the rate limit of the API key used by the given service.
+     *
+     * @return The rate limit or null when the service is unknown
+     */
+    public ApiKeyRateLimit getRateLimit(String service) {
+        return rateLimitsByService.get(service);
+    }
+
+    /**
+     * Waits until a request to Notify can be made on behalf of the given service.
+     *
+     * @return How long the caller had to wait
+     */
+    public Duration acquire(String service) throws InterruptedException {
+        ApiKeyRateLimit rateLimit = rateLimitsByService.get(service);
+
+        // when there's no rate limit for the service, there's no Notify client for it either
+        return rateLimit == null ? Duration.ZERO : rateLimit.acquire();
+    }
+
+    /**
+     * Slows down requests made with the API key of the service after Notify
+     * responded that its rate limit was exceeded.
+     */
+    public void onRateLimited(String service) {
+        ApiKeyRateLimit rateLimit = rateLimitsByService.get(service);
+
+        if (rateLimit != null) {
+            rateLimit.onRateLimited();
+        }
+    }
+
+    /**
+     * Returns statistics of each API key collected so far and starts collecting them anew.
+     */
+    public List<RateLimiterStatistics> takeStatisticsSnapshot() {
+        return rateLimitsByApiKey
+            .values()
+            .stream()
+            .map(ApiKeyRateLimit::takeStatisticsSnapshot)
+            .collect(toList());
+    }
+
+    private static ApiKeyRateLimit createRateLimit(List<EmailTemplateMapping> mappingsSharingApiKey, Clock clock) {
+        double maxRate = Double.MAX_VALUE;
+        int capacity = Integer.MAX_VALUE;
+        List<String> services = new ArrayList<>();
+
+        for (EmailTemplateMapping mapping : mappingsSharingApiKey) {
+            NotifyClientSettings settings = mapping.getNotifyClient();
+            maxRate = Math.min(maxRate, settings.getMaxRequestsPerSecond());
+            capacity = Math.min(capacity, settings.getBurstSize());
+            services.add(mapping.getService());
+        }
+
+        return new ApiKeyRateLimit(String.join(",", services), maxRate, capacity, clock);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Rate limit of a single API key, shared by the services using it.
+     */
+    public static class ApiKeyRateLimit {
+        private final String services;
+        private final double maxRate;
+        private final int capacity;
+        private final TokenBucket tokenBucket;
+        private final LongAdder acquiredCount = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rateLimitedCount = new LongAdder();
+
+        ApiKeyRateLimit(String services, double maxRate, int capacity, Clock clock) {
+            this.services = services;
+            this.maxRate = maxRate;
+            this.capacity = capacity;
+            this.tokenBucket = new TokenBucket(maxRate, capacity, clock);
+        }
+
+        /**
+         * Waits until a request to Notify can be made with the API key.
+         *
+         * @return How long the caller had to wait
+         */
+        public Duration acquire() throws InterruptedException {
+            Duration waitTime = tokenBucket.reserve();
+
+            if (!waitTime.isZero()) {
+                TimeUnit.NANOSECONDS.sleep(waitTime.toNanos());
+            }
+
+            acquiredCount.increment();
+            totalWaitNanos.add(waitTime.toNanos());
+            maxWaitNanos.accumulate(waitTime.toNanos());
+
+            return waitTime;
+        }
+
+        /**
+         * Takes the permission to make a request to Notify with the API key, if it's available straight away.
+         * Doesn't wait, so that the caller can do something else in the meantime.
+         *
+         * @return Zero when the request can be made, otherwise how long to wait before trying again
+         */
+        public Duration tryAcquire() {
+            Duration waitTime = tokenBucket.tryTake();
+
+            if (waitTime.isZero()) {
+                acquiredCount.increment();
+            }
+
+            return waitTime;
+        }
+
+        /**
+         * Slows down requests made with the API key after Notify responded that its rate limit was exceeded.
+         */
+        public void onRateLimited() {
+            rateLimitedCount.increment();
+
+            if (tokenBucket.slowDown()) {
+                logger.warn(
+                    "Notify rate limit exceeded. Slowing down requests of services {} to {} per second",
+                    services,
+                    String.format("%.2f", tokenBucket.getRate())
+                );
+            }
+        }
+
+        boolean hasSameLimits(ApiKeyRateLimit other) {
+            return services.equals(other.services) && maxRate == other.maxRate && capacity == other.capacity;
+        }
+
+        RateLimiterStatistics takeStatisticsSnapshot() {
+            long acquired = acquiredCount.sumThenReset();
+            long waitNanos = totalWaitNanos.sumThenReset();
+
+            return new RateLimiterStatistics(
+                services,
+                tokenBucket.getRate(),
+                acquired,
+                acquired == 0 ? 0 : toMillis(waitNanos) / acquired,
+                toMillis(maxWaitNanos.getThenReset()),
+                rateLimitedCount.sumThenReset()
+            );
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package uk.gov.hmcts.reform.pbis.notify.ratelimit;
+
+/**
+ * Rate limiting of calls made with one Notify API key since the previous snapshot was taken.
+ */
+public class RateLimiterStatistics {
+
+    // services sending emails with the API key
+    public final String services;
+    // requests per second allowed at the moment
+    public final double currentRate;
+    public final long acquiredCount;
+    public final double averageWaitTimeMs;
+    public final double maxWaitTimeMs;
+    // responses telling that the rate limit was exceeded
+    public final long rateLimitedCount;
+
+    public RateLimiterStatistics(
+        String services,
+        double currentRate,
+        long acquiredCount,
+        double averageWaitTimeMs,
+        double maxWaitTimeMs,
+        long rateLimitedCount
+    ) {
+        this.services = services;
+        this.currentRate = currentRate;
+        this.acquiredCount = acquiredCount;
+        this.averageWaitTimeMs = averageWaitTimeMs;
+        this.maxWaitTimeMs = maxWaitTimeMs;
+        this.rateLimitedCount = rateLimitedCount;
+    }
+}
@@ -0,0 +1,124 @@
+package uk.gov.hmcts.reform.pbis.notify.ratelimit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Token bucket whose rate adapts to the rate limiting responses of the server.
+ *
+ * <p>Tokens are added at the current rate, up to the capacity of the bucket. Each request takes
+ * a token - when there's none left, the request either reserves the next one and has to wait for it,
+ * or finds out how long it would have to wait and comes back later.</p>
+ *
+ * <p>When the server starts rejecting requests, the rate is halved (at most once per slowdown
+ * interval, as requests in flight are likely to be rejected too). It then grows back
+ * to the maximum over the recovery time.</p>
+ */
+class TokenBucket {
+
+    // rate is never reduced below this fraction of the maximum
+    private static final double MIN_RATE_FRACTION = 0.05;
+
+    private static final Duration SLOWDOWN_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration RECOVERY_TIME = Duration.ofMinutes(1);
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double maxRate;
+    private final double capacity;
+    private final Clock clock;
+
+    private double rate;
+    private double tokens;
+    private Instant lastRefill;
+    private Instant lastSlowdown;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param maxRate  Maximum number of tokens added per second
+     * @param capacity Maximum number of tokens that can be taken at once
+     */
+    TokenBucket(double maxRate, int capacity, Clock clock) {
+        if (maxRate <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Rate and capacity of token bucket must be positive");
+        }
+
+        this.maxRate = maxRate;
+        this.capacity = capacity;
+        this.clock = clock;
+        this.rate = maxRate;
+        this.tokens = capacity;
+        this.lastRefill = clock.instant();
+        this.lastSlowdown = Instant.MIN;
+    }
+
+    /**
+     * Takes a token.
+     *
+     * @return How long to wait before the token can be used
+     */
+    synchronized Duration reserve() {
+        refill(clock.instant());
+        tokens -= 1;
+
+        return tokens >= 0
+            ? Duration.ZERO
+            : Duration.ofNanos((long) Math.ceil(-tokens * NANOS_PER_SECOND / rate));
+    }
+
+    /**
+     * Takes a token if there's one available, without reserving one otherwise.
+     *
+     * @return Zero when the token was taken, otherwise how long it takes until one is available
+     */
+    synchronized Duration tryTake() {
+        refill(clock.instant());
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return Duration.ZERO;
+        }
+
+        return Duration.ofNanos((long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / rate));
+    }
+
+    /**
+     * Halves the rate, unless it's been done very recently.
+     *
+     * @return true if the rate was reduced
+     */
+    synchronized boolean slowDown() {
+        Instant now = clock.instant();
+
+        if (now.isBefore(lastSlowdown.plus(SLOWDOWN_INTERVAL))) {
+            return false;
+        }
+
+        refill(now);
+        rate = Math.max(rate / 2, maxRate * MIN_RATE_FRACTION);
+        // don't let a burst hit the server again
+        tokens = Math.min(tokens, 0);
+        lastSlowdown = now;
+
+        return true;
+    }
+
+    synchronized double getRate() {
+        refill(clock.instant());
+        return rate;
+    }
+
+    private void refill(Instant now) {
+        double elapsedSeconds = Duration.between(lastRefill, now).toNanos() / NANOS_PER_SECOND;
+
+        if (elapsedSeconds <= 0) {
+            return;
+        }
+
+        tokens = Math.min(capacity, tokens + elapsedSeconds * rate);
+        rate = Math.min(maxRate, rate + maxRate * elapsedSeconds / (RECOVERY_TIME.toNanos() / NANOS_PER_SECOND));
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,57 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Distribution of the time {@link NotifySimulator} takes to respond.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    Duration sample(Random random);
+
+    static LatencyDistribution none() {
+        return random -> Duration.ZERO;
+    }
+
+    static LatencyDistribution fixed(Duration latency) {
+        return random -> latency;
+    }
+
+    /**
+     * Latency distributed uniformly between the minimum and maximum (inclusive).
+     */
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        if (max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("Maximum latency must not be lower than minimum");
+        }
+
+        long minNanos = min.toNanos();
+        long rangeNanos = max.toNanos() - minNanos;
+
+        return random -> Duration.ofNanos(minNanos + (long) (random.nextDouble() * rangeNanos));
+    }
+
+    /**
+     * Log-normal latency, with most calls close to the median and a long tail of slow ones,
+     * like the latency of a real HTTP service. Samples are capped at ten times the 99th percentile.
+     */
+    static LatencyDistribution longTail(Duration median, Duration percentile99) {
+        if (median.isNegative() || median.isZero() || percentile99.compareTo(median) < 0) {
+            throw new IllegalArgumentException("Median must be positive and not greater than 99th percentile");
+        }
+
+        // z-score of the 99th percentile of the standard normal distribution
+        double z99 = 2.3263;
+
+        double mu = Math.log(median.toNanos());
+        double sigma = (Math.log(percentile99.toNanos()) - mu) / z99;
+        // so that a single unlucky call doesn't stall a whole test
+        long capNanos = percentile99.toNanos() * 10;
+
+        return random -> Duration.ofNanos(
+            Math.min((long) Math.exp(mu + sigma * random.nextGaussian()), capNanos)
+        );
+    }
+}
@@ -0,0 +1,285 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Stand-in for GOV.UK Notify, for load and resilience tests that can't call the real thing.
+ *
+ * <p>Responds to calls that send emails the way Notify would - with a {@code SendEmailResponse} body,
+ * or an error body that Notify client turns into an exception. How long the response takes,
+ * how many calls fail and at what rate calls are rejected with 429 Too Many Requests
+ * is set for each service with {@link ServiceBehaviour}. Every call is recorded for assertions.</p>
+ *
+ * <p>It can be called in-process, through {@link SimulatedNotificationClient}, or over HTTP,
+ * through {@link NotifySimulatorServer}. It's thread-safe - calls of the same service are handled
+ * concurrently, each waiting for its own latency.</p>
+ */
+public class NotifySimulator {
+
+    public static final int CREATED = 201;
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final Map<Integer, String> ERROR_NAMES = ImmutableMap.of(
+        400, "BadRequestError",
+        403, "AuthError",
+        TOO_MANY_REQUESTS, "RateLimitError",
+        500, "Exception"
+    );
+
+    private final Supplier<Random> randomSupplier;
+
+    private final Map<String, ServiceBehaviour> behaviours = new ConcurrentHashMap<>();
+    private final Map<String, RequestRate> requestRates = new ConcurrentHashMap<>();
+    private final Queue<RecordedCall> calls = new ConcurrentLinkedQueue<>();
+
+    private volatile ServiceBehaviour defaultBehaviour = ServiceBehaviour.healthy();
+
+    public NotifySimulator() {
+        this(ThreadLocalRandom::current);
+    }
+
+    /**
+     * Creates a simulator whose random choices are repeatable (as long as calls are made one at a time).
+     */
+    public NotifySimulator(long seed) {
+        this(new Random(seed));
+    }
+
+    private NotifySimulator(Random random) {
+        // java.util.Random is thread-safe
+        this(() -> random);
+    }
+
+    private NotifySimulator(Supplier<Random> randomSupplier) {
+        this.randomSupplier = randomSupplier;
+    }
+
+    /**
+     * Sets how calls of services without a behaviour of their own are handled.
+     */
+    public void setDefaultBehaviour(ServiceBehaviour behaviour) {
+        this.defaultBehaviour = behaviour;
+    }
+
+    public void setBehaviour(String service, ServiceBehaviour behaviour) {
+        behaviours.put(service, behaviour);
+        requestRates.remove(service);
+    }
+
+    /**
+     * Handles a call to send an email on behalf of the given service.
+     *
+     * <p>Blocks the calling thread for the latency of the call.</p>
+     */
+    public SimulatedResponse sendEmail(
+        String service,
+        String templateId,
+        String emailAddress,
+        Map<String, ?> personalisation,
+        String reference
+    ) {
+        Instant receivedAt = Instant.now();
+        ServiceBehaviour behaviour = behaviours.getOrDefault(service, defaultBehaviour);
+        Random random = randomSupplier.get();
+
+        Duration latency = behaviour.getLatency().sample(random);
+        sleep(latency);
+
+        SimulatedResponse response;
+
+        if (isRateLimited(service, behaviour)) {
+            response = errorResponse(
+                TOO_MANY_REQUESTS,
+                String.format(
+                    "Exceeded rate limit for key type LIVE of %s requests per second",
+                    behaviour.getMaxRequestsPerSecond()
+                )
+            );
+        } else if (behaviour.getErrorRate() > 0 && random.nextDouble() < behaviour.getErrorRate()) {
+            response = errorResponse(behaviour.getErrorStatus(), "Simulated failure");
+        } else {
+            response = new SimulatedResponse(
+                CREATED,
+                createSendEmailResponseBody(templateId, personalisation, reference)
+            );
+        }
+
+        calls.add(
+            new RecordedCall(
+                receivedAt,
+                service,
+                templateId,
+                emailAddress,
+                personalisation == null ? Collections.emptyMap() : new HashMap<>(personalisation),
+                reference,
+                response.status,
+                latency
+            )
+        );
+
+        return response;
+    }
+
+    /**
+     * Returns all calls received so far, in the order they were answered.
+     */
+    public List<RecordedCall> getCalls() {
+        return new ArrayList<>(calls);
+    }
+
+    public List<RecordedCall> getCalls(String service) {
+        return calls.stream().filter(call -> service.equals(call.service)).collect(toList());
+    }
+
+    /**
+     * Forgets recorded calls.
+     */
+    public void clearCalls() {
+        calls.clear();
+    }
+
+    private boolean isRateLimited(String service, ServiceBehaviour behaviour) {
+        if (behaviour.getMaxRequestsPerSecond() <= 0) {
+            return false;
+        }
+
+        return !requestRates
+            .computeIfAbsent(service, s -> new RequestRate(behaviour.getMaxRequestsPerSecond()))
+            .tryAcquire(System.nanoTime());
+    }
+
+    private static SimulatedResponse errorResponse(int status, String message) {
+        String body = toJson(
+            ImmutableMap.of(
+                "errors", Collections.singletonList(
+                    ImmutableMap.of("error", ERROR_NAMES.getOrDefault(status, "Exception"), "message", message)
+                ),
+                "status_code", status
+            )
+        );
+
+        return new SimulatedResponse(status, body);
+    }
+
+    private static String createSendEmailResponseBody(
+        String templateId,
+        Map<String, ?> personalisation,
+        String reference
+    ) {
+        UUID notificationId = UUID.randomUUID();
+        String emailBody = personalisation == null
+            ? ""
+            : personalisation
+                .entrySet()
+                .stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .collect(joining("\n"));
+
+        Map<String, Object> content = new HashMap<>();
+        content.put("body", emailBody);
+        content.put("subject", "Welcome to private beta");
+        content.put("from_email", "private.beta@notifications.service.gov.uk");
+
+        String templateUuid = toUuid(templateId).toString();
+
+        Map<String, Object> template = new HashMap<>();
+        template.put("id", templateUuid);
+        template.put("version", 1);
+        template.put("uri", "https://api.notifications.service.gov.uk/v2/template/" + templateUuid);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", notificationId.toString());
+        response.put("reference", reference);
+        response.put("content", content);
+        response.put("template", template);
+        response.put("uri", "https://api.notifications.service.gov.uk/v2/notifications/" + notificationId);
+
+        return toJson(response);
+    }
+
+    // Notify client fails to parse responses whose template ID isn't a UUID, unlike test data
+    private static UUID toUuid(String templateId) {
+        String id = templateId == null ? "" : templateId;
+
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialise simulated Notify response", e);
+        }
+    }
+
+    private static void sleep(Duration latency) {
+        if (latency.isZero() || latency.isNegative()) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(latency.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Token bucket holding up to a second's worth of requests.
+     */
+    private static class RequestRate {
+        private final double maxRequestsPerSecond;
+        private final double capacity;
+
+        // guarded by this
+        private double tokens;
+        private long lastRefillNanos;
+
+        RequestRate(double maxRequestsPerSecond) {
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            this.capacity = Math.max(maxRequestsPerSecond, 1);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire(long nowNanos) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) / 1e9 * maxRequestsPerSecond);
+            lastRefillNanos = nowNanos;
+
+            if (tokens < 1) {
+                return false;
+            }
+
+            tokens--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link NotifySimulator} over HTTP on localhost, so that the whole network path of Notify clients
+ * (stock or pooled) can be load-tested without calling Notify. Point {@code NOTIFY_BASE_URL}
+ * at {@link #getBaseUrl()}.
+ *
+ * <p>Only {@code POST /v2/notifications/email} is supported. Services are told apart by the service ID
+ * in their API key (the issuer of the request's token) - that's the service name behaviours are set for.
+ * Tokens aren't verified. Use {@link #createApiKey(UUID)} to create keys the stock client accepts.</p>
+ */
+public class NotifySimulatorServer implements Closeable {
+
+    public static final String SEND_EMAIL_PATH = "/v2/notifications/email";
+
+    private static final Logger logger = LoggerFactory.getLogger(NotifySimulatorServer.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> PERSONALISATION_TYPE =
+        new TypeReference<Map<String, Object>>() {
+        };
+
+    private final NotifySimulator simulator;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Starts the server on a free port.
+     *
+     * @param threads Maximum number of requests handled at once - each one takes a thread for its latency
+     */
+    public NotifySimulatorServer(NotifySimulator simulator, int threads) throws IOException {
+        this(simulator, 0, threads);
+    }
+
+    public NotifySimulatorServer(NotifySimulator simulator, int port, int threads) throws IOException {
+        this.simulator = simulator;
+        this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("notify-simulator-"));
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Creates an API key of the given service, in the format Notify clients expect.
+     */
+    public static String createApiKey(UUID serviceId) {
+        return "simulator-" + serviceId + "-" + UUID.randomUUID();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            SimulatedResponse response = handleRequest(exchange);
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, body.length);
+
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to handle request to Notify simulator", e);
+            throw e;
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private SimulatedResponse handleRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())
+            || !SEND_EMAIL_PATH.equals(exchange.getRequestURI().getPath())) {
+            return error(404, "ResourceNotFound", "Not found");
+        }
+
+        String service = getServiceId(exchange.getRequestHeaders().getFirst("Authorization"));
+
+        if (service == null) {
+            return error(403, "AuthError", "Unauthorized, authentication token must be provided");
+        }
+
+        JsonNode body;
+
+        try (InputStream input = exchange.getRequestBody()) {
+            body = objectMapper.readTree(input);
+        }
+
+        if (body == null || !body.hasNonNull("template_id") || !body.hasNonNull("email_address")) {
+            return error(400, "ValidationError", "template_id and email_address are required");
+        }
+
+        Map<String, Object> personalisation = body.hasNonNull("personalisation")
+            ? objectMapper.convertValue(body.get("personalisation"), PERSONALISATION_TYPE)
+            : Collections.emptyMap();
+
+        return simulator.sendEmail(
+            service,
+            body.get("template_id").asText(),
+            body.get("email_address").asText(),
+            personalisation,
+            body.hasNonNull("reference") ? body.get("reference").asText() : null
+        );
+    }
+
+    private static String getServiceId(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return null;
+        }
+
+        String[] tokenParts = authorization.substring("Bearer ".length()).split("\\.");
+
+        if (tokenParts.length != 3) {
+            return null;
+        }
+
+        try {
+            JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(tokenParts[1]));
+            return claims.hasNonNull("iss") ? claims.get("iss").asText() : null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static SimulatedResponse error(int status, String error, String message) {
+        return new SimulatedResponse(
+            status,
+            String.format(
+                "{\"errors\":[{\"error\":\"%s\",\"message\":\"%s\"}],\"status_code\":%d}",
+                error,
+                message,
+                status
+            )
+        );
+    }
+}
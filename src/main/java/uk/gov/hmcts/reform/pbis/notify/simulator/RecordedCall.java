@@ -0,0 +1,44 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Call to send an email received by {@link NotifySimulator}, along with the response it got.
+ */
+public class RecordedCall {
+
+    public final Instant receivedAt;
+    public final String service;
+    public final String templateId;
+    public final String emailAddress;
+    public final Map<String, ?> personalisation;
+    public final String reference;
+    public final int responseStatus;
+    public final Duration latency;
+
+    public RecordedCall(
+        Instant receivedAt,
+        String service,
+        String templateId,
+        String emailAddress,
+        Map<String, ?> personalisation,
+        String reference,
+        int responseStatus,
+        Duration latency
+    ) {
+        this.receivedAt = receivedAt;
+        this.service = service;
+        this.templateId = templateId;
+        this.emailAddress = emailAddress;
+        this.personalisation = personalisation;
+        this.reference = reference;
+        this.responseStatus = responseStatus;
+        this.latency = latency;
+    }
+
+    public boolean isSuccessful() {
+        return responseStatus == NotifySimulator.CREATED;
+    }
+}
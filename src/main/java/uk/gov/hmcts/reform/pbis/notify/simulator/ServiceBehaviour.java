@@ -0,0 +1,75 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+/**
+ * How {@link NotifySimulator} responds to requests of a service.
+ *
+ * <p>Instances are immutable - {@code with...} methods return modified copies.</p>
+ */
+public final class ServiceBehaviour {
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int errorStatus;
+    private final double maxRequestsPerSecond;
+
+    private ServiceBehaviour(
+        LatencyDistribution latency,
+        double errorRate,
+        int errorStatus,
+        double maxRequestsPerSecond
+    ) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Responds successfully, straight away, without rate limiting.
+     */
+    public static ServiceBehaviour healthy() {
+        return new ServiceBehaviour(LatencyDistribution.none(), 0, 500, 0);
+    }
+
+    public ServiceBehaviour withLatency(LatencyDistribution latency) {
+        return new ServiceBehaviour(latency, errorRate, errorStatus, maxRequestsPerSecond);
+    }
+
+    /**
+     * Fails the given fraction of requests (0 to 1) with the given HTTP status.
+     */
+    public ServiceBehaviour withErrors(double errorRate, int errorStatus) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+
+        return new ServiceBehaviour(latency, errorRate, errorStatus, maxRequestsPerSecond);
+    }
+
+    /**
+     * Responds with 429 Too Many Requests to requests over the given rate. Zero turns rate limiting off.
+     */
+    public ServiceBehaviour withRateLimit(double maxRequestsPerSecond) {
+        if (maxRequestsPerSecond < 0) {
+            throw new IllegalArgumentException("Rate limit must not be negative");
+        }
+
+        return new ServiceBehaviour(latency, errorRate, errorStatus, maxRequestsPerSecond);
+    }
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public int getErrorStatus() {
+        return errorStatus;
+    }
+
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+}
@@ -0,0 +1,39 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import uk.gov.hmcts.reform.pbis.notify.EmailSender;
+import uk.gov.hmcts.reform.pbis.notify.NotifyResponseException;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.util.Map;
+
+/**
+ * Notify client that sends emails of a single service to {@link NotifySimulator}, in-process.
+ *
+ * <p>Responses and errors look the same as the ones of the stock client - errors are thrown
+ * as {@link NotifyResponseException} with the HTTP status and body of the simulated response.</p>
+ */
+public class SimulatedNotificationClient implements EmailSender {
+
+    private final NotifySimulator simulator;
+    private final String service;
+
+    public SimulatedNotificationClient(NotifySimulator simulator, String service) {
+        this.simulator = simulator;
+        this.service = service;
+    }
+
+    @Override
+    public SendEmailResponse sendEmail(
+        String templateId, String emailAddress, Map<String, ?> personalisation, String reference
+    ) throws NotificationClientException {
+        SimulatedResponse response =
+            simulator.sendEmail(service, templateId, emailAddress, personalisation, reference);
+
+        if (!response.isSuccessful()) {
+            throw new NotifyResponseException(response.status, response.body);
+        }
+
+        return new SendEmailResponse(response.body);
+    }
+}
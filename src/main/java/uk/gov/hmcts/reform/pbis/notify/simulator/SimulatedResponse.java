@@ -0,0 +1,19 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+/**
+ * HTTP response {@link NotifySimulator} gives to a call - status and JSON body, as Notify would.
+ */
+public class SimulatedResponse {
+
+    public final int status;
+    public final String body;
+
+    public SimulatedResponse(int status, String body) {
+        this.status = status;
+        this.body = body;
+    }
+
+    public boolean isSuccessful() {
+        return status == NotifySimulator.CREATED;
+    }
+}
@@ -0,0 +1,34 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import uk.gov.hmcts.reform.pbis.notify.EmailSender;
+import uk.gov.hmcts.reform.pbis.notify.NotifyCircuitBreaker;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+
+/**
+ * Everything needed to send welcome emails of a single service.
+ */
+public final class ServiceRoute {
+
+    public final String service;
+    public final String templateId;
+    public final String welcomeLink;
+    public final EmailSender notificationClient;
+    public final NotifyRateLimiter.ApiKeyRateLimit rateLimit;
+    public final NotifyCircuitBreaker.ServiceCircuit circuit;
+
+    public ServiceRoute(
+        String service,
+        String templateId,
+        String welcomeLink,
+        EmailSender notificationClient,
+        NotifyRateLimiter.ApiKeyRateLimit rateLimit,
+        NotifyCircuitBreaker.ServiceCircuit circuit
+    ) {
+        this.service = service;
+        this.templateId = templateId;
+        this.welcomeLink = welcomeLink;
+        this.notificationClient = notificationClient;
+        this.rateLimit = rateLimit;
+        this.circuit = circuit;
+    }
+}
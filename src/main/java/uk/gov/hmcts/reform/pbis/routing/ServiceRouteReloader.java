@@ -0,0 +1,283 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.BindResult;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.PropertySourcesPlaceholdersResolver;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+import uk.gov.hmcts.reform.pbis.config.NotifyClientSettings;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.notify.NotifyCircuitBreaker;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceWeights;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reloads {@code emailTemplateMappings} at runtime, so that services can be onboarded without a restart.
+ *
+ * <p>Mappings are read from the file given in {@code serviceRoutes.reloadFile}, in the same format
+ * as in application configuration (including {@code ${...}} placeholders for API keys). The file
+ * replaces all mappings. It's read at startup and whenever its content changes - it's checked
+ * every {@code serviceRoutes.reloadCheckIntervalInMs}. A reload can be triggered
+ * with {@link ServiceRoutesEndpoint} too.</p>
+ *
+ * <p>Notify clients, rate limits and circuits of services that haven't changed are kept, so their
+ * connections stay open. Emails already in flight are sent using the routes they were rendered with.
+ * When the new mappings are invalid, the current routes stay in place.</p>
+ */
+@Component
+public class ServiceRouteReloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRouteReloader.class);
+
+    private static final String MAPPINGS_PROPERTY = "emailTemplateMappings";
+
+    private final ServiceRouteTable routeTable;
+    private final NotificationClientProvider notificationClientProvider;
+    private final NotifyRateLimiter rateLimiter;
+    private final NotifyCircuitBreaker circuitBreaker;
+    private final ServiceWeights serviceWeights;
+    private final PropertySourcesPlaceholdersResolver placeholdersResolver;
+    private final Path reloadFile;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService executor;
+
+    // guarded by this
+    private byte[] lastReadContent;
+
+    @Autowired
+    public ServiceRouteReloader(
+        ServiceRouteTable routeTable,
+        NotificationClientProvider notificationClientProvider,
+        NotifyRateLimiter rateLimiter,
+        NotifyCircuitBreaker circuitBreaker,
+        ServiceWeights serviceWeights,
+        Environment environment,
+        @Value("${serviceRoutes.reloadFile:}") String reloadFile,
+        @Value("${serviceRoutes.reloadCheckIntervalInMs:10000}") long checkIntervalMs
+    ) {
+        this.routeTable = routeTable;
+        this.notificationClientProvider = notificationClientProvider;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.serviceWeights = serviceWeights;
+        this.placeholdersResolver = new PropertySourcesPlaceholdersResolver(environment);
+        this.reloadFile = Strings.isNullOrEmpty(reloadFile) ? null : Paths.get(reloadFile);
+        this.checkInterval = Duration.ofMillis(checkIntervalMs);
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("service-route-reloader-")
+        );
+    }
+
+    @PostConstruct
+    public void start() {
+        if (reloadFile == null) {
+            return;
+        }
+
+        // mappings from the file replace the ones from application configuration straight away
+        checkForChanges();
+
+        if (!checkInterval.isZero()) {
+            executor.scheduleWithFixedDelay(
+                this::checkForChanges,
+                checkInterval.toMillis(),
+                checkInterval.toMillis(),
+                TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reloads mappings from the reload file, whether it has changed or not.
+     *
+     * @throws ServiceRoutesReloadException when the file isn't configured, can't be read
+     *                                      or contains invalid mappings
+     */
+    public synchronized ServiceRoutesReloadResult reload() {
+        byte[] content = readReloadFile();
+        lastReadContent = content;
+
+        return reload(parseMappings(content));
+    }
+
+    /**
+     * Replaces routes of all services with routes compiled from the given mappings.
+     *
+     * @throws ServiceRoutesReloadException when the mappings are invalid
+     */
+    public synchronized ServiceRoutesReloadResult reload(List<EmailTemplateMapping> mappings) {
+        validate(mappings);
+
+        try {
+            // creating a client fails on malformed API keys - nothing has been replaced by then
+            notificationClientProvider.reload(mappings);
+        } catch (RuntimeException e) {
+            throw new ServiceRoutesReloadException("Failed to create Notify clients for new mappings", e);
+        }
+
+        rateLimiter.reload(mappings);
+        circuitBreaker.reload(mappings);
+        serviceWeights.reload(mappings);
+
+        List<ServiceRoute> newRoutes =
+            ServiceRouteTable.compileRoutes(mappings, notificationClientProvider, rateLimiter, circuitBreaker);
+
+        ServiceRoutesReloadResult result = compare(routeTable, newRoutes);
+        routeTable.replaceRoutes(newRoutes);
+
+        logger.info(
+            "Reloaded email template mappings. Added services: {}, removed services: {}, changed services: {}",
+            result.addedServices,
+            result.removedServices,
+            result.changedServices
+        );
+
+        return result;
+    }
+
+    synchronized void checkForChanges() {
+        try {
+            byte[] content = readReloadFile();
+
+            if (!Arrays.equals(content, lastReadContent)) {
+                // remembered before reloading, so that invalid content isn't reported again until it changes
+                lastReadContent = content;
+                reload(parseMappings(content));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to reload email template mappings from {}", reloadFile, e);
+        }
+    }
+
+    private byte[] readReloadFile() {
+        if (reloadFile == null) {
+            throw new ServiceRoutesReloadException("Reload file of email template mappings is not configured");
+        }
+
+        try {
+            return Files.readAllBytes(reloadFile);
+        } catch (IOException e) {
+            throw new ServiceRoutesReloadException("Failed to read email template mappings from " + reloadFile, e);
+        }
+    }
+
+    private List<EmailTemplateMapping> parseMappings(byte[] content) {
+        BindResult<List<EmailTemplateMapping>> bindResult;
+
+        try {
+            List<PropertySource<?>> propertySources =
+                new YamlPropertySourceLoader().load(reloadFile.toString(), new ByteArrayResource(content));
+
+            bindResult = new Binder(ConfigurationPropertySources.from(propertySources), placeholdersResolver)
+                .bind(MAPPINGS_PROPERTY, Bindable.listOf(EmailTemplateMapping.class));
+        } catch (IOException | RuntimeException e) {
+            throw new ServiceRoutesReloadException("Failed to parse email template mappings from " + reloadFile, e);
+        }
+
+        return bindResult.orElseThrow(() -> new ServiceRoutesReloadException(
+            String.format("No %s found in %s", MAPPINGS_PROPERTY, reloadFile)
+        ));
+    }
+
+    private static void validate(List<EmailTemplateMapping> mappings) {
+        if (mappings.isEmpty()) {
+            throw new ServiceRoutesReloadException("Email template mappings are empty");
+        }
+
+        Set<String> services = new HashSet<>();
+
+        for (EmailTemplateMapping mapping : mappings) {
+            if (Strings.isNullOrEmpty(mapping.getService())) {
+                throw new ServiceRoutesReloadException("Email template mapping without service name");
+            }
+
+            if (!services.add(mapping.getService())) {
+                throw new ServiceRoutesReloadException("Duplicate mapping of service " + mapping.getService());
+            }
+
+            if (Strings.isNullOrEmpty(mapping.getTemplateId())) {
+                throw new ServiceRoutesReloadException("No template ID for service " + mapping.getService());
+            }
+
+            NotifyClientSettings settings = mapping.getNotifyClient();
+
+            if (settings.getMaxRequestsPerSecond() <= 0
+                || settings.getBurstSize() < 1
+                || settings.getMaxConcurrentRequests() < 1) {
+                throw new ServiceRoutesReloadException(
+                    "Invalid Notify client settings of service " + mapping.getService()
+                );
+            }
+        }
+    }
+
+    private static ServiceRoutesReloadResult compare(ServiceRouteTable oldRoutes, List<ServiceRoute> newRoutes) {
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        Set<String> newServices = new HashSet<>();
+
+        for (ServiceRoute newRoute : newRoutes) {
+            ServiceRoute oldRoute = oldRoutes.getRoute(newRoute.service);
+            newServices.add(newRoute.service);
+
+            if (oldRoute == null) {
+                added.add(newRoute.service);
+            } else if (!isSameRoute(oldRoute, newRoute)) {
+                changed.add(newRoute.service);
+            }
+        }
+
+        List<String> removed = oldRoutes
+            .getRoutes()
+            .stream()
+            .map(route -> route.service)
+            .filter(service -> !newServices.contains(service))
+            .collect(toList());
+
+        return new ServiceRoutesReloadResult(added, removed, changed);
+    }
+
+    private static boolean isSameRoute(ServiceRoute oldRoute, ServiceRoute newRoute) {
+        return Objects.equals(oldRoute.templateId, newRoute.templateId)
+            && Objects.equals(oldRoute.welcomeLink, newRoute.welcomeLink)
+            && oldRoute.notificationClient == newRoute.notificationClient
+            && oldRoute.rateLimit == newRoute.rateLimit
+            && oldRoute.circuit == newRoute.circuit;
+    }
+}
@@ -0,0 +1,98 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import com.google.common.collect.ImmutableMap;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.notify.NotifyCircuitBreaker;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Routes of all services, compiled from {@code emailTemplateMappings}.
+ *
+ * <p>A route holds the template, the Notify client, the rate limit and the circuit breaker
+ * of its service, so that everything needed to send an email is found with a single lookup.</p>
+ *
+ * <p>Routes are kept in an immutable snapshot, which is replaced as a whole when the mappings
+ * are reloaded (see {@link ServiceRouteReloader}). Readers never take a lock - a lookup sees
+ * either the old routes or the new ones.</p>
+ */
+public class ServiceRouteTable {
+
+    private volatile Map<String, ServiceRoute> routesByService;
+
+    public ServiceRouteTable(Collection<ServiceRoute> routes) {
+        this.routesByService = toMap(routes);
+    }
+
+    /**
+     * Compiles routes of the services from their mappings.
+     */
+    public static ServiceRouteTable compile(
+        List<EmailTemplateMapping> emailTemplateMappings,
+        NotificationClientProvider notificationClientProvider,
+        NotifyRateLimiter rateLimiter,
+        NotifyCircuitBreaker circuitBreaker
+    ) {
+        return new ServiceRouteTable(
+            compileRoutes(emailTemplateMappings, notificationClientProvider, rateLimiter, circuitBreaker)
+        );
+    }
+
+    /**
+     * Compiles routes of the services from their mappings, using the current clients,
+     * rate limits and circuits of the services.
+     */
+    public static List<ServiceRoute> compileRoutes(
+        List<EmailTemplateMapping> emailTemplateMappings,
+        NotificationClientProvider notificationClientProvider,
+        NotifyRateLimiter rateLimiter,
+        NotifyCircuitBreaker circuitBreaker
+    ) {
+        return emailTemplateMappings
+            .stream()
+            .map(mapping -> new ServiceRoute(
+                mapping.getService(),
+                mapping.getTemplateId(),
+                mapping.getWelcomeLink(),
+                notificationClientProvider.getClient(mapping.getService()),
+                rateLimiter.getRateLimit(mapping.getService()),
+                circuitBreaker.getCircuit(mapping.getService())
+            ))
+            .collect(toList());
+    }
+
+    /**
+     * Returns the route of the given service.
+     *
+     * @return The route or null when the service is unknown
+     */
+    public ServiceRoute getRoute(String service) {
+        return routesByService.get(service);
+    }
+
+    /**
+     * Returns the current routes of all services.
+     */
+    public Collection<ServiceRoute> getRoutes() {
+        return routesByService.values();
+    }
+
+    /**
+     * Replaces all routes at once.
+     */
+    public void replaceRoutes(Collection<ServiceRoute> routes) {
+        routesByService = toMap(routes);
+    }
+
+    private static Map<String, ServiceRoute> toMap(Collection<ServiceRoute> routes) {
+        ImmutableMap.Builder<String, ServiceRoute> builder = ImmutableMap.builder();
+        routes.forEach(route -> builder.put(route.service, route));
+        return builder.build();
+    }
+}
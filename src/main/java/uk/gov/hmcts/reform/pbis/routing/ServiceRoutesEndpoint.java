@@ -0,0 +1,50 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.stereotype.Component;
+
+import static java.util.Collections.singletonMap;
+
+/**
+ * Actuator endpoint that reloads email template mappings from the reload file
+ * ({@code POST /actuator/serviceroutes}).
+ *
+ * <p>As it changes how emails are sent, it isn't exposed over HTTP unless it's added
+ * to {@code management.endpoints.web.exposure.include}. Actuator should then be served on
+ * a management port that can't be reached from outside ({@code management.server.port}).</p>
+ *
+ * <p>The reason of a failed reload (which can contain file paths and parts of the file) is logged,
+ * while the response only says that the reload failed.</p>
+ */
+@Component
+@WebEndpoint(id = "serviceroutes")
+public class ServiceRoutesEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRoutesEndpoint.class);
+
+    private final ServiceRouteReloader reloader;
+
+    @Autowired
+    public ServiceRoutesEndpoint(ServiceRouteReloader reloader) {
+        this.reloader = reloader;
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Object> reload() {
+        try {
+            return new WebEndpointResponse<>(reloader.reload());
+        } catch (Exception e) {
+            logger.error("Failed to reload email template mappings", e);
+
+            return new WebEndpointResponse<>(
+                singletonMap("error", "Failed to reload email template mappings"),
+                WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR
+            );
+        }
+    }
+}
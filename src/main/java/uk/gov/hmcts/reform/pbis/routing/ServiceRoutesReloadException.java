@@ -0,0 +1,12 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+public class ServiceRoutesReloadException extends RuntimeException {
+
+    public ServiceRoutesReloadException(String message) {
+        super(message);
+    }
+
+    public ServiceRoutesReloadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,23 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import java.util.List;
+
+/**
+ * Services affected by reloading email template mappings.
+ */
+public class ServiceRoutesReloadResult {
+
+    public final List<String> addedServices;
+    public final List<String> removedServices;
+    public final List<String> changedServices;
+
+    public ServiceRoutesReloadResult(
+        List<String> addedServices,
+        List<String> removedServices,
+        List<String> changedServices
+    ) {
+        this.addedServices = addedServices;
+        this.removedServices = removedServices;
+        this.changedServices = changedServices;
+    }
+}
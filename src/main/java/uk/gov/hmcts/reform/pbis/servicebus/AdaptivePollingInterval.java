@@ -0,0 +1,91 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import java.time.Duration;
+
+/**
+ * Works out how long to wait before polling the subscription again.
+ *
+ * <p>After a run that found messages, the subscription is polled again straight away, as
+ * more messages are likely to follow. After a run that found nothing, the interval doubles,
+ * starting from the minimum, up to the maximum. It's also kept below the expected time between
+ * two messages, based on the estimated arrival rate, so that a steady trickle of messages
+ * doesn't have to wait for the maximum interval.</p>
+ *
+ * <p>The arrival rate is the number of messages received per second, averaged over roughly
+ * the last minute (an exponentially weighted moving average, weighted by time between runs).</p>
+ */
+public class AdaptivePollingInterval {
+
+    // how quickly old samples stop counting in arrival rate estimate
+    private static final double ARRIVAL_RATE_TIME_CONSTANT_SECONDS = 60;
+
+    private static final double NANOS_PER_SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final Duration minInterval;
+    private final Duration maxInterval;
+
+    private Duration currentInterval;
+    private double arrivalRatePerSecond;
+
+    public AdaptivePollingInterval(Duration minInterval, Duration maxInterval) {
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.currentInterval = Duration.ZERO;
+    }
+
+    /**
+     * Updates the interval based on the result of a run.
+     *
+     * @param receivedMessageCount Number of messages received in the run
+     * @param timeSincePreviousRun Time between the start of the previous run and this one
+     */
+    public synchronized void recordRun(int receivedMessageCount, Duration timeSincePreviousRun) {
+        updateArrivalRate(receivedMessageCount, timeSincePreviousRun);
+
+        if (receivedMessageCount > 0) {
+            currentInterval = Duration.ZERO;
+        } else {
+            Duration backedOffInterval = currentInterval.isZero()
+                ? minInterval
+                : min(currentInterval.multipliedBy(2), maxInterval);
+
+            currentInterval = max(min(backedOffInterval, getExpectedTimeBetweenMessages()), minInterval);
+        }
+    }
+
+    public synchronized Duration getCurrentInterval() {
+        return currentInterval;
+    }
+
+    public synchronized double getArrivalRatePerSecond() {
+        return arrivalRatePerSecond;
+    }
+
+    private void updateArrivalRate(int receivedMessageCount, Duration timeSincePreviousRun) {
+        if (timeSincePreviousRun.isZero() || timeSincePreviousRun.isNegative()) {
+            return;
+        }
+
+        double seconds = timeSincePreviousRun.toNanos() / NANOS_PER_SECOND;
+        double sample = receivedMessageCount / seconds;
+        double sampleWeight = 1 - Math.exp(-seconds / ARRIVAL_RATE_TIME_CONSTANT_SECONDS);
+
+        arrivalRatePerSecond += sampleWeight * (sample - arrivalRatePerSecond);
+    }
+
+    private Duration getExpectedTimeBetweenMessages() {
+        if (arrivalRatePerSecond <= 0) {
+            return maxInterval;
+        }
+
+        return min(Duration.ofMillis((long) (1000 / arrivalRatePerSecond)), maxInterval);
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    private static Duration max(Duration first, Duration second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+}
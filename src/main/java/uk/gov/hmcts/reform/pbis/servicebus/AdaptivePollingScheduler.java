@@ -0,0 +1,119 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+/**
+ * Runs {@link MessageQueueProcessor} repeatedly, waiting between runs for as long as
+ * {@link AdaptivePollingInterval} says.
+ *
+ * <p>The interval is kept between {@code serviceBus.minPollingDelayInMs} and
+ * {@code serviceBus.pollingDelayInMs}. Each run starts after the previous one has finished.</p>
+ *
+ * <p>Polling starts once the application is ready, so that other beans, e.g. service routes
+ * read from {@code serviceRoutes.reloadFile}, have been initialised by then.</p>
+ */
+@Component
+@ConditionalOnExpression(
+    "${scheduling.enable:true} && '${serviceBus.consumerMode:polling}' == 'polling'"
+)
+public class AdaptivePollingScheduler {
+
+    private final MessageQueueProcessor messageQueueProcessor;
+    private final MessageQueueProcessingTracker tracker;
+    private final AdaptivePollingInterval pollingInterval;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+
+    private Instant previousRunStart;
+
+    @Autowired
+    public AdaptivePollingScheduler(
+        MessageQueueProcessor messageQueueProcessor,
+        MessageQueueProcessingTracker tracker,
+        @Value("${serviceBus.minPollingDelayInMs}") long minPollingDelayMs,
+        @Value("${serviceBus.pollingDelayInMs}") long maxPollingDelayMs
+    ) {
+        this(
+            messageQueueProcessor,
+            tracker,
+            new AdaptivePollingInterval(
+                Duration.ofMillis(minPollingDelayMs),
+                Duration.ofMillis(maxPollingDelayMs)
+            ),
+            Clock.systemUTC()
+        );
+    }
+
+    AdaptivePollingScheduler(
+        MessageQueueProcessor messageQueueProcessor,
+        MessageQueueProcessingTracker tracker,
+        AdaptivePollingInterval pollingInterval,
+        Clock clock
+    ) {
+        this.messageQueueProcessor = messageQueueProcessor;
+        this.tracker = tracker;
+        this.pollingInterval = pollingInterval;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("polling-scheduler-")
+        );
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.execute(this::poll);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            Instant runStart = clock.instant();
+            int receivedMessageCount = messageQueueProcessor.run();
+
+            Duration timeSincePreviousRun = previousRunStart == null
+                ? Duration.ZERO
+                : Duration.between(previousRunStart, runStart);
+
+            previousRunStart = runStart;
+
+            pollingInterval.recordRun(receivedMessageCount, timeSincePreviousRun);
+
+            tracker.trackPollingInterval(
+                pollingInterval.getCurrentInterval(),
+                pollingInterval.getArrivalRatePerSecond()
+            );
+        } catch (Exception e) {
+            tracker.trackProcessingError(e);
+        } finally {
+            scheduleNextRun();
+        }
+    }
+
+    private void scheduleNextRun() {
+        if (!executor.isShutdown()) {
+            executor.schedule(
+                this::poll,
+                pollingInterval.getCurrentInterval().toMillis(),
+                TimeUnit.MILLISECONDS
+            );
+        }
+    }
+}
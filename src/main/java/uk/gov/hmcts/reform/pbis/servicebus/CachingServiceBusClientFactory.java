@@ -0,0 +1,235 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service Bus client factory that keeps a single receiver open across processing runs.
+ *
+ * <p>Creating a receiver means setting up a new AMQP connection and attaching a link.
+ * This factory creates the client once and hands it out until receiving from it fails
+ * or its receiver turns out to be closed (e.g. because its connection was closed).
+ * Such client is considered faulted - it gets closed and replaced with a new one,
+ * with exponential backoff between failed connection attempts.</p>
+ */
+public class CachingServiceBusClientFactory implements IServiceBusClientFactory, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingServiceBusClientFactory.class);
+
+    private final IServiceBusClientFactory clientFactory;
+    private final Duration minReconnectBackoff;
+    private final Duration maxReconnectBackoff;
+    private final Clock clock;
+
+    private IServiceBusClient client;
+    private boolean faulted;
+    private int failedConnectionAttempts;
+    private Instant nextConnectionAttempt = Instant.MIN;
+
+    public CachingServiceBusClientFactory(
+        IServiceBusClientFactory clientFactory,
+        Duration minReconnectBackoff,
+        Duration maxReconnectBackoff
+    ) {
+        this(clientFactory, minReconnectBackoff, maxReconnectBackoff, Clock.systemUTC());
+    }
+
+    CachingServiceBusClientFactory(
+        IServiceBusClientFactory clientFactory,
+        Duration minReconnectBackoff,
+        Duration maxReconnectBackoff,
+        Clock clock
+    ) {
+        this.clientFactory = clientFactory;
+        this.minReconnectBackoff = minReconnectBackoff;
+        this.maxReconnectBackoff = maxReconnectBackoff;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the shared client, connecting first if there's no healthy one.
+     *
+     * <p>Closing the returned client doesn't close the underlying receiver.</p>
+     */
+    @Override
+    public synchronized IServiceBusClient createClient() {
+        if (client != null && !faulted && client.isClosed()) {
+            logger.warn("Receiver of shared Service Bus client has been closed. Replacing the client.");
+            faulted = true;
+        }
+
+        if (client == null || faulted) {
+            connect();
+        }
+
+        return new SharedServiceBusClient(client);
+    }
+
+    /**
+     * Creates a message pump with the wrapped factory. Message pumps aren't shared.
+     */
+    @Override
+    public IMessagePump createMessagePump() {
+        return clientFactory.createMessagePump();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        logger.info("Closing shared Service Bus client.");
+        closeClient();
+    }
+
+    synchronized boolean isFaulted() {
+        return faulted;
+    }
+
+    private synchronized void markFaulted(IServiceBusClient faultedClient) {
+        // the client may have been replaced in the meantime
+        if (faultedClient == client && !faulted) {
+            logger.warn("Shared Service Bus client faulted. It will be replaced on next use.");
+            faulted = true;
+        }
+    }
+
+    private void connect() {
+        Instant now = clock.instant();
+
+        if (now.isBefore(nextConnectionAttempt)) {
+            throw new ServiceBusException(
+                String.format(
+                    "Service Bus client is unavailable. Next connection attempt at %s",
+                    nextConnectionAttempt
+                ),
+                null
+            );
+        }
+
+        closeClient();
+
+        try {
+            client = clientFactory.createClient();
+            faulted = false;
+            failedConnectionAttempts = 0;
+            nextConnectionAttempt = Instant.MIN;
+
+            logger.info("Connected shared Service Bus client.");
+        } catch (RuntimeException e) {
+            failedConnectionAttempts++;
+            nextConnectionAttempt = now.plus(getReconnectBackoff(failedConnectionAttempts));
+            throw e;
+        }
+    }
+
+    private Duration getReconnectBackoff(int failedAttempts) {
+        Duration backoff = minReconnectBackoff.multipliedBy(1L << Math.min(failedAttempts - 1, 20));
+        return backoff.compareTo(maxReconnectBackoff) > 0 ? maxReconnectBackoff : backoff;
+    }
+
+    private void closeClient() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close Service Bus client", e);
+            }
+
+            client = null;
+        }
+    }
+
+    /**
+     * Client handed out by the factory. Doesn't close the receiver
+     * and marks it as faulted when receiving fails.
+     */
+    private class SharedServiceBusClient implements IServiceBusClient {
+
+        private final IServiceBusClient delegate;
+
+        SharedServiceBusClient(IServiceBusClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public IMessage receiveMessage() {
+            try {
+                return delegate.receiveMessage();
+            } catch (RuntimeException e) {
+                markFaulted(delegate);
+                throw e;
+            }
+        }
+
+        @Override
+        public List<IMessage> receiveMessages(int maxCount, Duration wait) {
+            try {
+                return delegate.receiveMessages(maxCount, wait);
+            } catch (RuntimeException e) {
+                markFaulted(delegate);
+                throw e;
+            }
+        }
+
+        @Override
+        public void completeMessage(String messageId, UUID messageLockToken) {
+            delegate.completeMessage(messageId, messageLockToken);
+        }
+
+        @Override
+        public void sendToDeadLetter(
+            IMessage message,
+            String reason,
+            String description,
+            Map<String, String> fieldValidationErrors
+        ) {
+            delegate.sendToDeadLetter(message, reason, description, fieldValidationErrors);
+        }
+
+        @Override
+        public CompletableFuture<Void> completeMessageAsync(IMessage message) {
+            return delegate.completeMessageAsync(message);
+        }
+
+        @Override
+        public CompletableFuture<Void> sendToDeadLetterAsync(
+            IMessage message,
+            String reason,
+            String description,
+            Map<String, String> fieldValidationErrors
+        ) {
+            return delegate.sendToDeadLetterAsync(message, reason, description, fieldValidationErrors);
+        }
+
+        @Override
+        public CompletableFuture<Void> abandonMessageAsync(
+            IMessage message,
+            Map<String, Object> propertiesToModify
+        ) {
+            return delegate.abandonMessageAsync(message, propertiesToModify);
+        }
+
+        @Override
+        public CompletableFuture<Instant> renewMessageLockAsync(IMessage message) {
+            return delegate.renewMessageLockAsync(message);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return delegate.isClosed();
+        }
+
+        @Override
+        public void close() {
+            // the receiver stays open for subsequent runs
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessageHandler;
+import com.microsoft.azure.servicebus.MessageHandlerOptions;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Pushes messages from the subscription to a registered handler, renewing their locks while
+ * the handler processes them, and settles the messages it pushed.
+ */
+public interface IMessagePump extends IMessageSettlementClient, AutoCloseable {
+
+    /**
+     * Starts pushing messages to the handler, which is run by the given executor.
+     * The handler settles messages itself.
+     */
+    void registerMessageHandler(
+        IMessageHandler handler,
+        MessageHandlerOptions options,
+        ExecutorService executorService
+    );
+}
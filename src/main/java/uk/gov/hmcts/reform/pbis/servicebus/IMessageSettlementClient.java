@@ -0,0 +1,29 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Settles received messages. This is all {@link MessageSettler} needs, whether messages are
+ * received by polling the subscription or pushed by the message pump.
+ */
+public interface IMessageSettlementClient {
+
+    CompletableFuture<Void> completeMessageAsync(IMessage message);
+
+    CompletableFuture<Void> sendToDeadLetterAsync(
+        IMessage message,
+        String reason,
+        String description,
+        Map<String, String> fieldValidationErrors
+    );
+
+    /**
+     * Releases the lock on a received message, so that it can be received again.
+     *
+     * @param propertiesToModify Message properties to update. Can be null
+     */
+    CompletableFuture<Void> abandonMessageAsync(IMessage message, Map<String, Object> propertiesToModify);
+}
@@ -2,13 +2,26 @@ package uk.gov.hmcts.reform.pbis.servicebus;
 
 import com.microsoft.azure.servicebus.IMessage;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
-public interface IServiceBusClient extends AutoCloseable {
+public interface IServiceBusClient extends IMessageSettlementClient, AutoCloseable {
 
     IMessage receiveMessage();
 
+    /**
+     * Receives up to the given number of messages in a single round trip.
+     *
+     * @param maxCount Maximum number of messages to receive
+     * @param wait     For how long to wait for messages when the subscription is empty
+     * @return Received messages. Empty list when there are no messages to receive
+     */
+    List<IMessage> receiveMessages(int maxCount, Duration wait);
+
     void completeMessage(String messageId, UUID messageLockToken);
 
     void sendToDeadLetter(
@@ -17,4 +30,16 @@ public interface IServiceBusClient extends AutoCloseable {
         String description,
         Map<String, String> fieldValidationErrors
     );
+
+    /**
+     * Extends the lock on a received message, so that it's not redelivered while being processed.
+     *
+     * @return Future that completes with the time until which the message is locked
+     */
+    CompletableFuture<Instant> renewMessageLockAsync(IMessage message);
+
+    /**
+     * Tells whether the client can no longer be used, because its receiver has been closed.
+     */
+    boolean isClosed();
 }
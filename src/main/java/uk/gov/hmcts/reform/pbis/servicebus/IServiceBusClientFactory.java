@@ -2,4 +2,12 @@ package uk.gov.hmcts.reform.pbis.servicebus;
 
 public interface IServiceBusClientFactory {
     IServiceBusClient createClient();
+
+    /**
+     * Creates a message pump for handling messages as soon as they arrive. By default, the pump
+     * receives messages with a client created by this factory.
+     */
+    default IMessagePump createMessagePump() {
+        return new PollingMessagePump(createClient());
+    }
 }
@@ -0,0 +1,108 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Holds a message and everything learnt about it while it goes through the processing steps.
+ *
+ * <p>A message holds a single registration, or a batch of them. Each registration is processed
+ * on its own, in a {@link RegistrationEntry}. Once all of them are finished, so is the message.
+ * The result of a single-registration message is the result of its registration, while
+ * the result of a batch combines results of all registrations.</p>
+ *
+ * <p>Once the result is set, the message is finished and no further steps should be run for it.</p>
+ *
+ * <p>Sending can be deferred when the rate limit doesn't allow sending the remaining emails yet.
+ * The send step should then be run again once the delay passes.</p>
+ */
+public class MessageContext {
+
+    public final IMessage message;
+
+    private List<RegistrationEntry> entries = Collections.emptyList();
+    private boolean batch;
+    private MessageProcessingResult result;
+    private Duration sendDelay;
+
+    public MessageContext(IMessage message) {
+        this.message = message;
+    }
+
+    public List<RegistrationEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns registrations that haven't been finished yet, in the order they appear in the message.
+     */
+    public List<RegistrationEntry> getPendingEntries() {
+        return entries.stream().filter(entry -> !entry.isFinished()).collect(toList());
+    }
+
+    public void setEntries(List<RegistrationEntry> entries, boolean batch) {
+        this.entries = entries;
+        this.batch = batch;
+        finishIfEntriesFinished();
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    /**
+     * Finishes the message once all its registrations are finished.
+     */
+    public void finishIfEntriesFinished() {
+        if (isFinished() || entries.isEmpty() || entries.stream().anyMatch(entry -> !entry.isFinished())) {
+            return;
+        }
+
+        if (batch) {
+            finish(
+                MessageProcessingResult.batch(
+                    entries.stream().map(RegistrationEntry::toEntryResult).collect(toList())
+                )
+            );
+        } else {
+            finish(entries.get(0).getResult());
+        }
+    }
+
+    /**
+     * Defers sending of the remaining emails by the given delay.
+     */
+    public void deferSending(Duration delay) {
+        this.sendDelay = delay;
+    }
+
+    public void resumeSending() {
+        this.sendDelay = null;
+    }
+
+    public boolean isSendingDeferred() {
+        return sendDelay != null;
+    }
+
+    public Duration getSendDelay() {
+        return sendDelay;
+    }
+
+    public MessageProcessingResult getResult() {
+        return result;
+    }
+
+    public void finish(MessageProcessingResult result) {
+        this.result = result;
+    }
+
+    public boolean isFinished() {
+        return result != null;
+    }
+}
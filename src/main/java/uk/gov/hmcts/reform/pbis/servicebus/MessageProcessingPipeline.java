@@ -0,0 +1,278 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResultType;
+import uk.gov.hmcts.reform.pbis.servicebus.locks.MessageLockRenewer;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.BoundedStageQueue;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.KeyQueueStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.Stage;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.StageSink;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.StageStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.WeightedFairStageQueue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Processes received messages in stages - decode, validate, render, send and settle.
+ *
+ * <p>Each stage has its own workers and a bounded queue in front of it. A message that gets
+ * finished early (e.g. fails validation) goes straight to the settle stage.</p>
+ *
+ * <p>A batch message goes through the stages as a whole, so its registrations are sent one after another
+ * by the same worker.</p>
+ *
+ * <p>Messages wait for the send stage in a {@link WeightedFairStageQueue}, with a queue per service.
+ * Services take turns in sending, each according to its weight, so a burst of messages
+ * of one service doesn't hold back emails of the others. That queue can hold all messages in flight,
+ * so that messages of other services don't get stuck behind the burst in earlier stages.</p>
+ *
+ * <p>A message whose service's rate limit doesn't allow sending it yet is put back into that queue
+ * with a delay, and its service is skipped until then. Send workers don't wait for rate limits,
+ * so a throttled service doesn't hold them up while other services have emails to send.</p>
+ *
+ * <p>The number of messages in the pipeline is limited, so that the pipeline never holds more
+ * message locks than it can process. Whoever receives messages has to reserve places for them
+ * before receiving, which makes the receiver wait while the pipeline is full.</p>
+ *
+ * <p>A message keeps its place until it's settled, except for a failed message held for its retry delay
+ * (with its lock kept until it's abandoned). That one gives its place back straight away, so that messages
+ * failing during an outage of one service don't keep messages of other services from being received.
+ * The number of such messages is limited by {@link MessageSettler} instead. A processing run doesn't wait
+ * for retry delays to pass.</p>
+ *
+ * <p>Once a message is settled, its lock is no longer renewed.</p>
+ */
+@Component
+@ConditionalOnExpression(
+    "${scheduling.enable:true} && '${serviceBus.consumerMode:polling}' == 'polling'"
+)
+public class MessageProcessingPipeline {
+
+    private final MessageQueueProcessingTracker tracker;
+    private final MessageLockRenewer lockRenewer;
+    private final int maxMessagesInFlight;
+    // held from reservation until the message is settled or starts waiting for its retry delay
+    private final Semaphore inFlightPermits;
+    private final WeightedFairStageQueue<PipelineItem> sendQueue;
+
+    private final Stage<PipelineItem> decodeStage;
+    private final Stage<PipelineItem> validateStage;
+    private final Stage<PipelineItem> renderStage;
+    private final Stage<PipelineItem> sendStage;
+    private final Stage<PipelineItem> settleStage;
+
+    @Autowired
+    public MessageProcessingPipeline(
+        MessageProcessor messageProcessor,
+        MessageQueueProcessingTracker tracker,
+        MessageLockRenewer lockRenewer,
+        ServiceWeights serviceWeights,
+        @Value("${serviceBus.pipeline.maxMessagesInFlight}") int maxMessagesInFlight,
+        @Value("${serviceBus.pipeline.queueCapacity}") int queueCapacity,
+        @Value("${serviceBus.pipeline.decodeThreads}") int decodeThreads,
+        @Value("${serviceBus.pipeline.validateThreads}") int validateThreads,
+        @Value("${serviceBus.pipeline.renderThreads}") int renderThreads,
+        @Value("${serviceBus.pipeline.sendThreads}") int sendThreads,
+        @Value("${serviceBus.pipeline.settleThreads}") int settleThreads
+    ) {
+        this.tracker = tracker;
+        this.lockRenewer = lockRenewer;
+        this.maxMessagesInFlight = maxMessagesInFlight;
+        this.inFlightPermits = new Semaphore(maxMessagesInFlight);
+
+        this.decodeStage = createStage("decode", decodeThreads, queueCapacity, messageProcessor::decode);
+        this.validateStage = createStage("validate", validateThreads, queueCapacity, messageProcessor::validate);
+        this.renderStage = createStage("render", renderThreads, queueCapacity, messageProcessor::render);
+
+        this.sendQueue = new WeightedFairStageQueue<>(
+            maxMessagesInFlight,
+            MessageProcessingPipeline::getService,
+            serviceWeights::getWeight
+        );
+
+        this.sendStage = new Stage<>(
+            "send",
+            sendThreads,
+            sendQueue,
+            item -> messageProcessor.send(item.context)
+        );
+
+        this.settleStage = new Stage<>(
+            "settle",
+            settleThreads,
+            new BoundedStageQueue<>(queueCapacity),
+            this::settle
+        );
+    }
+
+    @PostConstruct
+    public void start() {
+        decodeStage.start(forwardTo(validateStage));
+        validateStage.start(forwardTo(renderStage));
+        renderStage.start(forwardTo(sendStage));
+        sendStage.start(this::afterSending);
+        // places are given back once settlement completes, see settle()
+        settleStage.start(item -> { });
+    }
+
+    @PreDestroy
+    public void stop() {
+        getStages().forEach(Stage::stop);
+    }
+
+    /**
+     * Reserves places for the given number of messages, waiting until they're available.
+     */
+    public void reserve(int messageCount) throws InterruptedException {
+        inFlightPermits.acquire(messageCount);
+    }
+
+    /**
+     * Gives back reserved places that haven't been used by submitted messages.
+     */
+    public void release(int messageCount) {
+        inFlightPermits.release(messageCount);
+    }
+
+    /**
+     * Passes the message to the pipeline, using one of the places reserved before.
+     *
+     * @param settler Settler to use once the message is processed
+     */
+    public void submit(IMessage message, MessageSettler settler) throws InterruptedException {
+        decodeStage.put(new PipelineItem(new MessageContext(message), settler));
+    }
+
+    /**
+     * Waits until all submitted messages have been settled or are waiting for their retry delay.
+     */
+    public void awaitIdle() throws InterruptedException {
+        inFlightPermits.acquire(maxMessagesInFlight);
+        inFlightPermits.release(maxMessagesInFlight);
+    }
+
+    public int getMaxMessagesInFlight() {
+        return maxMessagesInFlight;
+    }
+
+    /**
+     * Returns statistics of each stage collected since the previous call.
+     */
+    public List<StageStatistics.Snapshot> takeStatisticsSnapshots() {
+        return getStages()
+            .stream()
+            .map(Stage::takeStatisticsSnapshot)
+            .collect(toList());
+    }
+
+    /**
+     * Returns statistics of messages of each service waiting to be sent, collected since the previous call.
+     */
+    public List<KeyQueueStatistics> takeServiceQueueStatisticsSnapshots() {
+        return sendQueue.takeStatisticsSnapshot();
+    }
+
+    private List<Stage<PipelineItem>> getStages() {
+        return asList(decodeStage, validateStage, renderStage, sendStage, settleStage);
+    }
+
+    private StageSink<PipelineItem> forwardTo(Stage<PipelineItem> nextStage) {
+        return item -> {
+            if (item.context.isFinished()) {
+                settleStage.put(item);
+            } else {
+                nextStage.put(item);
+            }
+        };
+    }
+
+    private void afterSending(PipelineItem item) throws InterruptedException {
+        if (item.context.isSendingDeferred()) {
+            sendQueue.putBack(item, item.context.getSendDelay());
+        } else {
+            settleStage.put(item);
+        }
+    }
+
+    private void settle(PipelineItem item) {
+        IMessage message = item.context.message;
+        MessageProcessingResult processingResult;
+        CompletableFuture<Void> settlement;
+
+        try {
+            processingResult = item.context.getResult();
+            settlement = item.settler.settle(message, processingResult);
+        } catch (Exception e) {
+            lockRenewer.unregister(message);
+            inFlightPermits.release();
+            tracker.trackProcessingError(e);
+            return;
+        }
+
+        boolean retried = processingResult.resultType == MessageProcessingResultType.ERROR;
+
+        if (retried) {
+            // the settlement completes once the retry delay has passed
+            inFlightPermits.release();
+        }
+
+        settlement.whenComplete((result, error) -> {
+            lockRenewer.unregister(message);
+
+            if (!retried) {
+                inFlightPermits.release();
+            }
+        });
+
+        try {
+            tracker.trackMessageProcessingResult(processingResult, message);
+        } catch (Exception e) {
+            tracker.trackProcessingError(e);
+        }
+    }
+
+    private static String getService(PipelineItem item) {
+        // messages without a registration are finished before they're sent, while a batch
+        // takes the turns of the service of its first registration to be sent
+        List<RegistrationEntry> entries = item.context.getPendingEntries();
+        String service = entries.isEmpty() ? null : entries.get(0).registration.service;
+        return service != null ? service : "";
+    }
+
+    private static Stage<PipelineItem> createStage(
+        String name,
+        int concurrency,
+        int queueCapacity,
+        Consumer<MessageContext> step
+    ) {
+        return new Stage<>(
+            name,
+            concurrency,
+            new BoundedStageQueue<>(queueCapacity),
+            item -> step.accept(item.context)
+        );
+    }
+
+    private static class PipelineItem {
+        final MessageContext context;
+        final MessageSettler settler;
+
+        PipelineItem(MessageContext context, MessageSettler settler) {
+            this.context = context;
+            this.settler = settler;
+        }
+    }
+}
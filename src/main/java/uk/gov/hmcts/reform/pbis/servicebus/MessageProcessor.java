@@ -0,0 +1,264 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.pbis.EmailInProgressException;
+import uk.gov.hmcts.reform.pbis.EmailRejectedException;
+import uk.gov.hmcts.reform.pbis.EmailService;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+import uk.gov.hmcts.reform.pbis.NotifyRateLimitedException;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCache;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRouteTable;
+import uk.gov.hmcts.reform.pbis.servicebus.validation.RegistrationValidator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.util.Arrays.asList;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.alreadySent;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.emailRejected;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.invalidMessageData;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.invalidMessageFormat;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.processingError;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.retriesExhausted;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.success;
+import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.unknownService;
+
+/**
+ * Processes a single message from the subscription - reads the registration it contains
+ * (or each registration of a batch), validates it and sends the welcome email.
+ *
+ * <p>Each step can also be run on its own, so that steps can be run by separate workers.
+ * A step either fills in the context for the next one or finishes it with a result.
+ * Steps don't throw exceptions.</p>
+ *
+ * <p>A message that fails on its final attempt allowed by {@link MessageRetryPolicy} is finished
+ * as unprocessable, so that it's sent to dead letter queue instead of being retried. So is an email
+ * rejected by Notify for a reason that retrying won't fix (e.g. invalid email address). A message that
+ * fails because calls to Notify are suspended is always retried, as it wasn't attempted.</p>
+ *
+ * <p>Registrations whose emails {@link SentEmailCache} remembers as sent (e.g. because the message
+ * is redelivered after its lock expired) are finished as already sent, without sending them again.
+ * A registration whose email is being sent by another delivery of the message fails, so that it's retried.
+ * Like a failure caused by suspended calls to Notify, that doesn't count as an attempt.</p>
+ *
+ * <p>When the rate limit of a service doesn't allow sending an email yet, sending of the message is deferred
+ * (see {@link MessageContext#deferSending}), instead of waiting for the rate limit in the send step.</p>
+ */
+@Component
+public class MessageProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageProcessor.class);
+
+    private final RegistrationDecoder decoder;
+    private final EmailService emailService;
+    private final ServiceRouteTable routeTable;
+    private final RegistrationValidator validator;
+    private final MessageRetryPolicy retryPolicy;
+    private final SentEmailCache sentEmailCache;
+
+    private final List<Consumer<MessageContext>> steps =
+        asList(this::decode, this::validate, this::render, this::send);
+
+    @Autowired
+    public MessageProcessor(
+        RegistrationDecoder decoder,
+        EmailService emailService,
+        ServiceRouteTable routeTable,
+        RegistrationValidator validator,
+        MessageRetryPolicy retryPolicy,
+        SentEmailCache sentEmailCache
+    ) {
+        this.decoder = decoder;
+        this.emailService = emailService;
+        this.routeTable = routeTable;
+        this.validator = validator;
+        this.retryPolicy = retryPolicy;
+        this.sentEmailCache = sentEmailCache;
+    }
+
+    public MessageProcessingResult process(IMessage message) {
+        MessageContext context = new MessageContext(message);
+
+        for (Consumer<MessageContext> step : steps) {
+            if (context.isFinished()) {
+                break;
+            }
+
+            step.accept(context);
+        }
+
+        // there's nothing else to do while waiting for the rate limit here
+        while (context.isSendingDeferred()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(context.getSendDelay().toNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                context.resumeSending();
+                forEachPendingEntry(context, entry -> entry.finish(processingError(e)));
+                break;
+            }
+
+            send(context);
+        }
+
+        return context.getResult();
+    }
+
+    /**
+     * Reads the registrations from message body. Registrations of a batch sent on earlier deliveries
+     * of the message are finished straight away.
+     */
+    public void decode(MessageContext context) {
+        try {
+            RegistrationDecodingResult result =
+                decoder.decode(context.message.getContentType(), context.message.getBody());
+
+            if (!result.isDecoded()) {
+                context.finish(invalidMessageFormat());
+                return;
+            }
+
+            Set<Integer> sentBefore = result.batch
+                ? SentRegistrations.read(context.message)
+                : Collections.emptySet();
+
+            List<RegistrationEntry> entries = new ArrayList<>(result.registrations.size());
+
+            for (int i = 0; i < result.registrations.size(); i++) {
+                entries.add(new RegistrationEntry(i, result.registrations.get(i), sentBefore.contains(i)));
+            }
+
+            context.setEntries(entries, result.batch);
+        } catch (Exception e) {
+            context.finish(failure(context, e));
+        }
+    }
+
+    /**
+     * Checks if each registration contains valid data.
+     */
+    public void validate(MessageContext context) {
+        forEachPendingEntry(context, entry -> {
+            Map<String, String> fieldValidationErrors = validator.validate(entry.registration);
+
+            if (!fieldValidationErrors.isEmpty()) {
+                entry.finish(invalidMessageData(fieldValidationErrors));
+            }
+        });
+    }
+
+    /**
+     * Finds the route of each registration's service and creates the welcome email for the registration.
+     */
+    public void render(MessageContext context) {
+        forEachPendingEntry(context, entry -> {
+            ServiceRoute route = routeTable.getRoute(entry.registration.service);
+
+            if (route == null) {
+                entry.finish(unknownService());
+                return;
+            }
+
+            entry.setRoute(route);
+            entry.setEmailToSend(emailService.createWelcomeEmail(route, entry.registration));
+        });
+    }
+
+    /**
+     * Sends the welcome email of each registration. This is the last step, so it finishes the context,
+     * unless sending gets deferred because of the rate limit - then the step has to be run again
+     * once the delay passes.
+     *
+     * <p>Registrations of a batch are sent one after another. A failure of one of them doesn't stop
+     * the others from being sent.</p>
+     */
+    public void send(MessageContext context) {
+        context.resumeSending();
+
+        forEachPendingEntry(context, entry -> {
+            SentEmailCache.Reservation reservation = sentEmailCache.reserve(entry.registration);
+
+            if (reservation == SentEmailCache.Reservation.ALREADY_SENT) {
+                logger.info(
+                    "Welcome email has already been sent, not sending it again. Reference ID: {}",
+                    entry.registration.referenceId
+                );
+
+                entry.finish(alreadySent());
+                return;
+            }
+
+            if (reservation == SentEmailCache.Reservation.IN_PROGRESS) {
+                // the other delivery may still fail to send it, so this one is retried
+                throw new EmailInProgressException(
+                    String.format(
+                        "Welcome email is being sent by another delivery of the message. Reference ID: %s",
+                        entry.registration.referenceId
+                    )
+                );
+            }
+
+            boolean sent = false;
+
+            try {
+                emailService.sendEmail(entry.getRoute(), entry.registration, entry.getEmailToSend());
+                sentEmailCache.markSent(entry.registration);
+                sent = true;
+                entry.finish(success());
+            } catch (EmailRejectedException e) {
+                entry.finish(emailRejected(e));
+            } catch (NotifyRateLimitedException e) {
+                // the remaining emails are sent once the rate limit allows it
+                context.deferSending(e.getWaitTime());
+            } finally {
+                if (!sent) {
+                    sentEmailCache.release(entry.registration);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the step for each registration that isn't finished yet. A registration the step fails for
+     * is finished with the failure. The message is finished once all its registrations are.
+     * Stops once sending gets deferred.
+     */
+    private void forEachPendingEntry(MessageContext context, Consumer<RegistrationEntry> step) {
+        for (RegistrationEntry entry : context.getPendingEntries()) {
+            if (context.isSendingDeferred()) {
+                break;
+            }
+
+            try {
+                step.accept(entry);
+            } catch (Exception e) {
+                entry.finish(failure(context, e));
+            }
+        }
+
+        context.finishIfEntriesFinished();
+    }
+
+    private MessageProcessingResult failure(MessageContext context, Exception cause) {
+        MessageProcessingResult error = processingError(cause);
+
+        // e.g. calls to Notify were suspended, so this delivery doesn't count as an attempt
+        if (!error.isAttempted()) {
+            return error;
+        }
+
+        return retryPolicy.isFinalAttempt(context.message)
+            ? retriesExhausted(retryPolicy.getMaxAttempts(), cause)
+            : error;
+    }
+}
@@ -0,0 +1,114 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.IMessageHandler;
+import com.microsoft.azure.servicebus.ISubscriptionClient;
+import com.microsoft.azure.servicebus.MessageHandlerOptions;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClient.failedFuture;
+import static uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClient.getPropertiesToChange;
+import static uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClient.withServiceBusException;
+
+/**
+ * Message pump of a Service Bus subscription client, which pushes messages to the registered handler.
+ *
+ * <p>Messages are pushed to the handler rather than received, and their locks are renewed by
+ * the subscription client while the handler processes them.</p>
+ */
+public class MessagePumpServiceBusClient implements IMessagePump {
+
+    private final ISubscriptionClient subscriptionClient;
+
+    public MessagePumpServiceBusClient(ISubscriptionClient subscriptionClient) {
+        this.subscriptionClient = subscriptionClient;
+    }
+
+    @Override
+    public void registerMessageHandler(
+        IMessageHandler handler,
+        MessageHandlerOptions options,
+        ExecutorService executorService
+    ) {
+        try {
+            subscriptionClient.registerMessageHandler(handler, options, executorService);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusException("Interrupted while registering message handler", e);
+        } catch (Exception e) {
+            throw new ServiceBusException("Failed to register message handler", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> completeMessageAsync(IMessage message) {
+        String errorMessage = String.format(
+            "Failed to mark message as completed. Message ID: %s",
+            message.getMessageId()
+        );
+
+        try {
+            return withServiceBusException(
+                subscriptionClient.completeAsync(message.getLockToken()),
+                errorMessage
+            );
+        } catch (Exception e) {
+            return failedFuture(new ServiceBusException(errorMessage, e));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendToDeadLetterAsync(
+        IMessage message,
+        String reason,
+        String description,
+        Map<String, String> fieldValidationErrors
+    ) {
+        String errorMessage = String.format(
+            "Failed to send message to dead letter queue. Message ID: %s",
+            message.getMessageId()
+        );
+
+        try {
+            return withServiceBusException(
+                subscriptionClient.deadLetterAsync(
+                    message.getLockToken(),
+                    reason,
+                    description,
+                    getPropertiesToChange(fieldValidationErrors)
+                ),
+                errorMessage
+            );
+        } catch (Exception e) {
+            return failedFuture(new ServiceBusException(errorMessage, e));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> abandonMessageAsync(
+        IMessage message,
+        Map<String, Object> propertiesToModify
+    ) {
+        String errorMessage = String.format(
+            "Failed to abandon message. Message ID: %s",
+            message.getMessageId()
+        );
+
+        try {
+            return withServiceBusException(
+                subscriptionClient.abandonAsync(message.getLockToken(), propertiesToModify),
+                errorMessage
+            );
+        } catch (Exception e) {
+            return failedFuture(new ServiceBusException(errorMessage, e));
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        subscriptionClient.close();
+    }
+}
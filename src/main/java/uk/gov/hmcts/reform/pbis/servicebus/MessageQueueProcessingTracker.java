@@ -1,24 +1,74 @@
 package uk.gov.hmcts.reform.pbis.servicebus;
 
 import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
 import com.microsoft.azure.servicebus.IMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import uk.gov.hmcts.reform.logging.appinsights.AbstractAppInsights;
+import uk.gov.hmcts.reform.pbis.EmailSendingException;
 import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
 import uk.gov.hmcts.reform.pbis.MessageProcessingResultType;
+import uk.gov.hmcts.reform.pbis.notify.NotifyError;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCacheStatistics;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.RateLimiterStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.locks.LockRenewalStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.KeyQueueStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.StageStatistics;
 
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.EMAIL_ALREADY_SENT;
 import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.EMAIL_SENT;
+import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.MESSAGE_LOCK_EXPIRED;
+import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.MESSAGE_LOCK_RENEWAL_FAILED;
 import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.MESSAGE_PROCESSING_ERROR;
 import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.MESSAGE_PROCESSING_RUN_COMPLETED;
 import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.MESSAGE_PROCESSING_RUN_STARTED;
 import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.MESSAGE_REJECTED;
+import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.MESSAGE_SETTLEMENT_FAILED;
+import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.NOTIFY_PERMANENT_ERROR;
+import static uk.gov.hmcts.reform.pbis.telemetry.EventNames.NOTIFY_TRANSIENT_ERROR;
 import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.FAILING_MESSAGES_PER_FUN;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.HTTP_STATUS_PROPERTY;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.LOCKS_EXPIRED;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.LOCKS_RENEWED;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.LOCK_RENEWALS_FAILED;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.LOCK_RENEWAL_NEAR_MISSES;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.MESSAGE_ARRIVAL_RATE;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.NOTIFY_ERROR_TYPE_PROPERTY;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.NOTIFY_RATE_LIMIT_MAX_WAIT_TIME;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.NOTIFY_RATE_LIMIT_RESPONSES;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.NOTIFY_RATE_LIMIT_WAIT_TIME;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.NOTIFY_SEND_RATE;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.PERMANENT_NOTIFY_ERRORS_PER_RUN;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.POLLING_INTERVAL;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SENT_EMAIL_CACHE_HITS;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SENT_EMAIL_CACHE_MISSES;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SENT_EMAIL_CACHE_SIZE;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SERVICES_PROPERTY;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SERVICE_PROPERTY;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SERVICE_QUEUE_DEPTH;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SERVICE_QUEUE_MAX_WAIT_TIME;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.SERVICE_QUEUE_WAIT_TIME;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.STAGE_PROPERTY;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.STAGE_QUEUE_DEPTH;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.STAGE_SERVICE_TIME;
 import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.TOTAL_MESSAGES_PER_RUN;
+import static uk.gov.hmcts.reform.pbis.telemetry.MetricNames.TRANSIENT_NOTIFY_ERRORS_PER_RUN;
 
 /**
  * Logs events and sends telemetry data related with message queue processing.
+ *
+ * <p>Results of messages processed concurrently can be tracked from multiple threads.
+ * Each registration of a batch message is tracked like a message of its own, while run totals
+ * count messages.</p>
  */
 @Component
 public class MessageQueueProcessingTracker extends AbstractAppInsights {
@@ -26,8 +76,10 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
     private static final Logger logger =
         LoggerFactory.getLogger(MessageQueueProcessingTracker.class);
 
-    private int totalMessageCount = 0;
-    private int failingMessageCount = 0;
+    private final AtomicInteger totalMessageCount = new AtomicInteger();
+    private final AtomicInteger failingMessageCount = new AtomicInteger();
+    private final AtomicInteger permanentNotifyErrorCount = new AtomicInteger();
+    private final AtomicInteger transientNotifyErrorCount = new AtomicInteger();
 
     public MessageQueueProcessingTracker(TelemetryClient telemetryClient) {
         super(telemetryClient);
@@ -36,18 +88,25 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
     public void trackProcessingStarted() {
         logger.info("Processing messages from subscription queue.");
         telemetry.trackEvent(MESSAGE_PROCESSING_RUN_STARTED);
-        totalMessageCount = 0;
-        failingMessageCount = 0;
+        totalMessageCount.set(0);
+        failingMessageCount.set(0);
+        permanentNotifyErrorCount.set(0);
+        transientNotifyErrorCount.set(0);
     }
 
     public void trackProcessingCompleted() {
-        sendTelemetryDataForCompletedRun(totalMessageCount, failingMessageCount);
+        int totalCount = totalMessageCount.get();
+        int failingCount = failingMessageCount.get();
+
+        sendTelemetryDataForCompletedRun(totalCount, failingCount);
+        telemetry.trackMetric(PERMANENT_NOTIFY_ERRORS_PER_RUN, permanentNotifyErrorCount.get());
+        telemetry.trackMetric(TRANSIENT_NOTIFY_ERRORS_PER_RUN, transientNotifyErrorCount.get());
 
         logger.info(
             String.format(
                 "No more messages to process. Total: %s, failed: %s.",
-                totalMessageCount,
-                failingMessageCount
+                totalCount,
+                failingCount
             )
         );
     }
@@ -59,6 +118,13 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
         );
     }
 
+    public void trackMessagePumpError(Throwable error, String phase) {
+        logger.error(
+            String.format("An error occurred in message pump. Phase: %s.", phase),
+            error
+        );
+    }
+
     public void trackReceivedMessage(String id) {
         logger.info(String.format("Received message with ID %s.", id));
     }
@@ -67,14 +133,239 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
         MessageProcessingResult processingResult,
         IMessage message
     ) {
-        logProcessingResult(processingResult, message);
-        sendTelemetryDataForMessage(processingResult);
+        if (processingResult.entryResults == null) {
+            logProcessingResult(processingResult, message);
+            sendTelemetryDataForMessage(processingResult);
+            trackNotifyError(processingResult);
+        } else {
+            trackEntryResults(processingResult.entryResults, message);
+        }
 
         if (processingResult.resultType != MessageProcessingResultType.SUCCESS) {
-            failingMessageCount++;
+            failingMessageCount.incrementAndGet();
         }
 
-        totalMessageCount++;
+        totalMessageCount.incrementAndGet();
+    }
+
+    public void trackStageStatistics(List<StageStatistics.Snapshot> stageStatistics) {
+        for (StageStatistics.Snapshot stage : stageStatistics) {
+            logger.info(
+                String.format(
+                    "Stage %s processed %s messages. Average service time: %.1f ms, max queue depth: %s.",
+                    stage.stageName,
+                    stage.processedCount,
+                    stage.averageServiceTimeMs,
+                    stage.maxQueueDepth
+                )
+            );
+
+            telemetry.trackMetric(createStageMetric(STAGE_QUEUE_DEPTH, stage.maxQueueDepth, stage));
+            telemetry.trackMetric(createStageMetric(STAGE_SERVICE_TIME, stage.averageServiceTimeMs, stage));
+        }
+    }
+
+    public void trackServiceQueues(List<KeyQueueStatistics> serviceQueueStatistics) {
+        for (KeyQueueStatistics statistics : serviceQueueStatistics) {
+            logger.info(
+                String.format(
+                    "Service %s (weight %s) had %s messages sent. Average wait: %.1f ms, max wait: %.1f ms, "
+                        + "max queue depth: %s.",
+                    statistics.key,
+                    statistics.weight,
+                    statistics.takenCount,
+                    statistics.averageWaitTimeMs,
+                    statistics.maxWaitTimeMs,
+                    statistics.maxQueueDepth
+                )
+            );
+
+            telemetry.trackMetric(createServiceQueueMetric(SERVICE_QUEUE_DEPTH, statistics.maxQueueDepth, statistics));
+            telemetry.trackMetric(
+                createServiceQueueMetric(SERVICE_QUEUE_WAIT_TIME, statistics.averageWaitTimeMs, statistics)
+            );
+            telemetry.trackMetric(
+                createServiceQueueMetric(SERVICE_QUEUE_MAX_WAIT_TIME, statistics.maxWaitTimeMs, statistics)
+            );
+        }
+    }
+
+    public void trackPollingInterval(Duration pollingInterval, double arrivalRatePerSecond) {
+        logger.info(
+            String.format(
+                "Next poll in %s ms. Estimated arrival rate: %.2f messages per second.",
+                pollingInterval.toMillis(),
+                arrivalRatePerSecond
+            )
+        );
+
+        telemetry.trackMetric(POLLING_INTERVAL, pollingInterval.toMillis());
+        telemetry.trackMetric(MESSAGE_ARRIVAL_RATE, arrivalRatePerSecond);
+    }
+
+    public void trackSettlementError(IMessage message, Throwable error) {
+        logger.error(
+            String.format(
+                "Failed to settle message with ID %s on attempt %s.",
+                message.getMessageId(),
+                message.getDeliveryCount() + 1
+            ),
+            error
+        );
+
+        telemetry.trackEvent(MESSAGE_SETTLEMENT_FAILED);
+    }
+
+    public void trackLockRenewals(LockRenewalStatistics statistics) {
+        logger.info(
+            String.format(
+                "Message locks renewed: %s, failed renewals: %s, near misses: %s, expired: %s.",
+                statistics.renewedCount,
+                statistics.failedCount,
+                statistics.nearMissCount,
+                statistics.expiredCount
+            )
+        );
+
+        telemetry.trackMetric(LOCKS_RENEWED, statistics.renewedCount);
+        telemetry.trackMetric(LOCK_RENEWALS_FAILED, statistics.failedCount);
+        telemetry.trackMetric(LOCK_RENEWAL_NEAR_MISSES, statistics.nearMissCount);
+        telemetry.trackMetric(LOCKS_EXPIRED, statistics.expiredCount);
+    }
+
+    public void trackRateLimiting(List<RateLimiterStatistics> rateLimiterStatistics) {
+        for (RateLimiterStatistics statistics : rateLimiterStatistics) {
+            logger.info(
+                String.format(
+                    "Notify requests of services %s: %s, current rate limit: %.2f per second, "
+                        + "average wait: %.1f ms, max wait: %.1f ms, rate limit responses: %s.",
+                    statistics.services,
+                    statistics.acquiredCount,
+                    statistics.currentRate,
+                    statistics.averageWaitTimeMs,
+                    statistics.maxWaitTimeMs,
+                    statistics.rateLimitedCount
+                )
+            );
+
+            telemetry.trackMetric(createRateLimitMetric(NOTIFY_SEND_RATE, statistics.currentRate, statistics));
+            telemetry.trackMetric(
+                createRateLimitMetric(NOTIFY_RATE_LIMIT_WAIT_TIME, statistics.averageWaitTimeMs, statistics)
+            );
+            telemetry.trackMetric(
+                createRateLimitMetric(NOTIFY_RATE_LIMIT_MAX_WAIT_TIME, statistics.maxWaitTimeMs, statistics)
+            );
+            telemetry.trackMetric(
+                createRateLimitMetric(NOTIFY_RATE_LIMIT_RESPONSES, statistics.rateLimitedCount, statistics)
+            );
+        }
+    }
+
+    public void trackSentEmailCache(SentEmailCacheStatistics statistics) {
+        logger.info(
+            String.format(
+                "Sent email cache hits: %s, misses: %s, size: %s.",
+                statistics.hitCount,
+                statistics.missCount,
+                statistics.size
+            )
+        );
+
+        telemetry.trackMetric(SENT_EMAIL_CACHE_HITS, statistics.hitCount);
+        telemetry.trackMetric(SENT_EMAIL_CACHE_MISSES, statistics.missCount);
+        telemetry.trackMetric(SENT_EMAIL_CACHE_SIZE, statistics.size);
+    }
+
+    public void trackMessageLockRenewalError(IMessage message, Throwable error) {
+        logger.warn(
+            String.format("Failed to renew lock of message with ID %s.", message.getMessageId()),
+            error
+        );
+
+        telemetry.trackEvent(MESSAGE_LOCK_RENEWAL_FAILED);
+    }
+
+    public void trackMessageLockExpired(IMessage message) {
+        logger.warn(
+            String.format(
+                "Lock of message with ID %s expired before the message was settled.",
+                message.getMessageId()
+            )
+        );
+
+        telemetry.trackEvent(MESSAGE_LOCK_EXPIRED);
+    }
+
+    /**
+     * Tracks the outcome of each registration of a batch message, except for the ones sent before.
+     */
+    private void trackEntryResults(List<MessageProcessingResult.EntryResult> entryResults, IMessage message) {
+        Map<MessageProcessingResultType, Integer> counts = new EnumMap<>(MessageProcessingResultType.class);
+        int sentBeforeCount = 0;
+
+        for (MessageProcessingResult.EntryResult entry : entryResults) {
+            if (entry.sentBefore) {
+                sentBeforeCount++;
+                continue;
+            }
+
+            counts.merge(entry.result.resultType, 1, Integer::sum);
+            logEntryResult(entry, message);
+            sendTelemetryDataForMessage(entry.result);
+            trackNotifyError(entry.result);
+        }
+
+        logger.info(
+            String.format(
+                "Processed batch message with ID %s on attempt %s. Registrations: %s, sent: %s, "
+                    + "sent before: %s, rejected: %s, failed: %s.",
+                message.getMessageId(),
+                message.getDeliveryCount() + 1,
+                entryResults.size(),
+                counts.getOrDefault(MessageProcessingResultType.SUCCESS, 0),
+                sentBeforeCount,
+                counts.getOrDefault(MessageProcessingResultType.UNPROCESSABLE_MESSAGE, 0),
+                counts.getOrDefault(MessageProcessingResultType.ERROR, 0)
+            )
+        );
+    }
+
+    private void logEntryResult(MessageProcessingResult.EntryResult entry, IMessage message) {
+        String registration = String.format(
+            "registration %s (reference ID %s) of message with ID %s",
+            entry.index,
+            entry.referenceId,
+            message.getMessageId()
+        );
+
+        MessageProcessingResult.ProcessingError error = entry.result.errorDetails;
+
+        switch (entry.result.resultType) {
+            case SUCCESS:
+                logger.info(String.format(
+                    entry.result.alreadySent ? "Email already sent for %s." : "Sent email for %s.",
+                    registration
+                ));
+                break;
+            case ERROR:
+                logger.error(
+                    String.format("Failed to process %s on attempt %s.", registration, message.getDeliveryCount() + 1),
+                    error.exception
+                );
+                break;
+            case UNPROCESSABLE_MESSAGE:
+                logger.warn(
+                    String.format(
+                        "Rejected %s. Reason: %s - %s%s",
+                        registration,
+                        error.reason,
+                        error.description,
+                        error.fieldValidationErrors != null ? " (" + error.fieldValidationErrors + ")" : ""
+                    )
+                );
+                break;
+            default:
+        }
     }
 
     private void logProcessingResult(
@@ -83,7 +374,7 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
     ) {
         switch (processingResult.resultType) {
             case SUCCESS:
-                logMessageProcessingSuccess(message);
+                logMessageProcessingSuccess(processingResult, message);
                 break;
             case ERROR:
                 logMessageProcessingFailure(processingResult.errorDetails, message);
@@ -98,7 +389,7 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
     private void sendTelemetryDataForMessage(MessageProcessingResult processingResult) {
         switch (processingResult.resultType) {
             case SUCCESS:
-                telemetry.trackEvent(EMAIL_SENT);
+                telemetry.trackEvent(processingResult.alreadySent ? EMAIL_ALREADY_SENT : EMAIL_SENT);
                 break;
             case ERROR:
                 telemetry.trackEvent(MESSAGE_PROCESSING_ERROR);
@@ -111,17 +402,48 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
         }
     }
 
+    private void trackNotifyError(MessageProcessingResult processingResult) {
+        if (processingResult.errorDetails == null
+            || !(processingResult.errorDetails.exception instanceof EmailSendingException)) {
+            return;
+        }
+
+        NotifyError notifyError =
+            ((EmailSendingException) processingResult.errorDetails.exception).getNotifyError();
+
+        if (notifyError == null) {
+            return;
+        }
+
+        if (notifyError.isPermanent()) {
+            permanentNotifyErrorCount.incrementAndGet();
+        } else {
+            transientNotifyErrorCount.incrementAndGet();
+        }
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(NOTIFY_ERROR_TYPE_PROPERTY, notifyError.type.name());
+        properties.put(HTTP_STATUS_PROPERTY, String.valueOf(notifyError.httpStatus));
+
+        telemetry.trackEvent(
+            notifyError.isPermanent() ? NOTIFY_PERMANENT_ERROR : NOTIFY_TRANSIENT_ERROR,
+            properties,
+            null
+        );
+    }
+
     private void sendTelemetryDataForCompletedRun(int messageCount, int failureCount) {
         telemetry.trackEvent(MESSAGE_PROCESSING_RUN_COMPLETED);
         telemetry.trackMetric(TOTAL_MESSAGES_PER_RUN, messageCount);
         telemetry.trackMetric(FAILING_MESSAGES_PER_FUN, failureCount);
     }
 
-    private void logMessageProcessingSuccess(IMessage message) {
+    private void logMessageProcessingSuccess(MessageProcessingResult processingResult, IMessage message) {
         logger.info(String.format(
-            "Completed processing message with ID %s on attempt %s.",
+            "Completed processing message with ID %s on attempt %s%s.",
             message.getMessageId(),
-            message.getDeliveryCount() + 1)
+            message.getDeliveryCount() + 1,
+            processingResult.alreadySent ? " (email already sent)" : "")
         );
     }
 
@@ -157,4 +479,34 @@ public class MessageQueueProcessingTracker extends AbstractAppInsights {
             processingError.exception
         );
     }
+
+    private MetricTelemetry createStageMetric(
+        String metricName,
+        double value,
+        StageStatistics.Snapshot stage
+    ) {
+        MetricTelemetry metric = new MetricTelemetry(metricName, value);
+        metric.getProperties().put(STAGE_PROPERTY, stage.stageName);
+        return metric;
+    }
+
+    private MetricTelemetry createRateLimitMetric(
+        String metricName,
+        double value,
+        RateLimiterStatistics statistics
+    ) {
+        MetricTelemetry metric = new MetricTelemetry(metricName, value);
+        metric.getProperties().put(SERVICES_PROPERTY, statistics.services);
+        return metric;
+    }
+
+    private MetricTelemetry createServiceQueueMetric(
+        String metricName,
+        double value,
+        KeyQueueStatistics statistics
+    ) {
+        MetricTelemetry metric = new MetricTelemetry(metricName, value);
+        metric.getProperties().put(SERVICE_PROPERTY, statistics.key);
+        return metric;
+    }
 }
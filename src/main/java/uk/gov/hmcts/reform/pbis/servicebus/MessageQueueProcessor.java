@@ -1,155 +1,220 @@
 package uk.gov.hmcts.reform.pbis.servicebus;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.azure.servicebus.IMessage;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import uk.gov.hmcts.reform.pbis.EmailService;
-import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
-import uk.gov.hmcts.reform.pbis.ServiceNotFoundException;
-
-import java.io.IOException;
-import java.util.Optional;
-import java.util.Set;
-import javax.validation.ConstraintViolation;
-import javax.validation.Validator;
-
-import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.invalidMessageData;
-import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.invalidMessageFormat;
-import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.processingError;
-import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.success;
-import static uk.gov.hmcts.reform.pbis.MessageProcessingResult.unknownService;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCache;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+import uk.gov.hmcts.reform.pbis.servicebus.locks.MessageLockRenewer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+
+import static java.util.Collections.nCopies;
 
 /**
  * This service processes Azure Service Bus subscription queue.
  *
- * <p>It reads the whole queue and sends a welcome email based on the content of each message.</p>
+ * <p>It reads the whole queue, batch by batch, and passes the messages to the processing
+ * pipeline, which sends a welcome email based on the content of each message. Batches are
+ * only received when there's room for them in the pipeline, so that message locks don't expire
+ * while messages wait to be processed. Locks of messages in the pipeline are renewed by
+ * {@link MessageLockRenewer} until they're settled, in case processing takes longer than that.
+ * When sending is held back by {@link NotifyRateLimiter}, the pipeline fills up and receiving
+ * pauses until there's room again.</p>
+ *
+ * <p>Failed messages held for their retry delay don't take places in the pipeline. They're limited
+ * separately, across runs, so that an outage of one service can't have too many messages held.</p>
+ *
+ * <p>Runs are scheduled by {@link AdaptivePollingScheduler}.</p>
  */
 @Service
-@ConditionalOnProperty(value = "scheduling.enable", havingValue = "true", matchIfMissing = true)
+@ConditionalOnExpression(
+    "${scheduling.enable:true} && '${serviceBus.consumerMode:polling}' == 'polling'"
+)
 public class MessageQueueProcessor {
 
     private final IServiceBusClientFactory clientFactory;
-    private final EmailService emailService;
-    private final Validator validator;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MessageProcessingPipeline pipeline;
     private final MessageQueueProcessingTracker tracker;
+    private final MessageLockRenewer lockRenewer;
+    private final MessageRetryPolicy retryPolicy;
+    private final NotifyRateLimiter rateLimiter;
+    private final SentEmailCache sentEmailCache;
+    private final int receiveBatchSize;
+    private final Duration maxReceiveWaitTime;
+    private final int maxSettlementsInFlight;
+    // shared by settlers of all runs, as runs don't wait for retry delays to pass
+    private final Semaphore waitingRetryPermits;
+    private final int receiveThreads;
+    private final ExecutorService receivers;
 
 
     @Autowired
     public MessageQueueProcessor(
         IServiceBusClientFactory clientFactory,
-        EmailService emailService,
-        Validator validator,
-        MessageQueueProcessingTracker tracker
+        MessageProcessingPipeline pipeline,
+        MessageQueueProcessingTracker tracker,
+        MessageLockRenewer lockRenewer,
+        MessageRetryPolicy retryPolicy,
+        NotifyRateLimiter rateLimiter,
+        SentEmailCache sentEmailCache,
+        @Value("${serviceBus.receiveBatchSize}") int receiveBatchSize,
+        @Value("${serviceBus.maxReceiveWaitTimeInMs}") long maxReceiveWaitTimeMs,
+        @Value("${serviceBus.maxSettlementsInFlight}") int maxSettlementsInFlight,
+        @Value("${serviceBus.pipeline.maxRetryWaitingMessages}") int maxRetryWaitingMessages,
+        @Value("${serviceBus.pipeline.receiveThreads}") int receiveThreads
     ) {
         this.clientFactory = clientFactory;
-        this.emailService = emailService;
-        this.validator = validator;
+        this.pipeline = pipeline;
         this.tracker = tracker;
+        this.lockRenewer = lockRenewer;
+        this.retryPolicy = retryPolicy;
+        this.rateLimiter = rateLimiter;
+        this.sentEmailCache = sentEmailCache;
+        // a batch that doesn't fit in the pipeline could never be received
+        this.receiveBatchSize = Math.min(receiveBatchSize, pipeline.getMaxMessagesInFlight());
+        this.maxReceiveWaitTime = Duration.ofMillis(maxReceiveWaitTimeMs);
+        this.maxSettlementsInFlight = maxSettlementsInFlight;
+        this.waitingRetryPermits = new Semaphore(maxRetryWaitingMessages);
+        this.receiveThreads = receiveThreads;
+        this.receivers = Executors.newFixedThreadPool(
+            receiveThreads,
+            new CustomizableThreadFactory("message-receiver-")
+        );
     }
 
-    @Scheduled(fixedDelayString = "${serviceBus.pollingDelayInMs}")
-    public void run() {
+    /**
+     * Processes all messages available in the subscription.
+     *
+     * @return Number of messages received in this run
+     */
+    public int run() {
         tracker.trackProcessingStarted();
+        AtomicInteger receivedMessageCount = new AtomicInteger();
 
-        try (IServiceBusClient serviceBusClient = clientFactory.createClient()) {
-            processMessages(serviceBusClient);
+        try {
+            IServiceBusClient serviceBusClient = clientFactory.createClient();
+            MessageSettler settler = new MessageSettler(
+                serviceBusClient,
+                tracker,
+                retryPolicy,
+                maxSettlementsInFlight,
+                waitingRetryPermits
+            );
+
+            try {
+                receiveMessages(serviceBusClient, settler, receivedMessageCount);
+            } finally {
+                try {
+                    // the receiver must not be closed before all messages are processed and settled
+                    pipeline.awaitIdle();
+                    settler.awaitCompletion();
+                } finally {
+                    // failed messages waiting for their retry delay are abandoned with this client later on,
+                    // so it's closed once they are - the run doesn't wait for their delays to pass
+                    settler.whenRetriesAbandoned().whenComplete((result, error) -> close(serviceBusClient));
+                }
+            }
+
+            tracker.trackStageStatistics(pipeline.takeStatisticsSnapshots());
+            tracker.trackServiceQueues(pipeline.takeServiceQueueStatisticsSnapshots());
+            tracker.trackLockRenewals(lockRenewer.takeStatisticsSnapshot());
+            tracker.trackRateLimiting(rateLimiter.takeStatisticsSnapshot());
+            tracker.trackSentEmailCache(sentEmailCache.takeStatisticsSnapshot());
             tracker.trackProcessingCompleted();
         } catch (Exception e) {
             tracker.trackProcessingError(e);
         }
-    }
-
-    private void processMessages(IServiceBusClient serviceBusClient) {
-        IMessage message;
-
-        while ((message = serviceBusClient.receiveMessage()) != null) {
-            tracker.trackReceivedMessage(message.getMessageId());
-
-            MessageProcessingResult processingResult = processMessage(message);
-            updateMessageInSubscription(message, processingResult, serviceBusClient);
-            tracker.trackMessageProcessingResult(processingResult, message);
-        }
-    }
 
-    private void updateMessageInSubscription(
-        IMessage message,
-        MessageProcessingResult processingResult,
-        IServiceBusClient serviceBusClient
-    ) {
-        switch (processingResult.resultType) {
-            case SUCCESS:
-                completeMessage(message, serviceBusClient);
-                break;
-            case UNPROCESSABLE_MESSAGE:
-                sendToDeadLetter(message, serviceBusClient, processingResult.errorDetails);
-                break;
-            default:
-                // let the message lock expire before it's available again
-                break;
-        }
+        return receivedMessageCount.get();
     }
 
-    private MessageProcessingResult processMessage(IMessage message) {
+    private void close(IServiceBusClient serviceBusClient) {
         try {
-            Optional<PrivateBetaRegistration> registrationOption = tryReadRegistration(message);
-
-            return registrationOption.map(registration -> {
-                    Set<ConstraintViolation<PrivateBetaRegistration>> violations =
-                        validator.validate(registration);
-
-                    if (violations.isEmpty()) {
-                        return sendEmail(registration);
-                    } else {
-                        return invalidMessageData(violations);
-                    }
-                }
-            ).orElse(invalidMessageFormat());
+            serviceBusClient.close();
         } catch (Exception e) {
-            return processingError(e);
+            tracker.trackProcessingError(e);
         }
     }
 
-    private void completeMessage(IMessage message, IServiceBusClient serviceBusClient) {
-        serviceBusClient.completeMessage(message.getMessageId(), message.getLockToken());
+    @PreDestroy
+    public void shutDown() {
+        receivers.shutdownNow();
     }
 
-    private void sendToDeadLetter(
-        IMessage message,
+    private void receiveMessages(
         IServiceBusClient serviceBusClient,
-        MessageProcessingResult.ProcessingError error
-    ) {
-        serviceBusClient.sendToDeadLetter(
-            message,
-            error.reason,
-            error.description,
-            error.fieldValidationErrors
-        );
+        MessageSettler settler,
+        AtomicInteger receivedMessageCount
+    ) throws Exception {
+        Callable<Void> receiver = () -> {
+            receiveUntilEmpty(serviceBusClient, settler, receivedMessageCount);
+            return null;
+        };
+
+        List<Future<Void>> results = receivers.invokeAll(nCopies(receiveThreads, receiver));
+
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
     }
 
-    private MessageProcessingResult sendEmail(PrivateBetaRegistration registration) {
-        try {
-            emailService.sendWelcomeEmail(registration);
-            return success();
-        } catch (ServiceNotFoundException e) {
-            return unknownService();
-        } catch (Exception e) {
-            return processingError(e);
-        }
+    private void receiveUntilEmpty(
+        IServiceBusClient serviceBusClient,
+        MessageSettler settler,
+        AtomicInteger receivedMessageCount
+    ) throws InterruptedException {
+        List<IMessage> messages;
+
+        do {
+            pipeline.reserve(receiveBatchSize);
+            int submittedCount = 0;
+
+            try {
+                messages = serviceBusClient.receiveMessages(receiveBatchSize, maxReceiveWaitTime);
+                receivedMessageCount.addAndGet(messages.size());
+
+                for (IMessage message : messages) {
+                    tracker.trackReceivedMessage(message.getMessageId());
+                    submit(message, serviceBusClient, settler);
+                    submittedCount++;
+                }
+            } finally {
+                // give back the places reserved for messages that weren't passed to the pipeline
+                pipeline.release(receiveBatchSize - submittedCount);
+            }
+        } while (!messages.isEmpty());
     }
 
-    private Optional<PrivateBetaRegistration> tryReadRegistration(IMessage message) {
+    private void submit(
+        IMessage message,
+        IServiceBusClient serviceBusClient,
+        MessageSettler settler
+    ) throws InterruptedException {
+        // the pipeline stops renewing the lock once the message is settled
+        lockRenewer.register(message, serviceBusClient);
+
         try {
-            return Optional.of(
-                objectMapper.readValue(message.getBody(), PrivateBetaRegistration.class)
-            );
-        } catch (IOException e) {
-            return Optional.empty();
+            pipeline.submit(message, settler);
+        } catch (InterruptedException | RuntimeException e) {
+            lockRenewer.unregister(message);
+            throw e;
         }
     }
-
-
 }
@@ -0,0 +1,133 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+import static java.util.Collections.singletonMap;
+
+/**
+ * Decides how messages that failed to be processed are retried.
+ *
+ * <p>A failed message is held (with its lock kept alive) for a retry delay and then abandoned,
+ * so that it's delivered again. The delay doubles with each delivery, starting from the initial
+ * delay, up to the maximum. This way a Notify outage doesn't turn into a tight retry loop.</p>
+ *
+ * <p>After the maximum number of attempts, the message shouldn't be retried any more. Deliveries on which
+ * the message wasn't attempted, because calls to Notify were suspended, don't count - they're recorded
+ * in a message property when the message is abandoned.</p>
+ */
+@Component
+public class MessageRetryPolicy {
+
+    static final String UNCOUNTED_DELIVERIES_PROPERTY_KEY = "UncountedDeliveries";
+
+    // the delay reaches the maximum long before that, and doubling further could overflow
+    private static final int MAX_DOUBLINGS = 30;
+
+    private final int maxAttempts;
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public MessageRetryPolicy(
+        @Value("${serviceBus.retry.maxAttempts}") int maxAttempts,
+        @Value("${serviceBus.retry.initialDelayInMs}") long initialDelayMs,
+        @Value("${serviceBus.retry.maxDelayInMs}") long maxDelayMs
+    ) {
+        this(maxAttempts, Duration.ofMillis(initialDelayMs), Duration.ofMillis(maxDelayMs));
+    }
+
+    public MessageRetryPolicy(int maxAttempts, Duration initialDelay, Duration maxDelay) {
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("message-retry-")
+        );
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Tells if the current delivery of the message is the last one allowed.
+     */
+    public boolean isFinalAttempt(IMessage message) {
+        return getPreviousAttemptCount(message) + 1 >= maxAttempts;
+    }
+
+    /**
+     * Returns the number of earlier deliveries of the message on which it was attempted.
+     */
+    public long getPreviousAttemptCount(IMessage message) {
+        return Math.max(message.getDeliveryCount() - getUncountedDeliveryCount(message), 0);
+    }
+
+    /**
+     * Returns properties to modify when abandoning the message without counting the current delivery
+     * as an attempt.
+     */
+    public Map<String, Object> getUncountedDeliveryProperties(IMessage message) {
+        return singletonMap(UNCOUNTED_DELIVERIES_PROPERTY_KEY, getUncountedDeliveryCount(message) + 1);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns for how long to hold the message before it's delivered again. Uncounted deliveries
+     * make the delay grow too, so that a long Notify outage is retried less and less often.
+     */
+    public Duration getRetryDelay(IMessage message) {
+        long doublings = Math.min(Math.max(message.getDeliveryCount(), 0), MAX_DOUBLINGS);
+
+        Duration delay = initialDelay.multipliedBy(1L << doublings);
+        return delay.compareTo(maxDelay) <= 0 ? delay : maxDelay;
+    }
+
+    /**
+     * Returns a future that completes once the retry delay of the message has passed.
+     */
+    public CompletableFuture<Void> waitForRetry(IMessage message) {
+        CompletableFuture<Void> delay = new CompletableFuture<>();
+
+        scheduler.schedule(
+            () -> delay.complete(null),
+            getRetryDelay(message).toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+
+        return delay;
+    }
+
+    private static long getUncountedDeliveryCount(IMessage message) {
+        Map<String, Object> properties = message.getProperties();
+        Object value = properties == null ? null : properties.get(UNCOUNTED_DELIVERIES_PROPERTY_KEY);
+
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            // not written by this service - count every delivery
+            return 0;
+        }
+    }
+}
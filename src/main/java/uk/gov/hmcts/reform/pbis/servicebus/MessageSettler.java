@@ -0,0 +1,312 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import static java.util.Collections.singletonMap;
+
+/**
+ * Settles processed messages (completes them, sends them to dead letter queue or abandons them
+ * for a retry) without waiting for Service Bus to confirm each operation.
+ *
+ * <p>The number of settlement operations in flight is limited. When the limit is reached,
+ * settling another message waits until one of the outstanding operations finishes.
+ * Failures are reported to the tracker for each message.</p>
+ *
+ * <p>Messages that failed to be processed are abandoned after the retry delay of
+ * {@link MessageRetryPolicy}. A message waiting for its retry doesn't take up a place among
+ * settlements in flight - it takes one only for the abandon operation, and never blocks the thread
+ * the delay ends on. Settlements pending retry aren't waited for by {@link #awaitCompletion()}.
+ * The number of messages held for their retry delay is limited too (the limit can be shared by settlers).
+ * When it's reached, a failed message is abandoned straight away, instead of holding its lock - and
+ * whatever the consumer reserved for it - while e.g. an outage of one service fails message after message.
+ * A batch message keeps track of its registrations that have been sent, so that they're not sent again.</p>
+ */
+public class MessageSettler {
+
+    static final String LAST_PROCESSING_ERROR_PROPERTY_KEY = "LastProcessingError";
+
+    private final IMessageSettlementClient serviceBusClient;
+    private final MessageQueueProcessingTracker tracker;
+    private final MessageRetryPolicy retryPolicy;
+    private final Semaphore inFlightPermits;
+    private final Semaphore waitingRetryPermits;
+    private final Set<CompletableFuture<Void>> pendingSettlements = ConcurrentHashMap.newKeySet();
+
+    // abandon operations whose retry delay has passed, waiting for a place among settlements in flight
+    private final Queue<Runnable> permitWaiters = new ConcurrentLinkedQueue<>();
+    private final Set<CompletableFuture<Void>> waitingRetries = ConcurrentHashMap.newKeySet();
+
+    public MessageSettler(
+        IMessageSettlementClient serviceBusClient,
+        MessageQueueProcessingTracker tracker,
+        MessageRetryPolicy retryPolicy,
+        int maxSettlementsInFlight,
+        Semaphore waitingRetryPermits
+    ) {
+        this.serviceBusClient = serviceBusClient;
+        this.tracker = tracker;
+        this.retryPolicy = retryPolicy;
+        this.inFlightPermits = new Semaphore(maxSettlementsInFlight);
+        this.waitingRetryPermits = waitingRetryPermits;
+    }
+
+    /**
+     * Updates the message in the subscription according to the result of its processing.
+     *
+     * @return Future that completes once the message is settled
+     */
+    public CompletableFuture<Void> settle(IMessage message, MessageProcessingResult processingResult) {
+        switch (processingResult.resultType) {
+            case SUCCESS:
+                return complete(message);
+            case UNPROCESSABLE_MESSAGE:
+                return sendToDeadLetter(message, processingResult.errorDetails);
+            case ERROR:
+                return abandonAfterRetryDelay(message, getPropertiesToModify(message, processingResult));
+            default:
+                return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    public CompletableFuture<Void> complete(IMessage message) {
+        return runSettlement(message, () -> serviceBusClient.completeMessageAsync(message));
+    }
+
+    public CompletableFuture<Void> sendToDeadLetter(
+        IMessage message,
+        MessageProcessingResult.ProcessingError error
+    ) {
+        return runSettlement(
+            message,
+            () -> serviceBusClient.sendToDeadLetterAsync(
+                message,
+                error.reason,
+                error.description,
+                error.fieldValidationErrors
+            )
+        );
+    }
+
+    /**
+     * Abandons the message once its retry delay has passed, so that it's delivered again.
+     * When too many messages are held for their retry delay already, abandons it straight away.
+     */
+    public CompletableFuture<Void> abandonAfterRetryDelay(
+        IMessage message,
+        MessageProcessingResult.ProcessingError error
+    ) {
+        return abandonAfterRetryDelay(message, getPropertiesToModify(error));
+    }
+
+    private CompletableFuture<Void> abandonAfterRetryDelay(
+        IMessage message,
+        Map<String, Object> propertiesToModify
+    ) {
+        CompletableFuture<Void> abandoned = new CompletableFuture<>();
+        waitingRetries.add(abandoned);
+        abandoned.whenComplete((result, error) -> waitingRetries.remove(abandoned));
+
+        CompletableFuture<Void> retryDelay;
+
+        if (waitingRetryPermits.tryAcquire()) {
+            // the place is given back once the message's lock is
+            abandoned.whenComplete((result, error) -> waitingRetryPermits.release());
+            retryDelay = retryPolicy.waitForRetry(message);
+        } else {
+            retryDelay = CompletableFuture.completedFuture(null);
+        }
+
+        retryDelay.thenRun(() -> runWithPermit(() -> {
+            startSettlementWithPermit(
+                message,
+                () -> serviceBusClient.abandonMessageAsync(message, propertiesToModify)
+            ).whenComplete((result, error) -> {
+                if (error == null) {
+                    abandoned.complete(null);
+                } else {
+                    abandoned.completeExceptionally(error);
+                }
+            });
+        }));
+
+        return abandoned;
+    }
+
+    /**
+     * Waits until all settlement operations in flight have finished. Messages still waiting
+     * for their retry delay aren't waited for.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        CompletableFuture<?>[] settlements =
+            pendingSettlements.toArray(new CompletableFuture<?>[0]);
+
+        try {
+            CompletableFuture.allOf(settlements).get();
+        } catch (ExecutionException e) {
+            // failures have already been reported for each message
+        }
+    }
+
+    public int getPendingSettlementCount() {
+        return pendingSettlements.size();
+    }
+
+    /**
+     * Returns the number of failed messages that haven't been abandoned yet.
+     */
+    public int getWaitingRetryCount() {
+        return waitingRetries.size();
+    }
+
+    /**
+     * Returns a future that completes once failed messages settled so far have been abandoned
+     * (successfully or not).
+     */
+    public CompletableFuture<Void> whenRetriesAbandoned() {
+        CompletableFuture<?>[] retries = waitingRetries
+            .stream()
+            .map(retry -> retry.handle((result, error) -> null))
+            .toArray(CompletableFuture<?>[]::new);
+
+        return CompletableFuture.allOf(retries);
+    }
+
+    private CompletableFuture<Void> runSettlement(
+        IMessage message,
+        Supplier<CompletableFuture<Void>> operation
+    ) {
+        acquirePermit(message);
+        return startSettlementWithPermit(message, operation);
+    }
+
+    private CompletableFuture<Void> startSettlementWithPermit(
+        IMessage message,
+        Supplier<CompletableFuture<Void>> operation
+    ) {
+        CompletableFuture<Void> settlement = startSettlement(operation);
+        pendingSettlements.add(settlement);
+
+        return settlement.whenComplete((result, error) -> {
+            pendingSettlements.remove(settlement);
+            releasePermit();
+
+            if (error != null) {
+                tracker.trackSettlementError(message, unwrap(error));
+            }
+        });
+    }
+
+    /**
+     * Runs the operation once a permit is available, without blocking the calling thread.
+     * The operation is responsible for releasing the permit.
+     */
+    private void runWithPermit(Runnable operation) {
+        if (inFlightPermits.tryAcquire()) {
+            operation.run();
+            return;
+        }
+
+        permitWaiters.add(operation);
+
+        // a permit may have been released before the operation was queued
+        if (inFlightPermits.tryAcquire()) {
+            if (permitWaiters.remove(operation)) {
+                operation.run();
+            } else {
+                // the operation has already been handed a permit by someone else
+                releasePermit();
+            }
+        }
+    }
+
+    /**
+     * Hands the permit over to a waiting abandon operation, if there's one.
+     */
+    private void releasePermit() {
+        Runnable waiter = permitWaiters.poll();
+
+        if (waiter != null) {
+            waiter.run();
+        } else {
+            inFlightPermits.release();
+        }
+    }
+
+    private CompletableFuture<Void> startSettlement(Supplier<CompletableFuture<Void>> operation) {
+        try {
+            return operation.get();
+        } catch (Exception e) {
+            CompletableFuture<Void> failedSettlement = new CompletableFuture<>();
+            failedSettlement.completeExceptionally(e);
+            return failedSettlement;
+        }
+    }
+
+    private void acquirePermit(IMessage message) {
+        try {
+            inFlightPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new ServiceBusException(
+                String.format("Interrupted while settling message. Message ID: %s", message.getMessageId()),
+                e
+            );
+        }
+    }
+
+    /**
+     * Returns properties of a failed message to modify - its last error, deliveries that weren't attempted
+     * and, for a batch, registrations that have been sent so far.
+     */
+    private Map<String, Object> getPropertiesToModify(IMessage message, MessageProcessingResult processingResult) {
+        Map<String, Object> errorProperties = getPropertiesToModify(processingResult.errorDetails);
+
+        if (processingResult.entryResults == null && processingResult.isAttempted()) {
+            return errorProperties;
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+
+        if (errorProperties != null) {
+            properties.putAll(errorProperties);
+        }
+
+        if (!processingResult.isAttempted()) {
+            properties.putAll(retryPolicy.getUncountedDeliveryProperties(message));
+        }
+
+        if (processingResult.entryResults != null) {
+            properties.put(SentRegistrations.PROPERTY_KEY, SentRegistrations.format(processingResult.entryResults));
+        }
+
+        return properties;
+    }
+
+    private static Map<String, Object> getPropertiesToModify(
+        MessageProcessingResult.ProcessingError error
+    ) {
+        return error != null && error.exception != null && error.exception.getMessage() != null
+            ? singletonMap(LAST_PROCESSING_ERROR_PROPERTY_KEY, error.exception.getMessage())
+            : null;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null
+            ? error.getCause()
+            : error;
+    }
+}
@@ -0,0 +1,219 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.ExceptionPhase;
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.IMessageHandler;
+import com.microsoft.azure.servicebus.MessageHandlerOptions;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClient.failedFuture;
+
+/**
+ * Message pump on top of a client that can only receive messages, e.g. {@link ServiceBusClientStub}.
+ *
+ * <p>A single thread receives messages as long as fewer than the max concurrent calls are being
+ * handled, and hands them over to the handler. Locks of messages being handled are renewed
+ * at half their duration, for up to the max auto renew duration.</p>
+ */
+public class PollingMessagePump implements IMessagePump {
+
+    // short, so that the pump stops soon after it's closed
+    private static final Duration RECEIVE_WAIT_TIME = Duration.ofSeconds(1);
+    private static final Duration MIN_LOCK_RENEWAL_INTERVAL = Duration.ofSeconds(1);
+
+    private final IServiceBusClient serviceBusClient;
+    private final ScheduledExecutorService lockRenewalScheduler;
+
+    private volatile boolean running;
+    private Thread receiverThread;
+
+    public PollingMessagePump(IServiceBusClient serviceBusClient) {
+        this.serviceBusClient = serviceBusClient;
+        this.lockRenewalScheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("message-pump-lock-renewer-")
+        );
+    }
+
+    @Override
+    public synchronized void registerMessageHandler(
+        IMessageHandler handler,
+        MessageHandlerOptions options,
+        ExecutorService executorService
+    ) {
+        if (receiverThread != null) {
+            throw new IllegalStateException("Message handler is already registered");
+        }
+
+        Semaphore handlerPermits = new Semaphore(options.getMaxConcurrentCalls());
+
+        running = true;
+        receiverThread = new CustomizableThreadFactory("message-pump-").newThread(
+            () -> receiveMessages(handler, options, executorService, handlerPermits)
+        );
+        receiverThread.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> completeMessageAsync(IMessage message) {
+        return serviceBusClient.completeMessageAsync(message);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendToDeadLetterAsync(
+        IMessage message,
+        String reason,
+        String description,
+        Map<String, String> fieldValidationErrors
+    ) {
+        return serviceBusClient.sendToDeadLetterAsync(message, reason, description, fieldValidationErrors);
+    }
+
+    @Override
+    public CompletableFuture<Void> abandonMessageAsync(IMessage message, Map<String, Object> propertiesToModify) {
+        return serviceBusClient.abandonMessageAsync(message, propertiesToModify);
+    }
+
+    @Override
+    public void close() throws Exception {
+        Thread thread;
+
+        synchronized (this) {
+            running = false;
+            thread = receiverThread;
+        }
+
+        try {
+            if (thread != null) {
+                thread.join(RECEIVE_WAIT_TIME.multipliedBy(2).toMillis());
+            }
+        } finally {
+            lockRenewalScheduler.shutdownNow();
+            serviceBusClient.close();
+        }
+    }
+
+    private void receiveMessages(
+        IMessageHandler handler,
+        MessageHandlerOptions options,
+        ExecutorService executorService,
+        Semaphore handlerPermits
+    ) {
+        while (running) {
+            try {
+                if (!handlerPermits.tryAcquire(RECEIVE_WAIT_TIME.toMillis(), TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // receive as many messages as there are free handlers
+            int maxCount = 1 + handlerPermits.drainPermits();
+            List<IMessage> messages;
+
+            try {
+                messages = serviceBusClient.receiveMessages(maxCount, RECEIVE_WAIT_TIME);
+            } catch (Exception e) {
+                handlerPermits.release(maxCount);
+                handler.notifyException(e, ExceptionPhase.RECEIVE);
+                continue;
+            }
+
+            handlerPermits.release(maxCount - messages.size());
+
+            for (IMessage message : messages) {
+                handle(message, handler, options, executorService, handlerPermits);
+            }
+        }
+    }
+
+    private void handle(
+        IMessage message,
+        IMessageHandler handler,
+        MessageHandlerOptions options,
+        ExecutorService executorService,
+        Semaphore handlerPermits
+    ) {
+        ScheduledFuture<?> lockRenewal = scheduleLockRenewal(message, handler, options.getMaxAutoRenewDuration());
+
+        Runnable release = () -> {
+            lockRenewal.cancel(false);
+            handlerPermits.release();
+        };
+
+        try {
+            executorService.execute(() -> callHandler(message, handler).whenComplete((result, error) -> {
+                release.run();
+
+                if (error != null) {
+                    handler.notifyException(error, ExceptionPhase.USERCALLBACK);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            // shutting down - the message will be delivered again once its lock expires
+            release.run();
+        }
+    }
+
+    private static CompletableFuture<Void> callHandler(IMessage message, IMessageHandler handler) {
+        try {
+            return handler.onMessageAsync(message);
+        } catch (Exception e) {
+            return failedFuture(e);
+        }
+    }
+
+    private ScheduledFuture<?> scheduleLockRenewal(
+        IMessage message,
+        IMessageHandler handler,
+        Duration maxAutoRenewDuration
+    ) {
+        Instant renewUntil = Instant.now().plus(maxAutoRenewDuration);
+        Duration lockDuration = message.getLockedUntilUtc() == null
+            ? Duration.ZERO
+            : Duration.between(Instant.now(), message.getLockedUntilUtc());
+
+        long intervalMs = Math.max(lockDuration.dividedBy(2).toMillis(), MIN_LOCK_RENEWAL_INTERVAL.toMillis());
+
+        return lockRenewalScheduler.scheduleAtFixedRate(
+            () -> {
+                if (Instant.now().isBefore(renewUntil)) {
+                    renewLock(message, handler);
+                }
+            },
+            intervalMs,
+            intervalMs,
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void renewLock(IMessage message, IMessageHandler handler) {
+        CompletableFuture<Instant> renewal;
+
+        try {
+            renewal = serviceBusClient.renewMessageLockAsync(message);
+        } catch (Exception e) {
+            renewal = failedFuture(e);
+        }
+
+        renewal.whenComplete((lockedUntil, error) -> {
+            if (error != null) {
+                handler.notifyException(error, ExceptionPhase.RENEWMESSAGELOCK);
+            }
+        });
+    }
+}
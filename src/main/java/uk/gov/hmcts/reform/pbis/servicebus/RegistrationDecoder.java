@@ -0,0 +1,87 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.google.common.base.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.CborRegistrationCodec;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.JsonRegistrationCodec;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.RegistrationCodec;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult.malformed;
+
+/**
+ * Reads registrations from message bodies, using the {@link RegistrationCodec} of the message's content type.
+ *
+ * <p>Messages without a content type are read as JSON. Messages of a content type no codec supports
+ * are malformed. Bodies larger than {@code serviceBus.maxMessageBodySizeInBytes} are rejected without
+ * being parsed. Malformed bodies are reported in the result rather than with an exception.
+ * It's thread-safe.</p>
+ */
+@Component
+public class RegistrationDecoder {
+
+    private final Map<String, RegistrationCodec> codecsByContentType = new HashMap<>();
+    private final RegistrationCodec defaultCodec;
+    private final int maxBodySize;
+
+    /**
+     * Creates a decoder of JSON and CBOR messages.
+     */
+    public RegistrationDecoder(int maxBodySize) {
+        this(Arrays.asList(new JsonRegistrationCodec(), new CborRegistrationCodec()), maxBodySize);
+    }
+
+    @Autowired
+    public RegistrationDecoder(
+        List<RegistrationCodec> codecs,
+        @Value("${serviceBus.maxMessageBodySizeInBytes}") int maxBodySize
+    ) {
+        for (RegistrationCodec codec : codecs) {
+            codecsByContentType.put(codec.getContentType(), codec);
+        }
+
+        this.defaultCodec = codecsByContentType.get(JsonRegistrationCodec.CONTENT_TYPE);
+        this.maxBodySize = maxBodySize;
+
+        if (defaultCodec == null) {
+            throw new IllegalArgumentException("No codec for " + JsonRegistrationCodec.CONTENT_TYPE);
+        }
+    }
+
+    public RegistrationDecodingResult decode(String contentType, byte[] body) {
+        if (body == null) {
+            return malformed("Message has no body");
+        }
+
+        if (body.length > maxBodySize) {
+            return malformed(String.format("Message body is larger than %s bytes", maxBodySize));
+        }
+
+        RegistrationCodec codec = getCodec(contentType);
+
+        if (codec == null) {
+            return malformed(String.format("Unsupported content type %s", contentType));
+        }
+
+        return codec.decode(body);
+    }
+
+    private RegistrationCodec getCodec(String contentType) {
+        if (Strings.isNullOrEmpty(contentType)) {
+            return defaultCodec;
+        }
+
+        // parameters, like charset, don't matter to any of the codecs
+        int parametersStart = contentType.indexOf(';');
+        String mediaType = parametersStart < 0 ? contentType : contentType.substring(0, parametersStart);
+
+        return codecsByContentType.get(mediaType.trim().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,48 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of reading registrations from a message body - either the registrations,
+ * or the reason why the body couldn't be read.
+ *
+ * <p>A body holds either a single registration, or a batch of them (an array).</p>
+ */
+public final class RegistrationDecodingResult {
+
+    /**
+     * The registration of a single-registration body, or the first one of a batch.
+     */
+    public final PrivateBetaRegistration registration;
+    public final List<PrivateBetaRegistration> registrations;
+    public final boolean batch;
+    public final String error;
+
+    private RegistrationDecodingResult(
+        List<PrivateBetaRegistration> registrations,
+        boolean batch,
+        String error
+    ) {
+        this.registration = registrations.isEmpty() ? null : registrations.get(0);
+        this.registrations = registrations;
+        this.batch = batch;
+        this.error = error;
+    }
+
+    public static RegistrationDecodingResult decoded(PrivateBetaRegistration registration) {
+        return new RegistrationDecodingResult(Collections.singletonList(registration), false, null);
+    }
+
+    public static RegistrationDecodingResult decodedBatch(List<PrivateBetaRegistration> registrations) {
+        return new RegistrationDecodingResult(Collections.unmodifiableList(registrations), true, null);
+    }
+
+    public static RegistrationDecodingResult malformed(String error) {
+        return new RegistrationDecodingResult(Collections.emptyList(), false, error);
+    }
+
+    public boolean isDecoded() {
+        return error == null;
+    }
+}
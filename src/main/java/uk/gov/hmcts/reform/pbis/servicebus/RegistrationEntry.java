@@ -0,0 +1,64 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+import uk.gov.hmcts.reform.pbis.notify.EmailToSend;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
+
+/**
+ * One registration of a message, and everything learnt about it while it goes through the processing steps.
+ *
+ * <p>Once the result is set, the registration is finished and no further steps should be run for it.
+ * Registrations sent on an earlier delivery of their message start finished.</p>
+ */
+public class RegistrationEntry {
+
+    public final int index;
+    public final PrivateBetaRegistration registration;
+    public final boolean sentBefore;
+
+    private ServiceRoute route;
+    private EmailToSend emailToSend;
+    private MessageProcessingResult result;
+
+    public RegistrationEntry(int index, PrivateBetaRegistration registration, boolean sentBefore) {
+        this.index = index;
+        this.registration = registration;
+        this.sentBefore = sentBefore;
+
+        if (sentBefore) {
+            this.result = MessageProcessingResult.success();
+        }
+    }
+
+    public ServiceRoute getRoute() {
+        return route;
+    }
+
+    public void setRoute(ServiceRoute route) {
+        this.route = route;
+    }
+
+    public EmailToSend getEmailToSend() {
+        return emailToSend;
+    }
+
+    public void setEmailToSend(EmailToSend emailToSend) {
+        this.emailToSend = emailToSend;
+    }
+
+    public MessageProcessingResult getResult() {
+        return result;
+    }
+
+    public void finish(MessageProcessingResult result) {
+        this.result = result;
+    }
+
+    public boolean isFinished() {
+        return result != null;
+    }
+
+    MessageProcessingResult.EntryResult toEntryResult() {
+        return new MessageProcessingResult.EntryResult(index, registration.referenceId, sentBefore, result);
+    }
+}
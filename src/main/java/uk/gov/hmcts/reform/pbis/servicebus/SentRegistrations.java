@@ -0,0 +1,61 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResultType;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Progress of a batch message, kept in a message property between its deliveries.
+ *
+ * <p>When a batch is abandoned for a retry, indexes of registrations whose emails have been sent
+ * are stored in the message (e.g. {@code 0,1,3}), so that they're not sent again on redelivery.</p>
+ */
+final class SentRegistrations {
+
+    static final String PROPERTY_KEY = "SentRegistrations";
+
+    private SentRegistrations() {
+        // utility class constructor
+    }
+
+    /**
+     * Returns indexes of registrations sent on earlier deliveries of the message.
+     */
+    static Set<Integer> read(IMessage message) {
+        Set<Integer> indexes = new HashSet<>();
+        Map<String, Object> properties = message.getProperties();
+        Object value = properties == null ? null : properties.get(PROPERTY_KEY);
+
+        if (value == null) {
+            return indexes;
+        }
+
+        for (String index : value.toString().split(",")) {
+            try {
+                indexes.add(Integer.parseInt(index.trim()));
+            } catch (NumberFormatException e) {
+                // not written by this service - better send an email twice than never
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Returns the property value for registrations that have been sent so far.
+     */
+    static String format(List<MessageProcessingResult.EntryResult> entryResults) {
+        return entryResults
+            .stream()
+            .filter(entry -> entry.result.resultType == MessageProcessingResultType.SUCCESS)
+            .map(entry -> String.valueOf(entry.index))
+            .collect(joining(","));
+    }
+}
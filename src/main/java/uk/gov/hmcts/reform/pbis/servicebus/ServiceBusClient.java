@@ -4,11 +4,19 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.azure.servicebus.IMessage;
 import com.microsoft.azure.servicebus.IMessageReceiver;
+import com.microsoft.azure.servicebus.primitives.OperationCancelledException;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonMap;
 
 public class ServiceBusClient implements IServiceBusClient {
@@ -19,6 +27,9 @@ public class ServiceBusClient implements IServiceBusClient {
     private final IMessageReceiver messageReceiver;
     private final Duration maxReceiveWaitTime;
 
+    // a closed receiver can't be used again, whether it was closed by this client or by the library
+    private volatile boolean closed;
+
     public ServiceBusClient(IMessageReceiver messageReceiver, Duration maxReceiveWaitTime) {
         this.messageReceiver = messageReceiver;
         this.maxReceiveWaitTime = maxReceiveWaitTime;
@@ -29,7 +40,19 @@ public class ServiceBusClient implements IServiceBusClient {
         try {
             return this.messageReceiver.receive(maxReceiveWaitTime);
         } catch (Exception ex) {
-            throw new ServiceBusException("Failed to receive message from subscription", ex);
+            throw failure("Failed to receive message from subscription", ex);
+        }
+    }
+
+    @Override
+    public List<IMessage> receiveMessages(int maxCount, Duration wait) {
+        try {
+            Collection<IMessage> messages = this.messageReceiver.receiveBatch(maxCount, wait);
+
+            // receiver returns null when there are no messages
+            return messages != null ? new ArrayList<>(messages) : emptyList();
+        } catch (Exception ex) {
+            throw failure("Failed to receive messages from subscription", ex);
         }
     }
 
@@ -38,7 +61,7 @@ public class ServiceBusClient implements IServiceBusClient {
         try {
             messageReceiver.complete(messageLockToken);
         } catch (Exception e) {
-            throw new ServiceBusException(
+            throw failure(
                 String.format("Failed to mark message as completed. Message ID: %s", messageId),
                 e
             );
@@ -65,16 +88,154 @@ public class ServiceBusClient implements IServiceBusClient {
                 message.getMessageId()
             );
 
-            throw new ServiceBusException(errorMessage, e);
+            throw failure(errorMessage, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> completeMessageAsync(IMessage message) {
+        String errorMessage = String.format(
+            "Failed to mark message as completed. Message ID: %s",
+            message.getMessageId()
+        );
+
+        try {
+            return withFailureCheck(
+                messageReceiver.completeAsync(message.getLockToken()),
+                errorMessage
+            );
+        } catch (Exception e) {
+            return failedFuture(failure(errorMessage, e));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendToDeadLetterAsync(
+        IMessage message,
+        String reason,
+        String description,
+        Map<String, String> fieldValidationErrors
+    ) {
+        String errorMessage = String.format(
+            "Failed to send message to dead letter queue. Message ID: %s",
+            message.getMessageId()
+        );
+
+        try {
+            return withFailureCheck(
+                messageReceiver.deadLetterAsync(
+                    message.getLockToken(),
+                    reason,
+                    description,
+                    getPropertiesToChange(fieldValidationErrors)
+                ),
+                errorMessage
+            );
+        } catch (Exception e) {
+            return failedFuture(failure(errorMessage, e));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> abandonMessageAsync(
+        IMessage message,
+        Map<String, Object> propertiesToModify
+    ) {
+        String errorMessage = String.format(
+            "Failed to abandon message. Message ID: %s",
+            message.getMessageId()
+        );
+
+        try {
+            return withFailureCheck(
+                messageReceiver.abandonAsync(message.getLockToken(), propertiesToModify),
+                errorMessage
+            );
+        } catch (Exception e) {
+            return failedFuture(failure(errorMessage, e));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Instant> renewMessageLockAsync(IMessage message) {
+        String errorMessage = String.format(
+            "Failed to renew message lock. Message ID: %s",
+            message.getMessageId()
+        );
+
+        try {
+            return withFailureCheck(
+                messageReceiver.renewMessageLockAsync(message),
+                errorMessage
+            );
+        } catch (Exception e) {
+            return failedFuture(failure(errorMessage, e));
         }
     }
 
+    /**
+     * Tells whether the receiver has been closed, either with {@link #close()} or by the Service Bus client library
+     * (e.g. after its connection was closed), as seen from failures of operations made with it.
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
     @Override
     public void close() throws Exception {
+        closed = true;
         this.messageReceiver.close();
     }
 
-    private Map<String, Object> getPropertiesToChange(
+    private ServiceBusException failure(String errorMessage, Exception cause) {
+        checkReceiverState(cause);
+        return new ServiceBusException(errorMessage, cause);
+    }
+
+    private <T> CompletableFuture<T> withFailureCheck(CompletableFuture<T> operation, String errorMessage) {
+        return withServiceBusException(
+            operation.whenComplete((value, error) -> checkReceiverState(error)),
+            errorMessage
+        );
+    }
+
+    private void checkReceiverState(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            // operations of a closed receiver fail with IllegalStateException,
+            // while the ones in progress when its link was closed are cancelled
+            if (cause instanceof IllegalStateException || cause instanceof OperationCancelledException) {
+                closed = true;
+                return;
+            }
+        }
+    }
+
+    static <T> CompletableFuture<T> withServiceBusException(
+        CompletableFuture<T> operation,
+        String errorMessage
+    ) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        operation.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                result.completeExceptionally(new ServiceBusException(errorMessage, cause));
+            }
+        });
+
+        return result;
+    }
+
+    static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    static Map<String, Object> getPropertiesToChange(
         Map<String, String> fieldValidationErrors
     ) throws JsonProcessingException {
 
@@ -2,7 +2,10 @@ package uk.gov.hmcts.reform.pbis.servicebus;
 
 import com.microsoft.azure.servicebus.ClientFactory;
 import com.microsoft.azure.servicebus.IMessageReceiver;
+import com.microsoft.azure.servicebus.ISubscriptionClient;
 import com.microsoft.azure.servicebus.ReceiveMode;
+import com.microsoft.azure.servicebus.SubscriptionClient;
+import com.microsoft.azure.servicebus.primitives.ConnectionStringBuilder;
 
 import java.time.Duration;
 
@@ -29,4 +32,28 @@ public class ServiceBusClientFactory implements IServiceBusClientFactory {
         }
     }
 
+    /**
+     * Creates a message pump backed by a subscription client, which pushes messages to the registered handler.
+     */
+    @Override
+    public IMessagePump createMessagePump() {
+        return new MessagePumpServiceBusClient(createSubscriptionClient());
+    }
+
+    /**
+     * Creates a subscription client, which allows for registering a message handler.
+     */
+    public ISubscriptionClient createSubscriptionClient() {
+        try {
+            return new SubscriptionClient(
+                new ConnectionStringBuilder(connectionString),
+                ReceiveMode.PEEKLOCK
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusException("Interrupted while creating subscription client", e);
+        } catch (Exception e) {
+            throw new ServiceBusException("Failed to create Service Bus subscription client", e);
+        }
+    }
 }
@@ -1,33 +1,171 @@
 package uk.gov.hmcts.reform.pbis.servicebus;
 
 import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.primitives.MessageLockLostException;
 
-import java.util.LinkedList;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
+/**
+ * In-memory stand-in for a Service Bus subscription, with peek-lock semantics.
+ *
+ * <p>Received messages are locked for the lock duration. A message whose lock expires, or which
+ * is abandoned, becomes available again with its delivery count increased - once the count reaches
+ * the maximum, the message is moved to the dead letter store instead. Settling a message whose lock
+ * has been lost fails, like it does with a real subscription.</p>
+ *
+ * <p>It's thread-safe, so any number of receivers can use it at once. Messages are kept
+ * as compact entries (ID, body, properties and delivery state) and handed out as read-only
+ * {@link IMessage} views, so millions of messages can be held for end-to-end load tests.</p>
+ */
 public class ServiceBusClientStub implements IServiceBusClient {
 
-    private static final ServiceBusClientStub instance = new ServiceBusClientStub();
-    private Queue<IMessage> messagesToReceive = new LinkedList<>();
+    // defaults of a real subscription
+    public static final Duration DEFAULT_LOCK_DURATION = Duration.ofSeconds(60);
+    public static final int DEFAULT_MAX_DELIVERY_COUNT = 10;
 
-    private ServiceBusClientStub() {
-        // hiding default constructor
+    public static final String MAX_DELIVERY_COUNT_EXCEEDED = "MaxDeliveryCountExceeded";
+
+    private static final ServiceBusClientStub instance =
+        new ServiceBusClientStub(DEFAULT_LOCK_DURATION, DEFAULT_MAX_DELIVERY_COUNT, Clock.systemUTC());
+
+    private final long lockDurationMs;
+    private final int maxDeliveryCount;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition messagesAvailable = lock.newCondition();
+
+    // guarded by lock
+    private final Deque<StoredMessage> availableMessages = new ArrayDeque<>();
+    private final Map<UUID, StoredMessage> lockedMessages = new HashMap<>();
+    // in the order locks expire - renewals add a new entry, making the old one stale
+    private final Deque<LockExpiry> lockExpiries = new ArrayDeque<>();
+    private final List<DeadLetteredMessage> deadLetteredMessages = new ArrayList<>();
+    private long nextSequenceNumber = 1;
+    private long completedCount;
+    private long redeliveredCount;
+
+    public ServiceBusClientStub(Duration lockDuration, int maxDeliveryCount) {
+        this(lockDuration, maxDeliveryCount, Clock.systemUTC());
+    }
+
+    ServiceBusClientStub(Duration lockDuration, int maxDeliveryCount, Clock clock) {
+        this.lockDurationMs = lockDuration.toMillis();
+        this.maxDeliveryCount = maxDeliveryCount;
+        this.clock = clock;
     }
 
+    /**
+     * Returns the subscription shared by the application when {@code serviceBus.useStub} is on.
+     */
     public static ServiceBusClientStub getInstance() {
         return instance;
     }
 
+    /**
+     * Adds a message without a content type to the subscription.
+     */
+    public void send(String messageId, byte[] body, Map<String, Object> properties) {
+        send(messageId, body, null, properties);
+    }
+
+    /**
+     * Adds a message to the subscription.
+     */
+    public void send(String messageId, byte[] body, String contentType, Map<String, Object> properties) {
+        StoredMessage message = new StoredMessage(
+            messageId,
+            body,
+            contentType,
+            properties == null || properties.isEmpty() ? null : new HashMap<>(properties)
+        );
+
+        withLock(() -> {
+            message.sequenceNumber = nextSequenceNumber++;
+            message.enqueuedTimeMs = clock.millis();
+            availableMessages.addLast(message);
+            messagesAvailable.signal();
+            return null;
+        });
+    }
+
+    /**
+     * Adds a copy of the message (ID, body, content type and properties) to the subscription.
+     */
+    public void send(IMessage message) {
+        send(message.getMessageId(), message.getBody(), message.getContentType(), message.getProperties());
+    }
+
+    public void sendAll(Collection<? extends IMessage> messages) {
+        messages.forEach(this::send);
+    }
+
     @Override
     public IMessage receiveMessage() {
-        return messagesToReceive.poll();
+        List<IMessage> messages = receiveMessages(1, Duration.ZERO);
+        return messages.isEmpty() ? null : messages.get(0);
+    }
+
+    @Override
+    public List<IMessage> receiveMessages(int maxCount, Duration wait) {
+        lock.lock();
+
+        try {
+            long deadline = clock.millis() + wait.toMillis();
+            releaseExpiredLocks();
+
+            while (availableMessages.isEmpty()) {
+                long waitMs = Math.min(deadline, getNextLockExpiryMs()) - clock.millis();
+
+                if (waitMs <= 0 && clock.millis() >= deadline) {
+                    return Collections.emptyList();
+                }
+
+                messagesAvailable.await(Math.max(waitMs, 1), TimeUnit.MILLISECONDS);
+                releaseExpiredLocks();
+            }
+
+            List<IMessage> messages = new ArrayList<>();
+
+            while (messages.size() < maxCount && !availableMessages.isEmpty()) {
+                messages.add(lockMessage(availableMessages.pollFirst()));
+            }
+
+            return messages;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void completeMessage(String messageId, UUID messageLockToken) {
-        // nothing to be done
+        withLock(() -> {
+            takeLockedMessage(messageLockToken, messageId);
+            completedCount++;
+            return null;
+        });
     }
 
     @Override
@@ -37,15 +175,383 @@ public class ServiceBusClientStub implements IServiceBusClient {
         String description,
         Map<String, String> propertiesToModify
     ) {
-        // nothing to be done
+        withLock(() -> {
+            StoredMessage storedMessage = takeLockedMessage(message.getLockToken(), message.getMessageId());
+            storedMessage.updateProperties(propertiesToModify);
+            deadLetter(storedMessage, reason, description);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> completeMessageAsync(IMessage message) {
+        return settleAsync(() -> completeMessage(message.getMessageId(), message.getLockToken()));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendToDeadLetterAsync(
+        IMessage message,
+        String reason,
+        String description,
+        Map<String, String> fieldValidationErrors
+    ) {
+        return settleAsync(() -> sendToDeadLetter(message, reason, description, fieldValidationErrors));
+    }
+
+    @Override
+    public CompletableFuture<Void> abandonMessageAsync(
+        IMessage message,
+        Map<String, Object> propertiesToModify
+    ) {
+        return settleAsync(() -> withLock(() -> {
+            StoredMessage storedMessage = takeLockedMessage(message.getLockToken(), message.getMessageId());
+            storedMessage.updateProperties(propertiesToModify);
+            redeliver(storedMessage);
+            return null;
+        }));
     }
 
     @Override
-    public void close() throws Exception {
-        // nothing to be done
+    public CompletableFuture<Instant> renewMessageLockAsync(IMessage message) {
+        return CompletableFuture.supplyAsync(() -> withLock(() -> {
+            releaseExpiredLocks();
+            StoredMessage storedMessage = getLockedMessage(message.getLockToken(), message.getMessageId());
+
+            storedMessage.lockedUntilMs = clock.millis() + lockDurationMs;
+            lockExpiries.addLast(new LockExpiry(storedMessage, storedMessage.lockToken, storedMessage.lockedUntilMs));
+
+            return Instant.ofEpochMilli(storedMessage.lockedUntilMs);
+        }));
+    }
+
+    @Override
+    public boolean isClosed() {
+        // the subscription outlives its receivers
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // the subscription outlives its receivers
+    }
+
+    /**
+     * Removes all messages, including locked and dead-lettered ones, and resets counters.
+     */
+    public void clear() {
+        withLock(() -> {
+            availableMessages.clear();
+            lockedMessages.clear();
+            lockExpiries.clear();
+            deadLetteredMessages.clear();
+            completedCount = 0;
+            redeliveredCount = 0;
+            return null;
+        });
+    }
+
+    /**
+     * Returns the number of messages waiting to be received (not locked).
+     */
+    public int getActiveMessageCount() {
+        return withLock(() -> {
+            releaseExpiredLocks();
+            return availableMessages.size();
+        });
+    }
+
+    public int getLockedMessageCount() {
+        return withLock(() -> {
+            releaseExpiredLocks();
+            return lockedMessages.size();
+        });
+    }
+
+    public long getCompletedCount() {
+        return withLock(() -> completedCount);
+    }
+
+    /**
+     * Returns how many times messages became available again, after their locks expired or they were abandoned.
+     */
+    public long getRedeliveredCount() {
+        return withLock(() -> {
+            releaseExpiredLocks();
+            return redeliveredCount;
+        });
+    }
+
+    public int getDeadLetteredCount() {
+        return withLock(() -> {
+            releaseExpiredLocks();
+            return deadLetteredMessages.size();
+        });
+    }
+
+    public List<DeadLetteredMessage> getDeadLetteredMessages() {
+        return withLock(() -> {
+            releaseExpiredLocks();
+            return new ArrayList<>(deadLetteredMessages);
+        });
+    }
+
+    // must be called with the lock held
+    private IMessage lockMessage(StoredMessage message) {
+        message.lockToken = UUID.randomUUID();
+        message.lockedUntilMs = clock.millis() + lockDurationMs;
+        lockedMessages.put(message.lockToken, message);
+        lockExpiries.addLast(new LockExpiry(message, message.lockToken, message.lockedUntilMs));
+
+        return message.createView();
+    }
+
+    // must be called with the lock held
+    private StoredMessage takeLockedMessage(UUID lockToken, String messageId) {
+        releaseExpiredLocks();
+        StoredMessage message = getLockedMessage(lockToken, messageId);
+
+        lockedMessages.remove(lockToken);
+        message.lockToken = null;
+
+        return message;
+    }
+
+    // must be called with the lock held
+    private StoredMessage getLockedMessage(UUID lockToken, String messageId) {
+        StoredMessage message = lockToken == null ? null : lockedMessages.get(lockToken);
+
+        if (message == null) {
+            throw new ServiceBusException(
+                String.format("Failed to settle message. Message ID: %s", messageId),
+                new MessageLockLostException("The lock supplied is invalid. Either the lock expired, "
+                    + "or the message has already been removed from the queue")
+            );
+        }
+
+        return message;
+    }
+
+    // must be called with the lock held
+    private void releaseExpiredLocks() {
+        long now = clock.millis();
+
+        while (!lockExpiries.isEmpty() && lockExpiries.peekFirst().expiresAtMs <= now) {
+            LockExpiry expiry = lockExpiries.pollFirst();
+            StoredMessage message = expiry.message;
+
+            // stale when the message has been settled, received again or its lock renewed
+            if (expiry.lockToken.equals(message.lockToken) && expiry.expiresAtMs == message.lockedUntilMs) {
+                lockedMessages.remove(message.lockToken);
+                message.lockToken = null;
+                redeliver(message);
+            }
+        }
+    }
+
+    // must be called with the lock held
+    private void redeliver(StoredMessage message) {
+        message.deliveryCount++;
+
+        if (message.deliveryCount >= maxDeliveryCount) {
+            deadLetter(message, MAX_DELIVERY_COUNT_EXCEEDED, "Message could not be consumed after "
+                + maxDeliveryCount + " delivery attempts");
+        } else {
+            redeliveredCount++;
+            // redelivered messages keep their place at the front of the subscription
+            availableMessages.addFirst(message);
+            messagesAvailable.signal();
+        }
     }
 
-    public void setMessagesToReceive(Queue<IMessage> messagesToReceive) {
-        this.messagesToReceive = messagesToReceive;
+    // must be called with the lock held
+    private void deadLetter(StoredMessage message, String reason, String description) {
+        deadLetteredMessages.add(
+            new DeadLetteredMessage(
+                message.messageId,
+                message.body,
+                message.properties == null ? Collections.emptyMap() : message.properties,
+                reason,
+                description,
+                message.deliveryCount
+            )
+        );
+    }
+
+    // must be called with the lock held
+    private long getNextLockExpiryMs() {
+        return lockExpiries.isEmpty() ? Long.MAX_VALUE : lockExpiries.peekFirst().expiresAtMs;
+    }
+
+    private CompletableFuture<Void> settleAsync(Runnable settlement) {
+        return CompletableFuture.runAsync(settlement);
+    }
+
+    private <T> T withLock(Supplier<T> action) {
+        lock.lock();
+
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Message moved to the dead letter store, either explicitly or after too many deliveries.
+     */
+    public static class DeadLetteredMessage {
+
+        public final String messageId;
+        public final byte[] body;
+        public final Map<String, Object> properties;
+        public final String reason;
+        public final String description;
+        public final long deliveryCount;
+
+        DeadLetteredMessage(
+            String messageId,
+            byte[] body,
+            Map<String, Object> properties,
+            String reason,
+            String description,
+            long deliveryCount
+        ) {
+            this.messageId = messageId;
+            this.body = body;
+            this.properties = properties;
+            this.reason = reason;
+            this.description = description;
+            this.deliveryCount = deliveryCount;
+        }
+    }
+
+    private static class LockExpiry {
+        final StoredMessage message;
+        final UUID lockToken;
+        final long expiresAtMs;
+
+        LockExpiry(StoredMessage message, UUID lockToken, long expiresAtMs) {
+            this.message = message;
+            this.lockToken = lockToken;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    // state is guarded by the lock of the stub
+    private static class StoredMessage {
+        final String messageId;
+        final byte[] body;
+        final String contentType;
+        Map<String, Object> properties;
+        long sequenceNumber;
+        long enqueuedTimeMs;
+        int deliveryCount;
+        UUID lockToken;
+        long lockedUntilMs;
+
+        StoredMessage(String messageId, byte[] body, String contentType, Map<String, Object> properties) {
+            this.messageId = messageId;
+            this.body = body;
+            this.contentType = contentType;
+            this.properties = properties;
+        }
+
+        void updateProperties(Map<String, ?> propertiesToModify) {
+            if (propertiesToModify != null && !propertiesToModify.isEmpty()) {
+                if (properties == null) {
+                    properties = new HashMap<>();
+                }
+
+                properties.putAll(propertiesToModify);
+            }
+        }
+
+        IMessage createView() {
+            return (IMessage) Proxy.newProxyInstance(
+                IMessage.class.getClassLoader(),
+                new Class<?>[] {IMessage.class},
+                new ReceivedMessageView(this)
+            );
+        }
+    }
+
+    /**
+     * Read-only snapshot of a message, as received by a receiver.
+     */
+    private static class ReceivedMessageView implements InvocationHandler {
+        private final String messageId;
+        private final byte[] body;
+        private final String contentType;
+        private final Map<String, Object> properties;
+        private final long sequenceNumber;
+        private final Instant enqueuedTime;
+        private final long deliveryCount;
+        private final UUID lockToken;
+        private final Instant lockedUntil;
+
+        ReceivedMessageView(StoredMessage message) {
+            this.messageId = message.messageId;
+            this.body = message.body;
+            this.contentType = message.contentType;
+            this.properties = message.properties == null
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new HashMap<>(message.properties));
+            this.sequenceNumber = message.sequenceNumber;
+            this.enqueuedTime = Instant.ofEpochMilli(message.enqueuedTimeMs);
+            this.deliveryCount = message.deliveryCount;
+            this.lockToken = message.lockToken;
+            this.lockedUntil = Instant.ofEpochMilli(message.lockedUntilMs);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getMessageId":
+                    return messageId;
+                case "getBody":
+                    return body;
+                case "getContentType":
+                    return contentType;
+                case "getProperties":
+                    return properties;
+                case "getSequenceNumber":
+                case "getEnqueuedSequenceNumber":
+                    return sequenceNumber;
+                case "getEnqueuedTimeUtc":
+                    return enqueuedTime;
+                case "getDeliveryCount":
+                    return deliveryCount;
+                case "getLockToken":
+                    return lockToken;
+                case "getLockedUntilUtc":
+                    return lockedUntil;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Message " + messageId + " (delivery count " + deliveryCount + ")";
+                default:
+                    return getDefaultValue(method);
+            }
+        }
+
+        private static Object getDefaultValue(Method method) {
+            if (!method.getName().startsWith("get") && !method.getName().startsWith("is")) {
+                throw new UnsupportedOperationException("Messages received from the stub are read-only");
+            }
+
+            Class<?> type = method.getReturnType();
+
+            if (type == boolean.class) {
+                return false;
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type == int.class) {
+                return 0;
+            } else {
+                return null;
+            }
+        }
     }
 }
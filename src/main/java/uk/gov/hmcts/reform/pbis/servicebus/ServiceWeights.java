@@ -0,0 +1,35 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells how big a share of email sending each service gets when multiple services
+ * have messages waiting in the pipeline.
+ *
+ * <p>Services without a mapping get the default weight. Weights can be replaced at runtime
+ * with {@link #reload(List)}.</p>
+ */
+public class ServiceWeights {
+
+    public static final int DEFAULT_WEIGHT = 1;
+
+    private volatile Map<String, Integer> weights = new HashMap<>();
+
+    public ServiceWeights(List<EmailTemplateMapping> mappings) {
+        reload(mappings);
+    }
+
+    public void reload(List<EmailTemplateMapping> mappings) {
+        Map<String, Integer> newWeights = new HashMap<>();
+        mappings.forEach(mapping -> newWeights.put(mapping.getService(), mapping.getWeight()));
+        weights = newWeights;
+    }
+
+    public int getWeight(String service) {
+        return weights.getOrDefault(service, DEFAULT_WEIGHT);
+    }
+}
@@ -0,0 +1,143 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.ExceptionPhase;
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.IMessageHandler;
+import com.microsoft.azure.servicebus.MessageHandlerOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import javax.annotation.PreDestroy;
+
+/**
+ * Alternative to {@link MessageQueueProcessor} that doesn't poll the subscription.
+ *
+ * <p>It registers a message handler with the subscription client, so that messages are
+ * processed as soon as they arrive, by up to the configured number of concurrent calls.
+ * Message locks are renewed automatically while messages are being processed.</p>
+ *
+ * <p>As the lock of a failed message is only renewed while its handler call lasts, the message
+ * is held for its retry delay by the call. To keep messages that can be processed from waiting
+ * behind them, only some of the calls can be taken by failed messages - once they're taken,
+ * other failed messages are abandoned straight away.</p>
+ *
+ * <p>The message pump is created by the same client factory as in polling mode, so streaming
+ * works with the Service Bus stub too.</p>
+ */
+@Service
+@ConditionalOnExpression(
+    "${scheduling.enable:true} && '${serviceBus.consumerMode:polling}' == 'streaming'"
+)
+public class StreamingMessageConsumer implements IMessageHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingMessageConsumer.class);
+
+    private final IServiceBusClientFactory clientFactory;
+    private final MessageProcessor messageProcessor;
+    private final MessageQueueProcessingTracker tracker;
+    private final MessageRetryPolicy retryPolicy;
+    private final int maxConcurrentCalls;
+    private final int maxRetryWaitingCalls;
+    private final Duration maxAutoRenewDuration;
+
+    private IMessagePump messagePump;
+    private MessageSettler settler;
+    private ExecutorService executorService;
+
+    @Autowired
+    public StreamingMessageConsumer(
+        IServiceBusClientFactory clientFactory,
+        MessageProcessor messageProcessor,
+        MessageQueueProcessingTracker tracker,
+        MessageRetryPolicy retryPolicy,
+        @Value("${serviceBus.maxConcurrentCalls}") int maxConcurrentCalls,
+        @Value("${serviceBus.maxRetryWaitingCalls}") int maxRetryWaitingCalls,
+        @Value("${serviceBus.maxAutoRenewDurationInMs}") long maxAutoRenewDurationMs
+    ) {
+        if (maxRetryWaitingCalls >= maxConcurrentCalls) {
+            throw new IllegalArgumentException("Max retry waiting calls must be lower than max concurrent calls");
+        }
+
+        this.clientFactory = clientFactory;
+        this.messageProcessor = messageProcessor;
+        this.tracker = tracker;
+        this.retryPolicy = retryPolicy;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxRetryWaitingCalls = maxRetryWaitingCalls;
+        this.maxAutoRenewDuration = Duration.ofMillis(maxAutoRenewDurationMs);
+    }
+
+    // like the polling scheduler, starts once service routes have been loaded
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        logger.info("Registering message handler. Max concurrent calls: {}", maxConcurrentCalls);
+
+        messagePump = clientFactory.createMessagePump();
+        settler = new MessageSettler(
+            messagePump,
+            tracker,
+            retryPolicy,
+            maxConcurrentCalls,
+            new Semaphore(maxRetryWaitingCalls)
+        );
+
+        // the message pump runs no more handlers at once than the max concurrent calls
+        executorService = Executors.newFixedThreadPool(
+            maxConcurrentCalls,
+            new CustomizableThreadFactory("message-handler-")
+        );
+
+        messagePump.registerMessageHandler(
+            this,
+            new MessageHandlerOptions(maxConcurrentCalls, false, maxAutoRenewDuration),
+            executorService
+        );
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (messagePump == null) {
+            // the application stopped before it was ready
+            return;
+        }
+
+        logger.info("Closing message pump.");
+
+        try {
+            messagePump.close();
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> onMessageAsync(IMessage message) {
+        tracker.trackReceivedMessage(message.getMessageId());
+
+        MessageProcessingResult processingResult = messageProcessor.process(message);
+        tracker.trackMessageProcessingResult(processingResult, message);
+
+        // settlement failures are reported by the settler, there's nothing left for the pump to do
+        return settler
+            .settle(message, processingResult)
+            .handle((result, error) -> null);
+    }
+
+    @Override
+    public void notifyException(Throwable exception, ExceptionPhase phase) {
+        tracker.trackMessagePumpError(exception, phase.toString());
+    }
+}
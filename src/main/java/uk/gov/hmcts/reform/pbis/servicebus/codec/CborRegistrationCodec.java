@@ -0,0 +1,22 @@
+package uk.gov.hmcts.reform.pbis.servicebus.codec;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registrations encoded as CBOR (RFC 7049) - a binary equivalent of JSON, smaller and cheaper to parse.
+ */
+@Component
+public class CborRegistrationCodec extends StreamingRegistrationCodec {
+
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    public CborRegistrationCodec() {
+        super(new CBORFactory());
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+}
@@ -0,0 +1,22 @@
+package uk.gov.hmcts.reform.pbis.servicebus.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registrations encoded as JSON - the default for messages without a content type.
+ */
+@Component
+public class JsonRegistrationCodec extends StreamingRegistrationCodec {
+
+    public static final String CONTENT_TYPE = "application/json";
+
+    public JsonRegistrationCodec() {
+        super(new JsonFactory());
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+}
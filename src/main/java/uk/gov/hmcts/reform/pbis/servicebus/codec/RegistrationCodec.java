@@ -0,0 +1,33 @@
+package uk.gov.hmcts.reform.pbis.servicebus.codec;
+
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecoder;
+import uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult;
+
+import java.util.List;
+
+/**
+ * Encoding of registrations in message bodies, identified by the content type of messages.
+ *
+ * <p>Codecs registered as beans are picked up by {@link RegistrationDecoder}. Implementations must be thread-safe.</p>
+ */
+public interface RegistrationCodec {
+
+    /**
+     * Returns the content type of messages encoded with this codec, in lower case and without parameters
+     * (e.g. {@code application/json}).
+     */
+    String getContentType();
+
+    /**
+     * Reads a registration, or a batch of them, from a message body. Malformed bodies are reported in the result.
+     */
+    RegistrationDecodingResult decode(byte[] body);
+
+    byte[] encode(PrivateBetaRegistration registration);
+
+    /**
+     * Writes the registrations as a batch, to be sent in one message.
+     */
+    byte[] encode(List<PrivateBetaRegistration> registrations);
+}
@@ -0,0 +1,188 @@
+package uk.gov.hmcts.reform.pbis.servicebus.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult.decoded;
+import static uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult.decodedBatch;
+import static uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult.malformed;
+
+/**
+ * Codec of any format Jackson has a streaming parser for. Registrations are read and written
+ * field by field, without reflection.
+ *
+ * <p>The body must be an object with the (snake_case) fields of {@link PrivateBetaRegistration} only,
+ * or a non-empty array of such objects (a batch). Values are read as text - numbers and booleans are
+ * accepted too, like they are by Jackson data binding. Missing fields are left empty, for validation
+ * to report. Registrations are flat, so any nested object or array is rejected as soon as it starts.
+ * A batch with a malformed registration is malformed as a whole.</p>
+ */
+public abstract class StreamingRegistrationCodec implements RegistrationCodec {
+
+    private static final String REFERENCE_ID = "reference_id";
+    private static final String SERVICE = "service";
+    private static final String EMAIL_ADDRESS = "email_address";
+    private static final String FIRST_NAME = "first_name";
+    private static final String LAST_NAME = "last_name";
+
+    // thread-safe, and shared for the sake of its symbol tables
+    private final JsonFactory factory;
+
+    protected StreamingRegistrationCodec(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public RegistrationDecodingResult decode(byte[] body) {
+        try (JsonParser parser = factory.createParser(body)) {
+            return decode(parser);
+        } catch (JsonProcessingException e) {
+            return malformed("Message body is not valid " + factory.getFormatName() + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            return malformed("Failed to read message body: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] encode(PrivateBetaRegistration registration) {
+        return encode(singletonList(registration), false);
+    }
+
+    @Override
+    public byte[] encode(List<PrivateBetaRegistration> registrations) {
+        return encode(registrations, true);
+    }
+
+    private byte[] encode(List<PrivateBetaRegistration> registrations, boolean batch) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256 * registrations.size());
+
+        try (JsonGenerator generator = factory.createGenerator(output)) {
+            if (batch) {
+                generator.writeStartArray();
+            }
+
+            for (PrivateBetaRegistration registration : registrations) {
+                generator.writeStartObject();
+                generator.writeStringField(REFERENCE_ID, registration.referenceId);
+                generator.writeStringField(SERVICE, registration.service);
+                generator.writeStringField(EMAIL_ADDRESS, registration.emailAddress);
+                generator.writeStringField(FIRST_NAME, registration.firstName);
+                generator.writeStringField(LAST_NAME, registration.lastName);
+                generator.writeEndObject();
+            }
+
+            if (batch) {
+                generator.writeEndArray();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode registration", e);
+        }
+
+        return output.toByteArray();
+    }
+
+    private RegistrationDecodingResult decode(JsonParser parser) throws IOException {
+        JsonToken firstToken = parser.nextToken();
+        RegistrationDecodingResult result;
+
+        if (firstToken == JsonToken.START_OBJECT) {
+            result = decodeObject(parser, "");
+        } else if (firstToken == JsonToken.START_ARRAY) {
+            result = decodeBatch(parser);
+        } else {
+            return malformed("Message body is not a " + factory.getFormatName() + " object or array");
+        }
+
+        // the body ends with the end of the object or array - anything else fails parsing
+        if (result.isDecoded() && parser.nextToken() != null) {
+            return malformed(
+                "Unexpected content after " + factory.getFormatName() + (result.batch ? " array" : " object")
+            );
+        }
+
+        return result;
+    }
+
+    private RegistrationDecodingResult decodeBatch(JsonParser parser) throws IOException {
+        List<PrivateBetaRegistration> registrations = new ArrayList<>();
+        JsonToken token;
+
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            int index = registrations.size();
+
+            if (token != JsonToken.START_OBJECT) {
+                return malformed(String.format("Registration %s is not a %s object", index, factory.getFormatName()));
+            }
+
+            RegistrationDecodingResult entry = decodeObject(parser, String.format("Registration %s: ", index));
+
+            if (!entry.isDecoded()) {
+                return entry;
+            }
+
+            registrations.add(entry.registration);
+        }
+
+        return registrations.isEmpty()
+            ? malformed("Message body has no registrations")
+            : decodedBatch(registrations);
+    }
+
+    /**
+     * Reads the object that has just started, up to its end.
+     *
+     * @param errorPrefix Prefix of errors, telling which registration of a batch they're about
+     */
+    private RegistrationDecodingResult decodeObject(JsonParser parser, String errorPrefix) throws IOException {
+        String referenceId = null;
+        String service = null;
+        String emailAddress = null;
+        String firstName = null;
+        String lastName = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+
+            if (valueToken.isStructStart()) {
+                return malformed(String.format("%sField %s is not a simple value", errorPrefix, fieldName));
+            }
+
+            String value = valueToken == JsonToken.VALUE_NULL ? null : parser.getText();
+
+            switch (fieldName) {
+                case REFERENCE_ID:
+                    referenceId = value;
+                    break;
+                case SERVICE:
+                    service = value;
+                    break;
+                case EMAIL_ADDRESS:
+                    emailAddress = value;
+                    break;
+                case FIRST_NAME:
+                    firstName = value;
+                    break;
+                case LAST_NAME:
+                    lastName = value;
+                    break;
+                default:
+                    return malformed(String.format("%sUnknown field %s", errorPrefix, fieldName));
+            }
+        }
+
+        // the loop only ends on the end of the object - anything else fails parsing
+        return decoded(new PrivateBetaRegistration(referenceId, service, emailAddress, firstName, lastName));
+    }
+}
@@ -0,0 +1,28 @@
+package uk.gov.hmcts.reform.pbis.servicebus.locks;
+
+/**
+ * Lock renewals done since the previous snapshot was taken.
+ */
+public class LockRenewalStatistics {
+
+    public final long renewedCount;
+    public final long failedCount;
+    // renewals started with less time left on the lock than the near-miss threshold
+    public final long nearMissCount;
+    public final long expiredCount;
+    public final int lockedMessageCount;
+
+    public LockRenewalStatistics(
+        long renewedCount,
+        long failedCount,
+        long nearMissCount,
+        long expiredCount,
+        int lockedMessageCount
+    ) {
+        this.renewedCount = renewedCount;
+        this.failedCount = failedCount;
+        this.nearMissCount = nearMissCount;
+        this.expiredCount = expiredCount;
+        this.lockedMessageCount = lockedMessageCount;
+    }
+}
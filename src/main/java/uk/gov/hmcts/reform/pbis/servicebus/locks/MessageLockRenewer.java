@@ -0,0 +1,258 @@
+package uk.gov.hmcts.reform.pbis.servicebus.locks;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.reform.pbis.servicebus.IServiceBusClient;
+import uk.gov.hmcts.reform.pbis.servicebus.MessageQueueProcessingTracker;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Keeps the locks of messages being processed from expiring.
+ *
+ * <p>Each registered message is renewed shortly before its lock expires, for as long as it
+ * stays registered. Renewal deadlines are kept in a {@link TimingWheel}, which is checked
+ * on every tick by a single thread, so the cost doesn't grow with the number of messages.</p>
+ *
+ * <p>A renewal is a near miss when it starts with less time left on the lock than
+ * the configured threshold - it means renewals should start earlier.</p>
+ */
+@Component
+@ConditionalOnExpression(
+    "${scheduling.enable:true} && '${serviceBus.consumerMode:polling}' == 'polling'"
+)
+public class MessageLockRenewer {
+
+    private static final int WHEEL_SIZE = 512;
+
+    // how long to wait before trying again when renewal fails
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final MessageQueueProcessingTracker tracker;
+    private final Duration renewBeforeExpiry;
+    private final Duration nearMissThreshold;
+    private final Duration tickDuration;
+    private final Clock clock;
+    private final TimingWheel<LockedMessage> timingWheel;
+    private final Map<UUID, LockedMessage> lockedMessages = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+
+    private final LongAdder renewedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder nearMissCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+
+    @Autowired
+    public MessageLockRenewer(
+        MessageQueueProcessingTracker tracker,
+        @Value("${serviceBus.lockRenewal.renewBeforeExpiryInMs}") long renewBeforeExpiryMs,
+        @Value("${serviceBus.lockRenewal.nearMissThresholdInMs}") long nearMissThresholdMs,
+        @Value("${serviceBus.lockRenewal.tickDurationInMs}") long tickDurationMs
+    ) {
+        this(
+            tracker,
+            Duration.ofMillis(renewBeforeExpiryMs),
+            Duration.ofMillis(nearMissThresholdMs),
+            Duration.ofMillis(tickDurationMs),
+            Clock.systemUTC()
+        );
+    }
+
+    MessageLockRenewer(
+        MessageQueueProcessingTracker tracker,
+        Duration renewBeforeExpiry,
+        Duration nearMissThreshold,
+        Duration tickDuration,
+        Clock clock
+    ) {
+        this.tracker = tracker;
+        this.renewBeforeExpiry = renewBeforeExpiry;
+        this.nearMissThreshold = nearMissThreshold;
+        this.tickDuration = tickDuration;
+        this.clock = clock;
+        this.timingWheel = new TimingWheel<>(tickDuration, WHEEL_SIZE, clock.instant());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("message-lock-renewer-")
+        );
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.scheduleAtFixedRate(
+            this::tick,
+            tickDuration.toMillis(),
+            tickDuration.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Starts renewing the lock of the message until it's unregistered.
+     *
+     * @param serviceBusClient Client that received the message
+     */
+    public void register(IMessage message, IServiceBusClient serviceBusClient) {
+        Instant lockedUntil = message.getLockedUntilUtc();
+
+        if (lockedUntil == null || !lockedUntil.isAfter(clock.instant())) {
+            // there's no lock left to renew
+            return;
+        }
+
+        LockedMessage lockedMessage = new LockedMessage(message, serviceBusClient, lockedUntil);
+        lockedMessages.put(message.getLockToken(), lockedMessage);
+        scheduleRenewal(lockedMessage, lockedUntil.minus(renewBeforeExpiry));
+    }
+
+    /**
+     * Stops renewing the lock of the message, e.g. because it's been settled.
+     */
+    public void unregister(IMessage message) {
+        LockedMessage lockedMessage = lockedMessages.remove(message.getLockToken());
+
+        if (lockedMessage != null) {
+            lockedMessage.cancelRenewal(timingWheel);
+        }
+    }
+
+    public int getLockedMessageCount() {
+        return lockedMessages.size();
+    }
+
+    /**
+     * Returns statistics collected so far and starts collecting them anew.
+     */
+    public LockRenewalStatistics takeStatisticsSnapshot() {
+        return new LockRenewalStatistics(
+            renewedCount.sumThenReset(),
+            failedCount.sumThenReset(),
+            nearMissCount.sumThenReset(),
+            expiredCount.sumThenReset(),
+            lockedMessages.size()
+        );
+    }
+
+    /**
+     * Starts renewals that are due.
+     */
+    void tick() {
+        try {
+            for (LockedMessage lockedMessage : timingWheel.advance(clock.instant())) {
+                renew(lockedMessage);
+            }
+        } catch (Exception e) {
+            // an exception would stop the ticker
+            tracker.trackProcessingError(e);
+        }
+    }
+
+    private void renew(LockedMessage lockedMessage) {
+        if (!isRegistered(lockedMessage)) {
+            return;
+        }
+
+        Duration timeLeft = Duration.between(clock.instant(), lockedMessage.lockedUntil);
+
+        if (timeLeft.isZero() || timeLeft.isNegative()) {
+            lockedMessages.remove(lockedMessage.getLockToken(), lockedMessage);
+            expiredCount.increment();
+            tracker.trackMessageLockExpired(lockedMessage.message);
+            return;
+        }
+
+        if (timeLeft.compareTo(nearMissThreshold) < 0) {
+            nearMissCount.increment();
+        }
+
+        try {
+            lockedMessage.serviceBusClient
+                .renewMessageLockAsync(lockedMessage.message)
+                .whenComplete((lockedUntil, error) -> onRenewalCompleted(lockedMessage, lockedUntil, error));
+        } catch (Exception e) {
+            onRenewalCompleted(lockedMessage, null, e);
+        }
+    }
+
+    private void onRenewalCompleted(LockedMessage lockedMessage, Instant lockedUntil, Throwable error) {
+        if (!isRegistered(lockedMessage)) {
+            // settled in the meantime
+            return;
+        }
+
+        if (error == null) {
+            renewedCount.increment();
+            lockedMessage.lockedUntil = lockedUntil;
+            scheduleRenewal(lockedMessage, lockedUntil.minus(renewBeforeExpiry));
+        } else {
+            failedCount.increment();
+            tracker.trackMessageLockRenewalError(lockedMessage.message, unwrap(error));
+
+            // keep trying until the lock expires
+            Instant retryTime = clock.instant().plus(RETRY_DELAY);
+            scheduleRenewal(
+                lockedMessage,
+                retryTime.isBefore(lockedMessage.lockedUntil) ? retryTime : lockedMessage.lockedUntil
+            );
+        }
+    }
+
+    private void scheduleRenewal(LockedMessage lockedMessage, Instant renewalTime) {
+        lockedMessage.renewal = timingWheel.schedule(lockedMessage, renewalTime);
+    }
+
+    private boolean isRegistered(LockedMessage lockedMessage) {
+        return lockedMessages.get(lockedMessage.getLockToken()) == lockedMessage;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null
+            ? error.getCause()
+            : error;
+    }
+
+    private static class LockedMessage {
+        final IMessage message;
+        final IServiceBusClient serviceBusClient;
+        volatile Instant lockedUntil;
+        volatile TimingWheel.Timeout<LockedMessage> renewal;
+
+        LockedMessage(IMessage message, IServiceBusClient serviceBusClient, Instant lockedUntil) {
+            this.message = message;
+            this.serviceBusClient = serviceBusClient;
+            this.lockedUntil = lockedUntil;
+        }
+
+        UUID getLockToken() {
+            return message.getLockToken();
+        }
+
+        void cancelRenewal(TimingWheel<LockedMessage> timingWheel) {
+            TimingWheel.Timeout<LockedMessage> scheduledRenewal = renewal;
+
+            if (scheduledRenewal != null) {
+                timingWheel.cancel(scheduledRenewal);
+            }
+        }
+    }
+}
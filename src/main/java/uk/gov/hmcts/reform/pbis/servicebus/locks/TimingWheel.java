@@ -0,0 +1,127 @@
+package uk.gov.hmcts.reform.pbis.servicebus.locks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel - keeps items until their deadlines pass.
+ *
+ * <p>Time is divided into ticks of equal duration. Each item goes into the bucket for the tick
+ * of its deadline (modulo wheel size), so scheduling and cancelling take constant time, no matter
+ * how many items are waiting. Advancing the wheel only looks at buckets of the ticks that have
+ * passed. Deadlines are rounded up to the end of their tick.</p>
+ */
+public class TimingWheel<T> {
+
+    private final long tickDurationNanos;
+    private final Instant start;
+    private final List<Set<Timeout<T>>> buckets;
+
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(Duration tickDuration, int wheelSize, Instant start) {
+        if (tickDuration.isZero() || tickDuration.isNegative()) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("Wheel size must be positive");
+        }
+
+        this.tickDurationNanos = tickDuration.toNanos();
+        this.start = start;
+        this.buckets = new ArrayList<>(wheelSize);
+
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Adds the item to the wheel. Items with deadlines already passed are due at the next tick.
+     *
+     * @return Handle that can be used for cancelling
+     */
+    public synchronized Timeout<T> schedule(T item, Instant deadline) {
+        long deadlineTick = Math.max(getTickEndingAfter(deadline), currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(item, deadlineTick);
+
+        getBucket(deadlineTick).add(timeout);
+        size++;
+
+        return timeout;
+    }
+
+    /**
+     * Removes the item from the wheel, unless it's already due.
+     */
+    public synchronized void cancel(Timeout<T> timeout) {
+        if (getBucket(timeout.deadlineTick).remove(timeout)) {
+            size--;
+        }
+    }
+
+    /**
+     * Moves the wheel to the given time.
+     *
+     * @return Items whose deadlines have passed
+     */
+    public synchronized List<T> advance(Instant now) {
+        long targetTick = getTickEndingAfter(now) - 1;
+        List<T> dueItems = new ArrayList<>();
+
+        // after a long pause every bucket only needs to be visited once
+        long firstTick = Math.max(currentTick + 1, targetTick - buckets.size() + 1);
+
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            Iterator<Timeout<T>> timeouts = getBucket(tick).iterator();
+
+            while (timeouts.hasNext()) {
+                Timeout<T> timeout = timeouts.next();
+
+                if (timeout.deadlineTick <= targetTick) {
+                    timeouts.remove();
+                    size--;
+                    dueItems.add(timeout.item);
+                }
+            }
+        }
+
+        currentTick = Math.max(currentTick, targetTick);
+
+        return dueItems;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private long getTickEndingAfter(Instant time) {
+        long elapsedNanos = Duration.between(start, time).toNanos();
+        return Math.floorDiv(elapsedNanos, tickDurationNanos) + 1;
+    }
+
+    private Set<Timeout<T>> getBucket(long tick) {
+        return buckets.get((int) Math.floorMod(tick, (long) buckets.size()));
+    }
+
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getItem() {
+            return item;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * First-in-first-out stage queue with a fixed capacity.
+ */
+public class BoundedStageQueue<T> implements StageQueue<T> {
+
+    private final BlockingQueue<T> queue;
+
+    public BoundedStageQueue(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,33 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+/**
+ * Statistics of items with one key in {@link WeightedFairStageQueue}, since the last snapshot was taken.
+ */
+public class KeyQueueStatistics {
+
+    public final String key;
+    public final int weight;
+    public final long takenCount;
+    public final double averageWaitTimeMs;
+    public final double maxWaitTimeMs;
+    public final int maxQueueDepth;
+    public final int queueDepth;
+
+    public KeyQueueStatistics(
+        String key,
+        int weight,
+        long takenCount,
+        double averageWaitTimeMs,
+        double maxWaitTimeMs,
+        int maxQueueDepth,
+        int queueDepth
+    ) {
+        this.key = key;
+        this.weight = weight;
+        this.takenCount = takenCount;
+        this.averageWaitTimeMs = averageWaitTimeMs;
+        this.maxWaitTimeMs = maxWaitTimeMs;
+        this.maxQueueDepth = maxQueueDepth;
+        this.queueDepth = queueDepth;
+    }
+}
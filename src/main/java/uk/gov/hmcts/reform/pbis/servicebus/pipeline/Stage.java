@@ -0,0 +1,92 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * A step of processing run by its own, fixed number of workers.
+ *
+ * <p>Items wait for a worker in the stage queue. When the queue is full, putting another item
+ * waits until there's space, so a stage that can't keep up slows down the stages before it.
+ * Once handled, an item is passed to the downstream sink.</p>
+ */
+public class Stage<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(Stage.class);
+
+    private final String name;
+    private final int concurrency;
+    private final StageQueue<T> queue;
+    private final Consumer<T> handler;
+    private final StageStatistics statistics;
+
+    private ExecutorService workers;
+
+    public Stage(String name, int concurrency, StageQueue<T> queue, Consumer<T> handler) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.queue = queue;
+        this.handler = handler;
+        this.statistics = new StageStatistics(name);
+    }
+
+    /**
+     * Starts the workers of the stage.
+     *
+     * @param downstream Receives each item after it's been handled
+     */
+    public void start(StageSink<T> downstream) {
+        workers = Executors.newFixedThreadPool(
+            concurrency,
+            new CustomizableThreadFactory(name + "-stage-")
+        );
+
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> processItems(downstream));
+        }
+    }
+
+    public void stop() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+        statistics.recordQueueDepth(queue.size());
+    }
+
+    public StageStatistics.Snapshot takeStatisticsSnapshot() {
+        return statistics.takeSnapshot(queue.size());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void processItems(StageSink<T> downstream) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                T item = queue.take();
+                long startTime = System.nanoTime();
+
+                try {
+                    handler.accept(item);
+                } catch (RuntimeException e) {
+                    logger.error(String.format("Failed to handle item in %s stage", name), e);
+                }
+
+                statistics.recordServiceTime(System.nanoTime() - startTime);
+                downstream.accept(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
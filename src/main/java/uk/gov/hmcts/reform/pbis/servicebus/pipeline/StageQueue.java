@@ -0,0 +1,19 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+/**
+ * Queue of items waiting for a worker of a pipeline stage.
+ */
+public interface StageQueue<T> {
+
+    /**
+     * Adds the item to the queue, waiting for space to become available if needed.
+     */
+    void put(T item) throws InterruptedException;
+
+    /**
+     * Removes the next item from the queue, waiting for one to become available if needed.
+     */
+    T take() throws InterruptedException;
+
+    int size();
+}
@@ -0,0 +1,13 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+/**
+ * Receives items processed by a stage, e.g. the next stage of the pipeline.
+ */
+@FunctionalInterface
+public interface StageSink<T> {
+
+    /**
+     * Accepts the item, waiting if it can't be taken in yet.
+     */
+    void accept(T item) throws InterruptedException;
+}
@@ -0,0 +1,68 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects queue depth and service time of a pipeline stage, since the last snapshot was taken.
+ */
+public class StageStatistics {
+
+    private final String stageName;
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder totalServiceTimeNanos = new LongAdder();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public StageStatistics(String stageName) {
+        this.stageName = stageName;
+    }
+
+    public void recordServiceTime(long serviceTimeNanos) {
+        processedCount.increment();
+        totalServiceTimeNanos.add(serviceTimeNanos);
+    }
+
+    public void recordQueueDepth(int queueDepth) {
+        maxQueueDepth.accumulateAndGet(queueDepth, Math::max);
+    }
+
+    /**
+     * Returns statistics collected so far and starts collecting them anew.
+     *
+     * @param currentQueueDepth Number of items waiting in stage queue at the moment
+     */
+    public Snapshot takeSnapshot(int currentQueueDepth) {
+        long count = processedCount.sumThenReset();
+        long serviceTimeNanos = totalServiceTimeNanos.sumThenReset();
+        int maxDepth = Math.max(maxQueueDepth.getAndSet(0), currentQueueDepth);
+
+        double averageServiceTimeMs = count == 0
+            ? 0
+            : (double) serviceTimeNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+
+        return new Snapshot(stageName, count, averageServiceTimeMs, maxDepth, currentQueueDepth);
+    }
+
+    public static class Snapshot {
+        public final String stageName;
+        public final long processedCount;
+        public final double averageServiceTimeMs;
+        public final int maxQueueDepth;
+        public final int queueDepth;
+
+        public Snapshot(
+            String stageName,
+            long processedCount,
+            double averageServiceTimeMs,
+            int maxQueueDepth,
+            int queueDepth
+        ) {
+            this.stageName = stageName;
+            this.processedCount = processedCount;
+            this.averageServiceTimeMs = averageServiceTimeMs;
+            this.maxQueueDepth = maxQueueDepth;
+            this.queueDepth = queueDepth;
+        }
+    }
+}
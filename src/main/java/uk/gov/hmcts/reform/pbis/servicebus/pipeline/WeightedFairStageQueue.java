@@ -0,0 +1,329 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+import java.util.ArrayDeque;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Stage queue that shares the workers of a stage fairly between items with different keys.
+ *
+ * <p>Items of each key wait in a first-in-first-out queue of their own. Keys with waiting items
+ * take turns in round-robin order, and in its turn a key hands out as many items as its weight.
+ * This way a burst of items with one key delays items with other keys by a few turns, instead
+ * of making them wait until the whole burst is processed.</p>
+ *
+ * <p>An item that can't be processed yet can be put back with a delay. It goes back to the front
+ * of the queue of its key, and the key is skipped until the delay passes, so that workers take
+ * items of other keys in the meantime. A skipped key doesn't lose its place in the round-robin order.</p>
+ *
+ * <p>The capacity is shared by all keys.</p>
+ */
+public class WeightedFairStageQueue<T> implements StageQueue<T> {
+
+    private final int capacity;
+    private final Function<T, String> keyFunction;
+    private final ToIntFunction<String> weightFunction;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // guarded by lock
+    private final Map<String, KeyQueue<T>> keyQueues = new TreeMap<>();
+    private final Deque<KeyQueue<T>> activeKeyQueues = new ArrayDeque<>();
+    private int size;
+
+    /**
+     * Creates the queue.
+     *
+     * @param keyFunction    Returns the key of an item
+     * @param weightFunction Returns the weight of a key - keys with weights below 1 get weight 1
+     */
+    public WeightedFairStageQueue(
+        int capacity,
+        Function<T, String> keyFunction,
+        ToIntFunction<String> weightFunction
+    ) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.keyFunction = keyFunction;
+        this.weightFunction = weightFunction;
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        String key = keyFunction.apply(item);
+
+        lock.lockInterruptibly();
+
+        try {
+            // items put back can take the queue over its capacity for a while
+            while (size >= capacity) {
+                notFull.await();
+            }
+
+            getActiveKeyQueue(key).addLast(item, System.nanoTime());
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts back an item taken from the queue, which can't be processed until the delay passes.
+     * Until then, no items of its key are handed out.
+     *
+     * <p>Doesn't wait for space, so that the worker putting the item back can go on with other items.</p>
+     */
+    public void putBack(T item, Duration delay) throws InterruptedException {
+        String key = keyFunction.apply(item);
+
+        lock.lockInterruptibly();
+
+        try {
+            long now = System.nanoTime();
+            KeyQueue<T> keyQueue = getActiveKeyQueue(key);
+
+            keyQueue.addFirst(item, now);
+            keyQueue.delayUntil(now + delay.toNanos());
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                KeyQueue<T> keyQueue = findReadyKeyQueue(now);
+
+                if (keyQueue != null) {
+                    T item = keyQueue.poll(now);
+
+                    if (keyQueue.isEmpty()) {
+                        activeKeyQueues.remove(keyQueue);
+                    } else if (keyQueue.hasUsedUpTurn()) {
+                        activeKeyQueues.remove(keyQueue);
+                        activeKeyQueues.addLast(keyQueue);
+                    }
+
+                    size--;
+                    notFull.signal();
+                    return item;
+                }
+
+                if (size == 0) {
+                    notEmpty.await();
+                } else {
+                    // all keys with items are delayed
+                    notEmpty.awaitNanos(getEarliestReadyTime() - now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns statistics of each key collected since the previous call, ordered by key.
+     *
+     * <p>Keys without any items since the previous call are forgotten, so that their weights
+     * are read again when their items come back.</p>
+     */
+    public List<KeyQueueStatistics> takeStatisticsSnapshot() {
+        lock.lock();
+
+        try {
+            List<KeyQueueStatistics> statistics = new ArrayList<>();
+            Iterator<KeyQueue<T>> iterator = keyQueues.values().iterator();
+
+            while (iterator.hasNext()) {
+                KeyQueue<T> keyQueue = iterator.next();
+
+                if (keyQueue.isIdle()) {
+                    iterator.remove();
+                } else {
+                    statistics.add(keyQueue.takeStatisticsSnapshot());
+                }
+            }
+
+            return statistics;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private KeyQueue<T> getActiveKeyQueue(String key) {
+        KeyQueue<T> keyQueue = keyQueues.computeIfAbsent(
+            key,
+            k -> new KeyQueue<>(k, Math.max(weightFunction.applyAsInt(k), 1))
+        );
+
+        if (keyQueue.isEmpty()) {
+            activeKeyQueues.addLast(keyQueue);
+        }
+
+        return keyQueue;
+    }
+
+    private KeyQueue<T> findReadyKeyQueue(long nowNanos) {
+        for (KeyQueue<T> keyQueue : activeKeyQueues) {
+            if (keyQueue.isReady(nowNanos)) {
+                return keyQueue;
+            }
+        }
+
+        return null;
+    }
+
+    // only called when all keys with items are delayed
+    private long getEarliestReadyTime() {
+        Iterator<KeyQueue<T>> iterator = activeKeyQueues.iterator();
+        long earliest = iterator.next().readyAtNanos;
+
+        while (iterator.hasNext()) {
+            long readyAtNanos = iterator.next().readyAtNanos;
+
+            // nano times can only be compared by their difference
+            if (readyAtNanos - earliest < 0) {
+                earliest = readyAtNanos;
+            }
+        }
+
+        return earliest;
+    }
+
+    // not thread-safe - accessed under the lock of the stage queue only
+    private static class KeyQueue<T> {
+        private final String key;
+        private final int weight;
+        private final Deque<T> items = new ArrayDeque<>();
+        private final Deque<Long> enqueueTimes = new ArrayDeque<>();
+        private int takenInTurn;
+        private boolean delayed;
+        private long readyAtNanos;
+
+        private long takenCount;
+        private long totalWaitTimeNanos;
+        private long maxWaitTimeNanos;
+        private int maxDepth;
+
+        KeyQueue(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+
+        void addLast(T item, long nowNanos) {
+            items.addLast(item);
+            enqueueTimes.addLast(nowNanos);
+            maxDepth = Math.max(maxDepth, items.size());
+        }
+
+        void addFirst(T item, long nowNanos) {
+            items.addFirst(item);
+            enqueueTimes.addFirst(nowNanos);
+            maxDepth = Math.max(maxDepth, items.size());
+        }
+
+        void delayUntil(long readyAtNanos) {
+            this.delayed = true;
+            this.readyAtNanos = readyAtNanos;
+        }
+
+        boolean isReady(long nowNanos) {
+            if (delayed && nowNanos - readyAtNanos < 0) {
+                return false;
+            }
+
+            delayed = false;
+            return true;
+        }
+
+        T poll(long nowNanos) {
+            long waitTimeNanos = nowNanos - enqueueTimes.removeFirst();
+            takenCount++;
+            totalWaitTimeNanos += waitTimeNanos;
+            maxWaitTimeNanos = Math.max(maxWaitTimeNanos, waitTimeNanos);
+            takenInTurn++;
+
+            T item = items.removeFirst();
+
+            if (items.isEmpty()) {
+                // a key that runs out of items starts afresh when it gets new ones
+                takenInTurn = 0;
+            }
+
+            return item;
+        }
+
+        boolean hasUsedUpTurn() {
+            if (takenInTurn < weight) {
+                return false;
+            }
+
+            takenInTurn = 0;
+            return true;
+        }
+
+        boolean isEmpty() {
+            return items.isEmpty();
+        }
+
+        boolean isIdle() {
+            return items.isEmpty() && takenCount == 0 && maxDepth == 0;
+        }
+
+        KeyQueueStatistics takeStatisticsSnapshot() {
+            double averageWaitTimeMs = takenCount == 0
+                ? 0
+                : (double) totalWaitTimeNanos / takenCount / TimeUnit.MILLISECONDS.toNanos(1);
+
+            KeyQueueStatistics statistics = new KeyQueueStatistics(
+                key,
+                weight,
+                takenCount,
+                averageWaitTimeMs,
+                (double) maxWaitTimeNanos / TimeUnit.MILLISECONDS.toNanos(1),
+                Math.max(maxDepth, items.size()),
+                items.size()
+            );
+
+            takenCount = 0;
+            totalWaitTimeNanos = 0;
+            maxWaitTimeNanos = 0;
+            maxDepth = 0;
+
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package uk.gov.hmcts.reform.pbis.servicebus.validation;
+
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+/**
+ * Validates registrations with Bean Validation (Hibernate Validator), reading the constraint
+ * annotations of {@link PrivateBetaRegistration}.
+ *
+ * <p>It's the reference for {@link CodedRegistrationValidator}, and can be used instead of it
+ * by setting {@code SERVICE_BUS_USE_BEAN_VALIDATION} to {@code true}.</p>
+ */
+public class BeanValidationRegistrationValidator implements RegistrationValidator {
+
+    private final Validator validator;
+
+    public BeanValidationRegistrationValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    @Override
+    public Map<String, String> validate(PrivateBetaRegistration registration) {
+        Set<ConstraintViolation<PrivateBetaRegistration>> violations = validator.validate(registration);
+
+        return violations
+            .stream()
+            .collect(Collectors.toMap(
+                violation -> violation.getPropertyPath().toString(),
+                violation -> violation.getMessage())
+            );
+    }
+}
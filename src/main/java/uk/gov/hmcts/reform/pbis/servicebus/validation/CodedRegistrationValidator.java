@@ -0,0 +1,245 @@
+package uk.gov.hmcts.reform.pbis.servicebus.validation;
+
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+/**
+ * Validates registrations with plain code, instead of Bean Validation's reflective metadata.
+ *
+ * <p>The constraints are the ones declared on {@link PrivateBetaRegistration} - every field must not be
+ * empty, and the email address must be well-formed. Errors have the same keys and messages as those of
+ * {@link BeanValidationRegistrationValidator} - messages are taken from Bean Validation once, on creation.
+ * Nothing is allocated for a valid registration.</p>
+ *
+ * <p>Email addresses are checked the same way Hibernate Validator checks them. Common addresses
+ * (dot-separated atoms, an ASCII domain name) are checked here. The rest - quoted local parts,
+ * internationalised domain names and address literals - are rare enough to be handed to Bean Validation.</p>
+ */
+public class CodedRegistrationValidator implements RegistrationValidator {
+
+    static final String REFERENCE_ID = "referenceId";
+    static final String SERVICE = "service";
+    static final String EMAIL_ADDRESS = "emailAddress";
+    static final String FIRST_NAME = "firstName";
+    static final String LAST_NAME = "lastName";
+
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_DOMAIN_LENGTH = 255;
+    private static final int MAX_DOMAIN_LABEL_LENGTH = 63;
+
+    private static final String ATOM_SPECIAL_CHARACTERS = "!#$%&'*+/=?^_`{|}~";
+
+    private enum EmailSyntax { VALID, INVALID, UNSUPPORTED }
+
+    private final Validator validator;
+
+    private final String referenceIdEmptyMessage;
+    private final String serviceEmptyMessage;
+    private final String emailAddressEmptyMessage;
+    private final String firstNameEmptyMessage;
+    private final String lastNameEmptyMessage;
+    private final String emailAddressMalformedMessage;
+
+    /**
+     * Creates the validator.
+     *
+     * @param validator Bean Validation validator to take messages from and to check unusual email addresses with
+     */
+    public CodedRegistrationValidator(Validator validator) {
+        this.validator = validator;
+
+        this.referenceIdEmptyMessage = getMessage(validator, REFERENCE_ID, null);
+        this.serviceEmptyMessage = getMessage(validator, SERVICE, null);
+        this.emailAddressEmptyMessage = getMessage(validator, EMAIL_ADDRESS, null);
+        this.firstNameEmptyMessage = getMessage(validator, FIRST_NAME, null);
+        this.lastNameEmptyMessage = getMessage(validator, LAST_NAME, null);
+        this.emailAddressMalformedMessage = getMessage(validator, EMAIL_ADDRESS, "not an email address");
+    }
+
+    @Override
+    public Map<String, String> validate(PrivateBetaRegistration registration) {
+        Map<String, String> errors = null;
+
+        if (isEmpty(registration.referenceId)) {
+            errors = addError(errors, REFERENCE_ID, referenceIdEmptyMessage);
+        }
+
+        if (isEmpty(registration.service)) {
+            errors = addError(errors, SERVICE, serviceEmptyMessage);
+        }
+
+        if (isEmpty(registration.emailAddress)) {
+            errors = addError(errors, EMAIL_ADDRESS, emailAddressEmptyMessage);
+        } else {
+            String emailAddressError = validateEmailAddress(registration.emailAddress);
+
+            if (emailAddressError != null) {
+                errors = addError(errors, EMAIL_ADDRESS, emailAddressError);
+            }
+        }
+
+        if (isEmpty(registration.firstName)) {
+            errors = addError(errors, FIRST_NAME, firstNameEmptyMessage);
+        }
+
+        if (isEmpty(registration.lastName)) {
+            errors = addError(errors, LAST_NAME, lastNameEmptyMessage);
+        }
+
+        return errors == null ? Collections.emptyMap() : errors;
+    }
+
+    private String validateEmailAddress(String emailAddress) {
+        switch (checkEmailSyntax(emailAddress)) {
+            case VALID:
+                return null;
+            case INVALID:
+                return emailAddressMalformedMessage;
+            default:
+                Set<ConstraintViolation<PrivateBetaRegistration>> violations =
+                    validator.validateValue(PrivateBetaRegistration.class, EMAIL_ADDRESS, emailAddress);
+
+                return violations.isEmpty() ? null : violations.iterator().next().getMessage();
+        }
+    }
+
+    /**
+     * Checks the syntax of a non-empty email address - {@code local-part@domain}, split at the last {@code @}.
+     */
+    private static EmailSyntax checkEmailSyntax(String address) {
+        int at = address.lastIndexOf('@');
+
+        if (at < 0) {
+            return EmailSyntax.INVALID;
+        }
+
+        EmailSyntax localPartSyntax = checkLocalPartSyntax(address, at);
+
+        return localPartSyntax == EmailSyntax.VALID
+            ? checkDomainSyntax(address, at + 1)
+            : localPartSyntax;
+    }
+
+    /**
+     * Checks that the local part is a dot-separated sequence of atoms (RFC 5322 dot-atom).
+     */
+    private static EmailSyntax checkLocalPartSyntax(String address, int end) {
+        if (end > MAX_LOCAL_PART_LENGTH) {
+            return EmailSyntax.INVALID;
+        }
+
+        boolean atomStart = true;
+
+        for (int i = 0; i < end; i++) {
+            char c = address.charAt(i);
+
+            if (c == '"' || c == '\\' || c >= 0x80) {
+                return EmailSyntax.UNSUPPORTED;
+            } else if (c == '.') {
+                if (atomStart) {
+                    return EmailSyntax.INVALID;
+                }
+
+                atomStart = true;
+            } else if (isAtomCharacter(c) || c == '-') {
+                atomStart = false;
+            } else {
+                return EmailSyntax.INVALID;
+            }
+        }
+
+        // empty local part or a trailing dot
+        return atomStart ? EmailSyntax.INVALID : EmailSyntax.VALID;
+    }
+
+    /**
+     * Checks that the domain is a dot-separated sequence of labels, none of which starts or ends with a dash.
+     */
+    private static EmailSyntax checkDomainSyntax(String address, int start) {
+        int length = address.length() - start;
+
+        for (int i = start; i < address.length(); i++) {
+            char c = address.charAt(i);
+
+            if (c == '[' || c >= 0x80) {
+                return EmailSyntax.UNSUPPORTED;
+            }
+        }
+
+        if (length == 0 || length > MAX_DOMAIN_LENGTH) {
+            return EmailSyntax.INVALID;
+        }
+
+        int labelStart = start;
+
+        for (int i = start; i <= address.length(); i++) {
+            if (i < address.length() && address.charAt(i) != '.') {
+                continue;
+            }
+
+            if (!isValidLabel(address, labelStart, i)) {
+                return EmailSyntax.INVALID;
+            }
+
+            labelStart = i + 1;
+        }
+
+        return EmailSyntax.VALID;
+    }
+
+    private static boolean isValidLabel(String address, int start, int end) {
+        if (end == start || end - start > MAX_DOMAIN_LABEL_LENGTH) {
+            return false;
+        }
+
+        if (address.charAt(start) == '-' || address.charAt(end - 1) == '-') {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            char c = address.charAt(i);
+
+            if (!isAtomCharacter(c) && c != '-') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isAtomCharacter(char c) {
+        return (c >= 'a' && c <= 'z')
+            || (c >= 'A' && c <= 'Z')
+            || (c >= '0' && c <= '9')
+            || ATOM_SPECIAL_CHARACTERS.indexOf(c) >= 0;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static Map<String, String> addError(Map<String, String> errors, String field, String message) {
+        Map<String, String> result = errors == null ? new HashMap<>() : errors;
+        result.put(field, message);
+        return result;
+    }
+
+    private static String getMessage(Validator validator, String field, String invalidValue) {
+        Set<ConstraintViolation<PrivateBetaRegistration>> violations =
+            validator.validateValue(PrivateBetaRegistration.class, field, invalidValue);
+
+        if (violations.size() != 1) {
+            throw new IllegalStateException(
+                String.format("Expected one constraint violation of field %s, got %s", field, violations.size())
+            );
+        }
+
+        return violations.iterator().next().getMessage();
+    }
+}
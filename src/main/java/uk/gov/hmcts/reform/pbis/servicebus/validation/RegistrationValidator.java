@@ -0,0 +1,19 @@
+package uk.gov.hmcts.reform.pbis.servicebus.validation;
+
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.util.Map;
+
+/**
+ * Checks registrations against the constraints declared on {@link PrivateBetaRegistration}.
+ *
+ * <p>Implementations must be thread-safe.</p>
+ */
+public interface RegistrationValidator {
+
+    /**
+     * Returns error messages of invalid fields, by field name (e.g. {@code emailAddress}).
+     * The map is empty when the registration is valid.
+     */
+    Map<String, String> validate(PrivateBetaRegistration registration);
+}
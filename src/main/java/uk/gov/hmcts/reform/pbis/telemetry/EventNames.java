@@ -9,6 +9,12 @@ public class EventNames {
     public static final String MESSAGE_PROCESSING_RUN_STARTED = "MessageProcessingRunStarted";
     public static final String MESSAGE_PROCESSING_RUN_COMPLETED = "MessageProcessingRunCompleted";
     public static final String EMAIL_SENT = "EmailSent";
+    public static final String EMAIL_ALREADY_SENT = "EmailAlreadySent";
     public static final String MESSAGE_PROCESSING_ERROR = "MessageProcessingError";
     public static final String MESSAGE_REJECTED = "MessageRejected";
+    public static final String MESSAGE_SETTLEMENT_FAILED = "MessageSettlementFailed";
+    public static final String MESSAGE_LOCK_RENEWAL_FAILED = "MessageLockRenewalFailed";
+    public static final String MESSAGE_LOCK_EXPIRED = "MessageLockExpired";
+    public static final String NOTIFY_PERMANENT_ERROR = "NotifyPermanentError";
+    public static final String NOTIFY_TRANSIENT_ERROR = "NotifyTransientError";
 }
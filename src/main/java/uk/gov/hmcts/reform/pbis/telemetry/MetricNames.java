@@ -8,4 +8,30 @@ public class MetricNames {
 
     public static final String TOTAL_MESSAGES_PER_RUN = "TotalMessagesPerRun";
     public static final String FAILING_MESSAGES_PER_FUN = "FailingMessagesPerRun";
+    public static final String STAGE_QUEUE_DEPTH = "PipelineStageQueueDepth";
+    public static final String STAGE_SERVICE_TIME = "PipelineStageServiceTimeMs";
+    public static final String POLLING_INTERVAL = "PollingIntervalMs";
+    public static final String MESSAGE_ARRIVAL_RATE = "MessageArrivalRatePerSecond";
+    public static final String LOCKS_RENEWED = "MessageLocksRenewed";
+    public static final String LOCK_RENEWALS_FAILED = "MessageLockRenewalsFailed";
+    public static final String LOCK_RENEWAL_NEAR_MISSES = "MessageLockRenewalNearMisses";
+    public static final String LOCKS_EXPIRED = "MessageLocksExpired";
+    public static final String PERMANENT_NOTIFY_ERRORS_PER_RUN = "PermanentNotifyErrorsPerRun";
+    public static final String TRANSIENT_NOTIFY_ERRORS_PER_RUN = "TransientNotifyErrorsPerRun";
+    public static final String NOTIFY_SEND_RATE = "NotifyRateLimitPerSecond";
+    public static final String NOTIFY_RATE_LIMIT_WAIT_TIME = "NotifyRateLimitWaitTimeMs";
+    public static final String NOTIFY_RATE_LIMIT_MAX_WAIT_TIME = "NotifyRateLimitMaxWaitTimeMs";
+    public static final String NOTIFY_RATE_LIMIT_RESPONSES = "NotifyRateLimitResponses";
+    public static final String SERVICE_QUEUE_DEPTH = "ServiceQueueDepth";
+    public static final String SERVICE_QUEUE_WAIT_TIME = "ServiceQueueWaitTimeMs";
+    public static final String SERVICE_QUEUE_MAX_WAIT_TIME = "ServiceQueueMaxWaitTimeMs";
+    public static final String SENT_EMAIL_CACHE_HITS = "SentEmailCacheHits";
+    public static final String SENT_EMAIL_CACHE_MISSES = "SentEmailCacheMisses";
+    public static final String SENT_EMAIL_CACHE_SIZE = "SentEmailCacheSize";
+
+    public static final String STAGE_PROPERTY = "stage";
+    public static final String NOTIFY_ERROR_TYPE_PROPERTY = "notifyErrorType";
+    public static final String HTTP_STATUS_PROPERTY = "httpStatus";
+    public static final String SERVICES_PROPERTY = "services";
+    public static final String SERVICE_PROPERTY = "service";
 }
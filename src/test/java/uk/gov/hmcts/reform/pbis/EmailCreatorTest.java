@@ -1,64 +1,41 @@
 package uk.gov.hmcts.reform.pbis;
 
-import org.assertj.core.util.Lists;
-import org.junit.Before;
 import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.mockito.runners.MockitoJUnitRunner;
-import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
 import uk.gov.hmcts.reform.pbis.notify.EmailToSend;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
 import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
 
-import java.util.List;
-
 import static org.assertj.core.api.Assertions.assertThat;
 import static uk.gov.hmcts.reform.pbis.notify.TemplateFieldNames.FIRST_NAME;
 import static uk.gov.hmcts.reform.pbis.notify.TemplateFieldNames.LAST_NAME;
 import static uk.gov.hmcts.reform.pbis.notify.TemplateFieldNames.WELCOME_LINK;
 
-@RunWith(MockitoJUnitRunner.class)
 public class EmailCreatorTest {
 
-    private static final EmailTemplateMapping mapping1 =
-        createMapping("service1", "templateId1", "apiKey1", "welcomeLink1");
-
-    private static final EmailTemplateMapping mapping2 =
-        createMapping("service2", "templateId2", "apiKey2", "welcomeLink2");
-
-    private static final List<EmailTemplateMapping> emailTemplateMappings = Lists.newArrayList(mapping1, mapping2);
+    private static final ServiceRoute route =
+        new ServiceRoute("service1", "templateId1", "welcomeLink1", null, null, null);
 
-    private EmailCreator emailCreator;
-
-
-    @Before
-    public void setUp() {
-        emailCreator = new EmailCreator(emailTemplateMappings);
-    }
-
-    @Test(expected = ServiceNotFoundException.class)
-    public void createEmailToSend_should_throw_exception_when_service_not_found() {
-        emailCreator.createEmailToSend(getPrivateBetaRegistration("unrecognised service"));
-    }
+    private final EmailCreator emailCreator = new EmailCreator();
 
     @Test
-    public void createEmailToSend_should_map_service_to_the_right_template() {
+    public void createEmailToSend_should_use_template_of_the_route() {
         // given
-        PrivateBetaRegistration registration = getPrivateBetaRegistration(mapping1.getService());
+        PrivateBetaRegistration registration = getPrivateBetaRegistration(route.service);
 
         // when
-        EmailToSend email = emailCreator.createEmailToSend(registration);
+        EmailToSend email = emailCreator.createEmailToSend(route, registration);
 
         // then
-        assertThat(email.templateId).isEqualTo(mapping1.getTemplateId());
+        assertThat(email.templateId).isEqualTo(route.templateId);
     }
 
     @Test
     public void createEmailToSend_should_return_email_with_data_from_registration() {
         // given
-        PrivateBetaRegistration registration = getPrivateBetaRegistration(mapping2.getService());
+        PrivateBetaRegistration registration = getPrivateBetaRegistration(route.service);
 
         // when
-        EmailToSend email = emailCreator.createEmailToSend(registration);
+        EmailToSend email = emailCreator.createEmailToSend(route, registration);
 
         // then
         assertThat(email.emailAddress).isEqualTo(registration.emailAddress);
@@ -70,7 +47,7 @@ public class EmailCreatorTest {
 
         assertThat(email.templateFields.get(FIRST_NAME)).isEqualTo(registration.firstName);
         assertThat(email.templateFields.get(LAST_NAME)).isEqualTo(registration.lastName);
-        assertThat(email.templateFields.get(WELCOME_LINK)).isEqualTo(mapping2.getWelcomeLink());
+        assertThat(email.templateFields.get(WELCOME_LINK)).isEqualTo(route.welcomeLink);
     }
 
     private PrivateBetaRegistration getPrivateBetaRegistration(String service) {
@@ -82,16 +59,4 @@ public class EmailCreatorTest {
             "lastname"
         );
     }
-
-    private static EmailTemplateMapping createMapping(
-        String service, String templateId, String apiKey, String welcomeLink
-    ) {
-        EmailTemplateMapping mapping = new EmailTemplateMapping();
-        mapping.setService(service);
-        mapping.setTemplateId(templateId);
-        mapping.setNotifyApiKey(apiKey);
-        mapping.setWelcomeLink(welcomeLink);
-
-        return mapping;
-    }
 }
@@ -4,23 +4,36 @@ import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.pbis.notify.EmailSender;
 import uk.gov.hmcts.reform.pbis.notify.EmailToSend;
-import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.notify.NotifyCircuitBreaker;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorType;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRouteTable;
 import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
-import uk.gov.service.notify.NotificationClientApi;
 import uk.gov.service.notify.NotificationClientException;
 
+import java.time.Duration;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyMap;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
-import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
 public class EmailServiceTest {
@@ -28,13 +41,18 @@ public class EmailServiceTest {
     private EmailService emailService;
 
     @Mock
-    private NotificationClientApi notificationClient;
+    private EmailSender notificationClient;
 
     @Mock
-    private NotificationClientProvider notificationClientProvider;
+    private EmailCreator emailCreator;
 
     @Mock
-    private EmailCreator emailCreator;
+    private NotifyRateLimiter.ApiKeyRateLimit rateLimit;
+
+    @Mock
+    private NotifyCircuitBreaker.ServiceCircuit circuit;
+
+    private ServiceRoute route;
 
     private final PrivateBetaRegistration privateBetaRegistration = new PrivateBetaRegistration(
         "reference id 123",
@@ -54,20 +72,27 @@ public class EmailServiceTest {
 
     @Before
     public void setUp() {
-        when(notificationClientProvider.getClient(anyString())).thenReturn(notificationClient);
-        emailService = new EmailService(notificationClientProvider, emailCreator);
+        willAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).given(circuit).execute(any());
+
+        given(rateLimit.tryAcquire()).willReturn(Duration.ZERO);
+
+        route = new ServiceRoute("service 123", "template id 123", "link", notificationClient, rateLimit, circuit);
+
+        emailService = new EmailService(new ServiceRouteTable(singletonList(route)), emailCreator);
     }
 
     @Test
     public void sendWelcomeEmail_should_call_email_client_with_email_data()
         throws NotificationClientException {
 
-        given(emailCreator.createEmailToSend(privateBetaRegistration)).willReturn(emailToSend);
+        given(emailCreator.createEmailToSend(route, privateBetaRegistration)).willReturn(emailToSend);
 
         emailService.sendWelcomeEmail(privateBetaRegistration);
 
-        verify(emailCreator).createEmailToSend(privateBetaRegistration);
-        verify(notificationClientProvider).getClient(privateBetaRegistration.service);
+        verify(emailCreator).createEmailToSend(route, privateBetaRegistration);
 
         verify(notificationClient).sendEmail(
             emailToSend.templateId,
@@ -76,13 +101,25 @@ public class EmailServiceTest {
             emailToSend.referenceId
         );
 
-        verifyNoMoreInteractions(emailCreator, notificationClient, notificationClientProvider);
+        verifyNoMoreInteractions(emailCreator, notificationClient);
+    }
+
+    @Test
+    public void sendWelcomeEmail_should_wait_for_rate_limit_before_sending() throws Exception {
+        given(emailCreator.createEmailToSend(route, privateBetaRegistration)).willReturn(emailToSend);
+
+        emailService.sendWelcomeEmail(privateBetaRegistration);
+
+        InOrder inOrder = inOrder(rateLimit, circuit, notificationClient);
+        inOrder.verify(rateLimit).acquire();
+        inOrder.verify(circuit).execute(any());
+        inOrder.verify(notificationClient).sendEmail(anyString(), anyString(), anyMap(), anyString());
     }
 
     @Test()
     public void sendWelcomeEmail_should_throw_exception_when_email_creator_fails() {
         given(
-            emailCreator.createEmailToSend(any())
+            emailCreator.createEmailToSend(any(), any())
         ).willThrow(
             new EmailSendingException("test exception", null)
         );
@@ -99,6 +136,7 @@ public class EmailServiceTest {
     public void sendWelcomeEmail_should_throw_exception_when_notification_client_fails()
         throws NotificationClientException {
 
+        given(emailCreator.createEmailToSend(route, privateBetaRegistration)).willReturn(emailToSend);
         given(
             notificationClient.sendEmail(anyString(), anyString(), anyMap(), anyString())
         ).willThrow(
@@ -112,33 +150,178 @@ public class EmailServiceTest {
         );
     }
 
-    @Test()
-    public void sendWelcomeEmail_should_throw_exception_when_client_provider_fails()
+    @Test
+    public void sendWelcomeEmail_should_throw_exception_when_service_not_found() {
+        PrivateBetaRegistration registration = new PrivateBetaRegistration(
+            "reference id 123",
+            "unknown service",
+            "email@example.com",
+            "first name",
+            "last name"
+        );
+
+        assertThatThrownBy(() -> emailService.sendWelcomeEmail(registration))
+            .isInstanceOf(ServiceNotFoundException.class)
+            .hasMessage("Service unknown service not found in email template configuration");
+
+        verifyNoMoreInteractions(emailCreator, notificationClient);
+    }
+
+    @Test
+    public void createWelcomeEmail_should_wrap_exception_of_email_creator() {
+        RuntimeException exception = new RuntimeException("test");
+        given(emailCreator.createEmailToSend(route, privateBetaRegistration)).willThrow(exception);
+
+        assertThatThrownBy(() -> emailService.createWelcomeEmail(route, privateBetaRegistration))
+            .isInstanceOf(EmailSendingException.class)
+            .hasMessage("Failed to send email. Reference ID: " + privateBetaRegistration.referenceId)
+            .hasCause(exception);
+    }
+
+    @Test
+    public void sendEmail_should_throw_rejected_exception_when_notify_error_is_permanent()
         throws NotificationClientException {
 
-        Exception thrownException = new RuntimeException("test");
+        NotificationClientException notifyException = mock(NotificationClientException.class);
+        given(notifyException.getHttpResult()).willReturn(400);
+        given(notifyException.getMessage()).willReturn(
+            "Status code: 400 {\"errors\":[{\"error\":\"BadRequestError\",\"message\":\"Missing personalisation\"}]}"
+        );
 
-        given(notificationClientProvider.getClient(anyString())).willThrow(thrownException);
+        given(notificationClient.sendEmail(anyString(), anyString(), anyMap(), anyString()))
+            .willThrow(notifyException);
 
-        assertThatThrownBy(
-            () -> emailService.sendWelcomeEmail(privateBetaRegistration)
-        ).isInstanceOf(
-            EmailSendingException.class
-        ).hasMessage(
-            "Failed to send email. Reference ID: " + privateBetaRegistration.referenceId
-        ).hasCause(thrownException);
+        Throwable thrown = catchThrowable(() -> emailService.sendEmail(route, privateBetaRegistration, emailToSend));
+
+        assertThat(thrown)
+            .isInstanceOf(EmailRejectedException.class)
+            .hasMessage(
+                "Failed to send email. Reference ID: " + privateBetaRegistration.referenceId
+                    + ", Notify error: BAD_REQUEST (HTTP status 400) - BadRequestError: Missing personalisation"
+            )
+            .hasCause(notifyException);
+
+        assertThat(((EmailRejectedException) thrown).getNotifyError().type).isEqualTo(NotifyErrorType.BAD_REQUEST);
     }
 
-    @Test()
-    public void sendWelcomeEmail_should_rethrow_exception_when_service_not_found()
+    @Test
+    public void sendEmail_should_throw_sending_exception_when_notify_error_is_transient()
         throws NotificationClientException {
 
-        ServiceNotFoundException exceptionThrown = new ServiceNotFoundException("test");
+        NotificationClientException notifyException = mock(NotificationClientException.class);
+        given(notifyException.getHttpResult()).willReturn(503);
 
-        given(notificationClientProvider.getClient(anyString())).willThrow(exceptionThrown);
+        given(notificationClient.sendEmail(anyString(), anyString(), anyMap(), anyString()))
+            .willThrow(notifyException);
 
-        assertThatThrownBy(
-            () -> emailService.sendWelcomeEmail(privateBetaRegistration)
-        ).isSameAs(exceptionThrown);
+        Throwable thrown = catchThrowable(() -> emailService.sendEmail(route, privateBetaRegistration, emailToSend));
+
+        assertThat(thrown)
+            .isInstanceOf(EmailSendingException.class)
+            .isNotInstanceOf(EmailRejectedException.class)
+            .hasCause(notifyException);
+
+        assertThat(((EmailSendingException) thrown).getNotifyError().type).isEqualTo(NotifyErrorType.SERVER_ERROR);
+    }
+
+    @Test
+    public void sendEmail_should_throw_exception_when_rate_limit_fails() throws Exception {
+        RuntimeException exception = new RuntimeException("test");
+        given(rateLimit.tryAcquire()).willThrow(exception);
+
+        assertThatThrownBy(() -> emailService.sendEmail(route, privateBetaRegistration, emailToSend))
+            .isInstanceOf(EmailSendingException.class)
+            .hasMessage("Failed to send email. Reference ID: " + privateBetaRegistration.referenceId)
+            .hasCause(exception);
+
+        verifyNoMoreInteractions(notificationClient);
+        verify(circuit, never()).execute(any());
+    }
+
+    @Test
+    public void sendEmail_should_check_rate_limit_outside_circuit_breaker() throws Exception {
+        emailService.sendEmail(route, privateBetaRegistration, emailToSend);
+
+        InOrder inOrder = inOrder(rateLimit, circuit);
+        inOrder.verify(rateLimit).tryAcquire();
+        inOrder.verify(circuit).execute(any());
+    }
+
+    @Test
+    public void sendEmail_should_send_email_through_circuit_breaker_of_service() throws Exception {
+        emailService.sendEmail(route, privateBetaRegistration, emailToSend);
+
+        verify(circuit).execute(any());
+        verify(notificationClient).sendEmail(anyString(), anyString(), anyMap(), anyString());
+    }
+
+    @Test
+    public void sendEmail_should_not_send_email_when_circuit_breaker_suspends_calls() throws Exception {
+        NotifyUnavailableException exception = new NotifyUnavailableException("test", null);
+        willThrow(exception).given(circuit).execute(any());
+
+        assertThatThrownBy(() -> emailService.sendEmail(route, privateBetaRegistration, emailToSend))
+            .isSameAs(exception);
+
+        verifyNoMoreInteractions(notificationClient);
+    }
+
+    @Test
+    public void sendEmail_should_not_wait_when_rate_limit_does_not_allow_sending_yet() throws Exception {
+        given(rateLimit.tryAcquire()).willReturn(Duration.ofMillis(200));
+
+        Throwable thrown = catchThrowable(() -> emailService.sendEmail(route, privateBetaRegistration, emailToSend));
+
+        assertThat(thrown).isInstanceOf(NotifyRateLimitedException.class);
+        assertThat(((NotifyRateLimitedException) thrown).getWaitTime()).isEqualTo(Duration.ofMillis(200));
+
+        verify(rateLimit, never()).acquire();
+        verify(circuit, never()).execute(any());
+        verifyNoMoreInteractions(notificationClient);
+    }
+
+    @Test
+    public void sendEmail_should_slow_down_rate_limit_when_notify_rate_limit_is_exceeded() throws Exception {
+        NotificationClientException notifyException = mock(NotificationClientException.class);
+        given(notifyException.getHttpResult()).willReturn(429);
+
+        given(notificationClient.sendEmail(anyString(), anyString(), anyMap(), anyString()))
+            .willThrow(notifyException);
+
+        assertThatThrownBy(() -> emailService.sendEmail(route, privateBetaRegistration, emailToSend))
+            .isInstanceOf(EmailSendingException.class)
+            .isNotInstanceOf(EmailRejectedException.class);
+
+        verify(rateLimit).onRateLimited();
+    }
+
+    @Test
+    public void sendEmail_should_not_slow_down_rate_limit_on_other_notify_errors() throws Exception {
+        NotificationClientException notifyException = mock(NotificationClientException.class);
+        given(notifyException.getHttpResult()).willReturn(500);
+
+        given(notificationClient.sendEmail(anyString(), anyString(), anyMap(), anyString()))
+            .willThrow(notifyException);
+
+        assertThatThrownBy(() -> emailService.sendEmail(route, privateBetaRegistration, emailToSend))
+            .isInstanceOf(EmailSendingException.class);
+
+        verify(rateLimit, never()).onRateLimited();
+    }
+
+    @Test
+    public void sendEmail_should_send_given_email_without_creating_it()
+        throws NotificationClientException {
+
+        emailService.sendEmail(route, privateBetaRegistration, emailToSend);
+
+        verify(notificationClient).sendEmail(
+            emailToSend.templateId,
+            emailToSend.emailAddress,
+            emailToSend.templateFields,
+            emailToSend.referenceId
+        );
+
+        verifyNoMoreInteractions(emailCreator, notificationClient);
     }
 }
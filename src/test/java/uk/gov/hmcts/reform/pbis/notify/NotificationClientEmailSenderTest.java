@@ -0,0 +1,40 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import uk.gov.service.notify.NotificationClientApi;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class NotificationClientEmailSenderTest {
+
+    private final NotificationClientApi notificationClient = mock(NotificationClientApi.class);
+    private final NotificationClientEmailSender emailSender = new NotificationClientEmailSender(notificationClient);
+
+    @Test
+    public void sendEmail_should_return_response_of_notification_client() throws Exception {
+        SendEmailResponse response = mock(SendEmailResponse.class);
+        given(notificationClient.sendEmail("template", "john@example.com", ImmutableMap.of(), "ref1"))
+            .willReturn(response);
+
+        assertThat(emailSender.sendEmail("template", "john@example.com", ImmutableMap.of(), "ref1"))
+            .isSameAs(response);
+    }
+
+    @Test
+    public void sendEmail_should_rethrow_exception_of_notification_client() throws Exception {
+        NotificationClientException exception = new NotificationClientException(new IOException("test"));
+        given(notificationClient.sendEmail("template", "john@example.com", ImmutableMap.of(), "ref1"))
+            .willThrow(exception);
+
+        assertThatThrownBy(() -> emailSender.sendEmail("template", "john@example.com", ImmutableMap.of(), "ref1"))
+            .isSameAs(exception);
+    }
+}
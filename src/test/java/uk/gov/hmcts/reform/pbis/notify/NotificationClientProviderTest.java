@@ -4,12 +4,13 @@ import org.junit.Test;
 import uk.gov.hmcts.reform.pbis.ServiceNotFoundException;
 import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
 import uk.gov.service.notify.NotificationClient;
-import uk.gov.service.notify.NotificationClientApi;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class NotificationClientProviderTest {
 
@@ -20,26 +21,45 @@ public class NotificationClientProviderTest {
     public void getClient_should_return_stub_when_stub_flag_is_on() {
         NotificationClientProvider clientProvider = createClientProvider(true);
 
-        NotificationClientApi client = clientProvider.getClient(SERVICE_1_NAME);
+        EmailSender client = clientProvider.getClient(SERVICE_1_NAME);
 
-        assertThat(client).isExactlyInstanceOf(NotificationClientStub.class);
+        assertThat(client).isInstanceOf(NotificationClientEmailSender.class);
+        assertThat(((NotificationClientEmailSender) client).getNotificationClient())
+            .isExactlyInstanceOf(NotificationClientStub.class);
     }
 
     @Test
     public void getClient_should_return_api_client_when_stub_flag_is_off() {
         NotificationClientProvider clientProvider = createClientProvider(false);
 
-        NotificationClientApi client = clientProvider.getClient(SERVICE_1_NAME);
+        EmailSender client = clientProvider.getClient(SERVICE_1_NAME);
 
-        assertThat(client).isInstanceOf(NotificationClient.class);
+        assertThat(client).isInstanceOf(NotificationClientEmailSender.class);
+        assertThat(((NotificationClientEmailSender) client).getNotificationClient())
+            .isInstanceOf(NotificationClient.class);
+    }
+
+    @Test
+    public void getClient_should_return_pooled_client_when_configured_for_service() {
+        EmailTemplateMapping mapping = createTemplateMapping(SERVICE_1_NAME, "apiKey1");
+        mapping.getNotifyClient().setPooled(true);
+
+        NotificationClientProvider clientProvider =
+            new NotificationClientProvider(Arrays.asList(mapping), false, "http://localhost");
+
+        try {
+            assertThat(clientProvider.getClient(SERVICE_1_NAME)).isInstanceOf(PooledNotificationClient.class);
+        } finally {
+            clientProvider.destroy();
+        }
     }
 
     @Test
     public void getClient_should_return_different_clients_for_different_services() {
         NotificationClientProvider clientProvider = createClientProvider(false);
 
-        NotificationClientApi clientForService1 = clientProvider.getClient(SERVICE_1_NAME);
-        NotificationClientApi clientForService2 = clientProvider.getClient(SERVICE_2_NAME);
+        EmailSender clientForService1 = clientProvider.getClient(SERVICE_1_NAME);
+        EmailSender clientForService2 = clientProvider.getClient(SERVICE_2_NAME);
         assertThat(clientForService2).isNotSameAs(clientForService1);
     }
 
@@ -47,8 +67,8 @@ public class NotificationClientProviderTest {
     public void getClient_should_return_same_client_for_same_service_each_time() {
         NotificationClientProvider clientProvider = createClientProvider(false);
 
-        NotificationClientApi client1 = clientProvider.getClient(SERVICE_1_NAME);
-        NotificationClientApi client2 = clientProvider.getClient(SERVICE_1_NAME);
+        EmailSender client1 = clientProvider.getClient(SERVICE_1_NAME);
+        EmailSender client2 = clientProvider.getClient(SERVICE_1_NAME);
         assertThat(client2).isSameAs(client1);
     }
 
@@ -57,6 +77,83 @@ public class NotificationClientProviderTest {
         createClientProvider(false).getClient("unknown-service-name");
     }
 
+    @Test
+    public void reload_should_keep_client_of_service_whose_api_key_has_not_changed() {
+        NotificationClientProvider clientProvider = createClientProvider(false);
+        EmailSender client = clientProvider.getClient(SERVICE_1_NAME);
+
+        clientProvider.reload(Arrays.asList(createTemplateMapping(SERVICE_1_NAME, "apiKey1")));
+
+        assertThat(clientProvider.getClient(SERVICE_1_NAME)).isSameAs(client);
+    }
+
+    @Test
+    public void reload_should_replace_client_of_service_whose_api_key_has_changed() {
+        NotificationClientProvider clientProvider = createClientProvider(false);
+        EmailSender client = clientProvider.getClient(SERVICE_1_NAME);
+
+        clientProvider.reload(Arrays.asList(createTemplateMapping(SERVICE_1_NAME, "newApiKey1")));
+
+        assertThat(clientProvider.getClient(SERVICE_1_NAME)).isNotSameAs(client);
+    }
+
+    @Test
+    public void reload_should_add_and_remove_services() {
+        NotificationClientProvider clientProvider = createClientProvider(false);
+
+        clientProvider.reload(Arrays.asList(createTemplateMapping("service3", "apiKey3")));
+
+        assertThat(clientProvider.getClient("service3")).isNotNull();
+        assertThatThrownBy(() -> clientProvider.getClient(SERVICE_1_NAME))
+            .isInstanceOf(ServiceNotFoundException.class);
+    }
+
+    @Test
+    public void reload_should_close_replaced_pooled_client_after_grace_period() throws Exception {
+        NotificationClientProvider clientProvider = new NotificationClientProvider(
+            Arrays.asList(createPooledTemplateMapping(SERVICE_1_NAME, "apiKey1")),
+            false,
+            "http://localhost",
+            Duration.ofMillis(200)
+        );
+
+        try {
+            clientProvider.reload(Arrays.asList(createPooledTemplateMapping(SERVICE_1_NAME, "newApiKey1")));
+
+            assertThat(clientProvider.getRetiredClientCount()).isEqualTo(1);
+
+            Thread.sleep(1000);
+
+            assertThat(clientProvider.getRetiredClientCount()).isZero();
+        } finally {
+            clientProvider.destroy();
+        }
+    }
+
+    @Test
+    public void destroy_should_close_replaced_clients_still_in_grace_period() {
+        NotificationClientProvider clientProvider = new NotificationClientProvider(
+            Arrays.asList(createPooledTemplateMapping(SERVICE_1_NAME, "apiKey1")),
+            false,
+            "http://localhost",
+            Duration.ofHours(1)
+        );
+
+        clientProvider.reload(Arrays.asList(createPooledTemplateMapping(SERVICE_1_NAME, "newApiKey1")));
+        clientProvider.destroy();
+
+        assertThat(clientProvider.getRetiredClientCount()).isZero();
+    }
+
+    @Test
+    public void reload_should_not_keep_replaced_clients_that_hold_no_connections() {
+        NotificationClientProvider clientProvider = createClientProvider(false);
+
+        clientProvider.reload(Arrays.asList(createTemplateMapping(SERVICE_1_NAME, "newApiKey1")));
+
+        assertThat(clientProvider.getRetiredClientCount()).isZero();
+    }
+
     private NotificationClientProvider createClientProvider(boolean useClientStub) {
         List<EmailTemplateMapping> emailTemplateMappings = Arrays.asList(
             createTemplateMapping(SERVICE_1_NAME, "apiKey1"),
@@ -72,4 +169,10 @@ public class NotificationClientProviderTest {
         mapping.setNotifyApiKey(apiKey);
         return mapping;
     }
+
+    private static EmailTemplateMapping createPooledTemplateMapping(String service, String apiKey) {
+        EmailTemplateMapping mapping = createTemplateMapping(service, apiKey);
+        mapping.getNotifyClient().setPooled(true);
+        return mapping;
+    }
 }
@@ -0,0 +1,220 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.EmailRejectedException;
+import uk.gov.hmcts.reform.pbis.EmailSendingException;
+import uk.gov.hmcts.reform.pbis.NotifyUnavailableException;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class NotifyCircuitBreakerTest {
+
+    private static final int REQUEST_VOLUME_THRESHOLD = 2;
+    private static final int ERROR_THRESHOLD_PERCENTAGE = 50;
+    private static final Duration SLEEP_WINDOW = Duration.ofMinutes(1);
+
+    // Hystrix takes a snapshot of command health every 500 ms
+    private static final long CIRCUIT_OPENING_TIMEOUT_MS = 5000;
+
+    // Hystrix keeps the state of circuits for the lifetime of the JVM, so each test uses its own service
+    private final String service = "service-" + System.nanoTime();
+
+    @Test
+    public void execute_should_make_the_call() {
+        AtomicInteger callCount = new AtomicInteger();
+
+        createCircuit(10).execute(callCount::incrementAndGet);
+
+        assertThat(callCount).hasValue(1);
+    }
+
+    @Test
+    public void execute_should_rethrow_exception_thrown_by_the_call() {
+        NotifyCircuitBreaker.ServiceCircuit circuit = createCircuit(10);
+
+        EmailSendingException serviceFailure = notifyException(NotifyErrorType.SERVER_ERROR);
+        EmailRejectedException rejection = rejectedException(NotifyErrorType.BAD_REQUEST);
+
+        assertThatThrownBy(() -> circuit.execute(throwing(serviceFailure))).isSameAs(serviceFailure);
+        assertThatThrownBy(() -> circuit.execute(throwing(rejection))).isSameAs(rejection);
+    }
+
+    @Test
+    public void execute_should_fail_fast_when_calls_of_the_service_keep_failing() {
+        NotifyCircuitBreaker.ServiceCircuit circuit = createCircuit(10);
+        AtomicInteger callCount = new AtomicInteger();
+
+        Throwable thrown = failUntilCircuitOpens(
+            circuit,
+            () -> {
+                callCount.incrementAndGet();
+                throw notifyException(NotifyErrorType.CONNECTION);
+            }
+        );
+
+        assertThat(thrown)
+            .isInstanceOf(NotifyUnavailableException.class)
+            .hasMessageContaining(service);
+
+        int callsBeforeOpening = callCount.get();
+        catchThrowable(() -> circuit.execute(callCount::incrementAndGet));
+        assertThat(callCount).hasValue(callsBeforeOpening);
+    }
+
+    @Test
+    public void execute_should_open_circuit_when_api_key_is_rejected() {
+        Throwable thrown = failUntilCircuitOpens(
+            createCircuit(10),
+            throwing(rejectedException(NotifyErrorType.AUTHENTICATION))
+        );
+
+        assertThat(thrown).isInstanceOf(NotifyUnavailableException.class);
+    }
+
+    @Test
+    public void execute_should_not_open_circuit_when_emails_are_rejected() throws Exception {
+        NotifyCircuitBreaker.ServiceCircuit circuit = createCircuit(10);
+        Runnable rejectedCall = throwing(rejectedException(NotifyErrorType.BAD_REQUEST));
+
+        for (int i = 0; i < 10; i++) {
+            catchThrowable(() -> circuit.execute(rejectedCall));
+        }
+
+        // let Hystrix take a health snapshot
+        Thread.sleep(1000);
+
+        AtomicInteger callCount = new AtomicInteger();
+        circuit.execute(callCount::incrementAndGet);
+        assertThat(callCount).hasValue(1);
+    }
+
+    @Test
+    public void execute_should_reject_calls_that_do_not_fit_in_thread_pool_of_the_service() throws Exception {
+        NotifyCircuitBreaker.ServiceCircuit circuit = createCircuit(1);
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch callReleased = new CountDownLatch(1);
+
+        CompletableFuture<Void> blockedCall = CompletableFuture.runAsync(
+            () -> circuit.execute(() -> {
+                callStarted.countDown();
+                await(callReleased);
+            })
+        );
+
+        try {
+            assertThat(callStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> circuit.execute(() -> { }))
+                .isInstanceOf(NotifyUnavailableException.class);
+        } finally {
+            callReleased.countDown();
+        }
+
+        blockedCall.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void getCircuit_should_return_circuit_of_known_service_only() {
+        NotifyCircuitBreaker circuitBreaker = createCircuitBreaker(10);
+
+        assertThat(circuitBreaker.getCircuit(service)).isNotNull();
+        assertThat(circuitBreaker.getCircuit("unknown-service")).isNull();
+    }
+
+    @Test
+    public void reload_should_keep_circuits_of_existing_services() {
+        NotifyCircuitBreaker circuitBreaker = createCircuitBreaker(10);
+        NotifyCircuitBreaker.ServiceCircuit circuit = circuitBreaker.getCircuit(service);
+
+        EmailTemplateMapping newMapping = new EmailTemplateMapping();
+        newMapping.setService(service + "-new");
+
+        circuitBreaker.reload(asList(createMapping(10), newMapping));
+
+        assertThat(circuitBreaker.getCircuit(service)).isSameAs(circuit);
+        assertThat(circuitBreaker.getCircuit(service + "-new")).isNotNull();
+    }
+
+    @Test
+    public void reload_should_remove_circuits_of_removed_services() {
+        NotifyCircuitBreaker circuitBreaker = createCircuitBreaker(10);
+
+        circuitBreaker.reload(emptyList());
+
+        assertThat(circuitBreaker.getCircuit(service)).isNull();
+    }
+
+    private Throwable failUntilCircuitOpens(NotifyCircuitBreaker.ServiceCircuit circuit, Runnable failingCall) {
+        long deadline = System.currentTimeMillis() + CIRCUIT_OPENING_TIMEOUT_MS;
+        Throwable thrown;
+
+        do {
+            thrown = catchThrowable(() -> circuit.execute(failingCall));
+            sleep(50);
+        } while (!(thrown instanceof NotifyUnavailableException) && System.currentTimeMillis() < deadline);
+
+        return thrown;
+    }
+
+    private NotifyCircuitBreaker.ServiceCircuit createCircuit(int maxConcurrentRequests) {
+        return createCircuitBreaker(maxConcurrentRequests).getCircuit(service);
+    }
+
+    private NotifyCircuitBreaker createCircuitBreaker(int maxConcurrentRequests) {
+        return new NotifyCircuitBreaker(
+            singletonList(createMapping(maxConcurrentRequests)),
+            REQUEST_VOLUME_THRESHOLD,
+            ERROR_THRESHOLD_PERCENTAGE,
+            SLEEP_WINDOW
+        );
+    }
+
+    private EmailTemplateMapping createMapping(int maxConcurrentRequests) {
+        EmailTemplateMapping mapping = new EmailTemplateMapping();
+        mapping.setService(service);
+        mapping.getNotifyClient().setMaxConcurrentRequests(maxConcurrentRequests);
+        return mapping;
+    }
+
+    private static Runnable throwing(RuntimeException exception) {
+        return () -> {
+            throw exception;
+        };
+    }
+
+    private static EmailSendingException notifyException(NotifyErrorType errorType) {
+        return new EmailSendingException("test", null, new NotifyError(errorType, 500, "details"));
+    }
+
+    private static EmailRejectedException rejectedException(NotifyErrorType errorType) {
+        return new EmailRejectedException("test", null, new NotifyError(errorType, 400, "details"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import org.junit.Test;
+import uk.gov.service.notify.NotificationClientException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class NotifyErrorClassifierTest {
+
+    @Test
+    public void should_classify_bad_request_as_permanent_and_extract_error_messages() {
+        NotifyError error = NotifyErrorClassifier.classify(
+            notifyException(400, "BadRequestError", "email_address Not a valid email address")
+        );
+
+        assertThat(error.type).isEqualTo(NotifyErrorType.BAD_REQUEST);
+        assertThat(error.isPermanent()).isTrue();
+        assertThat(error.httpStatus).isEqualTo(400);
+        assertThat(error.details).isEqualTo("BadRequestError: email_address Not a valid email address");
+    }
+
+    @Test
+    public void should_classify_auth_error_as_permanent() {
+        NotifyError error = NotifyErrorClassifier.classify(
+            notifyException(403, "AuthError", "Invalid token: API key not found")
+        );
+
+        assertThat(error.type).isEqualTo(NotifyErrorType.AUTHENTICATION);
+        assertThat(error.isPermanent()).isTrue();
+    }
+
+    @Test
+    public void should_classify_clock_skew_as_transient() {
+        NotifyError error = NotifyErrorClassifier.classify(
+            notifyException(403, "AuthError", "Error: Your system clock must be accurate to within 30 seconds")
+        );
+
+        assertThat(error.type).isEqualTo(NotifyErrorType.CLOCK_SKEW);
+        assertThat(error.isPermanent()).isFalse();
+    }
+
+    @Test
+    public void should_classify_rate_limit_as_transient() {
+        NotifyError error = NotifyErrorClassifier.classify(
+            notifyException(429, "RateLimitError", "Exceeded rate limit for key type LIVE of 3000 requests")
+        );
+
+        assertThat(error.type).isEqualTo(NotifyErrorType.RATE_LIMIT);
+        assertThat(error.isPermanent()).isFalse();
+    }
+
+    @Test
+    public void should_classify_server_error_as_transient() {
+        NotifyError error = NotifyErrorClassifier.classify(
+            notifyException(500, "Exception", "Internal server error")
+        );
+
+        assertThat(error.type).isEqualTo(NotifyErrorType.SERVER_ERROR);
+        assertThat(error.isPermanent()).isFalse();
+    }
+
+    @Test
+    public void should_classify_error_without_response_as_transient_connection_error() {
+        NotificationClientException exception = mock(NotificationClientException.class);
+        given(exception.getHttpResult()).willReturn(0);
+        given(exception.getMessage()).willReturn("java.net.SocketTimeoutException: Read timed out");
+
+        NotifyError error = NotifyErrorClassifier.classify(exception);
+
+        assertThat(error.type).isEqualTo(NotifyErrorType.CONNECTION);
+        assertThat(error.isPermanent()).isFalse();
+        assertThat(error.details).isEqualTo("java.net.SocketTimeoutException: Read timed out");
+    }
+
+    @Test
+    public void should_use_whole_message_as_details_when_body_is_not_json() {
+        NotificationClientException exception = mock(NotificationClientException.class);
+        given(exception.getHttpResult()).willReturn(502);
+        given(exception.getMessage()).willReturn("Status code: 502 <html>{bad gateway</html>");
+
+        NotifyError error = NotifyErrorClassifier.classify(exception);
+
+        assertThat(error.type).isEqualTo(NotifyErrorType.SERVER_ERROR);
+        assertThat(error.details).isEqualTo("Status code: 502 <html>{bad gateway</html>");
+    }
+
+    static NotificationClientException notifyException(int httpStatus, String error, String message) {
+        NotificationClientException exception = mock(NotificationClientException.class);
+        given(exception.getHttpResult()).willReturn(httpStatus);
+        given(exception.getMessage()).willReturn(
+            String.format(
+                "Status code: %s {\"errors\":[{\"error\":\"%s\",\"message\":\"%s\"}],\"status_code\":%s}",
+                httpStatus,
+                error,
+                message,
+                httpStatus
+            )
+        );
+
+        return exception;
+    }
+}
@@ -0,0 +1,214 @@
+package uk.gov.hmcts.reform.pbis.notify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.config.NotifyClientSettings;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PooledNotificationClientTest {
+
+    private static final String SERVICE_ID = UUID.randomUUID().toString();
+    private static final String SECRET_KEY = UUID.randomUUID().toString();
+    private static final String API_KEY = "test_key-" + SERVICE_ID + "-" + SECRET_KEY;
+
+    private static final Instant NOW = Instant.parse("2018-01-01T10:00:00Z");
+
+    private static final String SEND_EMAIL_RESPONSE = "{"
+        + "\"id\":\"" + UUID.randomUUID() + "\","
+        + "\"reference\":\"reference123\","
+        + "\"content\":{\"body\":\"Hello\",\"subject\":\"Welcome\",\"from_email\":\"service@example.com\"},"
+        + "\"template\":{\"id\":\"" + UUID.randomUUID() + "\",\"version\":1,\"uri\":\"http://localhost/template\"}"
+        + "}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+    private int responseStatus = 201;
+    private String responseBody = SEND_EMAIL_RESPONSE;
+
+    private PooledNotificationClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        client = new PooledNotificationClient(
+            API_KEY,
+            "http://localhost:" + server.getAddress().getPort(),
+            new NotifyClientSettings(),
+            Clock.fixed(NOW, ZoneOffset.UTC)
+        );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void sendEmail_should_post_email_to_notify() throws Exception {
+        SendEmailResponse response = client.sendEmail(
+            "template123",
+            "email@example.com",
+            ImmutableMap.of("name", "value"),
+            "reference123"
+        );
+
+        assertThat(response.getReference()).hasValue("reference123");
+        assertThat(response.getSubject()).isEqualTo("Welcome");
+
+        assertThat(requests).hasSize(1);
+        RecordedRequest request = requests.get(0);
+        assertThat(request.method).isEqualTo("POST");
+        assertThat(request.path).isEqualTo("/v2/notifications/email");
+
+        JsonNode body = objectMapper.readTree(request.body);
+        assertThat(body.get("template_id").asText()).isEqualTo("template123");
+        assertThat(body.get("email_address").asText()).isEqualTo("email@example.com");
+        assertThat(body.get("personalisation").get("name").asText()).isEqualTo("value");
+        assertThat(body.get("reference").asText()).isEqualTo("reference123");
+        assertThat(body.has("email_reply_to_id")).isFalse();
+    }
+
+    @Test
+    public void sendEmail_should_authenticate_with_token_signed_with_secret_key() throws Exception {
+        client.sendEmail("template123", "email@example.com", ImmutableMap.of(), "reference123");
+
+        String authorization = requests.get(0).authorization;
+        assertThat(authorization).startsWith("Bearer ");
+
+        String[] tokenParts = authorization.substring("Bearer ".length()).split("\\.");
+        assertThat(tokenParts).hasSize(3);
+
+        JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(tokenParts[1]));
+        assertThat(claims.get("iss").asText()).isEqualTo(SERVICE_ID);
+        assertThat(claims.get("iat").asLong()).isEqualTo(NOW.getEpochSecond());
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] expectedSignature = mac.doFinal(
+            (tokenParts[0] + "." + tokenParts[1]).getBytes(StandardCharsets.UTF_8)
+        );
+
+        assertThat(Base64.getUrlDecoder().decode(tokenParts[2])).isEqualTo(expectedSignature);
+    }
+
+    @Test
+    public void sendEmail_should_reuse_connection_for_subsequent_requests() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            client.sendEmail("template123", "email@example.com", ImmutableMap.of(), "reference" + i);
+        }
+
+        assertThat(requests).hasSize(10);
+        assertThat(clientAddresses).hasSize(1);
+    }
+
+    @Test
+    public void sendEmail_should_fail_with_http_status_and_body_when_notify_returns_error() {
+        responseStatus = 400;
+        responseBody = "{\"errors\":[{\"error\":\"BadRequestError\",\"message\":\"Missing personalisation\"}]}";
+
+        Throwable thrown = catchThrowable(
+            () -> client.sendEmail("template123", "email@example.com", ImmutableMap.of(), "reference123")
+        );
+
+        assertThat(thrown)
+            .isInstanceOf(NotificationClientException.class)
+            .hasMessage("Status code: 400 " + responseBody);
+
+        NotifyError notifyError = NotifyErrorClassifier.classify((NotificationClientException) thrown);
+        assertThat(notifyError.type).isEqualTo(NotifyErrorType.BAD_REQUEST);
+        assertThat(notifyError.details).isEqualTo("BadRequestError: Missing personalisation");
+    }
+
+    @Test
+    public void sendEmail_should_fail_without_http_status_when_notify_cannot_be_reached() throws IOException {
+        server.stop(0);
+
+        Throwable thrown = catchThrowable(
+            () -> client.sendEmail("template123", "email@example.com", ImmutableMap.of(), "reference123")
+        );
+
+        assertThat(thrown).isInstanceOf(NotificationClientException.class);
+        assertThat(((NotificationClientException) thrown).getHttpResult()).isZero();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientAddresses.add(exchange.getRemoteAddress());
+        requests.add(
+            new RecordedRequest(
+                exchange.getRequestMethod(),
+                exchange.getRequestURI().getPath(),
+                exchange.getRequestHeaders().getFirst("Authorization"),
+                readBody(exchange.getRequestBody())
+            )
+        );
+
+        byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(responseStatus, response.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private static String readBody(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+
+        while ((length = input.read(buffer)) != -1) {
+            output.write(buffer, 0, length);
+        }
+
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class RecordedRequest {
+        final String method;
+        final String path;
+        final String authorization;
+        final String body;
+
+        RecordedRequest(String method, String path, String authorization, String body) {
+            this.method = method;
+            this.path = path;
+            this.authorization = authorization;
+            this.body = body;
+        }
+    }
+}
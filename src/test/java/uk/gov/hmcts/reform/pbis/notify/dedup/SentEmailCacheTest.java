@@ -0,0 +1,307 @@
+package uk.gov.hmcts.reform.pbis.notify.dedup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCache.Reservation;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SentEmailCacheTest {
+
+    private static final Duration TIME_TO_LIVE = Duration.ofHours(1);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2018-01-01T10:00:00Z"));
+
+    @Test
+    public void markSent_should_record_registration_that_was_not_reserved() {
+        SentEmailCache cache = createCache(10, null);
+
+        cache.markSent(createRegistration("ref1", "service1"));
+
+        assertThat(cache.reserve(createRegistration("ref1", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+    }
+
+    @Test
+    public void reserve_should_tell_registrations_apart_by_reference_id_and_service() {
+        SentEmailCache cache = createCache(10, null);
+
+        cache.markSent(createRegistration("ref1", "service1"));
+
+        assertThat(cache.reserve(createRegistration("ref2", "service1"))).isEqualTo(Reservation.RESERVED);
+        assertThat(cache.reserve(createRegistration("ref1", "service2"))).isEqualTo(Reservation.RESERVED);
+    }
+
+    @Test
+    public void reserve_should_reserve_registration_again_once_time_to_live_has_passed() {
+        SentEmailCache cache = createCache(10, null);
+        PrivateBetaRegistration registration = createRegistration("ref1", "service1");
+        cache.markSent(registration);
+
+        clock.advance(TIME_TO_LIVE.minusSeconds(1));
+        assertThat(cache.reserve(registration)).isEqualTo(Reservation.ALREADY_SENT);
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(cache.reserve(registration)).isEqualTo(Reservation.RESERVED);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void markSent_should_evict_least_recently_used_registration_when_cache_is_full() {
+        SentEmailCache cache = createCache(2, null);
+
+        cache.markSent(createRegistration("ref1", "service1"));
+        cache.markSent(createRegistration("ref2", "service1"));
+
+        // makes ref2 the least recently used one
+        cache.reserve(createRegistration("ref1", "service1"));
+
+        cache.markSent(createRegistration("ref3", "service1"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.reserve(createRegistration("ref1", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+        assertThat(cache.reserve(createRegistration("ref3", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+        assertThat(cache.reserve(createRegistration("ref2", "service1"))).isEqualTo(Reservation.RESERVED);
+    }
+
+    @Test
+    public void reserve_should_reserve_registration_only_once_until_it_is_released() {
+        SentEmailCache cache = createCache(10, null);
+        PrivateBetaRegistration registration = createRegistration("ref1", "service1");
+
+        assertThat(cache.reserve(registration)).isEqualTo(Reservation.RESERVED);
+        assertThat(cache.reserve(registration)).isEqualTo(Reservation.IN_PROGRESS);
+
+        cache.release(registration);
+
+        assertThat(cache.reserve(registration)).isEqualTo(Reservation.RESERVED);
+    }
+
+    @Test
+    public void reserve_should_return_already_sent_for_registration_marked_as_sent() {
+        SentEmailCache cache = createCache(10, null);
+        PrivateBetaRegistration registration = createRegistration("ref1", "service1");
+
+        cache.reserve(registration);
+        cache.markSent(registration);
+        // the email has been sent, so its entry is no longer a reservation
+        cache.release(registration);
+
+        assertThat(cache.reserve(registration)).isEqualTo(Reservation.ALREADY_SENT);
+    }
+
+    @Test
+    public void reserve_should_reserve_registration_once_when_called_concurrently() throws Exception {
+        SentEmailCache cache = createCache(10, null);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Reservation>> reservations = new ArrayList<>();
+
+            for (int i = 0; i < 100; i++) {
+                reservations.add(executor.submit(() -> cache.reserve(createRegistration("ref1", "service1"))));
+            }
+
+            int reservedCount = 0;
+
+            for (Future<Reservation> reservation : reservations) {
+                if (reservation.get(5, TimeUnit.SECONDS) == Reservation.RESERVED) {
+                    reservedCount++;
+                }
+            }
+
+            assertThat(reservedCount).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void takeStatisticsSnapshot_should_return_hits_misses_and_size_and_reset_counts() {
+        SentEmailCache cache = createCache(10, null);
+        cache.markSent(createRegistration("ref1", "service1"));
+
+        cache.reserve(createRegistration("ref1", "service1"));
+        cache.reserve(createRegistration("ref2", "service1"));
+        cache.reserve(createRegistration("ref2", "service1"));
+        cache.reserve(createRegistration("ref3", "service1"));
+
+        SentEmailCacheStatistics statistics = cache.takeStatisticsSnapshot();
+
+        assertThat(statistics.hitCount).isEqualTo(2);
+        assertThat(statistics.missCount).isEqualTo(2);
+        assertThat(statistics.size).isEqualTo(3);
+
+        SentEmailCacheStatistics nextStatistics = cache.takeStatisticsSnapshot();
+
+        assertThat(nextStatistics.hitCount).isZero();
+        assertThat(nextStatistics.missCount).isZero();
+        assertThat(nextStatistics.size).isEqualTo(3);
+    }
+
+    @Test
+    public void restore_should_read_registrations_saved_in_snapshot() {
+        Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("sent-emails.snapshot");
+
+        SentEmailCache cache = createCache(10, snapshotFile);
+        cache.markSent(createRegistration("ref1", "service1"));
+        cache.markSent(createRegistration("ref2", "service2"));
+        cache.saveSnapshot();
+
+        SentEmailCache restoredCache = createCache(10, snapshotFile);
+        restoredCache.restore();
+
+        assertThat(restoredCache.size()).isEqualTo(2);
+        assertThat(restoredCache.reserve(createRegistration("ref1", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+        assertThat(restoredCache.reserve(createRegistration("ref2", "service2"))).isEqualTo(Reservation.ALREADY_SENT);
+    }
+
+    @Test
+    public void saveSnapshot_should_leave_out_reserved_registrations() {
+        Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("sent-emails.snapshot");
+
+        SentEmailCache cache = createCache(10, snapshotFile);
+        cache.markSent(createRegistration("ref1", "service1"));
+        cache.reserve(createRegistration("ref2", "service1"));
+        cache.saveSnapshot();
+
+        SentEmailCache restoredCache = createCache(10, snapshotFile);
+        restoredCache.restore();
+
+        assertThat(restoredCache.size()).isEqualTo(1);
+        assertThat(restoredCache.reserve(createRegistration("ref2", "service1"))).isEqualTo(Reservation.RESERVED);
+    }
+
+    @Test
+    public void restore_should_skip_registrations_that_expired_since_snapshot_was_saved() {
+        Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("sent-emails.snapshot");
+
+        SentEmailCache cache = createCache(10, snapshotFile);
+        cache.markSent(createRegistration("ref1", "service1"));
+        clock.advance(Duration.ofMinutes(30));
+        cache.markSent(createRegistration("ref2", "service1"));
+        cache.saveSnapshot();
+
+        clock.advance(Duration.ofMinutes(45));
+
+        SentEmailCache restoredCache = createCache(10, snapshotFile);
+        restoredCache.restore();
+
+        assertThat(restoredCache.size()).isEqualTo(1);
+        assertThat(restoredCache.reserve(createRegistration("ref2", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+    }
+
+    @Test
+    public void restore_should_keep_most_recently_used_registrations_when_snapshot_is_larger_than_cache() {
+        Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("sent-emails.snapshot");
+
+        SentEmailCache cache = createCache(10, snapshotFile);
+        cache.markSent(createRegistration("ref1", "service1"));
+        cache.markSent(createRegistration("ref2", "service1"));
+        cache.markSent(createRegistration("ref3", "service1"));
+        cache.saveSnapshot();
+
+        SentEmailCache restoredCache = createCache(2, snapshotFile);
+        restoredCache.restore();
+
+        assertThat(restoredCache.size()).isEqualTo(2);
+        assertThat(restoredCache.reserve(createRegistration("ref2", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+        assertThat(restoredCache.reserve(createRegistration("ref3", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+        assertThat(restoredCache.reserve(createRegistration("ref1", "service1"))).isEqualTo(Reservation.RESERVED);
+    }
+
+    @Test
+    public void restore_should_leave_cache_empty_when_snapshot_does_not_exist() {
+        Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("missing.snapshot");
+
+        SentEmailCache cache = createCache(10, snapshotFile);
+        cache.restore();
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void restore_should_leave_cache_empty_when_snapshot_is_corrupt() throws IOException {
+        Path snapshotFile = temporaryFolder.newFile("corrupt.snapshot").toPath();
+        Files.write(snapshotFile, new byte[] {0, 0, 0, 1, 0, 0, 0, 5, 0x7f, 0x7f});
+
+        SentEmailCache cache = createCache(10, snapshotFile);
+        cache.restore();
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void saveSnapshot_should_replace_previous_snapshot() {
+        Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("sent-emails.snapshot");
+
+        SentEmailCache cache = createCache(10, snapshotFile);
+        cache.markSent(createRegistration("ref1", "service1"));
+        cache.saveSnapshot();
+
+        SentEmailCache nextCache = createCache(10, snapshotFile);
+        nextCache.markSent(createRegistration("ref2", "service1"));
+        nextCache.saveSnapshot();
+
+        SentEmailCache restoredCache = createCache(10, snapshotFile);
+        restoredCache.restore();
+
+        assertThat(restoredCache.size()).isEqualTo(1);
+        assertThat(restoredCache.reserve(createRegistration("ref2", "service1"))).isEqualTo(Reservation.ALREADY_SENT);
+        assertThat(snapshotFile.resolveSibling("sent-emails.snapshot.tmp")).doesNotExist();
+    }
+
+    private SentEmailCache createCache(int maxSize, Path snapshotFile) {
+        return new SentEmailCache(maxSize, TIME_TO_LIVE, snapshotFile, clock);
+    }
+
+    private static PrivateBetaRegistration createRegistration(String referenceId, String service) {
+        return new PrivateBetaRegistration(referenceId, service, "john@example.com", "John", "Smith");
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
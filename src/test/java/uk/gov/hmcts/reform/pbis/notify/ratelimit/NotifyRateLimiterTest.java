@@ -0,0 +1,203 @@
+package uk.gov.hmcts.reform.pbis.notify.ratelimit;
+
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class NotifyRateLimiterTest {
+
+    // time doesn't pass, so that wait times are predictable
+    private final Clock clock = Clock.fixed(Instant.parse("2018-01-01T10:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    public void acquire_should_share_bucket_between_services_using_same_api_key() throws Exception {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(
+                createMapping("service1", "apiKey1", 20, 1),
+                createMapping("service2", "apiKey1", 20, 1)
+            ),
+            clock
+        );
+
+        assertThat(rateLimiter.acquire("service1")).isEqualTo(Duration.ZERO);
+        assertThat(rateLimiter.acquire("service2")).isEqualTo(Duration.ofMillis(50));
+
+        List<RateLimiterStatistics> statistics = rateLimiter.takeStatisticsSnapshot();
+
+        assertThat(statistics)
+            .extracting(s -> s.services, s -> s.acquiredCount, s -> s.averageWaitTimeMs, s -> s.maxWaitTimeMs)
+            .containsExactly(tuple("service1,service2", 2L, 25.0, 50.0));
+    }
+
+    @Test
+    public void acquire_should_use_separate_buckets_for_different_api_keys() throws Exception {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(
+                createMapping("service1", "apiKey1", 20, 1),
+                createMapping("service2", "apiKey2", 20, 1)
+            ),
+            clock
+        );
+
+        assertThat(rateLimiter.acquire("service1")).isEqualTo(Duration.ZERO);
+        assertThat(rateLimiter.acquire("service2")).isEqualTo(Duration.ZERO);
+
+        assertThat(rateLimiter.takeStatisticsSnapshot())
+            .extracting(s -> s.services, s -> s.acquiredCount)
+            .containsExactly(tuple("service1", 1L), tuple("service2", 1L));
+    }
+
+    @Test
+    public void acquire_should_apply_lowest_limits_configured_for_shared_api_key() throws Exception {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(
+                createMapping("service1", "apiKey1", 50, 10),
+                createMapping("service2", "apiKey1", 20, 1)
+            ),
+            clock
+        );
+
+        rateLimiter.acquire("service1");
+
+        assertThat(rateLimiter.acquire("service1")).isEqualTo(Duration.ofMillis(50));
+        assertThat(rateLimiter.takeStatisticsSnapshot().get(0).currentRate).isEqualTo(20);
+    }
+
+    @Test
+    public void tryAcquire_should_not_count_request_that_has_to_wait() {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(createMapping("service1", "apiKey1", 20, 1)),
+            clock
+        );
+
+        NotifyRateLimiter.ApiKeyRateLimit rateLimit = rateLimiter.getRateLimit("service1");
+
+        assertThat(rateLimit.tryAcquire()).isEqualTo(Duration.ZERO);
+        assertThat(rateLimit.tryAcquire()).isEqualTo(Duration.ofMillis(50));
+
+        assertThat(rateLimiter.takeStatisticsSnapshot())
+            .extracting(s -> s.acquiredCount, s -> s.maxWaitTimeMs)
+            .containsExactly(tuple(1L, 0.0));
+    }
+
+    @Test
+    public void acquire_should_not_wait_for_unknown_service() throws Exception {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(createMapping("service1", "apiKey1", 20, 1)),
+            clock
+        );
+
+        rateLimiter.acquire("service1");
+
+        assertThat(rateLimiter.acquire("unknown-service")).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    public void onRateLimited_should_slow_down_requests_made_with_api_key_of_service() {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(
+                createMapping("service1", "apiKey1", 20, 1),
+                createMapping("service2", "apiKey2", 20, 1)
+            ),
+            clock
+        );
+
+        rateLimiter.onRateLimited("service1");
+
+        assertThat(rateLimiter.takeStatisticsSnapshot())
+            .extracting(s -> s.services, s -> s.currentRate, s -> s.rateLimitedCount)
+            .containsExactly(tuple("service1", 10.0, 1L), tuple("service2", 20.0, 0L));
+    }
+
+    @Test
+    public void getRateLimit_should_return_same_rate_limit_for_services_using_same_api_key() {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(
+                createMapping("service1", "apiKey1", 20, 1),
+                createMapping("service2", "apiKey1", 20, 1),
+                createMapping("service3", "apiKey3", 20, 1)
+            ),
+            clock
+        );
+
+        assertThat(rateLimiter.getRateLimit("service1")).isSameAs(rateLimiter.getRateLimit("service2"));
+        assertThat(rateLimiter.getRateLimit("service1")).isNotSameAs(rateLimiter.getRateLimit("service3"));
+        assertThat(rateLimiter.getRateLimit("unknown-service")).isNull();
+    }
+
+    @Test
+    public void takeStatisticsSnapshot_should_reset_counts() throws Exception {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(createMapping("service1", "apiKey1", 20, 1)),
+            clock
+        );
+
+        rateLimiter.acquire("service1");
+        rateLimiter.onRateLimited("service1");
+        rateLimiter.takeStatisticsSnapshot();
+
+        assertThat(rateLimiter.takeStatisticsSnapshot())
+            .extracting(s -> s.acquiredCount, s -> s.maxWaitTimeMs, s -> s.rateLimitedCount)
+            .containsExactly(tuple(0L, 0.0, 0L));
+    }
+
+    @Test
+    public void reload_should_keep_rate_limit_of_api_key_whose_limits_have_not_changed() {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(createMapping("service1", "apiKey1", 20, 1)),
+            clock
+        );
+
+        NotifyRateLimiter.ApiKeyRateLimit rateLimit = rateLimiter.getRateLimit("service1");
+
+        rateLimiter.reload(
+            asList(
+                createMapping("service1", "apiKey1", 20, 1),
+                createMapping("service2", "apiKey2", 20, 1)
+            )
+        );
+
+        assertThat(rateLimiter.getRateLimit("service1")).isSameAs(rateLimit);
+        assertThat(rateLimiter.getRateLimit("service2")).isNotNull();
+    }
+
+    @Test
+    public void reload_should_replace_rate_limit_of_api_key_whose_limits_have_changed() {
+        NotifyRateLimiter rateLimiter = new NotifyRateLimiter(
+            asList(createMapping("service1", "apiKey1", 20, 1)),
+            clock
+        );
+
+        NotifyRateLimiter.ApiKeyRateLimit rateLimit = rateLimiter.getRateLimit("service1");
+
+        rateLimiter.reload(asList(createMapping("service1", "apiKey1", 10, 1)));
+
+        assertThat(rateLimiter.getRateLimit("service1")).isNotSameAs(rateLimit);
+        assertThat(rateLimiter.takeStatisticsSnapshot())
+            .extracting(s -> s.services, s -> s.currentRate)
+            .containsExactly(tuple("service1", 10.0));
+    }
+
+    private static EmailTemplateMapping createMapping(
+        String service,
+        String apiKey,
+        double maxRequestsPerSecond,
+        int burstSize
+    ) {
+        EmailTemplateMapping mapping = new EmailTemplateMapping();
+        mapping.setService(service);
+        mapping.setNotifyApiKey(apiKey);
+        mapping.getNotifyClient().setMaxRequestsPerSecond(maxRequestsPerSecond);
+        mapping.getNotifyClient().setBurstSize(burstSize);
+        return mapping;
+    }
+}
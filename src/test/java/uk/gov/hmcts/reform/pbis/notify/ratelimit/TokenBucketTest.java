@@ -0,0 +1,155 @@
+package uk.gov.hmcts.reform.pbis.notify.ratelimit;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class TokenBucketTest {
+
+    private static final double MAX_RATE = 10;
+    private static final int CAPACITY = 5;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2018-01-01T10:00:00Z"));
+
+    private final TokenBucket tokenBucket = new TokenBucket(MAX_RATE, CAPACITY, clock);
+
+    @Test
+    public void should_allow_burst_up_to_capacity_without_waiting() {
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(tokenBucket.reserve()).isEqualTo(Duration.ZERO);
+        }
+
+        assertThat(tokenBucket.reserve()).isEqualTo(Duration.ofMillis(100));
+        assertThat(tokenBucket.reserve()).isEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    public void should_add_tokens_at_configured_rate() {
+        drain();
+
+        clock.advance(Duration.ofMillis(300));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(tokenBucket.reserve()).isEqualTo(Duration.ZERO);
+        }
+
+        assertThat(tokenBucket.reserve()).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void should_not_add_tokens_beyond_capacity() {
+        clock.advance(Duration.ofMinutes(1));
+
+        drain();
+
+        assertThat(tokenBucket.reserve()).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void slowDown_should_halve_rate_and_drop_remaining_tokens() {
+        assertThat(tokenBucket.slowDown()).isTrue();
+
+        assertThat(tokenBucket.getRate()).isEqualTo(MAX_RATE / 2);
+        assertThat(tokenBucket.reserve()).isEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    public void slowDown_should_be_ignored_shortly_after_previous_one() {
+        tokenBucket.slowDown();
+        clock.advance(Duration.ofMillis(500));
+
+        assertThat(tokenBucket.slowDown()).isFalse();
+        assertThat(tokenBucket.getRate()).isCloseTo(MAX_RATE / 2, within(0.1));
+    }
+
+    @Test
+    public void should_recover_rate_after_slowing_down() {
+        tokenBucket.slowDown();
+
+        clock.advance(Duration.ofSeconds(15));
+        assertThat(tokenBucket.getRate()).isCloseTo(7.5, within(0.001));
+
+        clock.advance(Duration.ofMinutes(1));
+        assertThat(tokenBucket.getRate()).isEqualTo(MAX_RATE);
+    }
+
+    @Test
+    public void should_not_slow_down_below_minimum_rate() {
+        for (int i = 0; i < 20; i++) {
+            tokenBucket.slowDown();
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        assertThat(tokenBucket.getRate()).isGreaterThanOrEqualTo(MAX_RATE * 0.05);
+    }
+
+    @Test
+    public void tryTake_should_take_token_when_available() {
+        assertThat(tokenBucket.tryTake()).isEqualTo(Duration.ZERO);
+
+        for (int i = 1; i < CAPACITY; i++) {
+            assertThat(tokenBucket.reserve()).isEqualTo(Duration.ZERO);
+        }
+
+        assertThat(tokenBucket.reserve()).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void tryTake_should_not_reserve_token_when_none_is_available() {
+        drain();
+
+        assertThat(tokenBucket.tryTake()).isEqualTo(Duration.ofMillis(100));
+        assertThat(tokenBucket.tryTake()).isEqualTo(Duration.ofMillis(100));
+
+        clock.advance(Duration.ofMillis(100));
+
+        assertThat(tokenBucket.tryTake()).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    public void should_reject_non_positive_rate() {
+        assertThatThrownBy(() -> new TokenBucket(0, CAPACITY, clock))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void drain() {
+        for (int i = 0; i < CAPACITY; i++) {
+            tokenBucket.reserve();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
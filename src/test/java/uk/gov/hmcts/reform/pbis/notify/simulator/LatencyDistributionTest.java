@@ -0,0 +1,72 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LatencyDistributionTest {
+
+    private static final int SAMPLE_COUNT = 10_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void fixed_should_always_return_the_same_latency() {
+        LatencyDistribution distribution = LatencyDistribution.fixed(Duration.ofMillis(30));
+
+        assertThat(sample(distribution)).containsOnly(Duration.ofMillis(30));
+    }
+
+    @Test
+    public void uniform_should_return_latencies_between_minimum_and_maximum() {
+        List<Duration> samples = sample(LatencyDistribution.uniform(Duration.ofMillis(10), Duration.ofMillis(20)));
+
+        assertThat(samples).allMatch(latency -> latency.compareTo(Duration.ofMillis(10)) >= 0);
+        assertThat(samples).allMatch(latency -> latency.compareTo(Duration.ofMillis(20)) <= 0);
+        assertThat(percentile(samples, 0.5).toMillis()).isBetween(14L, 16L);
+    }
+
+    @Test
+    public void longTail_should_return_latencies_with_given_median_and_99th_percentile() {
+        List<Duration> samples = sample(LatencyDistribution.longTail(Duration.ofMillis(50), Duration.ofMillis(500)));
+
+        assertThat(percentile(samples, 0.5).toMillis()).isBetween(45L, 55L);
+        assertThat(percentile(samples, 0.99).toMillis()).isBetween(400L, 600L);
+        assertThat(samples).allMatch(latency -> latency.compareTo(Duration.ofSeconds(5)) <= 0);
+    }
+
+    @Test
+    public void uniform_should_reject_maximum_lower_than_minimum() {
+        assertThatThrownBy(() -> LatencyDistribution.uniform(Duration.ofMillis(20), Duration.ofMillis(10)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void longTail_should_reject_99th_percentile_lower_than_median() {
+        assertThatThrownBy(() -> LatencyDistribution.longTail(Duration.ofMillis(50), Duration.ofMillis(10)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<Duration> sample(LatencyDistribution distribution) {
+        List<Duration> samples = new ArrayList<>();
+
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            samples.add(distribution.sample(random));
+        }
+
+        return samples;
+    }
+
+    private static Duration percentile(List<Duration> samples, double percentile) {
+        List<Duration> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        return sorted.get((int) (percentile * (sorted.size() - 1)));
+    }
+}
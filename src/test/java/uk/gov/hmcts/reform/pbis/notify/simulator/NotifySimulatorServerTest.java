@@ -0,0 +1,94 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.config.NotifyClientSettings;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorClassifier;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorType;
+import uk.gov.hmcts.reform.pbis.notify.PooledNotificationClient;
+import uk.gov.service.notify.NotificationClient;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class NotifySimulatorServerTest {
+
+    private static final UUID SERVICE_ID = UUID.randomUUID();
+    private static final String TEMPLATE_ID = UUID.randomUUID().toString();
+
+    private final NotifySimulator simulator = new NotifySimulator();
+
+    private NotifySimulatorServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new NotifySimulatorServer(simulator, 4);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void should_handle_emails_sent_with_stock_notify_client() throws Exception {
+        NotificationClient client =
+            new NotificationClient(NotifySimulatorServer.createApiKey(SERVICE_ID), server.getBaseUrl());
+
+        SendEmailResponse response = client.sendEmail(
+            TEMPLATE_ID,
+            "john@example.com",
+            ImmutableMap.of("first_name", "John"),
+            "reference1"
+        );
+
+        assertThat(response.getReference()).hasValue("reference1");
+        assertThat(simulator.getCalls(SERVICE_ID.toString()))
+            .extracting(call -> call.templateId, call -> call.emailAddress)
+            .containsExactly(tuple(TEMPLATE_ID, "john@example.com"));
+        assertThat(simulator.getCalls().get(0).personalisation).containsEntry("first_name", "John");
+    }
+
+    @Test
+    public void should_handle_emails_sent_with_pooled_notify_client() throws Exception {
+        try (PooledNotificationClient client = new PooledNotificationClient(
+            NotifySimulatorServer.createApiKey(SERVICE_ID),
+            server.getBaseUrl(),
+            new NotifyClientSettings()
+        )) {
+            client.sendEmail(TEMPLATE_ID, "john@example.com", ImmutableMap.of(), "reference1");
+        }
+
+        assertThat(simulator.getCalls(SERVICE_ID.toString())).hasSize(1);
+    }
+
+    @Test
+    public void should_respond_with_error_of_service() {
+        simulator.setBehaviour(
+            SERVICE_ID.toString(),
+            ServiceBehaviour.healthy()
+                .withLatency(LatencyDistribution.fixed(Duration.ofMillis(10)))
+                .withErrors(1, 500)
+        );
+
+        NotificationClient client =
+            new NotificationClient(NotifySimulatorServer.createApiKey(SERVICE_ID), server.getBaseUrl());
+
+        Throwable thrown = catchThrowable(
+            () -> client.sendEmail(TEMPLATE_ID, "john@example.com", ImmutableMap.of(), "reference1")
+        );
+
+        assertThat(thrown).isInstanceOf(NotificationClientException.class);
+        assertThat(NotifyErrorClassifier.classify((NotificationClientException) thrown).type)
+            .isEqualTo(NotifyErrorType.SERVER_ERROR);
+    }
+}
@@ -0,0 +1,121 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotifySimulatorTest {
+
+    private static final String TEMPLATE_ID = UUID.randomUUID().toString();
+
+    private final NotifySimulator simulator = new NotifySimulator(42);
+
+    @Test
+    public void sendEmail_should_respond_with_send_email_response() {
+        SimulatedResponse response = send("service1", "reference1");
+
+        assertThat(response.status).isEqualTo(NotifySimulator.CREATED);
+
+        SendEmailResponse sendEmailResponse = new SendEmailResponse(response.body);
+        assertThat(sendEmailResponse.getReference()).hasValue("reference1");
+        assertThat(sendEmailResponse.getTemplateId().toString()).isEqualTo(TEMPLATE_ID);
+        assertThat(sendEmailResponse.getBody()).contains("first_name: John");
+    }
+
+    @Test
+    public void sendEmail_should_respond_with_parseable_response_when_template_id_is_not_uuid() {
+        SimulatedResponse response = simulator.sendEmail(
+            "service1", "template", "john@example.com", ImmutableMap.of(), "reference1"
+        );
+
+        assertThat(new SendEmailResponse(response.body).getTemplateId()).isNotNull();
+    }
+
+    @Test
+    public void sendEmail_should_record_calls() {
+        send("service1", "reference1");
+        send("service2", "reference2");
+
+        List<RecordedCall> calls = simulator.getCalls();
+
+        assertThat(calls).extracting(call -> call.service).containsExactly("service1", "service2");
+        assertThat(calls).extracting(call -> call.reference).containsExactly("reference1", "reference2");
+        assertThat(calls).allMatch(RecordedCall::isSuccessful);
+        assertThat(calls.get(0).emailAddress).isEqualTo("john@example.com");
+        assertThat(calls.get(0).personalisation).containsEntry("first_name", "John");
+
+        assertThat(simulator.getCalls("service2")).extracting(call -> call.reference).containsExactly("reference2");
+
+        simulator.clearCalls();
+        assertThat(simulator.getCalls()).isEmpty();
+    }
+
+    @Test
+    public void sendEmail_should_fail_calls_of_service_with_errors() {
+        simulator.setBehaviour("failing-service", ServiceBehaviour.healthy().withErrors(1, 500));
+
+        SimulatedResponse failed = send("failing-service", "reference1");
+        SimulatedResponse succeeded = send("service1", "reference2");
+
+        assertThat(failed.status).isEqualTo(500);
+        assertThat(failed.body).contains("\"status_code\":500");
+        assertThat(succeeded.status).isEqualTo(NotifySimulator.CREATED);
+    }
+
+    @Test
+    public void sendEmail_should_fail_calls_at_error_rate() {
+        simulator.setDefaultBehaviour(ServiceBehaviour.healthy().withErrors(0.3, 503));
+
+        for (int i = 0; i < 1000; i++) {
+            send("service1", "reference" + i);
+        }
+
+        long failedCount = simulator.getCalls().stream().filter(call -> call.responseStatus == 503).count();
+        assertThat(failedCount).isBetween(250L, 350L);
+    }
+
+    @Test
+    public void sendEmail_should_reject_calls_over_rate_limit() {
+        simulator.setBehaviour("service1", ServiceBehaviour.healthy().withRateLimit(2));
+
+        assertThat(send("service1", "reference1").status).isEqualTo(NotifySimulator.CREATED);
+        assertThat(send("service1", "reference2").status).isEqualTo(NotifySimulator.CREATED);
+
+        SimulatedResponse rejected = send("service1", "reference3");
+        assertThat(rejected.status).isEqualTo(NotifySimulator.TOO_MANY_REQUESTS);
+        assertThat(rejected.body).contains("RateLimitError");
+
+        // other services have their own limits
+        assertThat(send("service2", "reference4").status).isEqualTo(NotifySimulator.CREATED);
+    }
+
+    @Test
+    public void sendEmail_should_take_as_long_as_latency_of_service() {
+        simulator.setBehaviour("slow-service", ServiceBehaviour.healthy().withLatency(
+            LatencyDistribution.fixed(Duration.ofMillis(100))
+        ));
+
+        long start = System.nanoTime();
+        send("slow-service", "reference1");
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        assertThat(simulator.getCalls().get(0).latency).isEqualTo(Duration.ofMillis(100));
+    }
+
+    private SimulatedResponse send(String service, String reference) {
+        return simulator.sendEmail(
+            service,
+            TEMPLATE_ID,
+            "john@example.com",
+            ImmutableMap.of("first_name", "John"),
+            reference
+        );
+    }
+}
@@ -0,0 +1,41 @@
+package uk.gov.hmcts.reform.pbis.notify.simulator;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorClassifier;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorType;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class SimulatedNotificationClientTest {
+
+    private final NotifySimulator simulator = new NotifySimulator();
+    private final SimulatedNotificationClient client = new SimulatedNotificationClient(simulator, "service1");
+
+    @Test
+    public void sendEmail_should_return_response_of_simulator() throws Exception {
+        SendEmailResponse response = client.sendEmail("template", "john@example.com", ImmutableMap.of(), "ref1");
+
+        assertThat(response.getReference()).hasValue("ref1");
+        assertThat(simulator.getCalls("service1")).hasSize(1);
+    }
+
+    @Test
+    public void sendEmail_should_throw_exception_classified_like_notify_error() {
+        simulator.setBehaviour("service1", ServiceBehaviour.healthy().withRateLimit(1));
+
+        Throwable thrown = catchThrowable(() -> {
+            for (int i = 0; i < 2; i++) {
+                client.sendEmail("template", "john@example.com", ImmutableMap.of(), "ref" + i);
+            }
+        });
+
+        assertThat(thrown).isInstanceOf(NotificationClientException.class);
+        assertThat(((NotificationClientException) thrown).getHttpResult()).isEqualTo(429);
+        assertThat(NotifyErrorClassifier.classify((NotificationClientException) thrown).type)
+            .isEqualTo(NotifyErrorType.RATE_LIMIT);
+    }
+}
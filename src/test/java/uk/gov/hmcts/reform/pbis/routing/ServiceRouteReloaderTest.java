@@ -0,0 +1,212 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.env.MockEnvironment;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.notify.NotifyCircuitBreaker;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceWeights;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ServiceRouteReloaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<EmailTemplateMapping> initialMappings = asList(
+        createMapping("service1", "template1"),
+        createMapping("service2", "template2")
+    );
+
+    private final NotificationClientProvider notificationClientProvider =
+        new NotificationClientProvider(initialMappings, true);
+    private final NotifyRateLimiter rateLimiter = new NotifyRateLimiter(initialMappings);
+    private final NotifyCircuitBreaker circuitBreaker =
+        new NotifyCircuitBreaker(initialMappings, 20, 50, Duration.ofSeconds(30));
+    private final ServiceWeights serviceWeights = new ServiceWeights(initialMappings);
+    private final ServiceRouteTable routeTable =
+        ServiceRouteTable.compile(initialMappings, notificationClientProvider, rateLimiter, circuitBreaker);
+
+    private Path reloadFile;
+    private ServiceRouteReloader reloader;
+
+    @Before
+    public void setUp() throws IOException {
+        reloadFile = temporaryFolder.newFile("mappings.yaml").toPath();
+        reloader = createReloader(reloadFile.toString());
+    }
+
+    @After
+    public void tearDown() {
+        reloader.stop();
+    }
+
+    @Test
+    public void reload_should_replace_routes_with_mappings_from_file() throws IOException {
+        ServiceRoute oldRoute = routeTable.getRoute("service1");
+
+        writeReloadFile(
+            "emailTemplateMappings:",
+            "  - service: 'service1'",
+            "    templateId: 'template1'",
+            "    notifyApiKey: 'apiKey-service1'",
+            "    welcomeLink: 'https://service1.example.com'",
+            "  - service: 'service3'",
+            "    templateId: 'template3'",
+            "    notifyApiKey: ${SERVICE3_API_KEY}",
+            "    welcomeLink: 'https://service3.example.com'",
+            "    weight: 3"
+        );
+
+        ServiceRoutesReloadResult result = reloader.reload();
+
+        assertThat(result.addedServices).containsExactly("service3");
+        assertThat(result.removedServices).containsExactly("service2");
+        assertThat(result.changedServices).isEmpty();
+
+        assertThat(routeTable.getRoute("service2")).isNull();
+        assertThat(routeTable.getRoute("service3").templateId).isEqualTo("template3");
+        assertThat(routeTable.getRoute("service3").rateLimit).isNotNull();
+        assertThat(routeTable.getRoute("service3").circuit).isNotNull();
+        assertThat(serviceWeights.getWeight("service3")).isEqualTo(3);
+
+        ServiceRoute newRoute = routeTable.getRoute("service1");
+        assertThat(newRoute.notificationClient).isSameAs(oldRoute.notificationClient);
+        assertThat(newRoute.rateLimit).isSameAs(oldRoute.rateLimit);
+        assertThat(newRoute.circuit).isSameAs(oldRoute.circuit);
+    }
+
+    @Test
+    public void reload_should_report_services_whose_routes_have_changed() {
+        ServiceRoutesReloadResult result = reloader.reload(
+            asList(
+                createMapping("service1", "new-template1"),
+                createMapping("service2", "template2")
+            )
+        );
+
+        assertThat(result.changedServices).containsExactly("service1");
+        assertThat(result.addedServices).isEmpty();
+        assertThat(result.removedServices).isEmpty();
+        assertThat(routeTable.getRoute("service1").templateId).isEqualTo("new-template1");
+    }
+
+    @Test
+    public void reload_should_keep_current_routes_when_mappings_are_invalid() {
+        assertThatThrownBy(() -> reloader.reload(
+            asList(
+                createMapping("service3", "template3"),
+                createMapping("service3", "template3")
+            )
+        ))
+            .isInstanceOf(ServiceRoutesReloadException.class)
+            .hasMessageContaining("service3");
+
+        assertThat(routeTable.getRoute("service1")).isNotNull();
+        assertThat(routeTable.getRoute("service3")).isNull();
+    }
+
+    @Test
+    public void reload_should_reject_empty_mappings() {
+        assertThatThrownBy(() -> reloader.reload(emptyList()))
+            .isInstanceOf(ServiceRoutesReloadException.class);
+
+        assertThat(routeTable.getRoutes()).hasSize(2);
+    }
+
+    @Test
+    public void reload_should_fail_when_file_has_no_mappings() throws IOException {
+        writeReloadFile("something: else");
+
+        assertThatThrownBy(() -> reloader.reload())
+            .isInstanceOf(ServiceRoutesReloadException.class)
+            .hasMessageContaining("emailTemplateMappings");
+    }
+
+    @Test
+    public void reload_should_fail_when_file_is_not_configured() {
+        ServiceRouteReloader reloaderWithoutFile = createReloader("");
+
+        assertThatThrownBy(() -> reloaderWithoutFile.reload())
+            .isInstanceOf(ServiceRoutesReloadException.class);
+    }
+
+    @Test
+    public void checkForChanges_should_reload_only_when_content_of_file_has_changed() throws IOException {
+        writeMappingOfService("service3");
+        reloader.checkForChanges();
+
+        assertThat(routeTable.getRoute("service3")).isNotNull();
+
+        // would be undone by a reload
+        routeTable.replaceRoutes(emptyList());
+        reloader.checkForChanges();
+
+        assertThat(routeTable.getRoutes()).isEmpty();
+
+        writeMappingOfService("service4");
+        reloader.checkForChanges();
+
+        assertThat(routeTable.getRoute("service4")).isNotNull();
+    }
+
+    @Test
+    public void start_should_load_mappings_from_file() throws IOException {
+        writeMappingOfService("service3");
+
+        reloader.start();
+
+        assertThat(routeTable.getRoutes()).extracting(route -> route.service).containsExactly("service3");
+    }
+
+    private ServiceRouteReloader createReloader(String reloadFile) {
+        return new ServiceRouteReloader(
+            routeTable,
+            notificationClientProvider,
+            rateLimiter,
+            circuitBreaker,
+            serviceWeights,
+            new MockEnvironment().withProperty("SERVICE3_API_KEY", "apiKey-service3"),
+            reloadFile,
+            0
+        );
+    }
+
+    private void writeMappingOfService(String service) throws IOException {
+        writeReloadFile(
+            "emailTemplateMappings:",
+            "  - service: '" + service + "'",
+            "    templateId: 'template'",
+            "    notifyApiKey: 'apiKey'",
+            "    welcomeLink: 'https://example.com'"
+        );
+    }
+
+    private void writeReloadFile(String... lines) throws IOException {
+        Files.write(reloadFile, asList(lines));
+    }
+
+    private static EmailTemplateMapping createMapping(String service, String templateId) {
+        EmailTemplateMapping mapping = new EmailTemplateMapping();
+        mapping.setService(service);
+        mapping.setTemplateId(templateId);
+        mapping.setNotifyApiKey("apiKey-" + service);
+        mapping.setWelcomeLink("https://" + service + ".example.com");
+        return mapping;
+    }
+}
@@ -0,0 +1,100 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.pbis.config.EmailTemplateMapping;
+import uk.gov.hmcts.reform.pbis.notify.EmailSender;
+import uk.gov.hmcts.reform.pbis.notify.NotificationClientProvider;
+import uk.gov.hmcts.reform.pbis.notify.NotifyCircuitBreaker;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServiceRouteTableTest {
+
+    @Mock
+    private NotificationClientProvider notificationClientProvider;
+
+    @Mock
+    private NotifyRateLimiter rateLimiter;
+
+    @Mock
+    private NotifyCircuitBreaker circuitBreaker;
+
+    @Mock
+    private EmailSender notificationClient;
+
+    @Mock
+    private NotifyRateLimiter.ApiKeyRateLimit rateLimit;
+
+    @Mock
+    private NotifyCircuitBreaker.ServiceCircuit circuit;
+
+    @Test
+    public void compile_should_create_route_for_each_service() {
+        given(notificationClientProvider.getClient("service1")).willReturn(notificationClient);
+        given(rateLimiter.getRateLimit("service1")).willReturn(rateLimit);
+        given(circuitBreaker.getCircuit("service1")).willReturn(circuit);
+
+        ServiceRouteTable routeTable = ServiceRouteTable.compile(
+            asList(createMapping("service1"), createMapping("service2")),
+            notificationClientProvider,
+            rateLimiter,
+            circuitBreaker
+        );
+
+        ServiceRoute route = routeTable.getRoute("service1");
+
+        assertThat(route.service).isEqualTo("service1");
+        assertThat(route.templateId).isEqualTo("template-service1");
+        assertThat(route.welcomeLink).isEqualTo("https://service1.example.com");
+        assertThat(route.notificationClient).isSameAs(notificationClient);
+        assertThat(route.rateLimit).isSameAs(rateLimit);
+        assertThat(route.circuit).isSameAs(circuit);
+
+        assertThat(routeTable.getRoute("service2").service).isEqualTo("service2");
+    }
+
+    @Test
+    public void getRoute_should_return_null_for_unknown_service() {
+        ServiceRouteTable routeTable = ServiceRouteTable.compile(
+            asList(createMapping("service1")),
+            notificationClientProvider,
+            rateLimiter,
+            circuitBreaker
+        );
+
+        assertThat(routeTable.getRoute("unknown-service")).isNull();
+        assertThat(routeTable.getRoute(null)).isNull();
+    }
+
+    @Test
+    public void replaceRoutes_should_replace_all_routes() {
+        ServiceRouteTable routeTable = new ServiceRouteTable(asList(createRoute("service1"), createRoute("service2")));
+        ServiceRoute newRoute = createRoute("service3");
+
+        routeTable.replaceRoutes(asList(newRoute));
+
+        assertThat(routeTable.getRoute("service3")).isSameAs(newRoute);
+        assertThat(routeTable.getRoute("service1")).isNull();
+        assertThat(routeTable.getRoutes()).containsExactly(newRoute);
+    }
+
+    private static ServiceRoute createRoute(String service) {
+        String welcomeLink = "https://" + service + ".example.com";
+        return new ServiceRoute(service, "template-" + service, welcomeLink, null, null, null);
+    }
+
+    private static EmailTemplateMapping createMapping(String service) {
+        EmailTemplateMapping mapping = new EmailTemplateMapping();
+        mapping.setService(service);
+        mapping.setTemplateId("template-" + service);
+        mapping.setWelcomeLink("https://" + service + ".example.com");
+        return mapping;
+    }
+}
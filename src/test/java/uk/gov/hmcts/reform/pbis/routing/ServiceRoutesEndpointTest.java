@@ -0,0 +1,52 @@
+package uk.gov.hmcts.reform.pbis.routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServiceRoutesEndpointTest {
+
+    @Mock
+    private ServiceRouteReloader reloader;
+
+    private ServiceRoutesEndpoint endpoint;
+
+    @Before
+    public void setUp() {
+        endpoint = new ServiceRoutesEndpoint(reloader);
+    }
+
+    @Test
+    public void reload_should_return_services_affected_by_reload() {
+        ServiceRoutesReloadResult result =
+            new ServiceRoutesReloadResult(singletonList("service1"), singletonList("service2"), emptyList());
+        given(reloader.reload()).willReturn(result);
+
+        WebEndpointResponse<Object> response = endpoint.reload();
+
+        assertThat(response.getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK);
+        assertThat(response.getBody()).isSameAs(result);
+    }
+
+    @Test
+    public void reload_should_not_reveal_reason_of_failure() {
+        given(reloader.reload()).willThrow(
+            new ServiceRoutesReloadException("Failed to parse email template mappings from /etc/routes.yaml")
+        );
+
+        WebEndpointResponse<Object> response = endpoint.reload();
+
+        assertThat(response.getStatus()).isEqualTo(WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR);
+        assertThat(response.getBody()).isEqualTo(singletonMap("error", "Failed to reload email template mappings"));
+    }
+}
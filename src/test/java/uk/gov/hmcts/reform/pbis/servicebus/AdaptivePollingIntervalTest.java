@@ -0,0 +1,89 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AdaptivePollingIntervalTest {
+
+    private static final Duration MIN_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration MAX_INTERVAL = Duration.ofSeconds(30);
+
+    private final AdaptivePollingInterval pollingInterval =
+        new AdaptivePollingInterval(MIN_INTERVAL, MAX_INTERVAL);
+
+    @Test
+    public void should_poll_again_immediately_after_run_with_messages() {
+        pollingInterval.recordRun(0, Duration.ofSeconds(30));
+        pollingInterval.recordRun(5, Duration.ofSeconds(30));
+
+        assertThat(pollingInterval.getCurrentInterval()).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    public void should_back_off_exponentially_up_to_max_interval_when_no_messages_found() {
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(1));
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(2));
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(4));
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(8));
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(16));
+        assertThat(intervalAfterEmptyRun()).isEqualTo(MAX_INTERVAL);
+        assertThat(intervalAfterEmptyRun()).isEqualTo(MAX_INTERVAL);
+    }
+
+    @Test
+    public void should_restart_back_off_from_min_interval_after_run_with_messages() {
+        intervalAfterEmptyRun();
+        intervalAfterEmptyRun();
+
+        pollingInterval.recordRun(1, Duration.ZERO);
+
+        assertThat(intervalAfterEmptyRun()).isEqualTo(MIN_INTERVAL);
+    }
+
+    @Test
+    public void should_estimate_arrival_rate_from_messages_received_since_previous_run() {
+        pollingInterval.recordRun(60, Duration.ofSeconds(60));
+
+        // a minute's worth of samples is weighted against the initial estimate of zero
+        assertThat(pollingInterval.getArrivalRatePerSecond())
+            .isCloseTo(1 - Math.exp(-1), within(0.001));
+
+        pollingInterval.recordRun(60, Duration.ofSeconds(60));
+
+        assertThat(pollingInterval.getArrivalRatePerSecond())
+            .isCloseTo(1 - Math.exp(-2), within(0.001));
+    }
+
+    @Test
+    public void should_not_wait_longer_than_expected_time_between_messages() {
+        // a message every 5 seconds
+        for (int i = 0; i < 50; i++) {
+            pollingInterval.recordRun(1, Duration.ofSeconds(5));
+        }
+
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(1));
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(2));
+        assertThat(intervalAfterEmptyRun()).isEqualTo(Duration.ofSeconds(4));
+
+        // instead of 8 seconds
+        assertThat(intervalAfterEmptyRun())
+            .isGreaterThanOrEqualTo(Duration.ofMillis(4900))
+            .isLessThanOrEqualTo(Duration.ofMillis(5300));
+    }
+
+    @Test
+    public void should_not_change_arrival_rate_when_time_since_previous_run_is_unknown() {
+        pollingInterval.recordRun(10, Duration.ZERO);
+
+        assertThat(pollingInterval.getArrivalRatePerSecond()).isZero();
+    }
+
+    private Duration intervalAfterEmptyRun() {
+        pollingInterval.recordRun(0, Duration.ZERO);
+        return pollingInterval.getCurrentInterval();
+    }
+}
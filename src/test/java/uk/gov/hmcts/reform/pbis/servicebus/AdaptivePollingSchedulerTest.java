@@ -0,0 +1,103 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AdaptivePollingSchedulerTest {
+
+    private static final Duration MIN_INTERVAL = Duration.ofMillis(200);
+    private static final Duration MAX_INTERVAL = Duration.ofSeconds(10);
+
+    @Mock
+    private MessageQueueProcessor messageQueueProcessor;
+
+    @Mock
+    private MessageQueueProcessingTracker tracker;
+
+    private AdaptivePollingScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new AdaptivePollingScheduler(
+            messageQueueProcessor,
+            tracker,
+            new AdaptivePollingInterval(MIN_INTERVAL, MAX_INTERVAL),
+            Clock.systemUTC()
+        );
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    public void should_poll_again_immediately_while_messages_are_found() {
+        given(messageQueueProcessor.run()).willReturn(10, 10, 10, 0);
+
+        scheduler.start();
+
+        verify(messageQueueProcessor, timeout(MIN_INTERVAL.toMillis() / 2).times(4)).run();
+    }
+
+    @Test
+    public void should_wait_before_polling_again_when_no_messages_are_found() throws Exception {
+        given(messageQueueProcessor.run()).willReturn(0);
+
+        scheduler.start();
+
+        verify(messageQueueProcessor, timeout(1000).times(1)).run();
+
+        Thread.sleep(MIN_INTERVAL.toMillis() / 2);
+        verify(messageQueueProcessor, times(1)).run();
+
+        verify(messageQueueProcessor, timeout(MIN_INTERVAL.toMillis() * 2).times(2)).run();
+    }
+
+    @Test
+    public void should_track_polling_interval_after_each_run() {
+        given(messageQueueProcessor.run()).willReturn(5, 0);
+
+        scheduler.start();
+
+        verify(tracker, timeout(1000)).trackPollingInterval(Duration.ZERO, 0);
+        verify(tracker, timeout(1000)).trackPollingInterval(MIN_INTERVAL, 0);
+    }
+
+    @Test
+    public void should_keep_polling_when_run_fails() {
+        RuntimeException exception = new RuntimeException("test exception");
+        given(messageQueueProcessor.run()).willThrow(exception).willReturn(0);
+
+        scheduler.start();
+
+        verify(tracker, timeout(1000)).trackProcessingError(exception);
+        verify(messageQueueProcessor, timeout(MIN_INTERVAL.toMillis() * 2).atLeast(2)).run();
+    }
+
+    @Test
+    public void stop_should_prevent_further_runs() throws Exception {
+        given(messageQueueProcessor.run()).willReturn(0);
+
+        scheduler.start();
+        verify(messageQueueProcessor, timeout(1000).times(1)).run();
+
+        scheduler.stop();
+
+        Thread.sleep(MIN_INTERVAL.toMillis() * 2);
+        verify(messageQueueProcessor, times(1)).run();
+    }
+}
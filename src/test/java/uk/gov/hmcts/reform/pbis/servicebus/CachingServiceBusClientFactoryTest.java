@@ -0,0 +1,163 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CachingServiceBusClientFactoryTest {
+
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(3);
+    private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+    @Mock
+    private IServiceBusClientFactory clientFactory;
+
+    @Mock
+    private Clock clock;
+
+    private CachingServiceBusClientFactory cachingClientFactory;
+
+    @Before
+    public void setUp() {
+        given(clock.instant()).willReturn(NOW);
+
+        cachingClientFactory =
+            new CachingServiceBusClientFactory(clientFactory, MIN_BACKOFF, MAX_BACKOFF, clock);
+    }
+
+    @Test
+    public void createClient_should_reuse_receiver_across_runs() throws Exception {
+        IServiceBusClient client = mock(IServiceBusClient.class);
+        given(clientFactory.createClient()).willReturn(client);
+
+        try (IServiceBusClient sharedClient = cachingClientFactory.createClient()) {
+            sharedClient.receiveMessages(1, Duration.ZERO);
+        }
+
+        try (IServiceBusClient sharedClient = cachingClientFactory.createClient()) {
+            sharedClient.receiveMessages(1, Duration.ZERO);
+        }
+
+        verify(clientFactory, times(1)).createClient();
+        verify(client, times(2)).receiveMessages(1, Duration.ZERO);
+        verify(client, never()).close();
+    }
+
+    @Test
+    public void createClient_should_replace_client_that_failed_to_receive() throws Exception {
+        IServiceBusClient faultedClient = mock(IServiceBusClient.class);
+        IServiceBusClient newClient = mock(IServiceBusClient.class);
+        given(clientFactory.createClient()).willReturn(faultedClient, newClient);
+
+        given(faultedClient.receiveMessages(anyInt(), any()))
+            .willThrow(new ServiceBusException("test exception", null));
+
+        IServiceBusClient sharedClient = cachingClientFactory.createClient();
+
+        assertThatThrownBy(() -> sharedClient.receiveMessages(1, Duration.ZERO))
+            .isInstanceOf(ServiceBusException.class);
+
+        assertThat(cachingClientFactory.isFaulted()).isTrue();
+
+        cachingClientFactory.createClient().receiveMessages(1, Duration.ZERO);
+
+        verify(faultedClient).close();
+        verify(newClient).receiveMessages(1, Duration.ZERO);
+        assertThat(cachingClientFactory.isFaulted()).isFalse();
+    }
+
+    @Test
+    public void createClient_should_replace_client_whose_receiver_has_been_closed() throws Exception {
+        IServiceBusClient closedClient = mock(IServiceBusClient.class);
+        IServiceBusClient newClient = mock(IServiceBusClient.class);
+        given(clientFactory.createClient()).willReturn(closedClient, newClient);
+
+        cachingClientFactory.createClient().close();
+
+        given(closedClient.isClosed()).willReturn(true);
+
+        cachingClientFactory.createClient().receiveMessages(1, Duration.ZERO);
+
+        verify(closedClient).close();
+        verify(closedClient, never()).receiveMessages(anyInt(), any());
+        verify(newClient).receiveMessages(1, Duration.ZERO);
+        assertThat(cachingClientFactory.isFaulted()).isFalse();
+    }
+
+    @Test
+    public void createClient_should_back_off_after_failed_connection_attempts() {
+        RuntimeException connectionError = new ServiceBusException("test exception", null);
+        given(clientFactory.createClient()).willThrow(connectionError);
+
+        assertThatThrownBy(() -> cachingClientFactory.createClient()).isSameAs(connectionError);
+
+        // within backoff period
+        given(clock.instant()).willReturn(NOW.plus(MIN_BACKOFF).minusMillis(1));
+
+        assertThatThrownBy(() -> cachingClientFactory.createClient())
+            .isInstanceOf(ServiceBusException.class)
+            .hasMessageStartingWith("Service Bus client is unavailable");
+
+        verify(clientFactory, times(1)).createClient();
+
+        // after backoff period
+        given(clock.instant()).willReturn(NOW.plus(MIN_BACKOFF));
+
+        assertThatThrownBy(() -> cachingClientFactory.createClient()).isSameAs(connectionError);
+        verify(clientFactory, times(2)).createClient();
+
+        // backoff doubles after each failure
+        given(clock.instant()).willReturn(NOW.plus(MIN_BACKOFF).plus(MIN_BACKOFF));
+
+        assertThatThrownBy(() -> cachingClientFactory.createClient())
+            .hasMessageStartingWith("Service Bus client is unavailable");
+
+        verify(clientFactory, times(2)).createClient();
+    }
+
+    @Test
+    public void createClient_should_reset_backoff_after_successful_connection() {
+        IServiceBusClient client = mock(IServiceBusClient.class);
+
+        given(clientFactory.createClient())
+            .willThrow(new ServiceBusException("test exception", null))
+            .willReturn(client);
+
+        assertThatThrownBy(() -> cachingClientFactory.createClient())
+            .isInstanceOf(ServiceBusException.class);
+
+        given(clock.instant()).willReturn(NOW.plus(MAX_BACKOFF));
+
+        assertThat(cachingClientFactory.createClient()).isNotNull();
+        assertThat(cachingClientFactory.isFaulted()).isFalse();
+    }
+
+    @Test
+    public void destroy_should_close_the_receiver() throws Exception {
+        IServiceBusClient client = mock(IServiceBusClient.class);
+        given(clientFactory.createClient()).willReturn(client);
+
+        cachingClientFactory.createClient().close();
+        cachingClientFactory.destroy();
+
+        verify(client).close();
+    }
+}
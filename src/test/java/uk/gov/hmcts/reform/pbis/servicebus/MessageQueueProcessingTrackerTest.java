@@ -1,20 +1,41 @@
 package uk.gov.hmcts.reform.pbis.servicebus;
 
+import com.google.common.collect.ImmutableMap;
 import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
 import com.microsoft.applicationinsights.telemetry.TelemetryContext;
 import com.microsoft.azure.servicebus.IMessage;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.pbis.EmailRejectedException;
+import uk.gov.hmcts.reform.pbis.EmailSendingException;
 import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
 import uk.gov.hmcts.reform.pbis.MessageProcessingResultType;
+import uk.gov.hmcts.reform.pbis.notify.NotifyError;
+import uk.gov.hmcts.reform.pbis.notify.NotifyErrorType;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCacheStatistics;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.RateLimiterStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.locks.LockRenewalStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.KeyQueueStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.StageStatistics;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static uk.gov.hmcts.reform.pbis.MessageProcessingResultType.ERROR;
@@ -72,6 +93,192 @@ public class MessageQueueProcessingTrackerTest {
         verify(telemetryClient).trackMetric("FailingMessagesPerRun", failureCount);
     }
 
+    @Test
+    public void trackProcessingCompleted_counts_results_tracked_from_multiple_threads() throws Exception {
+        int threadCount = 8;
+        int messagesPerThread = 100;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        IMessage message = mock(IMessage.class);
+
+        for (int i = 0; i < threadCount; i++) {
+            MessageProcessingResultType resultType = i % 2 == 0 ? SUCCESS : ERROR;
+
+            executor.execute(() -> {
+                for (int j = 0; j < messagesPerThread; j++) {
+                    tracker.trackMessageProcessingResult(
+                        createProcessingResult(resultType, resultType != SUCCESS),
+                        message
+                    );
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        tracker.trackProcessingCompleted();
+
+        verify(telemetryClient).trackMetric("TotalMessagesPerRun", threadCount * messagesPerThread);
+        verify(telemetryClient).trackMetric("FailingMessagesPerRun", threadCount * messagesPerThread / 2);
+    }
+
+    @Test
+    public void trackProcessingCompleted_sends_notify_error_counts() {
+        tracker.trackProcessingStarted();
+
+        NotifyError badRequest = new NotifyError(NotifyErrorType.BAD_REQUEST, 400, "details");
+        NotifyError rateLimit = new NotifyError(NotifyErrorType.RATE_LIMIT, 429, "details");
+
+        tracker.trackMessageProcessingResult(
+            MessageProcessingResult.emailRejected(new EmailRejectedException("test", null, badRequest)),
+            mock(IMessage.class)
+        );
+
+        for (int i = 0; i < 2; i++) {
+            tracker.trackMessageProcessingResult(
+                MessageProcessingResult.processingError(new EmailSendingException("test", null, rateLimit)),
+                mock(IMessage.class)
+            );
+        }
+
+        tracker.trackProcessingCompleted();
+
+        verify(telemetryClient).trackMetric("PermanentNotifyErrorsPerRun", 1);
+        verify(telemetryClient).trackMetric("TransientNotifyErrorsPerRun", 2);
+    }
+
+    @Test
+    public void trackMessageProcessingResult_sends_notify_error_event_with_error_type() {
+        NotifyError notifyError = new NotifyError(NotifyErrorType.SERVER_ERROR, 500, "details");
+
+        tracker.trackMessageProcessingResult(
+            MessageProcessingResult.processingError(new EmailSendingException("test", null, notifyError)),
+            mock(IMessage.class)
+        );
+
+        verify(telemetryClient).trackEvent(
+            "NotifyTransientError",
+            ImmutableMap.of("notifyErrorType", "SERVER_ERROR", "httpStatus", "500"),
+            null
+        );
+    }
+
+    @Test
+    public void trackStageStatistics_sends_queue_depth_and_service_time_of_each_stage() {
+        tracker.trackStageStatistics(asList(
+            new StageStatistics.Snapshot("decode", 10, 0.5, 3, 0),
+            new StageStatistics.Snapshot("send", 10, 250, 7, 1)
+        ));
+
+        ArgumentCaptor<MetricTelemetry> metricCaptor = ArgumentCaptor.forClass(MetricTelemetry.class);
+        verify(telemetryClient, times(4)).trackMetric(metricCaptor.capture());
+
+        assertThat(metricCaptor.getAllValues())
+            .extracting(
+                metric -> metric.getName(),
+                metric -> metric.getProperties().get("stage"),
+                metric -> metric.getValue()
+            )
+            .containsExactly(
+                tuple("PipelineStageQueueDepth", "decode", 3.0),
+                tuple("PipelineStageServiceTimeMs", "decode", 0.5),
+                tuple("PipelineStageQueueDepth", "send", 7.0),
+                tuple("PipelineStageServiceTimeMs", "send", 250.0)
+            );
+    }
+
+    @Test
+    public void trackPollingInterval_sends_interval_and_arrival_rate() {
+        tracker.trackPollingInterval(Duration.ofSeconds(4), 0.25);
+
+        verify(telemetryClient).trackMetric("PollingIntervalMs", 4000);
+        verify(telemetryClient).trackMetric("MessageArrivalRatePerSecond", 0.25);
+        verifyNoMoreInteractions(telemetryClient);
+    }
+
+    @Test
+    public void trackLockRenewals_sends_renewal_counts() {
+        tracker.trackLockRenewals(new LockRenewalStatistics(12, 2, 1, 3, 40));
+
+        verify(telemetryClient).trackMetric("MessageLocksRenewed", 12);
+        verify(telemetryClient).trackMetric("MessageLockRenewalsFailed", 2);
+        verify(telemetryClient).trackMetric("MessageLockRenewalNearMisses", 1);
+        verify(telemetryClient).trackMetric("MessageLocksExpired", 3);
+        verifyNoMoreInteractions(telemetryClient);
+    }
+
+    @Test
+    public void trackSentEmailCache_sends_hits_misses_and_size() {
+        tracker.trackSentEmailCache(new SentEmailCacheStatistics(4, 10, 250));
+
+        verify(telemetryClient).trackMetric("SentEmailCacheHits", 4);
+        verify(telemetryClient).trackMetric("SentEmailCacheMisses", 10);
+        verify(telemetryClient).trackMetric("SentEmailCacheSize", 250);
+        verifyNoMoreInteractions(telemetryClient);
+    }
+
+    @Test
+    public void trackRateLimiting_sends_rate_and_wait_time_of_each_api_key() {
+        tracker.trackRateLimiting(asList(
+            new RateLimiterStatistics("service1,service2", 25, 100, 12.5, 40, 2),
+            new RateLimiterStatistics("service3", 50, 10, 0, 0, 0)
+        ));
+
+        ArgumentCaptor<MetricTelemetry> metricCaptor = ArgumentCaptor.forClass(MetricTelemetry.class);
+        verify(telemetryClient, times(8)).trackMetric(metricCaptor.capture());
+
+        assertThat(metricCaptor.getAllValues())
+            .extracting(
+                metric -> metric.getName(),
+                metric -> metric.getProperties().get("services"),
+                metric -> metric.getValue()
+            )
+            .containsExactly(
+                tuple("NotifyRateLimitPerSecond", "service1,service2", 25.0),
+                tuple("NotifyRateLimitWaitTimeMs", "service1,service2", 12.5),
+                tuple("NotifyRateLimitMaxWaitTimeMs", "service1,service2", 40.0),
+                tuple("NotifyRateLimitResponses", "service1,service2", 2.0),
+                tuple("NotifyRateLimitPerSecond", "service3", 50.0),
+                tuple("NotifyRateLimitWaitTimeMs", "service3", 0.0),
+                tuple("NotifyRateLimitMaxWaitTimeMs", "service3", 0.0),
+                tuple("NotifyRateLimitResponses", "service3", 0.0)
+            );
+    }
+
+    @Test
+    public void trackServiceQueues_sends_queue_depth_and_wait_time_of_each_service() {
+        tracker.trackServiceQueues(asList(
+            new KeyQueueStatistics("service1", 1, 100, 250.5, 900, 60, 10),
+            new KeyQueueStatistics("service2", 2, 3, 1.5, 2, 1, 0)
+        ));
+
+        ArgumentCaptor<MetricTelemetry> metricCaptor = ArgumentCaptor.forClass(MetricTelemetry.class);
+        verify(telemetryClient, times(6)).trackMetric(metricCaptor.capture());
+
+        assertThat(metricCaptor.getAllValues())
+            .extracting(
+                metric -> metric.getName(),
+                metric -> metric.getProperties().get("service"),
+                metric -> metric.getValue()
+            )
+            .containsExactly(
+                tuple("ServiceQueueDepth", "service1", 60.0),
+                tuple("ServiceQueueWaitTimeMs", "service1", 250.5),
+                tuple("ServiceQueueMaxWaitTimeMs", "service1", 900.0),
+                tuple("ServiceQueueDepth", "service2", 1.0),
+                tuple("ServiceQueueWaitTimeMs", "service2", 1.5),
+                tuple("ServiceQueueMaxWaitTimeMs", "service2", 2.0)
+            );
+    }
+
+    @Test
+    public void trackMessageLockExpired_sends_event() {
+        tracker.trackMessageLockExpired(mock(IMessage.class));
+
+        verify(telemetryClient).trackEvent("MessageLockExpired");
+    }
+
     @Test
     public void trackProcessingError_does_not_throw_exception() {
         assertThatCode(
@@ -97,6 +304,17 @@ public class MessageQueueProcessingTrackerTest {
         verifyNoMoreInteractions(telemetryClient);
     }
 
+    @Test
+    public void trackMessageProcessingResult_sends_already_sent_event_when_email_was_not_sent_again() {
+        tracker.trackMessageProcessingResult(
+            MessageProcessingResult.alreadySent(),
+            mock(IMessage.class)
+        );
+
+        verify(telemetryClient).trackEvent("EmailAlreadySent");
+        verifyNoMoreInteractions(telemetryClient);
+    }
+
     @Test
     public void trackMessageProcessingResult_sends_error_event_for_error() {
         tracker.trackMessageProcessingResult(
@@ -119,6 +337,41 @@ public class MessageQueueProcessingTrackerTest {
         verifyNoMoreInteractions(telemetryClient);
     }
 
+    @Test
+    public void trackMessageProcessingResult_sends_event_for_each_registration_of_batch_not_sent_before() {
+        MessageProcessingResult result = MessageProcessingResult.batch(asList(
+            new MessageProcessingResult.EntryResult(0, "ref0", true, MessageProcessingResult.success()),
+            new MessageProcessingResult.EntryResult(1, "ref1", false, MessageProcessingResult.success()),
+            new MessageProcessingResult.EntryResult(2, "ref2", false, MessageProcessingResult.unknownService()),
+            new MessageProcessingResult.EntryResult(3, "ref3", false, createProcessingResult(ERROR, true))
+        ));
+
+        tracker.trackMessageProcessingResult(result, mock(IMessage.class));
+
+        verify(telemetryClient).trackEvent("EmailSent");
+        verify(telemetryClient).trackEvent("MessageRejected");
+        verify(telemetryClient).trackEvent("MessageProcessingError");
+        verifyNoMoreInteractions(telemetryClient);
+    }
+
+    @Test
+    public void trackProcessingCompleted_counts_batch_as_one_message() {
+        tracker.trackProcessingStarted();
+        tracker.trackMessageProcessingResult(
+            MessageProcessingResult.batch(asList(
+                new MessageProcessingResult.EntryResult(0, "ref0", false, MessageProcessingResult.success()),
+                new MessageProcessingResult.EntryResult(1, "ref1", false, createProcessingResult(ERROR, true))
+            )),
+            mock(IMessage.class)
+        );
+        reset(telemetryClient);
+
+        tracker.trackProcessingCompleted();
+
+        verify(telemetryClient).trackMetric("TotalMessagesPerRun", 1);
+        verify(telemetryClient).trackMetric("FailingMessagesPerRun", 1);
+    }
+
     private void trackMessageProcessingResults(
         int messageCount,
         MessageProcessingResultType resultType
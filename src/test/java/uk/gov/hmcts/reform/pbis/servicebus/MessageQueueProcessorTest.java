@@ -2,34 +2,66 @@ package uk.gov.hmcts.reform.pbis.servicebus;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import com.microsoft.azure.servicebus.IMessage;
 import com.microsoft.azure.servicebus.Message;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import uk.gov.hmcts.reform.pbis.EmailSendingException;
 import uk.gov.hmcts.reform.pbis.EmailService;
 import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
 import uk.gov.hmcts.reform.pbis.MessageProcessingResultType;
-
+import uk.gov.hmcts.reform.pbis.NotifyRateLimitedException;
+import uk.gov.hmcts.reform.pbis.NotifyUnavailableException;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCache;
+import uk.gov.hmcts.reform.pbis.notify.dedup.SentEmailCacheStatistics;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.NotifyRateLimiter;
+import uk.gov.hmcts.reform.pbis.notify.ratelimit.RateLimiterStatistics;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRoute;
+import uk.gov.hmcts.reform.pbis.routing.ServiceRouteTable;
+import uk.gov.hmcts.reform.pbis.servicebus.locks.LockRenewalStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.locks.MessageLockRenewer;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.KeyQueueStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.pipeline.StageStatistics;
+import uk.gov.hmcts.reform.pbis.servicebus.validation.BeanValidationRegistrationValidator;
+
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.validation.Validation;
 import javax.validation.Validator;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static uk.gov.hmcts.reform.pbis.MessageProcessingResultType.ERROR;
@@ -41,6 +73,17 @@ public class MessageQueueProcessorTest {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final int RECEIVE_BATCH_SIZE = 10;
+    private static final Duration MAX_RECEIVE_WAIT_TIME = Duration.ofMillis(100);
+    private static final int MAX_SETTLEMENTS_IN_FLIGHT = 5;
+    private static final int MAX_RETRY_WAITING_MESSAGES = 10;
+    private static final int MAX_MESSAGES_IN_FLIGHT = 20;
+    private static final int QUEUE_CAPACITY = 5;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_MESSAGE_BODY_SIZE = 64 * 1024;
+    private static final String SERVICE = "service 123";
+    private static final String OTHER_SERVICE = "service 456";
+
     private static final String INVALID_MESSAGE_REASON = "Invalid message";
 
     private static final String INVALID_MESSAGE_DATA_DESCRIPTION =
@@ -64,11 +107,35 @@ public class MessageQueueProcessorTest {
     @Mock
     private MessageQueueProcessingTracker tracker;
 
+    @Mock
+    private MessageLockRenewer lockRenewer;
+
+    @Mock
+    private NotifyRateLimiter rateLimiter;
+
+    @Mock
+    private SentEmailCache sentEmailCache;
+
+    private final ServiceRouteTable routeTable = new ServiceRouteTable(asList(
+        new ServiceRoute(SERVICE, "template id", "welcome link", null, null, null),
+        new ServiceRoute(OTHER_SERVICE, "template id", "welcome link", null, null, null)
+    ));
+
+    private final MessageRetryPolicy retryPolicy =
+        new MessageRetryPolicy(MAX_ATTEMPTS, Duration.ZERO, Duration.ZERO);
+
+    private MessageProcessingPipeline pipeline;
+
     private MessageQueueProcessor messageQueueProcessor;
 
     @Before
     public void setUp() {
         given(clientFactory.createClient()).willReturn(client);
+        given(client.completeMessageAsync(any())).willReturn(CompletableFuture.completedFuture(null));
+        given(client.sendToDeadLetterAsync(any(), any(), any(), any()))
+            .willReturn(CompletableFuture.completedFuture(null));
+        given(client.abandonMessageAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+        given(sentEmailCache.reserve(any())).willReturn(SentEmailCache.Reservation.RESERVED);
 
         // make the mock validator use a real validator for validating (can't spy - final class)
         given(validator.validate(any())).willAnswer(invocation -> {
@@ -81,12 +148,15 @@ public class MessageQueueProcessorTest {
                 .validate(registration);
         });
 
-        messageQueueProcessor = new MessageQueueProcessor(
-            clientFactory,
-            emailService,
-            validator,
-            tracker
-        );
+        pipeline = createPipeline(1);
+        messageQueueProcessor = createMessageQueueProcessor(pipeline);
+    }
+
+    @After
+    public void tearDown() {
+        messageQueueProcessor.shutDown();
+        pipeline.stop();
+        retryPolicy.stop();
     }
 
     @Test
@@ -97,14 +167,14 @@ public class MessageQueueProcessorTest {
         IMessage message1 = createMessage(registration1);
         IMessage message2 = createMessage(registration2);
 
-        given(client.receiveMessage()).willReturn(message1, message2, null);
+        givenReceivedMessages(message1, message2);
 
         messageQueueProcessor.run();
 
         ArgumentCaptor<PrivateBetaRegistration> registrationCaptor
             = ArgumentCaptor.forClass(PrivateBetaRegistration.class);
 
-        verify(emailService, times(2)).sendWelcomeEmail(registrationCaptor.capture());
+        verify(emailService, times(2)).sendEmail(any(), registrationCaptor.capture(), any());
         List<PrivateBetaRegistration> registrations = registrationCaptor.getAllValues();
         assertThat(registrations).hasSize(2);
         assertThat(registrations.get(0)).isEqualToComparingFieldByFieldRecursively(registration1);
@@ -112,6 +182,343 @@ public class MessageQueueProcessorTest {
         verifyTrackerCallsForRun(SUCCESS, SUCCESS);
     }
 
+    @Test
+    public void run_should_receive_batches_until_no_more_messages_are_returned() throws Exception {
+        IMessage message1 = createMessage(getValidRegistration());
+        IMessage message2 = createMessage(getValidRegistration());
+        IMessage message3 = createMessage(getValidRegistration());
+
+        given(client.receiveMessages(anyInt(), any())).willReturn(
+            asList(message1, message2),
+            asList(message3),
+            emptyList()
+        );
+
+        messageQueueProcessor.run();
+
+        verify(client, times(3)).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
+        verify(emailService, times(3)).sendEmail(any(), any(), any());
+        verifyTrackerCallsForRun(SUCCESS, SUCCESS, SUCCESS);
+    }
+
+    @Test
+    public void run_should_return_number_of_received_messages() throws Exception {
+        given(client.receiveMessages(anyInt(), any())).willReturn(
+            asList(createMessage(getValidRegistration()), new Message("invalid format")),
+            asList(createMessage(getValidRegistration())),
+            emptyList()
+        );
+
+        assertThat(messageQueueProcessor.run()).isEqualTo(3);
+    }
+
+    @Test
+    public void run_should_return_zero_when_client_factory_fails() {
+        given(clientFactory.createClient()).willThrow(new RuntimeException("test exception"));
+
+        assertThat(messageQueueProcessor.run()).isZero();
+    }
+
+    @Test
+    public void run_should_send_emails_concurrently() throws Exception {
+        int sendThreads = 4;
+
+        MessageProcessingPipeline concurrentPipeline = createPipeline(sendThreads);
+        MessageQueueProcessor concurrentProcessor = createMessageQueueProcessor(concurrentPipeline);
+
+        givenReceivedMessages(
+            createMessage(getValidRegistration()),
+            createMessage(getValidRegistration()),
+            createMessage(getValidRegistration()),
+            createMessage(getValidRegistration())
+        );
+
+        // each email can only be sent once all of them are being sent at the same time
+        CountDownLatch emailsBeingSent = new CountDownLatch(sendThreads);
+        AtomicBoolean sentConcurrently = new AtomicBoolean(true);
+
+        willAnswer(invocation -> {
+            emailsBeingSent.countDown();
+
+            if (!emailsBeingSent.await(5, TimeUnit.SECONDS)) {
+                sentConcurrently.set(false);
+            }
+
+            return null;
+        }).given(emailService).sendEmail(any(), any(), any());
+
+        try {
+            concurrentProcessor.run();
+        } finally {
+            concurrentProcessor.shutDown();
+            concurrentPipeline.stop();
+        }
+
+        assertThat(sentConcurrently).as("emails sent concurrently").isTrue();
+        verifyTrackerCallsForRun(SUCCESS, SUCCESS, SUCCESS, SUCCESS);
+    }
+
+    @Test
+    public void run_should_not_receive_more_messages_than_pipeline_can_hold() throws Exception {
+        int maxMessagesInFlight = 3;
+
+        MessageProcessingPipeline smallPipeline = createPipeline(1, maxMessagesInFlight);
+        MessageQueueProcessor smallProcessor = createMessageQueueProcessor(smallPipeline);
+
+        IMessage message = createMessage(getValidRegistration());
+
+        given(client.receiveMessages(anyInt(), any())).willReturn(
+            asList(message, message, message),
+            asList(message, message),
+            emptyList()
+        );
+
+        CountDownLatch emailSendingAllowed = new CountDownLatch(1);
+
+        willAnswer(invocation -> {
+            emailSendingAllowed.await(5, TimeUnit.SECONDS);
+            return null;
+        }).given(emailService).sendEmail(any(), any(), any());
+
+        Thread processingThread = new Thread(smallProcessor::run);
+
+        try {
+            processingThread.start();
+
+            // the pipeline is full until emails start being sent
+            sleep(200);
+            verify(client, times(1)).receiveMessages(maxMessagesInFlight, MAX_RECEIVE_WAIT_TIME);
+
+            emailSendingAllowed.countDown();
+            processingThread.join(5000);
+        } finally {
+            smallProcessor.shutDown();
+            smallPipeline.stop();
+        }
+
+        verify(client, times(3)).receiveMessages(maxMessagesInFlight, MAX_RECEIVE_WAIT_TIME);
+        verifyTrackerCallsForRun(SUCCESS, SUCCESS, SUCCESS, SUCCESS, SUCCESS);
+    }
+
+    @Test
+    public void run_should_send_emails_of_other_services_while_one_service_is_rate_limited() throws Exception {
+        PrivateBetaRegistration rateLimitedRegistration = getValidRegistration();
+        PrivateBetaRegistration otherRegistration = getValidRegistration(OTHER_SERVICE);
+
+        IMessage rateLimitedMessage = createMessage(rateLimitedRegistration);
+        IMessage otherMessage = createMessage(otherRegistration);
+        givenReceivedMessages(rateLimitedMessage, otherMessage);
+
+        AtomicBoolean rateLimited = new AtomicBoolean(true);
+
+        willAnswer(invocation -> {
+            PrivateBetaRegistration registration = invocation.getArgument(1);
+
+            if (SERVICE.equals(registration.service) && rateLimited.get()) {
+                throw new NotifyRateLimitedException("rate limited", Duration.ofMillis(100));
+            }
+
+            return null;
+        }).given(emailService).sendEmail(any(), any(), any());
+
+        // the only send worker isn't held up by the rate limited service
+        Thread processingThread = new Thread(messageQueueProcessor::run);
+
+        try {
+            processingThread.start();
+
+            verify(client, timeout(1000)).completeMessageAsync(otherMessage);
+            verify(client, never()).completeMessageAsync(rateLimitedMessage);
+            verify(sentEmailCache, never()).markSent(argThat(hasReferenceId(rateLimitedRegistration)));
+
+            rateLimited.set(false);
+            processingThread.join(5000);
+        } finally {
+            processingThread.interrupt();
+        }
+
+        verify(client).completeMessageAsync(rateLimitedMessage);
+        verify(client, never()).abandonMessageAsync(any(), any());
+        verifyTrackerCallsForRun(SUCCESS, SUCCESS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void run_should_report_statistics_of_each_stage() throws Exception {
+        givenReceivedMessages(createMessage(getValidRegistration()));
+
+        messageQueueProcessor.run();
+
+        ArgumentCaptor<List<StageStatistics.Snapshot>> statisticsCaptor =
+            ArgumentCaptor.forClass(List.class);
+
+        verify(tracker).trackStageStatistics(statisticsCaptor.capture());
+
+        assertThat(statisticsCaptor.getValue())
+            .extracting(snapshot -> snapshot.stageName)
+            .containsExactly("decode", "validate", "render", "send", "settle");
+
+        assertThat(statisticsCaptor.getValue())
+            .extracting(snapshot -> snapshot.processedCount)
+            .containsOnly(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void run_should_report_queue_statistics_of_each_service() throws Exception {
+        givenReceivedMessages(createMessage(getValidRegistration()), createMessage(getValidRegistration()));
+
+        messageQueueProcessor.run();
+
+        ArgumentCaptor<List<KeyQueueStatistics>> statisticsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(tracker).trackServiceQueues(statisticsCaptor.capture());
+
+        assertThat(statisticsCaptor.getValue()).hasSize(1);
+        KeyQueueStatistics statistics = statisticsCaptor.getValue().get(0);
+        assertThat(statistics.key).isEqualTo(SERVICE);
+        assertThat(statistics.takenCount).isEqualTo(2);
+        assertThat(statistics.queueDepth).isZero();
+    }
+
+    @Test
+    public void run_should_renew_message_locks_until_messages_are_settled() throws Exception {
+        IMessage message1 = createMessage(getValidRegistration());
+        IMessage message2 = createMessage(getValidRegistration());
+        givenReceivedMessages(message1, message2);
+
+        messageQueueProcessor.run();
+
+        InOrder inOrder = inOrder(lockRenewer, client);
+        inOrder.verify(lockRenewer).register(message1, client);
+        inOrder.verify(client).completeMessageAsync(message1);
+        inOrder.verify(lockRenewer).unregister(message1);
+
+        verify(lockRenewer).register(message2, client);
+        verify(lockRenewer).unregister(message2);
+    }
+
+    @Test
+    public void run_should_stop_renewing_lock_when_message_fails_to_be_processed() throws Exception {
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
+
+        IMessage message = createMessage(getValidRegistration());
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        verify(lockRenewer).register(message, client);
+        verify(lockRenewer).unregister(message);
+    }
+
+    @Test
+    public void run_should_report_lock_renewals() throws Exception {
+        LockRenewalStatistics statistics = new LockRenewalStatistics(3, 1, 1, 0, 0);
+        given(lockRenewer.takeStatisticsSnapshot()).willReturn(statistics);
+        givenReceivedMessages(createMessage(getValidRegistration()));
+
+        messageQueueProcessor.run();
+
+        verify(tracker).trackLockRenewals(statistics);
+    }
+
+    @Test
+    public void run_should_report_notify_rate_limiting() throws Exception {
+        List<RateLimiterStatistics> statistics =
+            singletonList(new RateLimiterStatistics("service", 50, 1, 0, 0, 0));
+        given(rateLimiter.takeStatisticsSnapshot()).willReturn(statistics);
+        givenReceivedMessages(createMessage(getValidRegistration()));
+
+        messageQueueProcessor.run();
+
+        verify(tracker).trackRateLimiting(statistics);
+    }
+
+    @Test
+    public void run_should_report_sent_email_cache_statistics() throws Exception {
+        SentEmailCacheStatistics statistics = new SentEmailCacheStatistics(1, 2, 3);
+        given(sentEmailCache.takeStatisticsSnapshot()).willReturn(statistics);
+        givenReceivedMessages(createMessage(getValidRegistration()));
+
+        messageQueueProcessor.run();
+
+        verify(tracker).trackSentEmailCache(statistics);
+    }
+
+    @Test
+    public void run_should_remember_registrations_whose_emails_were_sent() throws Exception {
+        PrivateBetaRegistration registration = getValidRegistration();
+        givenReceivedMessages(createMessage(registration));
+
+        messageQueueProcessor.run();
+
+        verify(sentEmailCache).markSent(argThat(hasReferenceId(registration)));
+    }
+
+    @Test
+    public void run_should_complete_message_without_sending_email_already_sent() throws Exception {
+        PrivateBetaRegistration registration = getValidRegistration();
+        given(sentEmailCache.reserve(argThat(hasReferenceId(registration))))
+            .willReturn(SentEmailCache.Reservation.ALREADY_SENT);
+
+        IMessage message = createMessage(registration);
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        verify(emailService, never()).sendEmail(any(), any(), any());
+        verify(client).completeMessageAsync(message);
+        verifyTrackerCallsForRun(SUCCESS);
+
+        ArgumentCaptor<MessageProcessingResult> resultCaptor = ArgumentCaptor.forClass(MessageProcessingResult.class);
+        verify(tracker).trackMessageProcessingResult(resultCaptor.capture(), eq(message));
+        assertThat(resultCaptor.getValue().alreadySent).isTrue();
+    }
+
+    @Test
+    public void run_should_retry_message_whose_email_is_being_sent_by_another_delivery() throws Exception {
+        PrivateBetaRegistration registration = getValidRegistration();
+        given(sentEmailCache.reserve(argThat(hasReferenceId(registration))))
+            .willReturn(SentEmailCache.Reservation.IN_PROGRESS);
+
+        IMessage message = createMessage(registration);
+        // the delivery isn't attempted, so it's retried even though it's the final one
+        given(message.getDeliveryCount()).willReturn((long) MAX_ATTEMPTS - 1);
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        verify(emailService, never()).sendEmail(any(), any(), any());
+        verify(client, timeout(1000)).abandonMessageAsync(
+            message,
+            ImmutableMap.of(
+                MessageSettler.LAST_PROCESSING_ERROR_PROPERTY_KEY,
+                "Welcome email is being sent by another delivery of the message. Reference ID: "
+                    + registration.referenceId,
+                MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, 1L
+            )
+        );
+        verify(client, never()).sendToDeadLetterAsync(any(), any(), any(), any());
+        verify(sentEmailCache, never()).release(any());
+        verifyTrackerCallsForRun(ERROR);
+    }
+
+    @Test
+    public void run_should_not_remember_registrations_whose_emails_failed_to_be_sent() throws Exception {
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
+
+        givenReceivedMessages(createMessage(getValidRegistration()));
+
+        messageQueueProcessor.run();
+
+        verify(sentEmailCache, never()).markSent(any());
+        verify(sentEmailCache).release(any());
+        verifyTrackerCallsForRun(ERROR);
+    }
+
     @Test
     public void run_should_validate_every_well_formed_message() throws Exception {
         PrivateBetaRegistration validRegistration = getValidRegistration();
@@ -121,7 +528,7 @@ public class MessageQueueProcessorTest {
         IMessage message2 = new Message("invalid format");
         IMessage message3 = createMessage(invalidRegistration);
 
-        given(client.receiveMessage()).willReturn(message1, message2, message3, null);
+        givenReceivedMessages(message1, message2, message3);
 
         messageQueueProcessor.run();
 
@@ -147,14 +554,15 @@ public class MessageQueueProcessorTest {
         IMessage message2 = createMessage(validRegistration);
         IMessage message3 = new Message("invalid format");
 
-        given(client.receiveMessage()).willReturn(message1, message2, message3, null);
+        givenReceivedMessages(message1, message2, message3);
 
         messageQueueProcessor.run();
 
         ArgumentCaptor<PrivateBetaRegistration> registrationCaptor
             = ArgumentCaptor.forClass(PrivateBetaRegistration.class);
 
-        verify(emailService).sendWelcomeEmail(registrationCaptor.capture());
+        verify(emailService).createWelcomeEmail(any(), any());
+        verify(emailService).sendEmail(any(), registrationCaptor.capture(), any());
 
         assertThat(registrationCaptor.getValue()).isNotNull();
 
@@ -167,17 +575,35 @@ public class MessageQueueProcessorTest {
         verifyTrackerCallsForRun(UNPROCESSABLE_MESSAGE, SUCCESS, UNPROCESSABLE_MESSAGE);
     }
 
+    @Test
+    public void run_should_not_send_emails_for_unknown_services() throws Exception {
+        PrivateBetaRegistration registration = new PrivateBetaRegistration(
+            "reference id " + UUID.randomUUID().toString(),
+            "unknown service",
+            "email@example.com",
+            "John",
+            "Smith"
+        );
+
+        givenReceivedMessages(createMessage(registration));
+
+        messageQueueProcessor.run();
+
+        verifyNoMoreInteractions(emailService);
+        verifyTrackerCallsForRun(UNPROCESSABLE_MESSAGE);
+    }
+
     @Test
     public void run_should_abort_when_service_bus_client_fails() throws Exception {
         Exception exception = new ServiceBusException("test exception", null);
-        given(client.receiveMessage()).willThrow(exception);
+        given(client.receiveMessages(anyInt(), any())).willThrow(exception);
 
         messageQueueProcessor.run();
 
-        verify(client, times(1)).receiveMessage();
-        verify(client, never()).completeMessage(any(), any());
+        verify(client, times(1)).receiveMessages(anyInt(), any());
+        verify(client, never()).completeMessageAsync(any());
 
-        verify(emailService, never()).sendWelcomeEmail(any());
+        verify(emailService, never()).sendEmail(any(), any(), any());
     }
 
     @Test
@@ -185,49 +611,290 @@ public class MessageQueueProcessorTest {
         IMessage message1 = createMessage(getValidRegistration());
         IMessage message2 = createMessage(getValidRegistration());
 
-        given(client.receiveMessage()).willReturn(message1, message2, null);
+        givenReceivedMessages(message1, message2);
 
         messageQueueProcessor.run();
 
-        verify(client, times(3)).receiveMessage();
+        verify(client, times(2)).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
 
-        verify(client, times(1))
-            .completeMessage(message1.getMessageId(), message1.getLockToken());
-        verify(client, times(1))
-            .completeMessage(message2.getMessageId(), message2.getLockToken());
+        verify(client, times(1)).completeMessageAsync(message1);
+        verify(client, times(1)).completeMessageAsync(message2);
 
         verify(client).close();
         verifyNoMoreInteractions(client);
     }
 
+    @Test
+    public void run_should_wait_for_settlements_before_closing_client() throws Exception {
+        IMessage message = createMessage(getValidRegistration());
+        givenReceivedMessages(message);
+
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        given(client.completeMessageAsync(message)).willReturn(completion);
+
+        AtomicBoolean settledBeforeClose = new AtomicBoolean(false);
+
+        willAnswer(invocation -> {
+            settledBeforeClose.set(completion.isDone());
+            return null;
+        }).given(client).close();
+
+        Thread completingThread = new Thread(() -> {
+            sleep(100);
+            completion.complete(null);
+        });
+
+        completingThread.start();
+        messageQueueProcessor.run();
+        completingThread.join();
+
+        verify(client).close();
+        assertThat(settledBeforeClose).as("settled before closing client").isTrue();
+        verifyTrackerCallsForRun(SUCCESS);
+    }
+
+    @Test
+    public void run_should_track_failed_settlements() throws Exception {
+        IMessage message = createMessage(getValidRegistration());
+        givenReceivedMessages(message);
+
+        Exception settlementError = new ServiceBusException("test exception", null);
+        CompletableFuture<Void> failedCompletion = new CompletableFuture<>();
+        failedCompletion.completeExceptionally(settlementError);
+        given(client.completeMessageAsync(message)).willReturn(failedCompletion);
+
+        messageQueueProcessor.run();
+
+        verify(tracker).trackSettlementError(message, settlementError);
+        verifyTrackerCallsForRun(SUCCESS);
+    }
+
     @Test
     public void run_should_not_complete_message_when_email_service_fails() throws Exception {
         willThrow(new EmailSendingException("test exception", null))
             .given(emailService)
-            .sendWelcomeEmail(any());
+            .sendEmail(any(), any(), any());
+
+        IMessage message = createMessage(getValidRegistration());
+        givenReceivedMessages(message, message);
+
+        messageQueueProcessor.run();
+
+        verify(client, times(2)).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
+        verify(client, never()).completeMessageAsync(any());
+    }
+
+    @Test
+    public void run_should_abandon_message_when_email_service_fails() throws Exception {
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
+
+        IMessage message = createMessage(getValidRegistration());
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        // abandoned after the retry delay, which the run doesn't wait for
+        verify(client, timeout(1000)).abandonMessageAsync(
+            message,
+            ImmutableMap.of(MessageSettler.LAST_PROCESSING_ERROR_PROPERTY_KEY, "test exception")
+        );
+        verify(client, never()).sendToDeadLetterAsync(any(), any(), any(), any());
+        verifyTrackerCallsForRun(ERROR);
+    }
+
+    @Test
+    public void run_should_not_wait_for_retry_delay_of_failed_messages() throws Exception {
+        Duration retryDelay = Duration.ofSeconds(2);
+        MessageRetryPolicy slowRetryPolicy = new MessageRetryPolicy(MAX_ATTEMPTS, retryDelay, retryDelay);
+        MessageProcessingPipeline slowRetryPipeline = createPipeline(1, MAX_MESSAGES_IN_FLIGHT, slowRetryPolicy);
+        MessageQueueProcessor slowRetryProcessor = createMessageQueueProcessor(slowRetryPipeline, slowRetryPolicy);
+
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
+
+        IMessage message = createMessage(getValidRegistration());
+        givenReceivedMessages(message);
+
+        try {
+            long startTime = System.nanoTime();
+            slowRetryProcessor.run();
+
+            assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isLessThan(retryDelay);
+            verify(client, never()).abandonMessageAsync(any(), any());
+            verify(lockRenewer, never()).unregister(message);
+            // the message is abandoned with the client it was received with
+            verify(client, never()).close();
+
+            verify(client, timeout(5000)).abandonMessageAsync(eq(message), any());
+            verify(lockRenewer, timeout(1000)).unregister(message);
+            verify(client, timeout(1000)).close();
+        } finally {
+            slowRetryProcessor.shutDown();
+            slowRetryPipeline.stop();
+            slowRetryPolicy.stop();
+        }
+    }
+
+    @Test
+    public void run_should_not_hold_places_in_pipeline_for_messages_waiting_for_retry() throws Exception {
+        Duration retryDelay = Duration.ofSeconds(2);
+        MessageRetryPolicy slowRetryPolicy = new MessageRetryPolicy(MAX_ATTEMPTS, retryDelay, retryDelay);
+        MessageProcessingPipeline smallPipeline = createPipeline(1, 1, slowRetryPolicy);
+        MessageQueueProcessor smallProcessor = createMessageQueueProcessor(smallPipeline, slowRetryPolicy);
+
+        PrivateBetaRegistration failingRegistration = getValidRegistration(OTHER_SERVICE);
+        IMessage failingMessage = createMessage(failingRegistration);
+        IMessage message = createMessage(getValidRegistration());
+
+        given(client.receiveMessages(anyInt(), any())).willReturn(
+            singletonList(failingMessage),
+            singletonList(message),
+            emptyList()
+        );
+
+        willThrow(new NotifyUnavailableException("circuit open", null))
+            .given(emailService)
+            .sendEmail(any(), argThat(hasReferenceId(failingRegistration)), any());
+
+        try {
+            long startTime = System.nanoTime();
+            smallProcessor.run();
+
+            // the only place in the pipeline was given back when the failed message started waiting
+            assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isLessThan(retryDelay);
+            verify(client).completeMessageAsync(message);
+            verify(client, never()).abandonMessageAsync(any(), any());
+
+            verify(client, timeout(5000)).abandonMessageAsync(eq(failingMessage), any());
+        } finally {
+            smallProcessor.shutDown();
+            smallPipeline.stop();
+            slowRetryPolicy.stop();
+        }
+    }
+
+    @Test
+    public void run_should_abandon_failed_message_straight_away_when_too_many_wait_for_retry() throws Exception {
+        Duration retryDelay = Duration.ofSeconds(2);
+        MessageRetryPolicy slowRetryPolicy = new MessageRetryPolicy(MAX_ATTEMPTS, retryDelay, retryDelay);
+        MessageProcessingPipeline slowRetryPipeline = createPipeline(1, MAX_MESSAGES_IN_FLIGHT, slowRetryPolicy);
+        MessageQueueProcessor slowRetryProcessor =
+            createMessageQueueProcessor(slowRetryPipeline, slowRetryPolicy, 1);
+
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
+
+        IMessage waitingMessage = createMessage(getValidRegistration());
+        IMessage message = createMessage(getValidRegistration());
+        given(client.receiveMessages(anyInt(), any())).willReturn(
+            singletonList(waitingMessage),
+            singletonList(message),
+            emptyList()
+        );
+
+        try {
+            slowRetryProcessor.run();
+
+            verify(client, timeout(1000)).abandonMessageAsync(eq(message), any());
+            verify(client, never()).abandonMessageAsync(eq(waitingMessage), any());
+
+            verify(client, timeout(5000)).abandonMessageAsync(eq(waitingMessage), any());
+        } finally {
+            slowRetryProcessor.shutDown();
+            slowRetryPipeline.stop();
+            slowRetryPolicy.stop();
+        }
+    }
+
+    @Test
+    public void run_should_send_message_to_dead_letter_queue_when_it_fails_on_last_attempt() throws Exception {
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
+
+        IMessage message = createMessage(getValidRegistration());
+        given(message.getDeliveryCount()).willReturn((long) MAX_ATTEMPTS - 1);
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        verify(client).sendToDeadLetterAsync(
+            message,
+            "Too many failed attempts",
+            "Message failed to be processed in 3 attempts. Last error: test exception",
+            null
+        );
+        verify(client, never()).abandonMessageAsync(any(), any());
+        verifyTrackerCallsForRun(UNPROCESSABLE_MESSAGE);
+    }
+
+    @Test
+    public void run_should_abandon_message_without_counting_attempt_when_notify_calls_are_suspended()
+        throws Exception {
+        willThrow(new NotifyUnavailableException("circuit open", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
+
+        IMessage message = createMessage(getValidRegistration());
+        given(message.getDeliveryCount()).willReturn((long) MAX_ATTEMPTS - 1);
+        given(message.getProperties())
+            .willReturn(ImmutableMap.of(MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, "1"));
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        verify(client, timeout(1000)).abandonMessageAsync(
+            message,
+            ImmutableMap.of(
+                MessageSettler.LAST_PROCESSING_ERROR_PROPERTY_KEY, "circuit open",
+                MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, 2L
+            )
+        );
+        verify(client, never()).sendToDeadLetterAsync(any(), any(), any(), any());
+        verifyTrackerCallsForRun(ERROR);
+    }
+
+    @Test
+    public void run_should_send_message_to_dead_letter_queue_when_last_counted_attempt_fails() throws Exception {
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), any(), any());
 
         IMessage message = createMessage(getValidRegistration());
-        given(client.receiveMessage()).willReturn(message, message, null);
+        // one of the earlier deliveries wasn't attempted
+        given(message.getDeliveryCount()).willReturn((long) MAX_ATTEMPTS);
+        given(message.getProperties())
+            .willReturn(ImmutableMap.of(MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, "1"));
+        givenReceivedMessages(message);
 
         messageQueueProcessor.run();
 
-        verify(client, times(3)).receiveMessage();
-        verify(client, never()).completeMessage(any(), any());
+        verify(client).sendToDeadLetterAsync(
+            eq(message),
+            eq("Too many failed attempts"),
+            any(),
+            any()
+        );
+        verify(client, never()).abandonMessageAsync(any(), any());
     }
 
     @Test
     public void run_should_continue_processing_when_email_service_fails() throws Exception {
         willThrow(new EmailSendingException("test exception", null))
             .given(emailService)
-            .sendWelcomeEmail(any());
+            .sendEmail(any(), any(), any());
 
         IMessage message = createMessage(getValidRegistration());
-        given(client.receiveMessage()).willReturn(message, message, null);
+        givenReceivedMessages(message, message);
 
         messageQueueProcessor.run();
 
-        verify(client, times(3)).receiveMessage();
-        verify(emailService, times(2)).sendWelcomeEmail(any());
+        verify(client, times(2)).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
+        verify(emailService, times(2)).sendEmail(any(), any(), any());
 
         verifyTrackerCallsForRun(ERROR, ERROR);
     }
@@ -237,16 +904,12 @@ public class MessageQueueProcessorTest {
         IMessage malformedMessage = new Message("invalid content");
         IMessage wellFormedInvalidMessage = createMessage(getInvalidRegistration());
 
-        given(client.receiveMessage()).willReturn(
-            malformedMessage,
-            wellFormedInvalidMessage,
-            null
-        );
+        givenReceivedMessages(malformedMessage, wellFormedInvalidMessage);
 
         messageQueueProcessor.run();
 
-        verify(client, times(3)).receiveMessage();
-        verify(emailService, never()).sendWelcomeEmail(any());
+        verify(client, times(2)).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
+        verify(emailService, never()).sendEmail(any(), any(), any());
         verifyTrackerCallsForRun(UNPROCESSABLE_MESSAGE, UNPROCESSABLE_MESSAGE);
     }
 
@@ -254,11 +917,11 @@ public class MessageQueueProcessorTest {
     public void run_should_send_malformed_messages_to_dead_letter_queue() throws Exception {
         IMessage message1 = new Message("invalid content 1");
         IMessage message2 = new Message("invalid content 2");
-        given(client.receiveMessage()).willReturn(message1, message2, null);
+        givenReceivedMessages(message1, message2);
 
         messageQueueProcessor.run();
 
-        verify(client, times(3)).receiveMessage();
+        verify(client, times(2)).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
         verifyMalformedMessageSentToDeadLetter(message1);
         verifyMalformedMessageSentToDeadLetter(message2);
         verify(client).close();
@@ -271,19 +934,106 @@ public class MessageQueueProcessorTest {
 
         IMessage message1 = createMessage(invalidRegistration);
         IMessage message2 = createMessage(invalidRegistration);
-        given(client.receiveMessage()).willReturn(message1, message2, null);
+        givenReceivedMessages(message1, message2);
 
         messageQueueProcessor.run();
 
         Map<String, String> expectedValidationErrors = getValidationErrors(invalidRegistration);
 
-        verify(client, times(3)).receiveMessage();
+        verify(client, times(2)).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
         verifyInvalidMessageSentToDeadLetter(message1, expectedValidationErrors);
         verifyInvalidMessageSentToDeadLetter(message2, expectedValidationErrors);
         verify(client).close();
         verifyNoMoreInteractions(client);
     }
 
+    @Test
+    public void run_should_send_email_for_each_registration_of_batch_and_complete_message() throws Exception {
+        PrivateBetaRegistration registration1 = getValidRegistration();
+        PrivateBetaRegistration registration2 = getValidRegistration();
+
+        IMessage message = createBatchMessage(registration1, registration2);
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        verify(emailService).sendEmail(any(), argThat(hasReferenceId(registration1)), any());
+        verify(emailService).sendEmail(any(), argThat(hasReferenceId(registration2)), any());
+        verify(client).completeMessageAsync(message);
+        verifyTrackerCallsForRun(SUCCESS);
+    }
+
+    @Test
+    public void run_should_not_resend_registrations_of_batch_sent_on_earlier_delivery() throws Exception {
+        PrivateBetaRegistration registration1 = getValidRegistration();
+        PrivateBetaRegistration registration2 = getValidRegistration();
+
+        IMessage message = createBatchMessage(registration1, registration2);
+        given(message.getDeliveryCount()).willReturn(1L);
+        given(message.getProperties()).willReturn(ImmutableMap.of(SentRegistrations.PROPERTY_KEY, "0"));
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        verify(emailService, never()).sendEmail(any(), argThat(hasReferenceId(registration1)), any());
+        verify(emailService).sendEmail(any(), argThat(hasReferenceId(registration2)), any());
+        verify(client).completeMessageAsync(message);
+    }
+
+    @Test
+    public void run_should_abandon_batch_with_failed_registration_recording_sent_ones() throws Exception {
+        PrivateBetaRegistration registration1 = getValidRegistration();
+        PrivateBetaRegistration registration2 = getValidRegistration();
+        PrivateBetaRegistration registration3 = getValidRegistration();
+
+        willThrow(new EmailSendingException("test exception", null))
+            .given(emailService)
+            .sendEmail(any(), argThat(hasReferenceId(registration2)), any());
+
+        IMessage message = createBatchMessage(registration1, registration2, registration3);
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        // a failure doesn't stop the rest of the batch from being sent
+        verify(emailService).sendEmail(any(), argThat(hasReferenceId(registration3)), any());
+        // abandoned after the retry delay, which the run doesn't wait for
+        verify(client, timeout(1000)).abandonMessageAsync(
+            message,
+            ImmutableMap.of(
+                MessageSettler.LAST_PROCESSING_ERROR_PROPERTY_KEY, "test exception",
+                SentRegistrations.PROPERTY_KEY, "0,2"
+            )
+        );
+        verify(client, never()).completeMessageAsync(any());
+        verifyTrackerCallsForRun(ERROR);
+    }
+
+    @Test
+    public void run_should_send_batch_with_rejected_registrations_to_dead_letter_queue() throws Exception {
+        PrivateBetaRegistration validRegistration = getValidRegistration();
+        PrivateBetaRegistration invalidRegistration = getInvalidRegistration();
+
+        IMessage message = createBatchMessage(validRegistration, invalidRegistration);
+        givenReceivedMessages(message);
+
+        messageQueueProcessor.run();
+
+        Map<String, String> expectedOutcomes = new HashMap<>();
+        expectedOutcomes.put("registrations[0]", "Sent");
+        getValidationErrors(invalidRegistration)
+            .forEach((field, error) -> expectedOutcomes.put("registrations[1]." + field, error));
+
+        verify(emailService).sendEmail(any(), argThat(hasReferenceId(validRegistration)), any());
+        verify(client).sendToDeadLetterAsync(
+            message,
+            "Invalid registrations",
+            "1 of 2 registrations were rejected",
+            expectedOutcomes
+        );
+        verifyTrackerCallsForRun(UNPROCESSABLE_MESSAGE);
+    }
+
     @Test
     public void run_does_not_fail_when_client_factory_throws_exception() {
         given(clientFactory.createClient())
@@ -294,16 +1044,98 @@ public class MessageQueueProcessorTest {
 
     @Test
     public void run_aborts_when_client_throws_exception() throws Exception {
-        given(client.receiveMessage())
+        given(client.receiveMessages(anyInt(), any()))
             .willThrow(new ServiceBusException("test exception", null));
 
         messageQueueProcessor.run();
 
-        verify(client).receiveMessage();
+        verify(client).receiveMessages(RECEIVE_BATCH_SIZE, MAX_RECEIVE_WAIT_TIME);
         verify(client).close();
         verifyNoMoreInteractions(client, emailService);
     }
 
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private MessageProcessingPipeline createPipeline(int sendThreads) {
+        return createPipeline(sendThreads, MAX_MESSAGES_IN_FLIGHT);
+    }
+
+    private MessageProcessingPipeline createPipeline(int sendThreads, int maxMessagesInFlight) {
+        return createPipeline(sendThreads, maxMessagesInFlight, retryPolicy);
+    }
+
+    private MessageProcessingPipeline createPipeline(
+        int sendThreads,
+        int maxMessagesInFlight,
+        MessageRetryPolicy retryPolicy
+    ) {
+        MessageProcessingPipeline messageProcessingPipeline = new MessageProcessingPipeline(
+            new MessageProcessor(
+                new RegistrationDecoder(MAX_MESSAGE_BODY_SIZE),
+                emailService,
+                routeTable,
+                new BeanValidationRegistrationValidator(validator),
+                retryPolicy,
+                sentEmailCache
+            ),
+            tracker,
+            lockRenewer,
+            new ServiceWeights(emptyList()),
+            maxMessagesInFlight,
+            QUEUE_CAPACITY,
+            1,
+            1,
+            1,
+            sendThreads,
+            1
+        );
+
+        messageProcessingPipeline.start();
+        return messageProcessingPipeline;
+    }
+
+    private MessageQueueProcessor createMessageQueueProcessor(MessageProcessingPipeline pipeline) {
+        return createMessageQueueProcessor(pipeline, retryPolicy);
+    }
+
+    private MessageQueueProcessor createMessageQueueProcessor(
+        MessageProcessingPipeline pipeline,
+        MessageRetryPolicy retryPolicy
+    ) {
+        return createMessageQueueProcessor(pipeline, retryPolicy, MAX_RETRY_WAITING_MESSAGES);
+    }
+
+    private MessageQueueProcessor createMessageQueueProcessor(
+        MessageProcessingPipeline pipeline,
+        MessageRetryPolicy retryPolicy,
+        int maxRetryWaitingMessages
+    ) {
+        return new MessageQueueProcessor(
+            clientFactory,
+            pipeline,
+            tracker,
+            lockRenewer,
+            retryPolicy,
+            rateLimiter,
+            sentEmailCache,
+            RECEIVE_BATCH_SIZE,
+            MAX_RECEIVE_WAIT_TIME.toMillis(),
+            MAX_SETTLEMENTS_IN_FLIGHT,
+            maxRetryWaitingMessages,
+            1
+        );
+    }
+
+    private void givenReceivedMessages(IMessage... messages) {
+        given(client.receiveMessages(anyInt(), any())).willReturn(asList(messages), emptyList());
+    }
+
     private IMessage createMessage(
         PrivateBetaRegistration registration
     ) throws JsonProcessingException {
@@ -320,10 +1152,24 @@ public class MessageQueueProcessorTest {
         return message;
     }
 
+    private IMessage createBatchMessage(PrivateBetaRegistration... registrations) throws JsonProcessingException {
+        IMessage message = createMessage(registrations[0]);
+        given(message.getBody()).willReturn(objectMapper.writeValueAsBytes(registrations));
+        return message;
+    }
+
+    private static ArgumentMatcher<PrivateBetaRegistration> hasReferenceId(PrivateBetaRegistration registration) {
+        return actual -> actual != null && registration.referenceId.equals(actual.referenceId);
+    }
+
     private PrivateBetaRegistration getValidRegistration() {
+        return getValidRegistration(SERVICE);
+    }
+
+    private PrivateBetaRegistration getValidRegistration(String service) {
         return new PrivateBetaRegistration(
             "reference id " + UUID.randomUUID().toString(),
-            "service 123",
+            service,
             "email@example.com",
             "John",
             "Smith"
@@ -372,13 +1218,14 @@ public class MessageQueueProcessorTest {
                 .map(r -> r.resultType)
                 .collect(toList());
 
-        assertThat(actualResults).containsExactly(expectedProcessingResults);
+        // messages finished in earlier stages can overtake others
+        assertThat(actualResults).containsExactlyInAnyOrder(expectedProcessingResults);
 
         verify(tracker).trackProcessingCompleted();
     }
 
     private void verifyMalformedMessageSentToDeadLetter(IMessage message) {
-        verify(client).sendToDeadLetter(
+        verify(client).sendToDeadLetterAsync(
             message,
             INVALID_MESSAGE_REASON,
             INVALID_MESSAGE_FORMAT_DESCRIPTION,
@@ -390,7 +1237,7 @@ public class MessageQueueProcessorTest {
         IMessage message,
         Map<String, String> validationErrors
     ) {
-        verify(client).sendToDeadLetter(
+        verify(client).sendToDeadLetterAsync(
             message,
             INVALID_MESSAGE_REASON,
             INVALID_MESSAGE_DATA_DESCRIPTION,
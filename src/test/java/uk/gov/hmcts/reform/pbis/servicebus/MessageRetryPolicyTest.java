@@ -0,0 +1,104 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class MessageRetryPolicyTest {
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final Duration INITIAL_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_DELAY = Duration.ofSeconds(5);
+
+    private final MessageRetryPolicy retryPolicy =
+        new MessageRetryPolicy(MAX_ATTEMPTS, INITIAL_DELAY, MAX_DELAY);
+
+    @After
+    public void tearDown() {
+        retryPolicy.stop();
+    }
+
+    @Test
+    public void getRetryDelay_should_double_with_each_delivery_up_to_max_delay() {
+        assertThat(retryPolicy.getRetryDelay(messageWithDeliveryCount(0))).isEqualTo(Duration.ofSeconds(1));
+        assertThat(retryPolicy.getRetryDelay(messageWithDeliveryCount(1))).isEqualTo(Duration.ofSeconds(2));
+        assertThat(retryPolicy.getRetryDelay(messageWithDeliveryCount(2))).isEqualTo(Duration.ofSeconds(4));
+        assertThat(retryPolicy.getRetryDelay(messageWithDeliveryCount(3))).isEqualTo(MAX_DELAY);
+        assertThat(retryPolicy.getRetryDelay(messageWithDeliveryCount(100))).isEqualTo(MAX_DELAY);
+    }
+
+    @Test
+    public void isFinalAttempt_should_be_true_only_for_last_allowed_delivery() {
+        assertThat(retryPolicy.isFinalAttempt(messageWithDeliveryCount(0))).isFalse();
+        assertThat(retryPolicy.isFinalAttempt(messageWithDeliveryCount(MAX_ATTEMPTS - 2))).isFalse();
+        assertThat(retryPolicy.isFinalAttempt(messageWithDeliveryCount(MAX_ATTEMPTS - 1))).isTrue();
+        assertThat(retryPolicy.isFinalAttempt(messageWithDeliveryCount(MAX_ATTEMPTS + 5))).isTrue();
+    }
+
+    @Test
+    public void isFinalAttempt_should_not_count_deliveries_that_were_not_attempted() {
+        IMessage message = messageWithDeliveryCount(MAX_ATTEMPTS - 1);
+        given(message.getProperties())
+            .willReturn(singletonMap(MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, "2"));
+
+        assertThat(retryPolicy.getPreviousAttemptCount(message)).isEqualTo(MAX_ATTEMPTS - 3);
+        assertThat(retryPolicy.isFinalAttempt(message)).isFalse();
+    }
+
+    @Test
+    public void getUncountedDeliveryProperties_should_add_current_delivery_to_uncounted_ones() {
+        IMessage message = messageWithDeliveryCount(3);
+
+        assertThat(retryPolicy.getUncountedDeliveryProperties(message))
+            .containsExactly(entry(MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, 1L));
+
+        given(message.getProperties())
+            .willReturn(singletonMap(MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, "2"));
+
+        assertThat(retryPolicy.getUncountedDeliveryProperties(message))
+            .containsExactly(entry(MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, 3L));
+    }
+
+    @Test
+    public void getPreviousAttemptCount_should_count_every_delivery_when_property_is_not_a_number() {
+        IMessage message = messageWithDeliveryCount(2);
+        given(message.getProperties())
+            .willReturn(singletonMap(MessageRetryPolicy.UNCOUNTED_DELIVERIES_PROPERTY_KEY, "invalid"));
+
+        assertThat(retryPolicy.getPreviousAttemptCount(message)).isEqualTo(2);
+    }
+
+    @Test
+    public void waitForRetry_should_complete_after_retry_delay() throws Exception {
+        MessageRetryPolicy shortDelayPolicy =
+            new MessageRetryPolicy(MAX_ATTEMPTS, Duration.ofMillis(200), Duration.ofMillis(200));
+
+        try {
+            long start = System.nanoTime();
+            CompletableFuture<Void> retry = shortDelayPolicy.waitForRetry(messageWithDeliveryCount(0));
+
+            assertThat(retry).isNotDone();
+            retry.get(5, TimeUnit.SECONDS);
+
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+        } finally {
+            shortDelayPolicy.stop();
+        }
+    }
+
+    private static IMessage messageWithDeliveryCount(long deliveryCount) {
+        IMessage message = mock(IMessage.class);
+        given(message.getDeliveryCount()).willReturn(deliveryCount);
+        return message;
+    }
+}
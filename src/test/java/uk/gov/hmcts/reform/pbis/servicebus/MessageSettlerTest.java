@@ -0,0 +1,306 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.google.common.collect.ImmutableMap;
+import com.microsoft.azure.servicebus.IMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MessageSettlerTest {
+
+    @Mock
+    private IMessageSettlementClient client;
+
+    @Mock
+    private MessageQueueProcessingTracker tracker;
+
+    @Mock
+    private MessageRetryPolicy retryPolicy;
+
+    private final Semaphore waitingRetryPermits = new Semaphore(1);
+
+    private MessageSettler settler;
+
+    @Before
+    public void setUp() {
+        settler = new MessageSettler(client, tracker, retryPolicy, 1, waitingRetryPermits);
+    }
+
+    @Test
+    public void complete_should_complete_message_asynchronously() throws Exception {
+        IMessage message = mock(IMessage.class);
+        given(client.completeMessageAsync(message)).willReturn(new CompletableFuture<>());
+
+        settler.complete(message);
+
+        verify(client).completeMessageAsync(message);
+        assertThat(settler.getPendingSettlementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void sendToDeadLetter_should_pass_error_details_to_client() {
+        IMessage message = mock(IMessage.class);
+        Map<String, String> validationErrors = Collections.singletonMap("field", "error");
+
+        given(client.sendToDeadLetterAsync(message, "reason", "description", validationErrors))
+            .willReturn(CompletableFuture.completedFuture(null));
+
+        settler.sendToDeadLetter(
+            message,
+            new MessageProcessingResult.ProcessingError("reason", "description", validationErrors, null)
+        );
+
+        verify(client).sendToDeadLetterAsync(message, "reason", "description", validationErrors);
+        assertThat(settler.getPendingSettlementCount()).isZero();
+    }
+
+    @Test
+    public void settle_should_abandon_failed_message_once_retry_delay_has_passed() {
+        IMessage message = mock(IMessage.class);
+        CompletableFuture<Void> retryDelay = new CompletableFuture<>();
+        given(retryPolicy.waitForRetry(message)).willReturn(retryDelay);
+        given(client.abandonMessageAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> settlement = settler.settle(
+            message,
+            MessageProcessingResult.processingError(new RuntimeException("Notify unavailable"))
+        );
+
+        verify(client, never()).abandonMessageAsync(any(), any());
+        assertThat(settlement).isNotDone();
+        assertThat(settler.getPendingSettlementCount()).isZero();
+        assertThat(settler.getWaitingRetryCount()).isEqualTo(1);
+
+        retryDelay.complete(null);
+
+        verify(client).abandonMessageAsync(
+            message,
+            Collections.singletonMap(MessageSettler.LAST_PROCESSING_ERROR_PROPERTY_KEY, "Notify unavailable")
+        );
+        assertThat(settlement).isCompletedWithValue(null);
+        assertThat(settler.getPendingSettlementCount()).isZero();
+        assertThat(settler.getWaitingRetryCount()).isZero();
+    }
+
+    @Test
+    public void settle_should_abandon_failed_message_straight_away_when_too_many_wait_for_retry() {
+        IMessage waitingMessage = mock(IMessage.class);
+        IMessage failedMessage = mock(IMessage.class);
+        CompletableFuture<Void> retryDelay = new CompletableFuture<>();
+        given(retryPolicy.waitForRetry(waitingMessage)).willReturn(retryDelay);
+        given(client.abandonMessageAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> waitingRetry = settler.settle(
+            waitingMessage,
+            MessageProcessingResult.processingError(new RuntimeException("test"))
+        );
+        CompletableFuture<Void> retry = settler.settle(
+            failedMessage,
+            MessageProcessingResult.processingError(new RuntimeException("test"))
+        );
+
+        verify(retryPolicy, never()).waitForRetry(failedMessage);
+        verify(client).abandonMessageAsync(eq(failedMessage), any());
+        assertThat(retry).isCompletedWithValue(null);
+        assertThat(waitingRetry).isNotDone();
+        assertThat(waitingRetryPermits.availablePermits()).isZero();
+
+        retryDelay.complete(null);
+
+        verify(client).abandonMessageAsync(eq(waitingMessage), any());
+        assertThat(waitingRetryPermits.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    public void settle_should_not_take_place_in_flight_while_waiting_for_retry_delay() {
+        IMessage failedMessage = mock(IMessage.class);
+        IMessage message = mock(IMessage.class);
+        given(retryPolicy.waitForRetry(failedMessage)).willReturn(new CompletableFuture<>());
+        given(client.completeMessageAsync(message)).willReturn(CompletableFuture.completedFuture(null));
+
+        settler.settle(failedMessage, MessageProcessingResult.processingError(new RuntimeException("test")));
+
+        // the only permit is free, so completing doesn't wait for the retry
+        settler.complete(message);
+
+        verify(client).completeMessageAsync(message);
+    }
+
+    @Test
+    public void settle_should_abandon_without_blocking_when_no_place_in_flight_is_free() {
+        IMessage failedMessage = mock(IMessage.class);
+        IMessage message = mock(IMessage.class);
+        CompletableFuture<Void> retryDelay = new CompletableFuture<>();
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        given(retryPolicy.waitForRetry(failedMessage)).willReturn(retryDelay);
+        given(client.completeMessageAsync(message)).willReturn(completion);
+        given(client.abandonMessageAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> retry = settler.settle(
+            failedMessage,
+            MessageProcessingResult.processingError(new RuntimeException("test"))
+        );
+        settler.complete(message);
+
+        // would block here if the thread ending the delay waited for the permit
+        retryDelay.complete(null);
+
+        verify(client, never()).abandonMessageAsync(any(), any());
+        assertThat(retry).isNotDone();
+
+        completion.complete(null);
+
+        verify(client).abandonMessageAsync(any(), any());
+        assertThat(retry).isCompletedWithValue(null);
+    }
+
+    @Test
+    public void awaitCompletion_should_not_wait_for_retry_delays() throws Exception {
+        IMessage message = mock(IMessage.class);
+        CompletableFuture<Void> retryDelay = new CompletableFuture<>();
+        given(retryPolicy.waitForRetry(message)).willReturn(retryDelay);
+        given(client.abandonMessageAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        settler.settle(message, MessageProcessingResult.processingError(new RuntimeException("test")));
+        settler.awaitCompletion();
+
+        CompletableFuture<Void> retriesAbandoned = settler.whenRetriesAbandoned();
+        assertThat(retriesAbandoned).isNotDone();
+
+        retryDelay.complete(null);
+
+        assertThat(retriesAbandoned).isCompletedWithValue(null);
+    }
+
+    @Test
+    public void settle_should_record_sent_registrations_when_abandoning_batch() {
+        IMessage message = mock(IMessage.class);
+        given(retryPolicy.waitForRetry(message)).willReturn(CompletableFuture.completedFuture(null));
+        given(client.abandonMessageAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        settler.settle(
+            message,
+            MessageProcessingResult.batch(asList(
+                new MessageProcessingResult.EntryResult(0, "ref0", true, MessageProcessingResult.success()),
+                new MessageProcessingResult.EntryResult(
+                    1,
+                    "ref1",
+                    false,
+                    MessageProcessingResult.processingError(new RuntimeException("Notify unavailable"))
+                ),
+                new MessageProcessingResult.EntryResult(2, "ref2", false, MessageProcessingResult.success())
+            ))
+        );
+
+        verify(client).abandonMessageAsync(
+            message,
+            ImmutableMap.of(
+                MessageSettler.LAST_PROCESSING_ERROR_PROPERTY_KEY, "Notify unavailable",
+                SentRegistrations.PROPERTY_KEY, "0,2"
+            )
+        );
+    }
+
+    @Test
+    public void awaitCompletion_should_wait_for_all_pending_settlements() throws Exception {
+        IMessage message = mock(IMessage.class);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        given(client.completeMessageAsync(message)).willReturn(completion);
+
+        settler.complete(message);
+
+        CountDownLatch awaited = new CountDownLatch(1);
+
+        Thread awaitingThread = new Thread(() -> {
+            try {
+                settler.awaitCompletion();
+                awaited.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        awaitingThread.start();
+
+        assertThat(awaited.await(100, TimeUnit.MILLISECONDS)).as("completed before settlement").isFalse();
+
+        completion.complete(null);
+
+        assertThat(awaited.await(1, TimeUnit.SECONDS)).as("completed after settlement").isTrue();
+    }
+
+    @Test
+    public void should_limit_the_number_of_settlements_in_flight() throws Exception {
+        IMessage message1 = mock(IMessage.class);
+        IMessage message2 = mock(IMessage.class);
+        CompletableFuture<Void> completion1 = new CompletableFuture<>();
+
+        given(client.completeMessageAsync(message1)).willReturn(completion1);
+        given(client.completeMessageAsync(message2)).willReturn(CompletableFuture.completedFuture(null));
+
+        settler.complete(message1);
+
+        Thread secondSettlement = new Thread(() -> settler.complete(message2));
+        secondSettlement.start();
+        secondSettlement.join(100);
+
+        assertThat(secondSettlement.isAlive()).as("second settlement waiting for a permit").isTrue();
+        verify(client, never()).completeMessageAsync(message2);
+
+        completion1.complete(null);
+        secondSettlement.join(1000);
+
+        assertThat(secondSettlement.isAlive()).as("second settlement waiting for a permit").isFalse();
+        verify(client).completeMessageAsync(message2);
+    }
+
+    @Test
+    public void should_track_settlement_failures_for_each_message() throws Exception {
+        IMessage message = mock(IMessage.class);
+        Exception settlementError = new ServiceBusException("test", null);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        given(client.completeMessageAsync(message)).willReturn(completion);
+
+        settler.complete(message);
+        verifyZeroInteractions(tracker);
+
+        completion.completeExceptionally(settlementError);
+        settler.awaitCompletion();
+
+        verify(tracker).trackSettlementError(message, settlementError);
+    }
+
+    @Test
+    public void should_track_failure_when_client_fails_to_start_settlement() throws Exception {
+        IMessage message = mock(IMessage.class);
+        RuntimeException clientError = new RuntimeException("test");
+        given(client.completeMessageAsync(message)).willThrow(clientError);
+
+        settler.complete(message);
+        settler.awaitCompletion();
+
+        verify(tracker).trackSettlementError(message, clientError);
+        assertThat(settler.getPendingSettlementCount()).isZero();
+    }
+}
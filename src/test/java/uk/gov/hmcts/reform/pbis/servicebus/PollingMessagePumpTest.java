@@ -0,0 +1,147 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.ExceptionPhase;
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.IMessageHandler;
+import com.microsoft.azure.servicebus.MessageHandlerOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PollingMessagePumpTest {
+
+    private static final Duration LOCK_DURATION = Duration.ofSeconds(2);
+    private static final int MAX_CONCURRENT_CALLS = 2;
+
+    private final ServiceBusClientStub clientStub = new ServiceBusClientStub(LOCK_DURATION, 3);
+    private final ExecutorService executorService = Executors.newFixedThreadPool(MAX_CONCURRENT_CALLS);
+
+    private PollingMessagePump messagePump;
+
+    @Before
+    public void setUp() {
+        messagePump = new PollingMessagePump(clientStub);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        messagePump.close();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void registerMessageHandler_should_push_each_message_to_handler() throws Exception {
+        CountDownLatch completed = new CountDownLatch(3);
+        RecordingHandler handler = new RecordingHandler(
+            message -> messagePump.completeMessageAsync(message).whenComplete((result, error) -> completed.countDown())
+        );
+
+        clientStub.send("message1", new byte[0], null);
+        clientStub.send("message2", new byte[0], null);
+        clientStub.send("message3", new byte[0], null);
+
+        register(handler, Duration.ofMinutes(1));
+
+        assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handler.messageIds).containsExactlyInAnyOrder("message1", "message2", "message3");
+        assertThat(clientStub.getCompletedCount()).isEqualTo(3);
+        assertThat(handler.errors).isEmpty();
+    }
+
+    @Test
+    public void registerMessageHandler_should_not_run_more_handlers_than_max_concurrent_calls() throws Exception {
+        CompletableFuture<Void> handling = new CompletableFuture<>();
+        RecordingHandler handler = new RecordingHandler(message -> handling);
+
+        for (int i = 0; i < 5; i++) {
+            clientStub.send("message" + i, new byte[0], null);
+        }
+
+        register(handler, Duration.ofMinutes(1));
+        Thread.sleep(1000);
+
+        assertThat(handler.messageIds).hasSize(MAX_CONCURRENT_CALLS);
+        assertThat(clientStub.getLockedMessageCount()).isEqualTo(MAX_CONCURRENT_CALLS);
+
+        handling.complete(null);
+    }
+
+    @Test
+    public void registerMessageHandler_should_renew_locks_of_messages_being_handled() throws Exception {
+        CompletableFuture<Void> handling = new CompletableFuture<>();
+        RecordingHandler handler = new RecordingHandler(message -> handling);
+
+        clientStub.send("message1", new byte[0], null);
+
+        register(handler, Duration.ofMinutes(1));
+        Thread.sleep(LOCK_DURATION.multipliedBy(2).toMillis());
+
+        // the lock would have expired without renewals, making the message available again
+        assertThat(clientStub.getLockedMessageCount()).isEqualTo(1);
+        assertThat(clientStub.getRedeliveredCount()).isZero();
+        assertThat(handler.errors).isEmpty();
+
+        handling.complete(null);
+    }
+
+    @Test
+    public void registerMessageHandler_should_report_handler_failure() throws Exception {
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new RuntimeException("test"));
+        RecordingHandler handler = new RecordingHandler(message -> failure);
+
+        clientStub.send("message1", new byte[0], null);
+
+        register(handler, Duration.ofMinutes(1));
+
+        assertThat(handler.errorReported.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handler.errors).containsExactly(ExceptionPhase.USERCALLBACK);
+    }
+
+    private void register(IMessageHandler handler, Duration maxAutoRenewDuration) {
+        messagePump.registerMessageHandler(
+            handler,
+            new MessageHandlerOptions(MAX_CONCURRENT_CALLS, false, maxAutoRenewDuration),
+            executorService
+        );
+    }
+
+    private interface MessageCallback {
+        CompletableFuture<Void> onMessage(IMessage message);
+    }
+
+    private static class RecordingHandler implements IMessageHandler {
+        final List<String> messageIds = new CopyOnWriteArrayList<>();
+        final List<ExceptionPhase> errors = new CopyOnWriteArrayList<>();
+        final CountDownLatch errorReported = new CountDownLatch(1);
+
+        private final MessageCallback callback;
+
+        RecordingHandler(MessageCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public CompletableFuture<Void> onMessageAsync(IMessage message) {
+            messageIds.add(message.getMessageId());
+            return callback.onMessage(message);
+        }
+
+        @Override
+        public void notifyException(Throwable exception, ExceptionPhase phase) {
+            errors.add(phase);
+            errorReported.countDown();
+        }
+    }
+}
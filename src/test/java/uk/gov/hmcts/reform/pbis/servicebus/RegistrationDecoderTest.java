@@ -0,0 +1,76 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.CborRegistrationCodec;
+import uk.gov.hmcts.reform.pbis.servicebus.codec.JsonRegistrationCodec;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RegistrationDecoderTest {
+
+    private static final int MAX_BODY_SIZE = 1024;
+
+    private final RegistrationDecoder decoder = new RegistrationDecoder(MAX_BODY_SIZE);
+
+    private final PrivateBetaRegistration registration =
+        new PrivateBetaRegistration("ref1", "service1", "john@example.com", "John", "Smith");
+
+    @Test
+    public void decode_should_read_json_when_message_has_no_content_type() {
+        byte[] body = new JsonRegistrationCodec().encode(registration);
+
+        assertThat(decoder.decode(null, body).registration).isEqualToComparingFieldByField(registration);
+        assertThat(decoder.decode("", body).registration).isEqualToComparingFieldByField(registration);
+    }
+
+    @Test
+    public void decode_should_use_codec_of_content_type() {
+        byte[] cborBody = new CborRegistrationCodec().encode(registration);
+        byte[] jsonBody = new JsonRegistrationCodec().encode(registration);
+
+        assertThat(decoder.decode("application/cbor", cborBody).registration)
+            .isEqualToComparingFieldByField(registration);
+        assertThat(decoder.decode("application/json", jsonBody).registration)
+            .isEqualToComparingFieldByField(registration);
+    }
+
+    @Test
+    public void decode_should_ignore_case_and_parameters_of_content_type() {
+        byte[] body = new JsonRegistrationCodec().encode(registration);
+
+        assertThat(decoder.decode("Application/JSON; charset=utf-8", body).isDecoded()).isTrue();
+    }
+
+    @Test
+    public void decode_should_reject_unsupported_content_type() {
+        RegistrationDecodingResult result =
+            decoder.decode("application/xml", new JsonRegistrationCodec().encode(registration));
+
+        assertThat(result.isDecoded()).isFalse();
+        assertThat(result.error).isEqualTo("Unsupported content type application/xml");
+    }
+
+    @Test
+    public void decode_should_reject_body_larger_than_limit_without_parsing_it() {
+        RegistrationDecodingResult result = decoder.decode(null, new byte[MAX_BODY_SIZE + 1]);
+
+        assertThat(result.isDecoded()).isFalse();
+        assertThat(result.error).isEqualTo("Message body is larger than " + MAX_BODY_SIZE + " bytes");
+    }
+
+    @Test
+    public void decode_should_reject_missing_body() {
+        RegistrationDecodingResult result = decoder.decode(null, null);
+
+        assertThat(result.isDecoded()).isFalse();
+        assertThat(result.error).isEqualTo("Message has no body");
+    }
+
+    @Test
+    public void should_require_json_codec() {
+        assertThatThrownBy(() -> new RegistrationDecoder(singletonList(new CborRegistrationCodec()), MAX_BODY_SIZE))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -1,72 +1,303 @@
 package uk.gov.hmcts.reform.pbis.servicebus;
 
+import com.google.common.collect.ImmutableMap;
 import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.Message;
+import com.microsoft.azure.servicebus.primitives.MessageLockLostException;
+import org.junit.Before;
 import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusClientStub.DeadLetteredMessage;
 
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
 public class ServiceBusClientStubTest {
 
-    private ServiceBusClientStub clientStub = ServiceBusClientStub.getInstance();
+    private static final Duration LOCK_DURATION = Duration.ofSeconds(30);
+    private static final int MAX_DELIVERY_COUNT = 3;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private ServiceBusClientStub clientStub;
+
+    @Before
+    public void setUp() {
+        Clock clock = mock(Clock.class);
+        given(clock.millis()).willAnswer(invocation -> now.get());
+
+        clientStub = new ServiceBusClientStub(LOCK_DURATION, MAX_DELIVERY_COUNT, clock);
+    }
+
+    @Test
+    public void receiveMessage_should_return_null_when_subscription_is_empty() {
+        assertThat(clientStub.receiveMessage()).isNull();
+    }
+
+    @Test
+    public void receiveMessage_should_return_messages_in_order_until_empty() {
+        send("message1");
+        send("message2");
+
+        IMessage first = clientStub.receiveMessage();
+        IMessage second = clientStub.receiveMessage();
+
+        assertThat(first.getMessageId()).isEqualTo("message1");
+        assertThat(new String(first.getBody(), StandardCharsets.UTF_8)).isEqualTo("body of message1");
+        assertThat(first.getDeliveryCount()).isEqualTo(0);
+        assertThat(first.getLockToken()).isNotNull();
+        assertThat(first.getLockedUntilUtc()).isEqualTo(Instant.ofEpochMilli(now.get()).plus(LOCK_DURATION));
+
+        assertThat(second.getMessageId()).isEqualTo("message2");
+        assertThat(second.getSequenceNumber()).isGreaterThan(first.getSequenceNumber());
+
+        assertThat(clientStub.receiveMessage()).isNull();
+        assertThat(clientStub.getLockedMessageCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void receiveMessages_should_return_at_most_the_requested_number_of_messages() {
+        send("message1");
+        send("message2");
+        send("message3");
+
+        assertThat(clientStub.receiveMessages(2, Duration.ZERO))
+            .extracting(IMessage::getMessageId)
+            .containsExactly("message1", "message2");
+
+        assertThat(clientStub.receiveMessages(2, Duration.ZERO))
+            .extracting(IMessage::getMessageId)
+            .containsExactly("message3");
+
+        assertThat(clientStub.receiveMessages(2, Duration.ZERO)).isEmpty();
+    }
+
+    @Test
+    public void send_should_copy_id_body_content_type_and_properties_of_message() {
+        Message message = new Message("body");
+        message.setMessageId("message1");
+        message.setContentType("application/json");
+        message.setProperties(singletonMap("key", "value"));
+
+        clientStub.send(message);
+
+        IMessage receivedMessage = clientStub.receiveMessage();
+        assertThat(receivedMessage).isNotSameAs(message);
+        assertThat(receivedMessage.getMessageId()).isEqualTo("message1");
+        assertThat(receivedMessage.getBody()).isEqualTo(message.getBody());
+        assertThat(receivedMessage.getContentType()).isEqualTo("application/json");
+        assertThat(receivedMessage.getProperties()).containsEntry("key", "value");
+    }
+
+    @Test
+    public void completeMessage_should_remove_message_from_subscription() {
+        send("message1");
+        IMessage message = clientStub.receiveMessage();
+
+        clientStub.completeMessage(message.getMessageId(), message.getLockToken());
+        now.addAndGet(LOCK_DURATION.toMillis() * 2);
+
+        assertThat(clientStub.receiveMessage()).isNull();
+        assertThat(clientStub.getCompletedCount()).isEqualTo(1);
+        assertThat(clientStub.getLockedMessageCount()).isZero();
+    }
+
+    @Test
+    public void completeMessage_should_fail_when_lock_is_unknown() {
+        assertThatThrownBy(() -> clientStub.completeMessage("message-id-123", UUID.randomUUID()))
+            .isInstanceOf(ServiceBusException.class)
+            .hasCauseInstanceOf(MessageLockLostException.class);
+    }
 
     @Test
-    public void receiveMessage_should_return_null_when_queue_is_empty() {
-        clientStub.setMessagesToReceive(new LinkedList<>());
+    public void message_should_be_redelivered_with_increased_delivery_count_when_lock_expires() {
+        send("message1");
+        send("message2");
+        IMessage message = clientStub.receiveMessage();
+
+        now.addAndGet(LOCK_DURATION.toMillis());
+
+        IMessage redeliveredMessage = clientStub.receiveMessage();
+        assertThat(redeliveredMessage.getMessageId()).isEqualTo("message1");
+        assertThat(redeliveredMessage.getDeliveryCount()).isEqualTo(1);
+        assertThat(redeliveredMessage.getLockToken()).isNotEqualTo(message.getLockToken());
+        assertThat(clientStub.getRedeliveredCount()).isEqualTo(1);
+
+        // the lock of the first delivery is lost
+        assertThatThrownBy(() -> clientStub.completeMessage(message.getMessageId(), message.getLockToken()))
+            .isInstanceOf(ServiceBusException.class);
+    }
+
+    @Test
+    public void renewMessageLockAsync_should_extend_lock() {
+        send("message1");
+        IMessage message = clientStub.receiveMessage();
+
+        now.addAndGet(LOCK_DURATION.toMillis() - 1);
+        Instant lockedUntil = clientStub.renewMessageLockAsync(message).join();
+        now.addAndGet(1);
+
+        assertThat(lockedUntil).isEqualTo(Instant.ofEpochMilli(now.get() - 1).plus(LOCK_DURATION));
         assertThat(clientStub.receiveMessage()).isNull();
+        assertThatCode(() -> clientStub.completeMessage(message.getMessageId(), message.getLockToken()))
+            .doesNotThrowAnyException();
+    }
+
+    @Test
+    public void renewMessageLockAsync_should_fail_when_lock_has_expired() {
+        send("message1");
+        IMessage message = clientStub.receiveMessage();
+
+        now.addAndGet(LOCK_DURATION.toMillis());
+
+        assertThatThrownBy(() -> clientStub.renewMessageLockAsync(message).join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(ServiceBusException.class);
+    }
+
+    @Test
+    public void abandonMessageAsync_should_make_message_available_with_modified_properties() {
+        send("message1");
+        IMessage message = clientStub.receiveMessage();
+
+        clientStub.abandonMessageAsync(message, ImmutableMap.of("progress", 2)).join();
+
+        IMessage redeliveredMessage = clientStub.receiveMessage();
+        assertThat(redeliveredMessage.getMessageId()).isEqualTo("message1");
+        assertThat(redeliveredMessage.getDeliveryCount()).isEqualTo(1);
+        assertThat(redeliveredMessage.getProperties()).containsEntry("progress", 2);
     }
 
     @Test
-    public void receiveMessage_should_return_messages_from_queue_until_empty() {
-        List<IMessage> messages = Arrays.asList(
-            mock(IMessage.class),
-            mock(IMessage.class)
-        );
+    public void message_should_be_dead_lettered_when_max_delivery_count_is_reached() {
+        send("message1");
 
-        clientStub.setMessagesToReceive(new LinkedList(messages));
+        for (int i = 0; i < MAX_DELIVERY_COUNT; i++) {
+            IMessage message = clientStub.receiveMessage();
+            assertThat(message.getDeliveryCount()).isEqualTo(i);
+            clientStub.abandonMessageAsync(message, emptyMap()).join();
+        }
 
-        assertThat(clientStub.receiveMessage()).isSameAs(messages.get(0));
-        assertThat(clientStub.receiveMessage()).isSameAs(messages.get(1));
         assertThat(clientStub.receiveMessage()).isNull();
+        assertThat(clientStub.getDeadLetteredMessages())
+            .extracting(deadLetter -> deadLetter.messageId, deadLetter -> deadLetter.reason)
+            .containsExactly(tuple("message1", ServiceBusClientStub.MAX_DELIVERY_COUNT_EXCEEDED));
     }
 
     @Test
-    public void setMessagesToReceive_should_rewrite_message_queue() {
-        List<IMessage> nonEmptyList = Arrays.asList(mock(IMessage.class));
+    public void sendToDeadLetterAsync_should_move_message_to_dead_letter_store() {
+        send("message1");
+        IMessage message = clientStub.receiveMessage();
 
-        clientStub.setMessagesToReceive(new LinkedList<>(nonEmptyList));
-        assertThat(clientStub.receiveMessage()).isNotNull();
+        clientStub.sendToDeadLetterAsync(message, "reason", "description", singletonMap("field", "error")).join();
 
-        clientStub.setMessagesToReceive(new LinkedList<>());
         assertThat(clientStub.receiveMessage()).isNull();
+        List<DeadLetteredMessage> deadLetters = clientStub.getDeadLetteredMessages();
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.get(0).messageId).isEqualTo("message1");
+        assertThat(deadLetters.get(0).reason).isEqualTo("reason");
+        assertThat(deadLetters.get(0).description).isEqualTo("description");
+        assertThat(deadLetters.get(0).properties).containsEntry("field", "error");
+    }
+
+    @Test
+    public void clear_should_remove_all_messages() {
+        send("message1");
+        send("message2");
+        IMessage message = clientStub.receiveMessage();
+        clientStub.sendToDeadLetter(message, "reason", "description", null);
+
+        clientStub.clear();
 
-        clientStub.setMessagesToReceive(new LinkedList<>(nonEmptyList));
-        assertThat(clientStub.receiveMessage()).isNotNull();
+        assertThat(clientStub.getActiveMessageCount()).isZero();
+        assertThat(clientStub.getDeadLetteredMessages()).isEmpty();
     }
 
     @Test
-    public void completeMessage_should_not_throw_exception() {
-        assertThatCode(() -> {
-            clientStub.completeMessage("message-id-123", UUID.randomUUID());
-        }).doesNotThrowAnyException();
+    public void received_messages_should_be_read_only() {
+        send("message1");
+        IMessage message = clientStub.receiveMessage();
+
+        assertThatThrownBy(() -> message.setMessageId("other"))
+            .isInstanceOf(UnsupportedOperationException.class);
     }
 
     @Test
-    public void sendToDeadLetter_should_not_throw_exception() {
-        assertThatCode(() -> {
-            clientStub.sendToDeadLetter(mock(IMessage.class), "reason", "desc", null);
-        }).doesNotThrowAnyException();
+    public void each_message_should_be_received_by_one_of_concurrent_receivers() throws Exception {
+        ServiceBusClientStub broker = new ServiceBusClientStub(LOCK_DURATION, MAX_DELIVERY_COUNT);
+        int messageCount = 10_000;
+
+        for (int i = 0; i < messageCount; i++) {
+            broker.send("message" + i, new byte[0], null);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> receiveAndCompleteAll(broker)));
+            }
+
+            Set<String> receivedIds = new HashSet<>();
+            int receivedCount = 0;
+
+            for (Future<List<String>> result : results) {
+                List<String> ids = result.get(30, TimeUnit.SECONDS);
+                receivedIds.addAll(ids);
+                receivedCount += ids.size();
+            }
+
+            assertThat(receivedCount).isEqualTo(messageCount);
+            assertThat(receivedIds).hasSize(messageCount);
+            assertThat(broker.getCompletedCount()).isEqualTo(messageCount);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Test
-    public void close_should_not_throw_exception() throws Exception {
-        clientStub.close();
+    public void close_should_not_throw_exception() {
+        assertThatCode(() -> clientStub.close()).doesNotThrowAnyException();
     }
 
+    private static List<String> receiveAndCompleteAll(ServiceBusClientStub broker) {
+        List<String> ids = new ArrayList<>();
+        List<IMessage> messages;
+
+        while (!(messages = broker.receiveMessages(10, Duration.ZERO)).isEmpty()) {
+            for (IMessage message : messages) {
+                broker.completeMessageAsync(message).join();
+                ids.add(message.getMessageId());
+            }
+        }
+
+        return ids;
+    }
+
+    private void send(String messageId) {
+        clientStub.send(messageId, ("body of " + messageId).getBytes(StandardCharsets.UTF_8), null);
+    }
 }
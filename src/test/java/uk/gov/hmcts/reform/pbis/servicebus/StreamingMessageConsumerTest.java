@@ -0,0 +1,239 @@
+package uk.gov.hmcts.reform.pbis.servicebus;
+
+import com.microsoft.azure.servicebus.ExceptionPhase;
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.ISubscriptionClient;
+import com.microsoft.azure.servicebus.MessageHandlerOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.pbis.MessageProcessingResult;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class StreamingMessageConsumerTest {
+
+    private static final int MAX_CONCURRENT_CALLS = 8;
+    private static final int MAX_RETRY_WAITING_CALLS = 1;
+    private static final Duration MAX_AUTO_RENEW_DURATION = Duration.ofMinutes(2);
+    private static final Duration RETRY_DELAY = Duration.ofMillis(200);
+
+    @Mock
+    private IServiceBusClientFactory clientFactory;
+
+    @Mock
+    private ISubscriptionClient subscriptionClient;
+
+    @Mock
+    private MessageProcessor messageProcessor;
+
+    @Mock
+    private MessageQueueProcessingTracker tracker;
+
+    private final MessageRetryPolicy retryPolicy = new MessageRetryPolicy(3, RETRY_DELAY, RETRY_DELAY);
+
+    private StreamingMessageConsumer consumer;
+
+    @Before
+    public void setUp() {
+        given(clientFactory.createMessagePump()).willReturn(new MessagePumpServiceBusClient(subscriptionClient));
+        given(subscriptionClient.completeAsync(any())).willReturn(CompletableFuture.completedFuture(null));
+        given(subscriptionClient.deadLetterAsync(any(), any(), any(), any()))
+            .willReturn(CompletableFuture.completedFuture(null));
+        given(subscriptionClient.abandonAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        consumer = new StreamingMessageConsumer(
+            clientFactory,
+            messageProcessor,
+            tracker,
+            retryPolicy,
+            MAX_CONCURRENT_CALLS,
+            MAX_RETRY_WAITING_CALLS,
+            MAX_AUTO_RENEW_DURATION.toMillis()
+        );
+
+        consumer.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        consumer.stop();
+        retryPolicy.stop();
+    }
+
+    @Test
+    public void start_should_register_handler_with_configured_options() throws Exception {
+        ArgumentCaptor<MessageHandlerOptions> optionsCaptor =
+            ArgumentCaptor.forClass(MessageHandlerOptions.class);
+
+        verify(subscriptionClient).registerMessageHandler(
+            eq(consumer),
+            optionsCaptor.capture(),
+            any(ExecutorService.class)
+        );
+
+        MessageHandlerOptions options = optionsCaptor.getValue();
+        assertThat(options.getMaxConcurrentCalls()).isEqualTo(MAX_CONCURRENT_CALLS);
+        assertThat(options.isAutoComplete()).isFalse();
+        assertThat(options.getMaxAutoRenewDuration()).isEqualTo(MAX_AUTO_RENEW_DURATION);
+    }
+
+    @Test
+    public void start_should_run_handlers_on_named_threads_limited_to_max_concurrent_calls() throws Exception {
+        ArgumentCaptor<ExecutorService> executorCaptor = ArgumentCaptor.forClass(ExecutorService.class);
+        verify(subscriptionClient).registerMessageHandler(eq(consumer), any(), executorCaptor.capture());
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) executorCaptor.getValue();
+        assertThat(executor.getMaximumPoolSize()).isEqualTo(MAX_CONCURRENT_CALLS);
+        assertThat(executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS))
+            .startsWith("message-handler-");
+    }
+
+    @Test
+    public void onMessageAsync_should_complete_successfully_processed_message() throws Exception {
+        IMessage message = createMessage();
+        given(messageProcessor.process(message)).willReturn(MessageProcessingResult.success());
+
+        consumer.onMessageAsync(message).get();
+
+        verify(subscriptionClient).completeAsync(message.getLockToken());
+        verify(tracker).trackReceivedMessage(message.getMessageId());
+        verify(tracker).trackMessageProcessingResult(any(), eq(message));
+    }
+
+    @Test
+    public void onMessageAsync_should_send_unprocessable_message_to_dead_letter() throws Exception {
+        IMessage message = createMessage();
+        given(messageProcessor.process(message))
+            .willReturn(MessageProcessingResult.invalidMessageFormat());
+
+        consumer.onMessageAsync(message).get();
+
+        verify(subscriptionClient).deadLetterAsync(
+            message.getLockToken(),
+            "Invalid message",
+            "Message body has invalid format",
+            null
+        );
+    }
+
+    @Test
+    public void onMessageAsync_should_abandon_message_after_retry_delay_when_processing_failed() throws Exception {
+        IMessage message = createMessage();
+        given(messageProcessor.process(message))
+            .willReturn(MessageProcessingResult.processingError(new RuntimeException("test")));
+
+        long start = System.nanoTime();
+        consumer.onMessageAsync(message).get();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(RETRY_DELAY);
+        verify(subscriptionClient).abandonAsync(eq(message.getLockToken()), any());
+        verify(subscriptionClient, never()).completeAsync(any());
+        verify(subscriptionClient, never()).deadLetterAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    public void onMessageAsync_should_abandon_message_straight_away_when_retry_waiting_calls_are_taken()
+        throws Exception {
+        IMessage waitingMessage = createMessage();
+        IMessage message = createMessage();
+        given(messageProcessor.process(any()))
+            .willReturn(MessageProcessingResult.processingError(new RuntimeException("test")));
+
+        CompletableFuture<Void> waitingCall = consumer.onMessageAsync(waitingMessage);
+
+        // the handler call doesn't wait for the retry delay, so the pump can go on with other messages
+        consumer.onMessageAsync(message).get(100, TimeUnit.MILLISECONDS);
+
+        verify(subscriptionClient).abandonAsync(eq(message.getLockToken()), any());
+        assertThat(waitingCall).isNotDone();
+
+        waitingCall.get(5, TimeUnit.SECONDS);
+        verify(subscriptionClient).abandonAsync(eq(waitingMessage.getLockToken()), any());
+    }
+
+    @Test
+    public void should_reject_retry_waiting_calls_not_lower_than_max_concurrent_calls() {
+        assertThatThrownBy(() -> new StreamingMessageConsumer(
+            clientFactory,
+            messageProcessor,
+            tracker,
+            retryPolicy,
+            MAX_CONCURRENT_CALLS,
+            MAX_CONCURRENT_CALLS,
+            MAX_AUTO_RENEW_DURATION.toMillis()
+        )).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void onMessageAsync_should_not_fail_when_settlement_fails() throws Exception {
+        IMessage message = createMessage();
+        given(messageProcessor.process(message)).willReturn(MessageProcessingResult.success());
+
+        CompletableFuture<Void> failedCompletion = new CompletableFuture<>();
+        failedCompletion.completeExceptionally(new RuntimeException("test"));
+        given(subscriptionClient.completeAsync(any())).willReturn(failedCompletion);
+
+        assertThat(consumer.onMessageAsync(message)).isCompletedWithValue(null);
+        verify(tracker).trackSettlementError(eq(message), any());
+    }
+
+    @Test
+    public void notifyException_should_report_error_to_tracker() {
+        Throwable error = new RuntimeException("test");
+
+        consumer.notifyException(error, ExceptionPhase.RECEIVE);
+
+        verify(tracker).trackMessagePumpError(error, ExceptionPhase.RECEIVE.toString());
+    }
+
+    @Test
+    public void stop_should_close_message_pump() throws Exception {
+        consumer.stop();
+
+        verify(subscriptionClient).close();
+    }
+
+    @Test
+    public void stop_should_do_nothing_when_consumer_has_not_been_started() throws Exception {
+        StreamingMessageConsumer notStartedConsumer = new StreamingMessageConsumer(
+            clientFactory,
+            messageProcessor,
+            tracker,
+            retryPolicy,
+            MAX_CONCURRENT_CALLS,
+            MAX_RETRY_WAITING_CALLS,
+            MAX_AUTO_RENEW_DURATION.toMillis()
+        );
+
+        notStartedConsumer.stop();
+
+        verify(clientFactory).createMessagePump();
+    }
+
+    private IMessage createMessage() {
+        IMessage message = mock(IMessage.class);
+        given(message.getLockToken()).willReturn(UUID.randomUUID());
+        given(message.getMessageId()).willReturn("message-" + UUID.randomUUID());
+        return message;
+    }
+}
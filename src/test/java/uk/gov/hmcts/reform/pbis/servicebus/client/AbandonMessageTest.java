@@ -0,0 +1,66 @@
+package uk.gov.hmcts.reform.pbis.servicebus.client;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class AbandonMessageTest extends AbstractServiceBusClientTest {
+
+    @Test
+    public void should_call_receiver_with_properties_to_modify() {
+        IMessage message = createMessage("message-id-123");
+        Map<String, Object> properties = Collections.singletonMap("key", "value");
+
+        given(messageReceiver.abandonAsync(any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> abandonment = client.abandonMessageAsync(message, properties);
+
+        assertThat(abandonment).isCompletedWithValue(null);
+        verify(messageReceiver).abandonAsync(message.getLockToken(), properties);
+        verifyNoMoreInteractions(messageReceiver);
+    }
+
+    @Test
+    public void should_fail_when_receiver_fails() {
+        Exception expectedCause =
+            new com.microsoft.azure.servicebus.primitives.ServiceBusException(true);
+
+        CompletableFuture<Void> failedAbandonment = new CompletableFuture<>();
+        failedAbandonment.completeExceptionally(expectedCause);
+        given(messageReceiver.abandonAsync(any(), any())).willReturn(failedAbandonment);
+
+        String messageId = "message-id-123";
+
+        Throwable thrown = catchThrowable(
+            () -> client.abandonMessageAsync(createMessage(messageId), null).join()
+        );
+
+        assertThat(thrown).isInstanceOf(CompletionException.class);
+        assertThat(thrown.getCause())
+            .isInstanceOf(ServiceBusException.class)
+            .hasMessage("Failed to abandon message. Message ID: " + messageId)
+            .hasCause(expectedCause);
+    }
+
+    private IMessage createMessage(String messageId) {
+        IMessage message = mock(IMessage.class);
+        given(message.getMessageId()).willReturn(messageId);
+        given(message.getLockToken()).willReturn(UUID.randomUUID());
+
+        return message;
+    }
+}
@@ -1,13 +1,20 @@
 package uk.gov.hmcts.reform.pbis.servicebus.client;
 
+import com.microsoft.azure.servicebus.IMessage;
 import org.junit.Test;
 import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -36,4 +43,46 @@ public class CompleteMessageTest extends AbstractServiceBusClientTest {
             .hasMessage("Failed to mark message as completed. Message ID: " + messageId)
             .hasCause(expectedCause);
     }
+
+    @Test
+    public void async_should_call_receiver() throws Exception {
+        IMessage message = createMessage("message-id-123", UUID.randomUUID());
+        given(messageReceiver.completeAsync(any())).willReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> completion = client.completeMessageAsync(message);
+
+        assertThat(completion).isCompletedWithValue(null);
+        verify(messageReceiver).completeAsync(message.getLockToken());
+        verifyNoMoreInteractions(messageReceiver);
+    }
+
+    @Test
+    public void async_should_fail_when_receiver_fails() throws Exception {
+        Exception expectedCause =
+            new com.microsoft.azure.servicebus.primitives.ServiceBusException(true);
+
+        CompletableFuture<Void> failedCompletion = new CompletableFuture<>();
+        failedCompletion.completeExceptionally(expectedCause);
+        given(messageReceiver.completeAsync(any())).willReturn(failedCompletion);
+
+        String messageId = "message-id-123";
+
+        Throwable thrown = catchThrowable(
+            () -> client.completeMessageAsync(createMessage(messageId, UUID.randomUUID())).join()
+        );
+
+        assertThat(thrown).isInstanceOf(CompletionException.class);
+        assertThat(thrown.getCause())
+            .isInstanceOf(ServiceBusException.class)
+            .hasMessage("Failed to mark message as completed. Message ID: " + messageId)
+            .hasCause(expectedCause);
+    }
+
+    private IMessage createMessage(String messageId, UUID lockToken) {
+        IMessage message = mock(IMessage.class);
+        given(message.getMessageId()).willReturn(messageId);
+        given(message.getLockToken()).willReturn(lockToken);
+
+        return message;
+    }
 }
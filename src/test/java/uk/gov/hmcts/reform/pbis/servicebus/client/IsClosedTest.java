@@ -0,0 +1,73 @@
+package uk.gov.hmcts.reform.pbis.servicebus.client;
+
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.primitives.OperationCancelledException;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+
+public class IsClosedTest extends AbstractServiceBusClientTest {
+
+    @Test
+    public void should_return_false_for_new_client() {
+        assertThat(client.isClosed()).isFalse();
+    }
+
+    @Test
+    public void should_return_true_once_client_is_closed() throws Exception {
+        client.close();
+
+        assertThat(client.isClosed()).isTrue();
+    }
+
+    @Test
+    public void should_return_true_when_receiver_turns_out_to_be_closed() throws Exception {
+        given(messageReceiver.receiveBatch(1, MAX_RECEIVE_TIME))
+            .willThrow(new IllegalStateException("Operation not allowed after the instance is Closed."));
+
+        assertThat(catchThrowable(() -> client.receiveMessages(1, MAX_RECEIVE_TIME)))
+            .isInstanceOf(ServiceBusException.class);
+
+        assertThat(client.isClosed()).isTrue();
+    }
+
+    @Test
+    public void should_return_true_when_settlement_is_cancelled_because_link_was_closed() {
+        CompletableFuture<Void> cancelledCompletion = new CompletableFuture<>();
+        cancelledCompletion.completeExceptionally(mock(OperationCancelledException.class));
+        given(messageReceiver.completeAsync(any(UUID.class))).willReturn(cancelledCompletion);
+
+        catchThrowable(() -> client.completeMessageAsync(createMessage()).join());
+
+        assertThat(client.isClosed()).isTrue();
+    }
+
+    @Test
+    public void should_return_false_after_failure_of_a_single_message() {
+        CompletableFuture<Void> failedCompletion = new CompletableFuture<>();
+        failedCompletion.completeExceptionally(
+            new com.microsoft.azure.servicebus.primitives.ServiceBusException(false)
+        );
+        given(messageReceiver.completeAsync(any(UUID.class))).willReturn(failedCompletion);
+
+        catchThrowable(() -> client.completeMessageAsync(createMessage()).join());
+
+        assertThat(client.isClosed()).isFalse();
+    }
+
+    private IMessage createMessage() {
+        IMessage message = mock(IMessage.class);
+        given(message.getMessageId()).willReturn("message-id-123");
+        given(message.getLockToken()).willReturn(UUID.randomUUID());
+
+        return message;
+    }
+}
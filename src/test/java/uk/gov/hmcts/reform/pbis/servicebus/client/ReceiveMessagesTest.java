@@ -0,0 +1,53 @@
+package uk.gov.hmcts.reform.pbis.servicebus.client;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class ReceiveMessagesTest extends AbstractServiceBusClientTest {
+
+    private static final Duration WAIT_TIME = Duration.ofMillis(5);
+
+    @Test
+    public void should_call_receiver_with_right_arguments() throws Exception {
+        List<IMessage> expectedMessages = Arrays.asList(mock(IMessage.class), mock(IMessage.class));
+        given(messageReceiver.receiveBatch(anyInt(), any())).willReturn(expectedMessages);
+
+        assertThat(client.receiveMessages(10, WAIT_TIME)).containsExactlyElementsOf(expectedMessages);
+        verify(messageReceiver).receiveBatch(10, WAIT_TIME);
+        verifyNoMoreInteractions(messageReceiver);
+    }
+
+    @Test
+    public void should_return_empty_list_when_receiver_returns_no_messages() throws Exception {
+        given(messageReceiver.receiveBatch(anyInt(), any())).willReturn(null);
+
+        assertThat(client.receiveMessages(10, WAIT_TIME)).isEmpty();
+    }
+
+    @Test
+    public void should_fail_when_receiver_fails() throws Exception {
+        Exception expectedCause =
+            new com.microsoft.azure.servicebus.primitives.ServiceBusException(true);
+
+        given(messageReceiver.receiveBatch(anyInt(), any())).willThrow(expectedCause);
+
+        assertThatThrownBy(() -> client.receiveMessages(10, WAIT_TIME))
+            .isInstanceOf(ServiceBusException.class)
+            .hasMessage("Failed to receive messages from subscription")
+            .hasCause(expectedCause);
+    }
+}
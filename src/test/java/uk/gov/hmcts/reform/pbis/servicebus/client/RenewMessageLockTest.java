@@ -0,0 +1,64 @@
+package uk.gov.hmcts.reform.pbis.servicebus.client;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class RenewMessageLockTest extends AbstractServiceBusClientTest {
+
+    @Test
+    public void should_return_new_lock_expiry_time() {
+        IMessage message = createMessage("message-id-123");
+        Instant lockedUntil = Instant.now().plusSeconds(60);
+
+        given(messageReceiver.renewMessageLockAsync(any(IMessage.class)))
+            .willReturn(CompletableFuture.completedFuture(lockedUntil));
+
+        CompletableFuture<Instant> renewal = client.renewMessageLockAsync(message);
+
+        assertThat(renewal).isCompletedWithValue(lockedUntil);
+        verify(messageReceiver).renewMessageLockAsync(message);
+        verifyNoMoreInteractions(messageReceiver);
+    }
+
+    @Test
+    public void should_fail_when_receiver_fails() {
+        Exception expectedCause =
+            new com.microsoft.azure.servicebus.primitives.ServiceBusException(true);
+
+        CompletableFuture<Instant> failedRenewal = new CompletableFuture<>();
+        failedRenewal.completeExceptionally(expectedCause);
+        given(messageReceiver.renewMessageLockAsync(any(IMessage.class))).willReturn(failedRenewal);
+
+        String messageId = "message-id-123";
+
+        Throwable thrown = catchThrowable(
+            () -> client.renewMessageLockAsync(createMessage(messageId)).join()
+        );
+
+        assertThat(thrown).isInstanceOf(CompletionException.class);
+        assertThat(thrown.getCause())
+            .isInstanceOf(ServiceBusException.class)
+            .hasMessage("Failed to renew message lock. Message ID: " + messageId)
+            .hasCause(expectedCause);
+    }
+
+    private IMessage createMessage(String messageId) {
+        IMessage message = mock(IMessage.class);
+        given(message.getMessageId()).willReturn(messageId);
+
+        return message;
+    }
+}
@@ -7,9 +7,13 @@ import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
@@ -60,6 +64,54 @@ public class SendToDeadLetterTest extends AbstractServiceBusClientTest {
             .hasMessage("Failed to send message to dead letter queue. Message ID: " + messageId);
     }
 
+    @Test
+    public void async_should_call_receiver_with_right_arguments() throws Exception {
+        IMessage message = createMessage("messageId123", UUID.randomUUID());
+
+        given(messageReceiver.deadLetterAsync(any(), any(), any(), any()))
+            .willReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> deadLettering = client.sendToDeadLetterAsync(
+            message,
+            "test reason",
+            "test description",
+            singletonMap("field1", "error1")
+        );
+
+        assertThat(deadLettering).isCompletedWithValue(null);
+
+        verify(messageReceiver).deadLetterAsync(
+            message.getLockToken(),
+            "test reason",
+            "test description",
+            singletonMap("ValidationErrors", "{\"field1\":\"error1\"}")
+        );
+
+        verifyNoMoreInteractions(messageReceiver);
+    }
+
+    @Test
+    public void async_should_fail_when_receiver_fails() throws Exception {
+        String messageId = "message id 123";
+        IMessage message = createMessage(messageId, UUID.randomUUID());
+
+        Exception receiverException = new RuntimeException("test exception", null);
+        CompletableFuture<Void> failedDeadLettering = new CompletableFuture<>();
+        failedDeadLettering.completeExceptionally(receiverException);
+
+        given(messageReceiver.deadLetterAsync(any(), any(), any(), any())).willReturn(failedDeadLettering);
+
+        Throwable thrown = catchThrowable(
+            () -> client.sendToDeadLetterAsync(message, "reason", "description", null).join()
+        );
+
+        assertThat(thrown).isInstanceOf(CompletionException.class);
+        assertThat(thrown.getCause())
+            .isInstanceOf(ServiceBusException.class)
+            .hasMessage("Failed to send message to dead letter queue. Message ID: " + messageId)
+            .hasCause(receiverException);
+    }
+
     private IMessage createMessage(String messageId, UUID lockToken) {
         IMessage message = mock(IMessage.class);
         given(message.getMessageId()).willReturn(messageId);
@@ -0,0 +1,65 @@
+package uk.gov.hmcts.reform.pbis.servicebus.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CborRegistrationCodecTest {
+
+    private final CborRegistrationCodec codec = new CborRegistrationCodec();
+
+    private final PrivateBetaRegistration registration =
+        new PrivateBetaRegistration("ref1", "service1", "john@example.com", "John", "Smith");
+
+    @Test
+    public void decode_should_read_registration_written_by_encode() {
+        RegistrationDecodingResult result = codec.decode(codec.encode(registration));
+
+        assertThat(result.isDecoded()).isTrue();
+        assertThat(result.registration).isEqualToComparingFieldByField(registration);
+    }
+
+    @Test
+    public void decode_should_read_registration_written_by_other_cbor_encoders() throws Exception {
+        byte[] body = new ObjectMapper(new CBORFactory()).writeValueAsBytes(
+            ImmutableMap.of(
+                "reference_id", "ref1",
+                "service", "service1",
+                "email_address", "john@example.com",
+                "first_name", "John",
+                "last_name", "Smith"
+            )
+        );
+
+        assertThat(codec.decode(body).registration).isEqualToComparingFieldByField(registration);
+    }
+
+    @Test
+    public void encode_should_write_smaller_body_than_json() {
+        assertThat(codec.encode(registration).length)
+            .isLessThan(new JsonRegistrationCodec().encode(registration).length);
+    }
+
+    @Test
+    public void decode_should_reject_unknown_fields() throws Exception {
+        byte[] body = new ObjectMapper(new CBORFactory()).writeValueAsBytes(ImmutableMap.of("age", 42));
+
+        RegistrationDecodingResult result = codec.decode(body);
+
+        assertThat(result.isDecoded()).isFalse();
+        assertThat(result.error).isEqualTo("Unknown field age");
+    }
+
+    @Test
+    public void decode_should_reject_json() {
+        RegistrationDecodingResult result = codec.decode(new JsonRegistrationCodec().encode(registration));
+
+        assertThat(result.isDecoded()).isFalse();
+        assertThat(result.error).isNotEmpty();
+    }
+}
@@ -0,0 +1,163 @@
+package uk.gov.hmcts.reform.pbis.servicebus.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+import uk.gov.hmcts.reform.pbis.servicebus.RegistrationDecodingResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class JsonRegistrationCodecTest {
+
+    private final JsonRegistrationCodec codec = new JsonRegistrationCodec();
+
+    @Test
+    public void decode_should_read_all_fields_of_registration() {
+        RegistrationDecodingResult result = decode(
+            "{\"reference_id\":\"ref1\",\"service\":\"service1\",\"email_address\":\"john@example.com\","
+                + "\"first_name\":\"John\",\"last_name\":\"Smith\"}"
+        );
+
+        assertThat(result.isDecoded()).isTrue();
+        assertThat(result.error).isNull();
+        assertThat(result.registration.referenceId).isEqualTo("ref1");
+        assertThat(result.registration.service).isEqualTo("service1");
+        assertThat(result.registration.emailAddress).isEqualTo("john@example.com");
+        assertThat(result.registration.firstName).isEqualTo("John");
+        assertThat(result.registration.lastName).isEqualTo("Smith");
+    }
+
+    @Test
+    public void decode_should_read_registration_the_same_way_as_data_binding() throws Exception {
+        PrivateBetaRegistration registration =
+            new PrivateBetaRegistration("ref1", "service1", "john@example.com", "Jöhn \"Johnny\"", "Smith\n");
+        byte[] body = new ObjectMapper().writeValueAsBytes(registration);
+
+        RegistrationDecodingResult result = codec.decode(body);
+
+        assertThat(result.registration).isEqualToComparingFieldByField(
+            new ObjectMapper().readValue(body, PrivateBetaRegistration.class)
+        );
+    }
+
+    @Test
+    public void decode_should_leave_missing_and_null_fields_empty() {
+        RegistrationDecodingResult result = decode("{\"service\":\"service1\",\"first_name\":null}");
+
+        assertThat(result.isDecoded()).isTrue();
+        assertThat(result.registration.service).isEqualTo("service1");
+        assertThat(result.registration.referenceId).isNull();
+        assertThat(result.registration.firstName).isNull();
+    }
+
+    @Test
+    public void decode_should_read_scalar_values_as_text() {
+        RegistrationDecodingResult result = decode("{\"reference_id\":123,\"first_name\":true}");
+
+        assertThat(result.registration.referenceId).isEqualTo("123");
+        assertThat(result.registration.firstName).isEqualTo("true");
+    }
+
+    @Test
+    public void decode_should_reject_unknown_fields() {
+        assertMalformed(decode("{\"service\":\"service1\",\"age\":42}"), "Unknown field age");
+    }
+
+    @Test
+    public void decode_should_reject_nested_values() {
+        assertMalformed(decode("{\"service\":{\"name\":\"service1\"}}"), "Field service is not a simple value");
+        assertMalformed(decode("{\"service\":[\"service1\"]}"), "Field service is not a simple value");
+    }
+
+    @Test
+    public void decode_should_reject_body_that_is_not_json_object_or_array() {
+        assertMalformed(decode("null"), "Message body is not a JSON object or array");
+        assertMalformed(decode("\"service1\""), "Message body is not a JSON object or array");
+        assertMalformed(decode(""), "Message body is not a JSON object or array");
+    }
+
+    @Test
+    public void decode_should_read_each_registration_of_batch() {
+        RegistrationDecodingResult result = decode(
+            "[{\"reference_id\":\"ref1\",\"service\":\"service1\"},"
+                + "{\"reference_id\":\"ref2\",\"service\":\"service2\"}]"
+        );
+
+        assertThat(result.isDecoded()).isTrue();
+        assertThat(result.batch).isTrue();
+        assertThat(result.registrations)
+            .extracting(registration -> registration.referenceId, registration -> registration.service)
+            .containsExactly(tuple("ref1", "service1"), tuple("ref2", "service2"));
+    }
+
+    @Test
+    public void decode_should_read_single_registration_as_no_batch() {
+        RegistrationDecodingResult result = decode("{\"reference_id\":\"ref1\"}");
+
+        assertThat(result.batch).isFalse();
+        assertThat(result.registrations).containsExactly(result.registration);
+    }
+
+    @Test
+    public void decode_should_reject_batch_with_malformed_registration() {
+        assertMalformed(decode("[{\"service\":\"service1\"},{\"age\":42}]"), "Registration 1: Unknown field age");
+        assertMalformed(decode("[{\"service\":\"service1\"},[]]"), "Registration 1 is not a JSON object");
+        assertMalformed(decode("[{\"service\":\"service1\"}"), "Message body is not valid JSON");
+    }
+
+    @Test
+    public void decode_should_reject_empty_batch() {
+        assertMalformed(decode("[]"), "Message body has no registrations");
+    }
+
+    @Test
+    public void decode_should_reject_invalid_json() {
+        assertMalformed(decode("invalid format"), "Message body is not valid JSON");
+        assertMalformed(decode("{\"service\":\"service1\""), "Message body is not valid JSON");
+    }
+
+    @Test
+    public void decode_should_reject_content_after_json_object() {
+        assertMalformed(decode("{\"service\":\"service1\"} {}"), "Unexpected content after JSON object");
+        assertMalformed(decode("[{\"service\":\"service1\"}] {}"), "Unexpected content after JSON array");
+    }
+
+    @Test
+    public void encode_should_write_registration_that_can_be_decoded() {
+        PrivateBetaRegistration registration =
+            new PrivateBetaRegistration("ref1", "service1", "john@example.com", "John", null);
+
+        byte[] body = codec.encode(registration);
+
+        assertThat(new String(body, StandardCharsets.UTF_8)).contains("\"reference_id\":\"ref1\"");
+        assertThat(codec.decode(body).registration).isEqualToComparingFieldByField(registration);
+    }
+
+    @Test
+    public void encode_should_write_batch_that_can_be_decoded() {
+        List<PrivateBetaRegistration> registrations = asList(
+            new PrivateBetaRegistration("ref1", "service1", "john@example.com", "John", "Smith"),
+            new PrivateBetaRegistration("ref2", "service2", "jane@example.com", "Jane", "Doe")
+        );
+
+        RegistrationDecodingResult result = codec.decode(codec.encode(registrations));
+
+        assertThat(result.batch).isTrue();
+        assertThat(result.registrations).usingFieldByFieldElementComparator().isEqualTo(registrations);
+    }
+
+    private RegistrationDecodingResult decode(String body) {
+        return codec.decode(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertMalformed(RegistrationDecodingResult result, String expectedError) {
+        assertThat(result.isDecoded()).isFalse();
+        assertThat(result.registration).isNull();
+        assertThat(result.error).startsWith(expectedError);
+    }
+}
@@ -0,0 +1,196 @@
+package uk.gov.hmcts.reform.pbis.servicebus.locks;
+
+import com.microsoft.azure.servicebus.IMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.reform.pbis.servicebus.IServiceBusClient;
+import uk.gov.hmcts.reform.pbis.servicebus.MessageQueueProcessingTracker;
+import uk.gov.hmcts.reform.pbis.servicebus.ServiceBusException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class MessageLockRenewerTest {
+
+    private static final Duration RENEW_BEFORE_EXPIRY = Duration.ofSeconds(10);
+    private static final Duration NEAR_MISS_THRESHOLD = Duration.ofSeconds(2);
+    private static final Duration TICK = Duration.ofMillis(100);
+    private static final Duration LOCK_DURATION = Duration.ofSeconds(30);
+
+    @Mock
+    private IServiceBusClient client;
+
+    @Mock
+    private MessageQueueProcessingTracker tracker;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2018-01-01T10:00:00Z"));
+
+    private MessageLockRenewer lockRenewer;
+
+    @Before
+    public void setUp() {
+        lockRenewer = new MessageLockRenewer(tracker, RENEW_BEFORE_EXPIRY, NEAR_MISS_THRESHOLD, TICK, clock);
+
+        given(client.renewMessageLockAsync(any()))
+            .willAnswer(invocation -> CompletableFuture.completedFuture(clock.instant().plus(LOCK_DURATION)));
+    }
+
+    @Test
+    public void should_renew_lock_shortly_before_it_expires() {
+        IMessage message = createMessage(clock.instant().plus(LOCK_DURATION));
+        lockRenewer.register(message, client);
+
+        advanceClock(LOCK_DURATION.minus(RENEW_BEFORE_EXPIRY).minus(TICK));
+        verify(client, never()).renewMessageLockAsync(any());
+
+        advanceClock(TICK.multipliedBy(2));
+        verify(client).renewMessageLockAsync(message);
+    }
+
+    @Test
+    public void should_keep_renewing_lock_until_message_is_unregistered() {
+        IMessage message = createMessage(clock.instant().plus(LOCK_DURATION));
+        lockRenewer.register(message, client);
+
+        // renewed 20 and 40 seconds after registration
+        advanceClock(LOCK_DURATION.multipliedBy(2));
+        verify(client, times(2)).renewMessageLockAsync(message);
+
+        lockRenewer.unregister(message);
+
+        advanceClock(LOCK_DURATION.multipliedBy(3));
+        verify(client, times(2)).renewMessageLockAsync(message);
+        assertThat(lockRenewer.getLockedMessageCount()).isZero();
+    }
+
+    @Test
+    public void should_not_register_message_without_lock() {
+        IMessage message = createMessage(clock.instant().minusSeconds(1));
+        lockRenewer.register(message, client);
+
+        advanceClock(LOCK_DURATION);
+
+        assertThat(lockRenewer.getLockedMessageCount()).isZero();
+        verify(client, never()).renewMessageLockAsync(any());
+    }
+
+    @Test
+    public void should_report_renewals_and_near_misses() {
+        lockRenewer.register(createMessage(clock.instant().plus(LOCK_DURATION)), client);
+        // received with less time left on the lock than the near-miss threshold
+        lockRenewer.register(createMessage(clock.instant().plusSeconds(1)), client);
+
+        advanceClock(TICK.multipliedBy(2));
+
+        LockRenewalStatistics statistics = lockRenewer.takeStatisticsSnapshot();
+        assertThat(statistics.renewedCount).isEqualTo(1);
+        assertThat(statistics.nearMissCount).isEqualTo(1);
+        assertThat(statistics.failedCount).isZero();
+        assertThat(statistics.expiredCount).isZero();
+        assertThat(statistics.lockedMessageCount).isEqualTo(2);
+
+        assertThat(lockRenewer.takeStatisticsSnapshot().renewedCount).isZero();
+    }
+
+    @Test
+    public void should_retry_failed_renewal_until_lock_expires() {
+        ServiceBusException renewalError = new ServiceBusException("test exception", null);
+        CompletableFuture<Instant> failedRenewal = new CompletableFuture<>();
+        failedRenewal.completeExceptionally(renewalError);
+        given(client.renewMessageLockAsync(any())).willReturn(failedRenewal);
+
+        IMessage message = createMessage(clock.instant().plus(LOCK_DURATION));
+        lockRenewer.register(message, client);
+
+        advanceClock(LOCK_DURATION.plusSeconds(1));
+
+        // first attempt 10 seconds before expiry, then every 1.1 seconds (retry delay rounded up to a tick)
+        verify(client, times(9)).renewMessageLockAsync(message);
+        verify(tracker, times(9)).trackMessageLockRenewalError(message, renewalError);
+        verify(tracker).trackMessageLockExpired(message);
+
+        LockRenewalStatistics statistics = lockRenewer.takeStatisticsSnapshot();
+        assertThat(statistics.failedCount).isEqualTo(9);
+        assertThat(statistics.expiredCount).isEqualTo(1);
+        assertThat(statistics.lockedMessageCount).isZero();
+    }
+
+    @Test
+    public void should_not_reschedule_renewal_of_message_unregistered_while_renewing() {
+        CompletableFuture<Instant> pendingRenewal = new CompletableFuture<>();
+        given(client.renewMessageLockAsync(any())).willReturn(pendingRenewal);
+
+        IMessage message = createMessage(clock.instant().plus(LOCK_DURATION));
+        lockRenewer.register(message, client);
+
+        advanceClock(LOCK_DURATION.minus(RENEW_BEFORE_EXPIRY).plus(TICK));
+        lockRenewer.unregister(message);
+        pendingRenewal.complete(clock.instant().plus(LOCK_DURATION));
+
+        advanceClock(LOCK_DURATION.multipliedBy(2));
+
+        verify(client, times(1)).renewMessageLockAsync(message);
+        assertThat(lockRenewer.takeStatisticsSnapshot().renewedCount).isZero();
+    }
+
+    private void advanceClock(Duration duration) {
+        Instant end = clock.instant().plus(duration);
+
+        while (clock.instant().isBefore(end)) {
+            clock.advance(TICK);
+            lockRenewer.tick();
+        }
+    }
+
+    private static IMessage createMessage(Instant lockedUntil) {
+        IMessage message = mock(IMessage.class);
+        given(message.getLockToken()).willReturn(UUID.randomUUID());
+        given(message.getMessageId()).willReturn(UUID.randomUUID().toString());
+        given(message.getLockedUntilUtc()).willReturn(lockedUntil);
+        return message;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package uk.gov.hmcts.reform.pbis.servicebus.locks;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TimingWheelTest {
+
+    private static final Duration TICK = Duration.ofMillis(100);
+    private static final int WHEEL_SIZE = 8;
+    private static final Instant START = Instant.parse("2018-01-01T10:00:00Z");
+
+    private final TimingWheel<String> timingWheel = new TimingWheel<>(TICK, WHEEL_SIZE, START);
+
+    @Test
+    public void should_return_items_once_their_deadlines_pass() {
+        timingWheel.schedule("first", START.plusMillis(150));
+        timingWheel.schedule("second", START.plusMillis(350));
+
+        assertThat(timingWheel.advance(START.plusMillis(199))).isEmpty();
+        assertThat(timingWheel.advance(START.plusMillis(200))).containsExactly("first");
+        assertThat(timingWheel.advance(START.plusMillis(300))).isEmpty();
+        assertThat(timingWheel.advance(START.plusMillis(400))).containsExactly("second");
+        assertThat(timingWheel.size()).isZero();
+    }
+
+    @Test
+    public void should_return_each_item_only_once() {
+        timingWheel.schedule("item", START.plusMillis(50));
+
+        assertThat(timingWheel.advance(START.plusMillis(100))).containsExactly("item");
+        assertThat(timingWheel.advance(START.plusMillis(200))).isEmpty();
+    }
+
+    @Test
+    public void should_keep_items_with_deadlines_beyond_one_rotation() {
+        Duration rotation = TICK.multipliedBy(WHEEL_SIZE);
+        timingWheel.schedule("later", START.plus(rotation.multipliedBy(2)).plusMillis(50));
+
+        // walk the wheel tick by tick past the bucket of the item
+        for (Instant now = START; now.isBefore(START.plus(rotation.multipliedBy(2))); now = now.plus(TICK)) {
+            assertThat(timingWheel.advance(now)).isEmpty();
+        }
+
+        assertThat(timingWheel.advance(START.plus(rotation.multipliedBy(3)))).containsExactly("later");
+    }
+
+    @Test
+    public void should_return_all_due_items_after_long_pause() {
+        timingWheel.schedule("first", START.plusMillis(50));
+        timingWheel.schedule("second", START.plusSeconds(2));
+        timingWheel.schedule("third", START.plusSeconds(20));
+
+        assertThat(timingWheel.advance(START.plusSeconds(10))).containsExactlyInAnyOrder("first", "second");
+        assertThat(timingWheel.advance(START.plusSeconds(30))).containsExactly("third");
+    }
+
+    @Test
+    public void should_return_items_with_passed_deadlines_at_next_tick() {
+        timingWheel.advance(START.plusSeconds(1));
+
+        timingWheel.schedule("overdue", START);
+
+        assertThat(timingWheel.advance(START.plusSeconds(1))).isEmpty();
+        assertThat(timingWheel.advance(START.plusSeconds(1).plus(TICK))).containsExactly("overdue");
+    }
+
+    @Test
+    public void should_not_return_cancelled_items() {
+        TimingWheel.Timeout<String> cancelled = timingWheel.schedule("cancelled", START.plusMillis(50));
+        timingWheel.schedule("kept", START.plusMillis(50));
+
+        timingWheel.cancel(cancelled);
+
+        assertThat(timingWheel.size()).isEqualTo(1);
+        assertThat(timingWheel.advance(START.plusMillis(100))).containsExactly("kept");
+    }
+
+    @Test
+    public void should_reject_non_positive_tick_duration() {
+        assertThatThrownBy(() -> new TimingWheel<>(Duration.ZERO, WHEEL_SIZE, START))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,157 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StageTest {
+
+    private Stage<String> stage;
+
+    @After
+    public void tearDown() {
+        stage.stop();
+    }
+
+    @Test
+    public void should_pass_handled_items_downstream() throws Exception {
+        List<String> handledItems = new CopyOnWriteArrayList<>();
+        BlockingQueue<String> downstream = new LinkedBlockingQueue<>();
+
+        stage = new Stage<>("test", 1, new BoundedStageQueue<>(10), handledItems::add);
+        stage.start(downstream::put);
+
+        stage.put("item1");
+        stage.put("item2");
+
+        assertThat(downstream.poll(5, TimeUnit.SECONDS)).isEqualTo("item1");
+        assertThat(downstream.poll(5, TimeUnit.SECONDS)).isEqualTo("item2");
+        assertThat(handledItems).containsExactly("item1", "item2");
+    }
+
+    @Test
+    public void should_pass_item_downstream_when_handler_fails() throws Exception {
+        BlockingQueue<String> downstream = new LinkedBlockingQueue<>();
+
+        stage = new Stage<>("test", 1, new BoundedStageQueue<>(10), item -> {
+            throw new RuntimeException("test exception");
+        });
+
+        stage.start(downstream::put);
+        stage.put("item");
+
+        assertThat(downstream.poll(5, TimeUnit.SECONDS)).isEqualTo("item");
+    }
+
+    @Test
+    public void should_handle_items_concurrently() throws Exception {
+        int concurrency = 3;
+        CountDownLatch itemsBeingHandled = new CountDownLatch(concurrency);
+        BlockingQueue<Boolean> handledConcurrently = new LinkedBlockingQueue<>();
+
+        Consumer<String> handler = item -> {
+            itemsBeingHandled.countDown();
+
+            try {
+                handledConcurrently.put(itemsBeingHandled.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        stage = new Stage<>("test", concurrency, new BoundedStageQueue<>(10), handler);
+        stage.start(item -> { });
+
+        for (int i = 0; i < concurrency; i++) {
+            stage.put("item" + i);
+        }
+
+        for (int i = 0; i < concurrency; i++) {
+            assertThat(handledConcurrently.poll(10, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    public void put_should_wait_while_queue_is_full() throws Exception {
+        CountDownLatch handlingAllowed = new CountDownLatch(1);
+
+        stage = new Stage<>("test", 1, new BoundedStageQueue<>(1), item -> awaitQuietly(handlingAllowed));
+        stage.start(item -> { });
+
+        stage.put("item being handled");
+        stage.put("item waiting in queue");
+
+        Thread producer = new Thread(() -> {
+            try {
+                stage.put("item waiting for space");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        producer.start();
+        producer.join(200);
+        assertThat(producer.isAlive()).as("producer waiting for space in queue").isTrue();
+
+        handlingAllowed.countDown();
+        producer.join(5000);
+        assertThat(producer.isAlive()).as("producer waiting for space in queue").isFalse();
+    }
+
+    @Test
+    public void takeStatisticsSnapshot_should_return_service_time_and_queue_depth() throws Exception {
+        CountDownLatch itemsHandled = new CountDownLatch(2);
+
+        stage = new Stage<>("test", 1, new BoundedStageQueue<>(10), item -> {
+            sleep(10);
+            itemsHandled.countDown();
+        });
+
+        stage.put("item1");
+        stage.put("item2");
+        stage.start(item -> { });
+
+        assertThat(itemsHandled.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // service time is recorded right after handling an item
+        sleep(100);
+
+        StageStatistics.Snapshot snapshot = stage.takeStatisticsSnapshot();
+
+        assertThat(snapshot.stageName).isEqualTo("test");
+        assertThat(snapshot.processedCount).isEqualTo(2);
+        assertThat(snapshot.averageServiceTimeMs).isGreaterThanOrEqualTo(10);
+        assertThat(snapshot.maxQueueDepth).isEqualTo(2);
+        assertThat(snapshot.queueDepth).isEqualTo(0);
+
+        StageStatistics.Snapshot nextSnapshot = stage.takeStatisticsSnapshot();
+
+        assertThat(nextSnapshot.processedCount).isEqualTo(0);
+        assertThat(nextSnapshot.maxQueueDepth).isEqualTo(0);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package uk.gov.hmcts.reform.pbis.servicebus.pipeline;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class WeightedFairStageQueueTest {
+
+    private static final Map<String, Integer> WEIGHTS = ImmutableMap.of("a", 1, "b", 1, "heavy", 3);
+
+    private final WeightedFairStageQueue<String> queue = new WeightedFairStageQueue<>(
+        100,
+        item -> item.split("-")[0],
+        key -> WEIGHTS.getOrDefault(key, 1)
+    );
+
+    @Test
+    public void should_keep_order_of_items_with_the_same_key() throws Exception {
+        put("a-1", "a-2", "a-3");
+
+        assertThat(take(3)).containsExactly("a-1", "a-2", "a-3");
+    }
+
+    @Test
+    public void should_not_make_items_wait_behind_burst_of_another_key() throws Exception {
+        put("a-1", "a-2", "a-3", "a-4", "a-5", "b-1", "b-2");
+
+        assertThat(take(7)).containsExactly("a-1", "b-1", "a-2", "b-2", "a-3", "a-4", "a-5");
+    }
+
+    @Test
+    public void should_hand_out_items_according_to_weights() throws Exception {
+        put("heavy-1", "heavy-2", "heavy-3", "heavy-4", "a-1", "a-2");
+
+        assertThat(take(6)).containsExactly("heavy-1", "heavy-2", "heavy-3", "a-1", "heavy-4", "a-2");
+    }
+
+    @Test
+    public void should_treat_non_positive_weight_as_one() throws Exception {
+        WeightedFairStageQueue<String> zeroWeightQueue =
+            new WeightedFairStageQueue<>(10, item -> item.split("-")[0], key -> 0);
+
+        zeroWeightQueue.put("a-1");
+        zeroWeightQueue.put("a-2");
+        zeroWeightQueue.put("b-1");
+
+        assertThat(zeroWeightQueue.take()).isEqualTo("a-1");
+        assertThat(zeroWeightQueue.take()).isEqualTo("b-1");
+        assertThat(zeroWeightQueue.take()).isEqualTo("a-2");
+    }
+
+    @Test
+    public void should_wait_for_space_when_full() throws Exception {
+        WeightedFairStageQueue<String> smallQueue =
+            new WeightedFairStageQueue<>(1, item -> item.split("-")[0], key -> 1);
+
+        smallQueue.put("a-1");
+
+        CompletableFuture<Void> blockedPut = CompletableFuture.runAsync(() -> {
+            try {
+                smallQueue.put("b-1");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Thread.sleep(100);
+        assertThat(blockedPut).isNotDone();
+
+        assertThat(smallQueue.take()).isEqualTo("a-1");
+        blockedPut.get(5, TimeUnit.SECONDS);
+        assertThat(smallQueue.take()).isEqualTo("b-1");
+    }
+
+    @Test
+    public void should_wait_for_items_when_empty() throws Exception {
+        CompletableFuture<String> blockedTake = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        });
+
+        Thread.sleep(100);
+        assertThat(blockedTake).isNotDone();
+
+        queue.put("a-1");
+        assertThat(blockedTake.get(5, TimeUnit.SECONDS)).isEqualTo("a-1");
+    }
+
+    @Test
+    public void should_hand_out_items_of_other_keys_while_key_is_delayed() throws Exception {
+        put("a-1", "a-2", "b-1", "b-2");
+
+        assertThat(queue.take()).isEqualTo("a-1");
+        queue.putBack("a-1", Duration.ofMinutes(1));
+
+        assertThat(take(2)).containsExactly("b-1", "b-2");
+        assertThat(queue.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_hand_out_item_put_back_first_once_delay_passes() throws Exception {
+        put("a-1", "a-2", "b-1");
+
+        assertThat(queue.take()).isEqualTo("a-1");
+        queue.putBack("a-1", Duration.ofMillis(200));
+
+        assertThat(queue.take()).isEqualTo("b-1");
+
+        long startTime = System.nanoTime();
+        assertThat(take(2)).containsExactly("a-1", "a-2");
+        assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isGreaterThanOrEqualTo(Duration.ofMillis(150));
+    }
+
+    @Test
+    public void should_hand_out_items_put_while_other_key_is_delayed() throws Exception {
+        put("a-1");
+
+        assertThat(queue.take()).isEqualTo("a-1");
+        queue.putBack("a-1", Duration.ofMinutes(1));
+
+        CompletableFuture<String> blockedTake = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        });
+
+        Thread.sleep(100);
+        assertThat(blockedTake).isNotDone();
+
+        queue.put("b-1");
+        assertThat(blockedTake.get(5, TimeUnit.SECONDS)).isEqualTo("b-1");
+    }
+
+    @Test
+    public void should_not_wait_for_space_when_putting_item_back() throws Exception {
+        WeightedFairStageQueue<String> smallQueue =
+            new WeightedFairStageQueue<>(1, item -> item.split("-")[0], key -> 1);
+
+        smallQueue.put("a-1");
+        smallQueue.putBack("b-1", Duration.ZERO);
+
+        assertThat(smallQueue.size()).isEqualTo(2);
+        assertThat(smallQueue.take()).isEqualTo("a-1");
+        assertThat(smallQueue.take()).isEqualTo("b-1");
+    }
+
+    @Test
+    public void should_report_statistics_of_each_key() throws Exception {
+        put("a-1", "a-2", "a-3", "b-1");
+        take(2);
+
+        assertThat(queue.size()).isEqualTo(2);
+
+        List<KeyQueueStatistics> statistics = queue.takeStatisticsSnapshot();
+
+        assertThat(statistics).extracting(s -> s.key).containsExactly("a", "b");
+        assertThat(statistics).extracting(s -> s.takenCount).containsExactly(1L, 1L);
+        assertThat(statistics).extracting(s -> s.maxQueueDepth).containsExactly(3, 1);
+        assertThat(statistics).extracting(s -> s.queueDepth).containsExactly(2, 0);
+
+        // b had no items since the previous snapshot
+        take(2);
+        assertThat(queue.takeStatisticsSnapshot())
+            .extracting(s -> s.key, s -> s.takenCount)
+            .containsExactly(tuple("a", 2L));
+    }
+
+    @Test
+    public void should_reject_non_positive_capacity() {
+        assertThatThrownBy(() -> new WeightedFairStageQueue<String>(0, item -> item, key -> 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void put(String... items) throws InterruptedException {
+        for (String item : items) {
+            queue.put(item);
+        }
+    }
+
+    private List<String> take(int count) throws InterruptedException {
+        List<String> items = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            items.add(queue.take());
+        }
+
+        return items;
+    }
+}
@@ -0,0 +1,125 @@
+package uk.gov.hmcts.reform.pbis.servicebus.validation;
+
+import org.junit.Test;
+import uk.gov.hmcts.reform.pbis.servicebus.PrivateBetaRegistration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CodedRegistrationValidatorTest {
+
+    private static final List<String> EMAIL_ADDRESSES = asList(
+        "john@example.com",
+        "john.smith@example.com",
+        "john.smith+test@mail.example.co.uk",
+        "o'connor@example.com",
+        "!#$%&'*+/=?^_`{|}~-@example.com",
+        "john@example-domain.com",
+        "john@localhost",
+        "john@123.example",
+        "john@example.com.",
+        "john@.example.com",
+        "john@example..com",
+        "john@-example.com",
+        "john@example-.com",
+        "john@exa_mple.com",
+        "john@exam ple.com",
+        "john@" + repeat('a', 63) + ".com",
+        "john@" + repeat('a', 64) + ".com",
+        "john@" + repeat(repeat('a', 62) + ".", 4) + "com",
+        repeat('a', 64) + "@example.com",
+        repeat('a', 65) + "@example.com",
+        ".john@example.com",
+        "john.@example.com",
+        "jo..hn@example.com",
+        "jo hn@example.com",
+        "jo(hn)@example.com",
+        "jo,hn@example.com",
+        "john",
+        "@example.com",
+        "john@",
+        "john@@example.com",
+        "john@smith@example.com",
+        "\"john smith\"@example.com",
+        "\"john@smith\"@example.com",
+        "jo\\hn@example.com",
+        "jöhn@example.com",
+        "john@exämple.com",
+        "john@[127.0.0.1]",
+        "john@[IPv6:::1]",
+        "john@[not an address]"
+    );
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final RegistrationValidator codedValidator = new CodedRegistrationValidator(validator);
+
+    private final RegistrationValidator beanValidator = new BeanValidationRegistrationValidator(validator);
+
+    @Test
+    public void validate_should_return_shared_empty_map_for_valid_registration() {
+        Map<String, String> errors = codedValidator.validate(createRegistration("john.smith@example.com"));
+
+        assertThat(errors).isSameAs(Collections.emptyMap());
+    }
+
+    @Test
+    public void validate_should_return_the_same_errors_as_bean_validation_for_each_email_address() {
+        for (String emailAddress : EMAIL_ADDRESSES) {
+            PrivateBetaRegistration registration = createRegistration(emailAddress);
+
+            assertThat(codedValidator.validate(registration))
+                .as("errors for %s", emailAddress)
+                .isEqualTo(beanValidator.validate(registration));
+        }
+    }
+
+    @Test
+    public void validate_should_return_the_same_errors_as_bean_validation_for_empty_fields() {
+        List<PrivateBetaRegistration> registrations = asList(
+            new PrivateBetaRegistration(null, null, null, null, null),
+            new PrivateBetaRegistration("", "", "", "", ""),
+            new PrivateBetaRegistration("ref", "", "not an email", "John", null),
+            new PrivateBetaRegistration(null, "service", "john@example.com", "", "Smith"),
+            new PrivateBetaRegistration(" ", " ", "john@example.com", " ", " ")
+        );
+
+        for (PrivateBetaRegistration registration : registrations) {
+            assertThat(codedValidator.validate(registration))
+                .isEqualTo(beanValidator.validate(registration));
+        }
+    }
+
+    @Test
+    public void validate_should_report_every_invalid_field() {
+        Map<String, String> errors = codedValidator.validate(
+            new PrivateBetaRegistration(null, "", "not an email", "John", null)
+        );
+
+        assertThat(errors).containsOnlyKeys("referenceId", "service", "emailAddress", "lastName");
+    }
+
+    private static PrivateBetaRegistration createRegistration(String emailAddress) {
+        return new PrivateBetaRegistration("reference-id", "service", emailAddress, "John", "Smith");
+    }
+
+    private static String repeat(char c, int count) {
+        return repeat(String.valueOf(c), count);
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+
+        return builder.toString();
+    }
+}